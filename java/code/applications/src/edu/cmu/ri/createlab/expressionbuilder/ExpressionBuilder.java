@@ -6,6 +6,8 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.io.File;
+import java.text.MessageFormat;
+import java.util.Date;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import javax.swing.BorderFactory;
@@ -31,14 +33,18 @@ import edu.cmu.ri.createlab.terk.expression.manager.ExpressionFileManagerView;
 import edu.cmu.ri.createlab.terk.services.ServiceManager;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
 import edu.cmu.ri.createlab.userinterface.component.Spinner;
+import edu.cmu.ri.createlab.userinterface.util.DialogHelper;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
 import edu.cmu.ri.createlab.visualprogrammer.PathManager;
 import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammer;
 import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.AutosaveService;
 import edu.cmu.ri.createlab.xml.LocalEntityResolver;
 import edu.cmu.ri.createlab.xml.SaveXmlDocumentDialogRunnable;
 import edu.cmu.ri.createlab.xml.XmlHelper;
 import org.apache.log4j.Logger;
+import org.jdom.DocType;
+import org.jdom.Document;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -52,6 +58,8 @@ public final class ExpressionBuilder
 
    private static final PropertyResourceBundle RESOURCES = (PropertyResourceBundle)PropertyResourceBundle.getBundle(ExpressionBuilder.class.getName());
 
+   private static final String AUTOSAVE_NAME = "expression";
+
    private final JFrame jFrame;
    private final JPanel stagePanel = new JPanel();
    private final JPanel mainPanel = new JPanel();
@@ -102,6 +110,43 @@ public final class ExpressionBuilder
    private ServiceManager serviceManager = null;
    private CreateLabDeviceProxy createLabDeviceProxy = null;
 
+   @Nullable
+   private final AutosaveService autosaveService;
+
+   private final AutosaveService.Source autosaveSource =
+         new AutosaveService.Source()
+         {
+         /** The last snapshot taken while connected, which is what's worth keeping while the device is away. */
+         private Document lastSnapshot = null;
+
+         @NotNull
+         @Override
+         public String getName()
+            {
+            return AUTOSAVE_NAME;
+            }
+
+         @Override
+         public String getTitle()
+            {
+            return stageControlsView.getStageTitle();
+            }
+
+         @Override
+         public Document createSnapshot()
+            {
+            if (isConnected())
+               {
+               final XmlExpression xmlExpression = controlPanelManager.buildExpression();
+               lastSnapshot = (xmlExpression == null) ? null : new Document(xmlExpression.toElement(),
+                                                                            new DocType(XmlExpression.ELEMENT_NAME,
+                                                                                        XmlExpression.DOCTYPE_PUBLIC_ID,
+                                                                                        XmlExpression.DOCTYPE_SYSTEM_ID));
+               }
+            return lastSnapshot;
+            }
+         };
+
    public ExpressionBuilder(@NotNull final JFrame jFrame,
                             @NotNull final VisualProgrammerDevice visualProgrammerDevice,
                             @NotNull final VisualProgrammer.TabSwitcher tabSwitcher)
@@ -110,6 +155,9 @@ public final class ExpressionBuilder
 
       this.jFrame = jFrame;
 
+      final File autosaveDirectory = PathManager.getInstance().getAutosaveDirectory();
+      autosaveService = (autosaveDirectory == null) ? null : new AutosaveService(autosaveDirectory);
+
       // Register the ExpressionFileListModel as a listener to the PathManager's expressions DirectoryPoller
       PathManager.getInstance().registerExpressionsDirectoryPollerEventListener(expressionFileListModel);
 
@@ -145,6 +193,9 @@ public final class ExpressionBuilder
                            @Override
                            protected void performUponSuccessfulSave(final String savedFilenameWithoutExtension)
                               {
+                              // the expression is safely saved, so there's nothing to recover
+                              clearAutosave();
+
                               if (eventHandler != null)
                                  {
                                  eventHandler.handleSuccessfulSave(savedFilenameWithoutExtension);
@@ -167,6 +218,9 @@ public final class ExpressionBuilder
                                                                                 public void openExpression(final XmlExpression expression)
                                                                                    {
                                                                                    controlPanelManager.loadExpression(expression);
+
+                                                                                   // the stage now matches a saved file, so there's nothing to recover
+                                                                                   clearAutosave();
                                                                                    }
 
                                                                                 public void deleteExpression(final ExpressionFile expressionFile)
@@ -210,7 +264,10 @@ public final class ExpressionBuilder
             @Override
             public void handleDeviceActivityStatusChange(final String serviceTypeId, final int deviceIndex, final boolean active)
                {
-               // nothing to do
+               if (autosaveService != null)
+                  {
+                  autosaveService.markChanged(autosaveSource);
+                  }
                }
             }
       );
@@ -330,6 +387,69 @@ public final class ExpressionBuilder
 
       // we're already connected, so perform post-connect setup
       performPostConnectSetup(visualProgrammerDevice);
+
+      if (autosaveService != null)
+         {
+         recoverAutosavedExpression();
+
+         // changing a control's value doesn't fire an event, so check periodically for changes
+         autosaveService.register(autosaveSource);
+         }
+      }
+
+   /** Offers to restore the expression autosaved by a previous session which didn't exit cleanly, if there is one. */
+   private void recoverAutosavedExpression()
+      {
+      final AutosaveService.Recovery recovery = autosaveService.getRecovery(AUTOSAVE_NAME);
+      if (recovery == null)
+         {
+         return;
+         }
+
+      final String title = (recovery.getTitle() == null) ? "" : recovery.getTitle();
+      final String message = MessageFormat.format(RESOURCES.getString("dialog.message.recover-autosaved-expression"),
+                                                  title,
+                                                  new Date(recovery.getTimestamp()));
+      if (DialogHelper.showYesNoDialog(RESOURCES.getString("dialog.title.recover-autosaved-expression"), message, jFrame))
+         {
+         try
+            {
+            controlPanelManager.loadExpression(XmlExpression.create(recovery.getFile()));
+            if (recovery.getTitle() != null)
+               {
+               setStageTitle(recovery.getTitle());
+               }
+
+            // keep the snapshot until the recovered expression is saved
+            return;
+            }
+         catch (Exception e)
+            {
+            LOG.error("ExpressionBuilder.recoverAutosavedExpression(): Exception while trying to read the autosaved expression [" + recovery.getFile() + "]", e);
+            DialogHelper.showErrorMessage(RESOURCES.getString("dialog.title.cannot-recover-autosaved-expression"),
+                                          RESOURCES.getString("dialog.message.cannot-recover-autosaved-expression"),
+                                          jFrame);
+            }
+         }
+
+      clearAutosave();
+      }
+
+   private void clearAutosave()
+      {
+      if (autosaveService != null)
+         {
+         autosaveService.clear(autosaveSource);
+         }
+      }
+
+   /** Stops autosaving.  Snapshots of unsaved work are kept, so that they can be recovered next time. */
+   public void stopAutosave()
+      {
+      if (autosaveService != null)
+         {
+         autosaveService.shutdown();
+         }
       }
 
    public void openExpression(@Nullable final ExpressionFile expressionFile)
@@ -449,6 +569,7 @@ public final class ExpressionBuilder
    public void shutdown()
       {
       LOG.debug("ExpressionBuilder.shutdown()");
+      stopAutosave();
       disconnectFromDevice();
       }
    }
@@ -0,0 +1,535 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.util.LatencyHistogram;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.visualprogrammer.Sensor;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDeviceImplementationClassLoader;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedLink;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedVisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.LocalEntityResolver;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.apache.log4j.Logger;
+import org.jdom.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>HeadlessSequenceRunner</code> runs a saved sequence without any GUI and prints how long each of its program
+ * elements took.  It needs no display, so it can be used to run batches of sequences (e.g. nightly, against a
+ * simulated device) and catch timing regressions.
+ * </p>
+ * <p>
+ * Usage: <code>HeadlessSequenceRunner [--simulated[=hummingbird|finch]] [--latency MILLIS] [--jitter MILLIS]
+ * [--bandwidth BYTES_PER_SECOND] [--iterations N] [--trace FILE] [--sensor-staleness MILLIS] &lt;home-directory&gt;
+ * &lt;sequence-file&gt;</code>
+ * </p>
+ * <p>
+ * The <code>home-directory</code> is the Visual Programmer home directory containing the device's expressions and
+ * sequences.  The device is chosen the same way the Visual Programmer chooses it (see
+ * {@link VisualProgrammerDeviceImplementationClassLoader}) unless <code>--simulated</code> is given, in which case a
+ * {@link SimulatedVisualProgrammerDevice} (a Hummingbird, unless a profile is given) is used instead.  The latency,
+ * jitter and bandwidth options configure the simulated device's {@link SimulatedLink}, and are ignored otherwise.  If
+ * <code>--trace</code> is given, the runs are traced by the {@link ExecutionTracer}, a latency summary is printed, and
+ * the trace and its histograms are exported as CSV to the given file and to the same file with a
+ * <code>.histograms.csv</code> suffix.  <code>--sensor-staleness</code> sets the maximum age of a sensor snapshot which
+ * conditionals may use (see {@link SequenceExecutor#setSensorSnapshotMaxStalenessInMillis(int)}); a negative value
+ * makes them always read the device.  The process exits with status 0 if every run completed, 1 if any run failed, and 2 for a usage or setup error.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class HeadlessSequenceRunner
+   {
+   private static final Logger LOG = Logger.getLogger(HeadlessSequenceRunner.class);
+
+   private static final String USAGE = "Usage: HeadlessSequenceRunner [--simulated[=hummingbird|finch]] [--latency MILLIS] [--jitter MILLIS] [--bandwidth BYTES_PER_SECOND] [--iterations N] [--trace FILE] [--sensor-staleness MILLIS] <home-directory> <sequence-file>";
+   private static final String HISTOGRAMS_FILE_SUFFIX = ".histograms.csv";
+   private static final String SIMULATED_PROFILE_OPTION_PREFIX = "--simulated=";
+   private static final double NANOS_PER_MILLI = 1000000.0;
+
+   private static final int EXIT_STATUS_SUCCESS = 0;
+   private static final int EXIT_STATUS_RUN_FAILED = 1;
+   private static final int EXIT_STATUS_USAGE_ERROR = 2;
+
+   public static void main(final String[] args)
+      {
+      // make sure nothing tries to use a display
+      if (System.getProperty("java.awt.headless") == null)
+         {
+         System.setProperty("java.awt.headless", "true");
+         }
+
+      SimulatedVisualProgrammerDevice.Profile simulatedDeviceProfile = null;
+      final SimulatedLink simulatedLink = new SimulatedLink();
+      int numIterations = 1;
+      File traceFile = null;
+      final List<String> positionalArgs = new ArrayList<String>();
+      try
+         {
+         for (int i = 0; i < args.length; i++)
+            {
+            if ("--simulated".equals(args[i]))
+               {
+               simulatedDeviceProfile = SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD;
+               }
+            else if (args[i].startsWith(SIMULATED_PROFILE_OPTION_PREFIX))
+               {
+               simulatedDeviceProfile = SimulatedVisualProgrammerDevice.Profile.valueOf(args[i].substring(SIMULATED_PROFILE_OPTION_PREFIX.length()).toUpperCase());
+               }
+            else if ("--iterations".equals(args[i]) && i + 1 < args.length)
+               {
+               numIterations = Integer.parseInt(args[++i]);
+               }
+            else if ("--trace".equals(args[i]) && i + 1 < args.length)
+               {
+               traceFile = new File(args[++i]);
+               }
+            else if ("--sensor-staleness".equals(args[i]) && i + 1 < args.length)
+               {
+               SequenceExecutor.getInstance().setSensorSnapshotMaxStalenessInMillis(Integer.parseInt(args[++i]));
+               }
+            else if ("--latency".equals(args[i]) && i + 1 < args.length)
+               {
+               simulatedLink.setLatency(Double.parseDouble(args[++i]));
+               }
+            else if ("--jitter".equals(args[i]) && i + 1 < args.length)
+               {
+               simulatedLink.setJitter(Double.parseDouble(args[++i]));
+               }
+            else if ("--bandwidth".equals(args[i]) && i + 1 < args.length)
+               {
+               simulatedLink.setBandwidth(Long.parseLong(args[++i]));
+               }
+            else
+               {
+               positionalArgs.add(args[i]);
+               }
+            }
+         }
+      catch (IllegalArgumentException e)
+         {
+         // thrown for both malformed numbers and unknown profiles
+         positionalArgs.clear();
+         }
+
+      if (positionalArgs.size() != 2 || numIterations < 1)
+         {
+         System.err.println(USAGE);
+         System.exit(EXIT_STATUS_USAGE_ERROR);
+         }
+
+      final File homeDirectory = new File(positionalArgs.get(0));
+      final File sequenceFile = new File(positionalArgs.get(1));
+      if (!homeDirectory.isDirectory() || !sequenceFile.isFile())
+         {
+         System.err.println("The home directory [" + homeDirectory + "] and the sequence file [" + sequenceFile + "] must both exist.");
+         System.exit(EXIT_STATUS_USAGE_ERROR);
+         }
+
+      final VisualProgrammerDevice visualProgrammerDevice = (simulatedDeviceProfile == null) ? findDevice() : new SimulatedVisualProgrammerDevice(simulatedDeviceProfile, simulatedLink);
+      if (visualProgrammerDevice == null)
+         {
+         System.err.println("Could not find any valid implementations of class VisualProgrammerDevice.");
+         System.exit(EXIT_STATUS_USAGE_ERROR);
+         }
+
+      if (traceFile != null)
+         {
+         ExecutionTracer.getInstance().setEnabled(true);
+         }
+
+      final HeadlessSequenceRunner runner = new HeadlessSequenceRunner(visualProgrammerDevice, homeDirectory);
+      final boolean wasSuccessful = runner.run(sequenceFile, numIterations, System.out);
+      if (traceFile != null)
+         {
+         ExecutionTracer.getInstance().setEnabled(false);
+         if (!exportTrace(traceFile, System.out))
+            {
+            System.exit(EXIT_STATUS_USAGE_ERROR);
+            }
+         }
+      if (simulatedDeviceProfile != null)
+         {
+         System.out.println(String.format("Simulated link: %d round trips, %d bytes, busy for %.1f ms",
+                                          simulatedLink.getRoundTripCount(),
+                                          simulatedLink.getBytesTransferredCount(),
+                                          simulatedLink.getBusyTimeInMillis()));
+         }
+      System.exit(wasSuccessful ? EXIT_STATUS_SUCCESS : EXIT_STATUS_RUN_FAILED);
+      }
+
+   /**
+    * Prints a summary of the {@link ExecutionTracer}'s histograms to the given {@link PrintStream} and exports its
+    * trace and histograms.  Returns <code>false</code> if the export failed.
+    */
+   private static boolean exportTrace(@NotNull final File traceFile, @NotNull final PrintStream out)
+      {
+      final ExecutionTracer tracer = ExecutionTracer.getInstance();
+      final File histogramsFile = new File(traceFile.getPath() + HISTOGRAMS_FILE_SUFFIX);
+
+      out.println();
+      final String format = "%-20s  %8s  %12s  %12s  %12s  %12s%n";
+      out.printf(format, "Metric", "Count", "Mean (ms)", "p50 (ms)", "p99 (ms)", "Max (ms)");
+      for (final ExecutionTracer.Metric metric : ExecutionTracer.Metric.values())
+         {
+         final LatencyHistogram histogram = tracer.getHistogram(metric);
+         out.printf(format,
+                    metric,
+                    String.valueOf(histogram.getCount()),
+                    String.format("%.3f", histogram.getMean() / NANOS_PER_MILLI),
+                    String.format("%.3f", histogram.getValueAtPercentile(50) / NANOS_PER_MILLI),
+                    String.format("%.3f", histogram.getValueAtPercentile(99) / NANOS_PER_MILLI),
+                    String.format("%.3f", histogram.getMax() / NANOS_PER_MILLI));
+         }
+      if (tracer.getDroppedEventCount() > 0)
+         {
+         out.println("Dropped " + tracer.getDroppedEventCount() + " trace events (the histograms include them)");
+         }
+
+      try
+         {
+         tracer.exportTrace(traceFile);
+         tracer.exportHistograms(histogramsFile);
+         }
+      catch (IOException e)
+         {
+         LOG.error("HeadlessSequenceRunner.exportTrace(): IOException while exporting the trace", e);
+         out.println("Failed to export the trace to [" + traceFile + "]: " + e);
+         return false;
+         }
+      out.println("Trace:      " + traceFile.getAbsolutePath());
+      out.println("Histograms: " + histogramsFile.getAbsolutePath());
+      out.flush();
+      return true;
+      }
+
+   @Nullable
+   private static VisualProgrammerDevice findDevice()
+      {
+      final List<VisualProgrammerDevice> visualProgrammerDevices = new VisualProgrammerDeviceImplementationClassLoader().loadImplementationClasses();
+      return visualProgrammerDevices.isEmpty() ? null : visualProgrammerDevices.get(0);
+      }
+
+   @NotNull
+   private final VisualProgrammerDevice visualProgrammerDevice;
+
+   @NotNull
+   private final File homeDirectory;
+
+   public HeadlessSequenceRunner(@NotNull final VisualProgrammerDevice visualProgrammerDevice, @NotNull final File homeDirectory)
+      {
+      this.visualProgrammerDevice = visualProgrammerDevice;
+      this.homeDirectory = homeDirectory;
+      }
+
+   /**
+    * Connects to the device, runs the given sequence file the given number of times, prints a timing report to the
+    * given {@link PrintStream}, and then disconnects.  Returns <code>true</code> if every run completed, or
+    * <code>false</code> if the sequence couldn't be loaded or any run failed or was stopped.
+    */
+   public boolean run(@NotNull final File sequenceFile, final int numIterations, @NotNull final PrintStream out)
+      {
+      XmlHelper.setLocalEntityResolver(LocalEntityResolver.getInstance());
+
+      visualProgrammerDevice.connect();
+      if (!visualProgrammerDevice.isConnected())
+         {
+         out.println("Failed to connect to the " + visualProgrammerDevice.getDeviceName());
+         return false;
+         }
+
+      try
+         {
+         PathManager.getInstance().initialize(homeDirectory, visualProgrammerDevice);
+
+         final ContainerModel containerModel = new ContainerModel();
+         try
+            {
+            final Document document = XmlHelper.createDocument(sequenceFile);
+            if (document == null)
+               {
+               out.println("Failed to read the sequence file [" + sequenceFile + "]");
+               return false;
+               }
+            containerModel.load(visualProgrammerDevice, document);
+            }
+         catch (Exception e)
+            {
+            LOG.error("HeadlessSequenceRunner.run(): Exception while loading the sequence file [" + sequenceFile + "]", e);
+            out.println("Failed to load the sequence file [" + sequenceFile + "]: " + e);
+            return false;
+            }
+
+         final List<ElementTimer> elementTimers = new ArrayList<ElementTimer>();
+         registerElementTimers(containerModel, "", 0, elementTimers);
+
+         int numCompletedRuns = 0;
+         long totalRunTimeInNanos = 0;
+         long maxRunTimeInNanos = 0;
+         for (int i = 0; i < numIterations; i++)
+            {
+            final long startTime = System.nanoTime();
+            final boolean didComplete = runOnce(containerModel);
+            final long runTime = System.nanoTime() - startTime;
+            totalRunTimeInNanos += runTime;
+            maxRunTimeInNanos = Math.max(maxRunTimeInNanos, runTime);
+            if (didComplete)
+               {
+               numCompletedRuns++;
+               }
+            }
+
+         printReport(out, sequenceFile, numIterations, numCompletedRuns, totalRunTimeInNanos, maxRunTimeInNanos, elementTimers);
+         return numCompletedRuns == numIterations;
+         }
+      finally
+         {
+         PathManager.getInstance().deinitialize();
+         visualProgrammerDevice.disconnect();
+         }
+      }
+
+   /** Runs the sequence once, blocking until it's done.  Returns <code>true</code> if the run completed. */
+   private boolean runOnce(@NotNull final ContainerModel containerModel)
+      {
+      final CountDownLatch latch = new CountDownLatch(1);
+      final AtomicBoolean didComplete = new AtomicBoolean(false);
+      final boolean wasStarted = SequenceExecutor.getInstance().start(
+            containerModel,
+            new SequenceExecutor.CompletionListener()
+            {
+            @Override
+            public void handleExecutionComplete(final boolean completed)
+               {
+               didComplete.set(completed);
+               latch.countDown();
+               }
+            });
+
+      if (!wasStarted)
+         {
+         LOG.error("HeadlessSequenceRunner.runOnce(): the SequenceExecutor did not start the sequence");
+         return false;
+         }
+
+      try
+         {
+         latch.await();
+         }
+      catch (InterruptedException e)
+         {
+         LOG.error("HeadlessSequenceRunner.runOnce(): interrupted while waiting for the sequence to finish, stopping it", e);
+         SequenceExecutor.getInstance().stop();
+         Thread.currentThread().interrupt();
+         return false;
+         }
+      return didComplete.get();
+      }
+
+   /**
+    * Registers an {@link ElementTimer} with every program element in the given container, and in any containers nested
+    * in those elements, in the order in which they appear.  Labels are the element's position (e.g. <code>2.1</code>
+    * for the first element inside the second), indented by depth.
+    */
+   private static void registerElementTimers(@NotNull final ContainerModel containerModel,
+                                             @NotNull final String positionPrefix,
+                                             final int depth,
+                                             @NotNull final List<ElementTimer> elementTimers)
+      {
+      int position = 1;
+      for (final ProgramElementModel model : containerModel.getAsList())
+         {
+         final String positionLabel = positionPrefix + position;
+         final ElementTimer timer = new ElementTimer(indent(depth) + positionLabel + " " + model.getName());
+         elementTimers.add(timer);
+
+         if (model instanceof ExpressionModel)
+            {
+            ((ExpressionModel)model).addExecutionEventListener(timer);
+            }
+         else if (model instanceof SavedSequenceModel)
+            {
+            ((SavedSequenceModel)model).addExecutionEventListener(timer);
+            }
+         else if (model instanceof CounterLoopModel)
+            {
+            final CounterLoopModel counterLoopModel = (CounterLoopModel)model;
+            counterLoopModel.addExecutionEventListener(timer);
+            registerElementTimers(counterLoopModel.getContainerModel(), positionLabel + ".", depth + 1, elementTimers);
+            }
+         else if (model instanceof LoopableConditionalModel)
+            {
+            final LoopableConditionalModel conditionalModel = (LoopableConditionalModel)model;
+            conditionalModel.addExecutionEventListener(timer);
+            registerElementTimers(conditionalModel.getIfBranchContainerModel(), positionLabel + ".if.", depth + 1, elementTimers);
+            registerElementTimers(conditionalModel.getElseBranchContainerModel(), positionLabel + ".else.", depth + 1, elementTimers);
+            }
+         position++;
+         }
+      }
+
+   private static void printReport(@NotNull final PrintStream out,
+                                   @NotNull final File sequenceFile,
+                                   final int numIterations,
+                                   final int numCompletedRuns,
+                                   final long totalRunTimeInNanos,
+                                   final long maxRunTimeInNanos,
+                                   @NotNull final List<ElementTimer> elementTimers)
+      {
+      out.println("Sequence:  " + sequenceFile.getAbsolutePath());
+      out.println("Runs:      " + numCompletedRuns + " of " + numIterations + " completed");
+      out.println(String.format("Run time:  mean %.3f ms, max %.3f ms",
+                                totalRunTimeInNanos / NANOS_PER_MILLI / numIterations,
+                                maxRunTimeInNanos / NANOS_PER_MILLI));
+      out.println();
+
+      int labelWidth = "Element".length();
+      for (final ElementTimer timer : elementTimers)
+         {
+         labelWidth = Math.max(labelWidth, timer.getLabel().length());
+         }
+
+      final String format = "%-" + labelWidth + "s  %8s  %12s  %12s  %12s%n";
+      out.printf(format, "Element", "Count", "Total (ms)", "Mean (ms)", "Max (ms)");
+      for (final ElementTimer timer : elementTimers)
+         {
+         final int count = timer.getCount();
+         out.printf(format,
+                    timer.getLabel(),
+                    String.valueOf(count),
+                    String.format("%.3f", timer.getTotalNanos() / NANOS_PER_MILLI),
+                    count == 0 ? "-" : String.format("%.3f", timer.getTotalNanos() / NANOS_PER_MILLI / count),
+                    count == 0 ? "-" : String.format("%.3f", timer.getMaxNanos() / NANOS_PER_MILLI));
+         }
+      out.flush();
+      }
+
+   @NotNull
+   private static String indent(final int depth)
+      {
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < depth; i++)
+         {
+         sb.append("  ");
+         }
+      return sb.toString();
+      }
+
+   /**
+    * Times each execution of a single program element.  The program element listener interfaces all share the same
+    * start and end methods, so a single class can listen to any kind of element.  All calls arrive on the sequence
+    * execution thread.
+    */
+   private static final class ElementTimer implements ExpressionModel.ExecutionEventListener,
+                                                      SavedSequenceModel.ExecutionEventListener,
+                                                      CounterLoopModel.ExecutionEventListener,
+                                                      LoopableConditionalModel.ExecutionEventListener
+      {
+      private final String label;
+      private long startTimeInNanos = -1;
+      private int count = 0;
+      private long totalNanos = 0;
+      private long maxNanos = 0;
+
+      private ElementTimer(@NotNull final String label)
+         {
+         this.label = label;
+         }
+
+      @Override
+      public void handleExecutionStart()
+         {
+         startTimeInNanos = System.nanoTime();
+         }
+
+      @Override
+      public void handleExecutionEnd()
+         {
+         if (startTimeInNanos >= 0)
+            {
+            final long elapsedNanos = System.nanoTime() - startTimeInNanos;
+            startTimeInNanos = -1;
+            count++;
+            totalNanos += elapsedNanos;
+            maxNanos = Math.max(maxNanos, elapsedNanos);
+            }
+         }
+
+      @Override
+      public void handleElapsedTimeInMillis(final int millis)
+         {
+         // nothing to do
+         }
+
+      @Override
+      public void handleElapsedIterations(final int elapsedIterations)
+         {
+         // nothing to do
+         }
+
+      @Override
+      public void handleHighlight()
+         {
+         // nothing to do
+         }
+
+      @Override
+      public void handleExecutionVisual()
+         {
+         // nothing to do
+         }
+
+      @Override
+      public void handleIfBranchHighlight(@NotNull final Sensor sensor, @NotNull final Integer valuePercentage)
+         {
+         // nothing to do
+         }
+
+      @Override
+      public void handleElseBranchHighlight(@NotNull final Sensor sensor, @NotNull final Integer valuePercentage)
+         {
+         // nothing to do
+         }
+
+      @Override
+      public void handleResetBranchHightlight()
+         {
+         // nothing to do
+         }
+
+      @NotNull
+      private String getLabel()
+         {
+         return label;
+         }
+
+      private int getCount()
+         {
+         return count;
+         }
+
+      private long getTotalNanos()
+         {
+         return totalNanos;
+         }
+
+      private long getMaxNanos()
+         {
+         return maxNanos;
+         }
+      }
+   }
@@ -10,6 +10,8 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.io.File;
 import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Date;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
 import javax.swing.BorderFactory;
@@ -42,6 +44,7 @@ import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
 import edu.cmu.ri.createlab.util.DirectoryPoller;
 import edu.cmu.ri.createlab.visualprogrammer.PathManager;
 import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.AutosaveService;
 import edu.cmu.ri.createlab.xml.LocalEntityResolver;
 import edu.cmu.ri.createlab.xml.SaveXmlDocumentDialogRunnable;
 import edu.cmu.ri.createlab.xml.XmlHelper;
@@ -57,6 +60,8 @@ public class SequenceBuilder
 
    private static final PropertyResourceBundle RESOURCES = (PropertyResourceBundle)PropertyResourceBundle.getBundle(SequenceBuilder.class.getName());
 
+   private static final String AUTOSAVE_NAME = "sequence";
+
    private final JFrame jFrame;
 
    @NotNull
@@ -70,6 +75,32 @@ public class SequenceBuilder
 
    private final StageControlsView stageControlsView;
 
+   @Nullable
+   private final AutosaveService autosaveService;
+
+   private final AutosaveService.Source autosaveSource =
+         new AutosaveService.Source()
+         {
+         @NotNull
+         @Override
+         public String getName()
+            {
+            return AUTOSAVE_NAME;
+            }
+
+         @Override
+         public String getTitle()
+            {
+            return stageControlsView.getTitle();
+            }
+
+         @Override
+         public Document createSnapshot()
+            {
+            return sequence.isEmpty() ? null : sequence.toXmlDocument();
+            }
+         };
+
    public SequenceBuilder(final JFrame jFrame,
                           @NotNull final VisualProgrammerDevice visualProgrammerDevice,
                           @NotNull final ExpressionBuilder expressionBuilder)
@@ -80,6 +111,9 @@ public class SequenceBuilder
 
       XmlHelper.setLocalEntityResolver(LocalEntityResolver.getInstance());
 
+      final File autosaveDirectory = PathManager.getInstance().getAutosaveDirectory();
+      autosaveService = (autosaveDirectory == null) ? null : new AutosaveService(autosaveDirectory);
+
       final ContainerModel sequenceContainerModel = new ContainerModel();
       final ContainerView sequenceContainerView = new ContainerView(jFrame, sequenceContainerModel, new StandardViewFactory());
       sequence = new Sequence(sequenceContainerModel, sequenceContainerView);
@@ -329,6 +363,9 @@ public class SequenceBuilder
                      @Override
                      protected void performUponSuccessfulSave(final String savedFilenameWithoutExtension)
                         {
+                        // the sequence is safely saved, so there's nothing to recover
+                        clearAutosave();
+
                         if (eventHandler != null)
                            {
                            eventHandler.handleSuccessfulSave(savedFilenameWithoutExtension);
@@ -342,13 +379,17 @@ public class SequenceBuilder
             public void startOrStopSequenceExecution()
                {
                LOG.debug("SequenceBuilder.startOrStopSequenceExecution()");
-               if (sequenceExecutor.isRunning())
+               // the button reads "Stop" until the run has actually ended, so a click while stopping is another stop
+               if (sequenceExecutor.getState() == SequenceExecutor.State.IDLE)
                   {
-                  sequenceExecutor.stop();
+                  if (!sequenceExecutor.start(sequence))
+                     {
+                     LOG.error("SequenceBuilder.startOrStopSequenceExecution(): failed to start the sequence (executor state is [" + sequenceExecutor.getState() + "])");
+                     }
                   }
                else
                   {
-                  sequenceExecutor.start(sequence);
+                  sequenceExecutor.stop();
                   }
                }
 
@@ -372,6 +413,7 @@ public class SequenceBuilder
             public void handleElementAddedEvent(@NotNull final ProgramElementModel model)
                {
                setStageButtonsEnabledState();
+               markAutosaveChanged();
                }
 
             @Override
@@ -381,6 +423,7 @@ public class SequenceBuilder
 
                // now set the stage buttons' enabled state accordingly
                setStageButtonsEnabledState();
+               markAutosaveChanged();
                }
 
             @Override
@@ -389,6 +432,7 @@ public class SequenceBuilder
                makeSurePlaybackIsStopped();
 
                setStageButtonsEnabledState();
+               markAutosaveChanged();
                }
 
             public void handleResetAllProgressBarsForExecution()
@@ -549,6 +593,72 @@ public class SequenceBuilder
                //sequenceScrollPaneIndicated.repaint();
                }
             });
+
+      if (autosaveService != null)
+         {
+         recoverAutosavedSequence();
+
+         // edits within loops, conditionals and program elements don't fire container events, so check periodically too
+         autosaveService.register(autosaveSource);
+         }
+      }
+
+   /** Offers to restore the sequence autosaved by a previous session which didn't exit cleanly, if there is one. */
+   private void recoverAutosavedSequence()
+      {
+      final AutosaveService.Recovery recovery = autosaveService.getRecovery(AUTOSAVE_NAME);
+      if (recovery == null)
+         {
+         return;
+         }
+
+      final String title = (recovery.getTitle() == null) ? "" : recovery.getTitle();
+      final String message = MessageFormat.format(RESOURCES.getString("dialog.message.recover-autosaved-sequence"),
+                                                  title,
+                                                  new Date(recovery.getTimestamp()));
+      if (DialogHelper.showYesNoDialog(RESOURCES.getString("dialog.title.recover-autosaved-sequence"), message, jFrame))
+         {
+         try
+            {
+            final Document document = XmlHelper.createDocument(recovery.getFile());
+            if (document != null)
+               {
+               sequence.load(visualProgrammerDevice, document);
+               if (recovery.getTitle() != null)
+                  {
+                  stageControlsView.setTitle(recovery.getTitle());
+                  }
+
+               // keep the snapshot until the recovered sequence is saved
+               return;
+               }
+            }
+         catch (Exception e)
+            {
+            LOG.error("SequenceBuilder.recoverAutosavedSequence(): Exception while trying to read the autosaved sequence [" + recovery.getFile() + "]", e);
+            DialogHelper.showErrorMessage(RESOURCES.getString("dialog.title.cannot-open-document"),
+                                          RESOURCES.getString("dialog.message.cannot-open-document"),
+                                          jFrame);
+            }
+         }
+
+      clearAutosave();
+      }
+
+   private void markAutosaveChanged()
+      {
+      if (autosaveService != null)
+         {
+         autosaveService.markChanged(autosaveSource);
+         }
+      }
+
+   private void clearAutosave()
+      {
+      if (autosaveService != null)
+         {
+         autosaveService.clear(autosaveSource);
+         }
       }
 
    public JPanel getPanel()
@@ -559,6 +669,10 @@ public class SequenceBuilder
    public void shutdown()
       {
       LOG.debug("SequenceBuilder.shutdown()");
+      if (autosaveService != null)
+         {
+         autosaveService.shutdown();
+         }
       }
 
    private class MyFileManagerControlsController implements FileManagerControlsController
@@ -588,6 +702,9 @@ public class SequenceBuilder
                sequence.load(visualProgrammerDevice, document);
 
                stageControlsView.setTitle(model.getName());
+
+               // the stage now matches a saved file, so there's nothing to recover
+               clearAutosave();
                }
             }
          catch (final IOException e)
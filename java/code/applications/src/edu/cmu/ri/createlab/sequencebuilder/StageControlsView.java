@@ -303,6 +303,13 @@ final class StageControlsView implements SequenceExecutor.EventListener
       SwingUtils.runInGUIThread(isEnabled ? setEnabledRunnable : setDisabledRunnable);
       }
 
+   /** Returns the title of the sequence on the stage.  Must be called on the Swing event dispatch thread. */
+   @NotNull
+   public String getTitle()
+      {
+      return stageControlsTitle.getText();
+      }
+
    public void setTitle(@NotNull final String name)
       {
       SwingUtils.runInGUIThread(
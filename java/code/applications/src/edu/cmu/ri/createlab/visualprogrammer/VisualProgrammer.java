@@ -33,15 +33,19 @@ import javax.swing.border.Border;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import edu.cmu.ri.createlab.audio.AudioClipInstaller;
+import edu.cmu.ri.createlab.audio.AudioClipStore;
+import edu.cmu.ri.createlab.audio.SpeechCache;
 import edu.cmu.ri.createlab.device.CreateLabDevicePingFailureEventListener;
 import edu.cmu.ri.createlab.device.CreateLabDeviceProxy;
 import edu.cmu.ri.createlab.expressionbuilder.ExpressionBuilder;
 import edu.cmu.ri.createlab.sequencebuilder.SequenceBuilder;
 import edu.cmu.ri.createlab.sequencebuilder.SequenceExecutor;
+import edu.cmu.ri.createlab.terk.expression.manager.XmlExpressionCache;
 import edu.cmu.ri.createlab.terk.services.ServiceManager;
 import edu.cmu.ri.createlab.userinterface.util.DialogHelper;
 import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import edu.cmu.ri.createlab.util.StandardVersionNumber;
 import edu.cmu.ri.createlab.visualprogrammer.lookandfeel.VisualProgrammerLookAndFeelLoader;
 import edu.cmu.ri.createlab.xml.LocalEntityResolver;
@@ -381,6 +385,10 @@ public final class VisualProgrammer
             createLabDeviceProxy = null;
             serviceManager = null;
 
+            // stop autosaving before the autosave directory goes away (unsaved work stays there for recovery)
+            expressionBuilder.stopAutosave();
+            sequenceBuilder.shutdown();
+
             PathManager.getInstance().deinitialize();
 
             expressionBuilder.performPostDisconnectCleanup();
@@ -415,6 +423,21 @@ public final class VisualProgrammer
 
       LOG.debug("VisualProgrammer.shutdown(): disconnecting from device");
       cleanup(true);
+
+      if (LOG.isDebugEnabled())
+         {
+         logCacheStatistics("XmlExpressionCache", XmlExpressionCache.getInstance().getHitCount(), XmlExpressionCache.getInstance().getMissCount());
+         logCacheStatistics("IconRegistry", IconRegistry.getInstance().getHitCount(), IconRegistry.getInstance().getMissCount());
+         logCacheStatistics("SpeechCache", SpeechCache.getInstance().getHitCount(), SpeechCache.getInstance().getMissCount());
+         logCacheStatistics("AudioClipStore", AudioClipStore.getInstance().getHitCount(), AudioClipStore.getInstance().getMissCount());
+         }
+      }
+
+   private static void logCacheStatistics(@NotNull final String cacheName, final long hitCount, final long missCount)
+      {
+      final long requestCount = hitCount + missCount;
+      final String hitRate = (requestCount > 0) ? String.format("%.1f%%", 100.0 * hitCount / requestCount) : "-";
+      LOG.debug("VisualProgrammer.shutdown(): " + cacheName + ": [" + hitCount + "] hits, [" + missCount + "] misses, hit rate [" + hitRate + "]");
       }
 
    private void showSpinner()
@@ -0,0 +1,57 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import java.io.File;
+import edu.cmu.ri.createlab.sequencebuilder.export.ArduinoCodeWriter;
+import edu.cmu.ri.createlab.sequencebuilder.export.ArduinoFileManager;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>ArduinoExportBenchmark</code> measures exporting the corpus's deep sequence, and every expression and saved
+ * sequence it refers to, as an Arduino sketch with the {@link ArduinoCodeWriter}.  Each operation writes its sketch to
+ * a fresh directory, which is deleted again before the next operation.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class ArduinoExportBenchmark implements Benchmark
+   {
+   private static final String OUTPUT_DIRECTORY_NAME = "arduino-export-benchmark";
+
+   private File sequenceFile;
+   private File outputDirectory;
+
+   @NotNull
+   @Override
+   public String getName()
+      {
+      return "ArduinoCodeWriter.generateSequence";
+      }
+
+   @Override
+   public void setUp(@NotNull final BenchmarkContext context) throws Exception
+      {
+      sequenceFile = context.getCorpus().getDeepSequenceFile();
+      outputDirectory = new File(context.getHomeDirectory(), OUTPUT_DIRECTORY_NAME);
+      FileUtils.forceMkdir(outputDirectory);
+      }
+
+   @Override
+   public Object run() throws Exception
+      {
+      final ArduinoFileManager arduinoFileManager = new ArduinoFileManager(sequenceFile, outputDirectory);
+      new ArduinoCodeWriter(arduinoFileManager).generateSequence();
+
+      final File sketchFile = new File(arduinoFileManager.getArduinoFile(), arduinoFileManager.getArduinoFileName());
+      final long sketchLength = sketchFile.length();
+      FileUtils.deleteDirectory(arduinoFileManager.getArduinoFile());
+      return sketchLength;
+      }
+
+   @Override
+   public void tearDown()
+      {
+      FileUtils.deleteQuietly(outputDirectory);
+      }
+   }
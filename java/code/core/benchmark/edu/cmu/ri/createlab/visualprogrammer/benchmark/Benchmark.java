@@ -0,0 +1,32 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>Benchmark</code> is a single hot path measured by the {@link BenchmarkRunner}.  The runner calls
+ * {@link #setUp} once, then {@link #run} once per warmup and measurement operation, and finally {@link #tearDown}.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public interface Benchmark
+   {
+   /** Returns the name shown in the report. */
+   @NotNull
+   String getName();
+
+   /** Prepares the benchmark.  Nothing done here is measured. */
+   void setUp(@NotNull final BenchmarkContext context) throws Exception;
+
+   /**
+    * Performs one operation.  Implementations should return whatever the operation produced so that the runner can
+    * consume it, which prevents the JIT from optimizing the operation away.
+    */
+   @Nullable
+   Object run() throws Exception;
+
+   /** Releases anything acquired in {@link #setUp}. */
+   void tearDown();
+   }
@@ -0,0 +1,56 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import java.io.File;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedLink;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedVisualProgrammerDevice;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>BenchmarkContext</code> is the environment shared by every {@link Benchmark} in a run: a connected
+ * {@link SimulatedVisualProgrammerDevice}, a Visual Programmer home directory holding a generated
+ * {@link CorpusGenerator.Corpus corpus}, and the {@link PathManager} initialized to point at them.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class BenchmarkContext
+   {
+   private final File homeDirectory;
+   private final CorpusGenerator.Corpus corpus;
+   private final SimulatedVisualProgrammerDevice device;
+
+   BenchmarkContext(@NotNull final File homeDirectory,
+                    @NotNull final CorpusGenerator.Corpus corpus,
+                    @NotNull final SimulatedVisualProgrammerDevice device)
+      {
+      this.homeDirectory = homeDirectory;
+      this.corpus = corpus;
+      this.device = device;
+      }
+
+   @NotNull
+   public File getHomeDirectory()
+      {
+      return homeDirectory;
+      }
+
+   @NotNull
+   public CorpusGenerator.Corpus getCorpus()
+      {
+      return corpus;
+      }
+
+   @NotNull
+   public SimulatedVisualProgrammerDevice getDevice()
+      {
+      return device;
+      }
+
+   @NotNull
+   public SimulatedLink getLink()
+      {
+      return device.getLink();
+      }
+   }
@@ -0,0 +1,415 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import edu.cmu.ri.createlab.audio.AudioClipStore;
+import edu.cmu.ri.createlab.audio.SpeechCache;
+import edu.cmu.ri.createlab.terk.expression.manager.XmlExpressionCache;
+import edu.cmu.ri.createlab.util.IconRegistry;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedLink;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedVisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.LocalEntityResolver;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>BenchmarkRunner</code> measures the Visual Programmer's load, execute and export hot paths against a
+ * synthetic corpus (see {@link CorpusGenerator}) and a {@link SimulatedVisualProgrammerDevice}, so the numbers are
+ * repeatable and need no hardware.  Each {@link Benchmark} is run for a number of warmup operations, to give the JIT a
+ * chance to compile the hot path, and then for a number of individually-timed measurement operations, from which the
+ * mean, minimum, median and 99th percentile times are reported, followed by the hit and miss counts of the shared
+ * caches over the whole run.
+ * </p>
+ * <p>
+ * Usage: <code>BenchmarkRunner [--warmup N] [--iterations N] [--filter TEXT] [--expressions N] [--sequences N]
+ * [--depth N] [--breadth N] [--latency MILLIS] [--home DIRECTORY]</code>
+ * </p>
+ * <p>
+ * Only benchmarks whose names contain the filter text (ignoring case) are run.  The corpus options are passed to the
+ * {@link CorpusGenerator}, and the latency configures the simulated device's {@link SimulatedLink}.  The corpus is
+ * written to a temporary directory which is deleted afterwards, unless a home directory is given, in which case the
+ * corpus is written there and kept.  The process exits with status 0 if every benchmark ran, 1 if any failed, and 2
+ * for a usage error.  From Ant, run <code>ant benchmark -Dbenchmark.args="..."</code>.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class BenchmarkRunner
+   {
+   private static final Logger LOG = Logger.getLogger(BenchmarkRunner.class);
+
+   private static final String USAGE = "Usage: BenchmarkRunner [--warmup N] [--iterations N] [--filter TEXT] [--expressions N] [--sequences N] [--depth N] [--breadth N] [--latency MILLIS] [--home DIRECTORY]";
+   private static final double NANOS_PER_MICRO = 1000.0;
+   private static final double NANOS_PER_SECOND = 1000000000.0;
+
+   private static final int EXIT_STATUS_SUCCESS = 0;
+   private static final int EXIT_STATUS_BENCHMARK_FAILED = 1;
+   private static final int EXIT_STATUS_USAGE_ERROR = 2;
+
+   /** Every operation's result is folded into this field so that the JIT can't discard the work done to produce it. */
+   private static volatile int sink = 0;
+
+   public static void main(final String[] args)
+      {
+      // make sure nothing tries to use a display
+      if (System.getProperty("java.awt.headless") == null)
+         {
+         System.setProperty("java.awt.headless", "true");
+         }
+
+      final BenchmarkRunner runner = new BenchmarkRunner();
+      final CorpusGenerator corpusGenerator = new CorpusGenerator();
+      double latencyInMillis = 0;
+      File homeDirectory = null;
+      String filter = "";
+      boolean isUsageError = false;
+      try
+         {
+         for (int i = 0; i < args.length; i++)
+            {
+            if ("--warmup".equals(args[i]) && i + 1 < args.length)
+               {
+               runner.setNumWarmupOperations(Integer.parseInt(args[++i]));
+               }
+            else if ("--iterations".equals(args[i]) && i + 1 < args.length)
+               {
+               runner.setNumMeasurementOperations(Integer.parseInt(args[++i]));
+               }
+            else if ("--filter".equals(args[i]) && i + 1 < args.length)
+               {
+               filter = args[++i];
+               }
+            else if ("--expressions".equals(args[i]) && i + 1 < args.length)
+               {
+               corpusGenerator.setNumExpressions(Integer.parseInt(args[++i]));
+               }
+            else if ("--sequences".equals(args[i]) && i + 1 < args.length)
+               {
+               corpusGenerator.setNumSequences(Integer.parseInt(args[++i]));
+               }
+            else if ("--depth".equals(args[i]) && i + 1 < args.length)
+               {
+               corpusGenerator.setNestingDepth(Integer.parseInt(args[++i]));
+               }
+            else if ("--breadth".equals(args[i]) && i + 1 < args.length)
+               {
+               corpusGenerator.setElementsPerLevel(Integer.parseInt(args[++i]));
+               }
+            else if ("--latency".equals(args[i]) && i + 1 < args.length)
+               {
+               latencyInMillis = Double.parseDouble(args[++i]);
+               }
+            else if ("--home".equals(args[i]) && i + 1 < args.length)
+               {
+               homeDirectory = new File(args[++i]);
+               }
+            else
+               {
+               isUsageError = true;
+               }
+            }
+         }
+      catch (IllegalArgumentException e)
+         {
+         // thrown for both malformed numbers and out-of-range settings
+         isUsageError = true;
+         }
+
+      if (isUsageError)
+         {
+         System.err.println(USAGE);
+         System.exit(EXIT_STATUS_USAGE_ERROR);
+         }
+
+      final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+      for (final Benchmark benchmark : createBenchmarks())
+         {
+         if (benchmark.getName().toLowerCase().contains(filter.toLowerCase()))
+            {
+            benchmarks.add(benchmark);
+            }
+         }
+
+      final SimulatedLink link = new SimulatedLink(0);
+      link.setLatency(latencyInMillis);
+      final SimulatedVisualProgrammerDevice device = new SimulatedVisualProgrammerDevice(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD, link);
+
+      boolean wasSuccessful;
+      try
+         {
+         wasSuccessful = runner.run(benchmarks, corpusGenerator, device, homeDirectory, System.out);
+         }
+      catch (IOException e)
+         {
+         LOG.error("BenchmarkRunner.main(): IOException while setting up the benchmarks", e);
+         System.err.println("Failed to set up the benchmarks: " + e);
+         wasSuccessful = false;
+         }
+      System.exit(wasSuccessful ? EXIT_STATUS_SUCCESS : EXIT_STATUS_BENCHMARK_FAILED);
+      }
+
+   @NotNull
+   private static List<Benchmark> createBenchmarks()
+      {
+      return Arrays.<Benchmark>asList(new XmlExpressionParsingBenchmark(),
+                                      new ContainerModelLoadingBenchmark(false),
+                                      new ContainerModelLoadingBenchmark(true),
+                                      new ContainerModelSerializationBenchmark(),
+                                      new ExpressionExecutionBenchmark(true),
+                                      new ExpressionExecutionBenchmark(false),
+                                      new DirectoryScanningBenchmark(),
+                                      new ArduinoExportBenchmark());
+      }
+
+   private int numWarmupOperations = 20;
+   private int numMeasurementOperations = 100;
+
+   /** Sets the number of untimed operations run before measuring.  Must not be negative. */
+   public void setNumWarmupOperations(final int numWarmupOperations)
+      {
+      if (numWarmupOperations < 0)
+         {
+         throw new IllegalArgumentException("The number of warmup operations must not be negative");
+         }
+      this.numWarmupOperations = numWarmupOperations;
+      }
+
+   /** Sets the number of timed operations.  Must be at least 1. */
+   public void setNumMeasurementOperations(final int numMeasurementOperations)
+      {
+      if (numMeasurementOperations < 1)
+         {
+         throw new IllegalArgumentException("The number of measurement operations must be at least 1");
+         }
+      this.numMeasurementOperations = numMeasurementOperations;
+      }
+
+   /**
+    * Generates the corpus, connects the device, runs the given benchmarks in order, prints a report to the given
+    * {@link PrintStream}, and then disconnects.  If the <code>homeDirectory</code> is <code>null</code>, the corpus is
+    * written to a temporary directory which is deleted afterwards.  Returns <code>true</code> if every benchmark ran.
+    *
+    * @throws IOException if the corpus can't be written
+    */
+   public boolean run(@NotNull final List<Benchmark> benchmarks,
+                      @NotNull final CorpusGenerator corpusGenerator,
+                      @NotNull final SimulatedVisualProgrammerDevice device,
+                      @Nullable final File homeDirectory,
+                      @NotNull final PrintStream out) throws IOException
+      {
+      XmlHelper.setLocalEntityResolver(LocalEntityResolver.getInstance());
+
+      final File corpusHomeDirectory = (homeDirectory == null) ? createTemporaryDirectory() : homeDirectory;
+      try
+         {
+         final CorpusGenerator.Corpus corpus = corpusGenerator.generate(corpusHomeDirectory, device.getDeviceName());
+         out.println("Corpus:  " + corpus.getExpressionFiles().size() + " expressions and " + corpus.getSequenceFiles().size() + " sequences in [" + corpusHomeDirectory + "]");
+         out.println("Timing:  " + numWarmupOperations + " warmup and " + numMeasurementOperations + " measurement operations per benchmark");
+         out.println();
+
+         device.connect();
+         PathManager.getInstance().initialize(corpusHomeDirectory, device);
+         try
+            {
+            final BenchmarkContext context = new BenchmarkContext(corpusHomeDirectory, corpus, device);
+            final List<Result> results = new ArrayList<Result>();
+            for (final Benchmark benchmark : benchmarks)
+               {
+               results.add(runBenchmark(benchmark, context));
+               }
+            printReport(out, results);
+            printCacheReport(out);
+
+            for (final Result result : results)
+               {
+               if (result.getFailure() != null)
+                  {
+                  return false;
+                  }
+               }
+            return true;
+            }
+         finally
+            {
+            PathManager.getInstance().deinitialize();
+            device.disconnect();
+            }
+         }
+      finally
+         {
+         if (homeDirectory == null)
+            {
+            FileUtils.deleteQuietly(corpusHomeDirectory);
+            }
+         }
+      }
+
+   @NotNull
+   private Result runBenchmark(@NotNull final Benchmark benchmark, @NotNull final BenchmarkContext context)
+      {
+      final long[] operationTimesInNanos = new long[numMeasurementOperations];
+      try
+         {
+         benchmark.setUp(context);
+         try
+            {
+            for (int i = 0; i < numWarmupOperations; i++)
+               {
+               consume(benchmark.run());
+               }
+            for (int i = 0; i < numMeasurementOperations; i++)
+               {
+               final long startTime = System.nanoTime();
+               final Object result = benchmark.run();
+               operationTimesInNanos[i] = System.nanoTime() - startTime;
+               consume(result);
+               }
+            }
+         finally
+            {
+            benchmark.tearDown();
+            }
+         }
+      catch (Exception e)
+         {
+         LOG.error("BenchmarkRunner.runBenchmark(): Exception while running benchmark [" + benchmark.getName() + "]", e);
+         return new Result(benchmark.getName(), null, e);
+         }
+      return new Result(benchmark.getName(), operationTimesInNanos, null);
+      }
+
+   private static void consume(@Nullable final Object result)
+      {
+      sink ^= System.identityHashCode(result);
+      }
+
+   private static void printReport(@NotNull final PrintStream out, @NotNull final List<Result> results)
+      {
+      int nameWidth = "Benchmark".length();
+      for (final Result result : results)
+         {
+         nameWidth = Math.max(nameWidth, result.getName().length());
+         }
+
+      final String format = "%-" + nameWidth + "s  %12s  %12s  %12s  %12s  %12s%n";
+      out.printf(format, "Benchmark", "Mean (us)", "Min (us)", "p50 (us)", "p99 (us)", "Ops/s");
+      for (final Result result : results)
+         {
+         final long[] times = result.getSortedOperationTimesInNanos();
+         if (times == null)
+            {
+            out.printf("%-" + nameWidth + "s  FAILED: %s%n", result.getName(), result.getFailure());
+            }
+         else
+            {
+            long totalNanos = 0;
+            for (final long time : times)
+               {
+               totalNanos += time;
+               }
+            final double meanNanos = totalNanos / (double)times.length;
+            out.printf(format,
+                       result.getName(),
+                       String.format("%.1f", meanNanos / NANOS_PER_MICRO),
+                       String.format("%.1f", times[0] / NANOS_PER_MICRO),
+                       String.format("%.1f", percentile(times, 0.50) / NANOS_PER_MICRO),
+                       String.format("%.1f", percentile(times, 0.99) / NANOS_PER_MICRO),
+                       (meanNanos > 0) ? String.format("%.1f", NANOS_PER_SECOND / meanNanos) : "-");
+            }
+         }
+      out.flush();
+      }
+
+   private static void printCacheReport(@NotNull final PrintStream out)
+      {
+      final String format = "%-20s  %12s  %12s  %12s%n";
+      out.println();
+      out.printf(format, "Cache", "Hits", "Misses", "Hit Rate");
+      printCacheRow(out, format, "XmlExpressionCache", XmlExpressionCache.getInstance().getHitCount(), XmlExpressionCache.getInstance().getMissCount());
+      printCacheRow(out, format, "IconRegistry", IconRegistry.getInstance().getHitCount(), IconRegistry.getInstance().getMissCount());
+      printCacheRow(out, format, "SpeechCache", SpeechCache.getInstance().getHitCount(), SpeechCache.getInstance().getMissCount());
+      printCacheRow(out, format, "AudioClipStore", AudioClipStore.getInstance().getHitCount(), AudioClipStore.getInstance().getMissCount());
+      out.flush();
+      }
+
+   private static void printCacheRow(@NotNull final PrintStream out,
+                                     @NotNull final String format,
+                                     @NotNull final String name,
+                                     final long hitCount,
+                                     final long missCount)
+      {
+      final long requestCount = hitCount + missCount;
+      out.printf(format,
+                 name,
+                 hitCount,
+                 missCount,
+                 (requestCount > 0) ? String.format("%.1f%%", 100.0 * hitCount / requestCount) : "-");
+      }
+
+   /** Returns the nearest-rank percentile of the given sorted times. */
+   private static long percentile(@NotNull final long[] sortedTimes, final double fraction)
+      {
+      final int rank = (int)Math.ceil(fraction * sortedTimes.length);
+      return sortedTimes[Math.max(0, Math.min(sortedTimes.length - 1, rank - 1))];
+      }
+
+   @NotNull
+   private static File createTemporaryDirectory() throws IOException
+      {
+      final File directory = File.createTempFile("visual-programmer-benchmark", "");
+      if (!directory.delete() || !directory.mkdir())
+         {
+         throw new IOException("Failed to create the temporary directory [" + directory + "]");
+         }
+      return directory;
+      }
+
+   private static final class Result
+      {
+      private final String name;
+      private final long[] sortedOperationTimesInNanos;
+      private final Exception failure;
+
+      private Result(@NotNull final String name, @Nullable final long[] operationTimesInNanos, @Nullable final Exception failure)
+         {
+         this.name = name;
+         this.failure = failure;
+         if (operationTimesInNanos == null)
+            {
+            this.sortedOperationTimesInNanos = null;
+            }
+         else
+            {
+            this.sortedOperationTimesInNanos = operationTimesInNanos.clone();
+            Arrays.sort(this.sortedOperationTimesInNanos);
+            }
+         }
+
+      @NotNull
+      private String getName()
+         {
+         return name;
+         }
+
+      @Nullable
+      private long[] getSortedOperationTimesInNanos()
+         {
+         return sortedOperationTimesInNanos;
+         }
+
+      @Nullable
+      private Exception getFailure()
+         {
+         return failure;
+         }
+      }
+   }
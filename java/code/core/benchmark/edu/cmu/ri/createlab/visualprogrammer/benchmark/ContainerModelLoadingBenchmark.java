@@ -0,0 +1,63 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import edu.cmu.ri.createlab.sequencebuilder.ContainerModel;
+import edu.cmu.ri.createlab.terk.expression.manager.XmlExpressionCache;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.jdom.Document;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>ContainerModelLoadingBenchmark</code> measures {@link ContainerModel#load loading} the corpus's deep sequence
+ * into a new {@link ContainerModel}.  The sequence's XML is parsed once, up front.  When the benchmark is created for a
+ * cold cache, the {@link XmlExpressionCache} is cleared before every load, so each load also parses every expression
+ * it refers to, as it would the first time a sequence is opened.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class ContainerModelLoadingBenchmark implements Benchmark
+   {
+   private final boolean isExpressionCacheCold;
+   private VisualProgrammerDevice visualProgrammerDevice;
+   private Document sequenceDocument;
+
+   ContainerModelLoadingBenchmark(final boolean isExpressionCacheCold)
+      {
+      this.isExpressionCacheCold = isExpressionCacheCold;
+      }
+
+   @NotNull
+   @Override
+   public String getName()
+      {
+      return "ContainerModel.load (" + (isExpressionCacheCold ? "cold" : "warm") + " expression cache)";
+      }
+
+   @Override
+   public void setUp(@NotNull final BenchmarkContext context) throws Exception
+      {
+      visualProgrammerDevice = context.getDevice();
+      sequenceDocument = XmlHelper.createDocument(context.getCorpus().getDeepSequenceFile());
+      }
+
+   @Override
+   public Object run()
+      {
+      if (isExpressionCacheCold)
+         {
+         XmlExpressionCache.getInstance().clear();
+         }
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.load(visualProgrammerDevice, sequenceDocument);
+      return containerModel;
+      }
+
+   @Override
+   public void tearDown()
+      {
+      visualProgrammerDevice = null;
+      sequenceDocument = null;
+      }
+   }
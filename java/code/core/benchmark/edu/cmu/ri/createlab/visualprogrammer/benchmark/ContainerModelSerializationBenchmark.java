@@ -0,0 +1,44 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import edu.cmu.ri.createlab.sequencebuilder.ContainerModel;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>ContainerModelSerializationBenchmark</code> measures converting the corpus's deep sequence back into XML with
+ * {@link ContainerModel#toElement()}, which happens every time a sequence is saved.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class ContainerModelSerializationBenchmark implements Benchmark
+   {
+   private ContainerModel containerModel;
+
+   @NotNull
+   @Override
+   public String getName()
+      {
+      return "ContainerModel.toElement";
+      }
+
+   @Override
+   public void setUp(@NotNull final BenchmarkContext context) throws Exception
+      {
+      containerModel = new ContainerModel();
+      containerModel.load(context.getDevice(), XmlHelper.createDocument(context.getCorpus().getDeepSequenceFile()));
+      }
+
+   @Override
+   public Object run()
+      {
+      return containerModel.toElement();
+      }
+
+   @Override
+   public void tearDown()
+      {
+      containerModel = null;
+      }
+   }
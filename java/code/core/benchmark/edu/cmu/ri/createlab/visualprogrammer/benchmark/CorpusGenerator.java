@@ -0,0 +1,382 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import edu.cmu.ri.createlab.terk.services.led.FullColorLEDService;
+import edu.cmu.ri.createlab.terk.services.led.SimpleLEDService;
+import edu.cmu.ri.createlab.terk.services.motor.SpeedControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.motor.VelocityControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.servo.SimpleServoService;
+import edu.cmu.ri.createlab.terk.xml.XmlDevice;
+import edu.cmu.ri.createlab.terk.xml.XmlOperation;
+import edu.cmu.ri.createlab.terk.xml.XmlParameter;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerConstants;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.apache.commons.io.FileUtils;
+import org.jdom.CDATA;
+import org.jdom.DocType;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>CorpusGenerator</code> writes a synthetic corpus of Hummingbird expressions and sequences into a Visual
+ * Programmer home directory, for use by the benchmarks.  The corpus consists of:
+ * </p>
+ * <ul>
+ *    <li>the configured number of expressions, each setting a random selection of the Hummingbird's outputs</li>
+ *    <li>the configured number of flat sequences, each running a few expressions and (usually) the previous flat
+ *    sequence as a saved sequence, so that saved sequences are nested a few levels deep</li>
+ *    <li>one deep sequence, {@link #DEEP_SEQUENCE_FILENAME}, made of counter loops nested to the configured depth, each
+ *    level containing a few expressions and a saved sequence</li>
+ * </ul>
+ * <p>
+ * The same settings and seed always produce the same corpus.  The generator can also be run on its own to create a
+ * corpus for profiling the Visual Programmer by hand:
+ * <code>CorpusGenerator [--expressions N] [--sequences N] [--depth N] [--breadth N] [--seed N]
+ * &lt;home-directory&gt; [device-name]</code>
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class CorpusGenerator
+   {
+   public static final String DEEP_SEQUENCE_FILENAME = "deep-sequence.xml";
+
+   private static final String USAGE = "Usage: CorpusGenerator [--expressions N] [--sequences N] [--depth N] [--breadth N] [--seed N] <home-directory> [device-name]";
+   private static final String DEFAULT_DEVICE_NAME = "Hummingbird";
+
+   /** Saved sequences refer to the previous flat sequence, except for every this many, which breaks the chain. */
+   private static final int MAX_SAVED_SEQUENCE_CHAIN_LENGTH = 5;
+   private static final int COUNTER_LOOP_ITERATIONS = 2;
+
+   private static final int SIMPLE_SERVO_DEVICE_COUNT = 4;
+   private static final int SIMPLE_LED_DEVICE_COUNT = 4;
+   private static final int FULL_COLOR_LED_DEVICE_COUNT = 2;
+   private static final int VELOCITY_MOTOR_DEVICE_COUNT = 2;
+   private static final int VIBRATION_MOTOR_DEVICE_COUNT = 2;
+
+   private static final String SEQUENCE_ELEMENT_NAME = "sequence";
+   private static final DocType SEQUENCE_DOC_TYPE = new DocType(SEQUENCE_ELEMENT_NAME,
+                                                                "-//CREATE Lab//TeRK//Sequence//EN",
+                                                                "http://www.createlab.ri.cmu.edu/dtd/terk/sequence.dtd");
+
+   public static void main(final String[] args)
+      {
+      final CorpusGenerator generator = new CorpusGenerator();
+      final List<String> positionalArgs = new ArrayList<String>();
+      try
+         {
+         for (int i = 0; i < args.length; i++)
+            {
+            if ("--expressions".equals(args[i]) && i + 1 < args.length)
+               {
+               generator.setNumExpressions(Integer.parseInt(args[++i]));
+               }
+            else if ("--sequences".equals(args[i]) && i + 1 < args.length)
+               {
+               generator.setNumSequences(Integer.parseInt(args[++i]));
+               }
+            else if ("--depth".equals(args[i]) && i + 1 < args.length)
+               {
+               generator.setNestingDepth(Integer.parseInt(args[++i]));
+               }
+            else if ("--breadth".equals(args[i]) && i + 1 < args.length)
+               {
+               generator.setElementsPerLevel(Integer.parseInt(args[++i]));
+               }
+            else if ("--seed".equals(args[i]) && i + 1 < args.length)
+               {
+               generator.setSeed(Long.parseLong(args[++i]));
+               }
+            else
+               {
+               positionalArgs.add(args[i]);
+               }
+            }
+         }
+      catch (IllegalArgumentException e)
+         {
+         positionalArgs.clear();
+         }
+
+      if (positionalArgs.isEmpty() || positionalArgs.size() > 2)
+         {
+         System.err.println(USAGE);
+         System.exit(2);
+         }
+
+      final File homeDirectory = new File(positionalArgs.get(0));
+      final String deviceName = (positionalArgs.size() > 1) ? positionalArgs.get(1) : DEFAULT_DEVICE_NAME;
+      try
+         {
+         final Corpus corpus = generator.generate(homeDirectory, deviceName);
+         System.out.println("Wrote " + corpus.getExpressionFiles().size() + " expressions and " + corpus.getSequenceFiles().size() + " sequences to [" + new File(homeDirectory, deviceName) + "]");
+         }
+      catch (IOException e)
+         {
+         System.err.println("Failed to write the corpus: " + e);
+         System.exit(1);
+         }
+      }
+
+   private int numExpressions = 200;
+   private int numSequences = 20;
+   private int nestingDepth = 10;
+   private int elementsPerLevel = 4;
+   private long seed = 0;
+
+   /** Sets the number of expressions to generate.  Must be at least 1. */
+   public void setNumExpressions(final int numExpressions)
+      {
+      if (numExpressions < 1)
+         {
+         throw new IllegalArgumentException("The number of expressions must be at least 1");
+         }
+      this.numExpressions = numExpressions;
+      }
+
+   /** Sets the number of flat sequences to generate.  Must be at least 1. */
+   public void setNumSequences(final int numSequences)
+      {
+      if (numSequences < 1)
+         {
+         throw new IllegalArgumentException("The number of sequences must be at least 1");
+         }
+      this.numSequences = numSequences;
+      }
+
+   /** Sets how deeply the counter loops in the deep sequence are nested.  Must be at least 1. */
+   public void setNestingDepth(final int nestingDepth)
+      {
+      if (nestingDepth < 1)
+         {
+         throw new IllegalArgumentException("The nesting depth must be at least 1");
+         }
+      this.nestingDepth = nestingDepth;
+      }
+
+   /** Sets the number of expressions at each level of each sequence.  Must be at least 1. */
+   public void setElementsPerLevel(final int elementsPerLevel)
+      {
+      if (elementsPerLevel < 1)
+         {
+         throw new IllegalArgumentException("The number of elements per level must be at least 1");
+         }
+      this.elementsPerLevel = elementsPerLevel;
+      }
+
+   public void setSeed(final long seed)
+      {
+      this.seed = seed;
+      }
+
+   /**
+    * Writes the corpus into the device's expressions and sequences directories under the given home directory,
+    * creating them if necessary and overwriting any files of the same name.
+    */
+   @NotNull
+   public Corpus generate(@NotNull final File homeDirectory, @NotNull final String deviceName) throws IOException
+      {
+      final File deviceDirectory = new File(homeDirectory, deviceName);
+      final File expressionsDirectory = new File(deviceDirectory, VisualProgrammerConstants.FilePaths.EXPRESSIONS_DIRECTORY_NAME);
+      final File sequencesDirectory = new File(deviceDirectory, VisualProgrammerConstants.FilePaths.SEQUENCES_DIRECTORY_NAME);
+      FileUtils.forceMkdir(expressionsDirectory);
+      FileUtils.forceMkdir(sequencesDirectory);
+
+      final Random random = new Random(seed);
+
+      final List<File> expressionFiles = new ArrayList<File>(numExpressions);
+      for (int i = 0; i < numExpressions; i++)
+         {
+         final File file = new File(expressionsDirectory, String.format("expression-%05d.xml", i));
+         FileUtils.writeStringToFile(file, createExpression(random).toXmlDocumentStringFormatted(), "UTF-8");
+         expressionFiles.add(file);
+         }
+
+      final List<File> sequenceFiles = new ArrayList<File>(numSequences + 1);
+      for (int i = 0; i < numSequences; i++)
+         {
+         final Element container = createContainerElement();
+         addExpressionElements(container, expressionFiles, random);
+         if (i % MAX_SAVED_SEQUENCE_CHAIN_LENGTH != 0)
+            {
+            container.addContent(createSavedSequenceElement(sequenceFiles.get(i - 1)));
+            }
+
+         final File file = new File(sequencesDirectory, String.format("sequence-%05d.xml", i));
+         writeSequence(file, container);
+         sequenceFiles.add(file);
+         }
+
+      // build the deep sequence from the innermost level outwards
+      Element container = createContainerElement();
+      addExpressionElements(container, expressionFiles, random);
+      for (int level = 1; level < nestingDepth; level++)
+         {
+         final Element counterLoop = new Element("counter-loop");
+         counterLoop.setAttribute("iterations", String.valueOf(COUNTER_LOOP_ITERATIONS));
+         counterLoop.addContent(createCommentElement());
+         counterLoop.addContent(container);
+
+         container = createContainerElement();
+         addExpressionElements(container, expressionFiles, random);
+         container.addContent(createSavedSequenceElement(sequenceFiles.get(random.nextInt(sequenceFiles.size()))));
+         container.addContent(counterLoop);
+         }
+      final File deepSequenceFile = new File(sequencesDirectory, DEEP_SEQUENCE_FILENAME);
+      writeSequence(deepSequenceFile, container);
+      sequenceFiles.add(deepSequenceFile);
+
+      return new Corpus(expressionFiles, sequenceFiles, deepSequenceFile);
+      }
+
+   @NotNull
+   private static XmlExpression createExpression(@NotNull final Random random)
+      {
+      final Set<XmlService> services = new HashSet<XmlService>();
+
+      // the expression DTD requires at least one service
+      while (services.isEmpty())
+         {
+         addService(services, random, SimpleServoService.TYPE_ID, SimpleServoService.OPERATION_NAME_SET_POSITION, SIMPLE_SERVO_DEVICE_COUNT, SimpleServoService.PARAMETER_NAME_POSITION, 0, 255);
+         addService(services, random, SimpleLEDService.TYPE_ID, SimpleLEDService.OPERATION_NAME_SET_INTENSITY, SIMPLE_LED_DEVICE_COUNT, SimpleLEDService.PARAMETER_NAME_INTENSITY, 0, 255);
+         addService(services, random, VelocityControllableMotorService.TYPE_ID, VelocityControllableMotorService.OPERATION_NAME_SET_VELOCITY, VELOCITY_MOTOR_DEVICE_COUNT, VelocityControllableMotorService.PARAMETER_NAME_VELOCITY, -255, 255);
+         addService(services, random, SpeedControllableMotorService.TYPE_ID, SpeedControllableMotorService.OPERATION_NAME_SET_SPEED, VIBRATION_MOTOR_DEVICE_COUNT, SpeedControllableMotorService.PARAMETER_NAME_SPEED, 0, 255);
+
+         if (random.nextBoolean())
+            {
+            final Set<XmlDevice> devices = new HashSet<XmlDevice>();
+            for (int id = 0; id < FULL_COLOR_LED_DEVICE_COUNT; id++)
+               {
+               final Set<XmlParameter> parameters = new HashSet<XmlParameter>();
+               parameters.add(new XmlParameter("red", random.nextInt(256)));
+               parameters.add(new XmlParameter("green", random.nextInt(256)));
+               parameters.add(new XmlParameter("blue", random.nextInt(256)));
+               devices.add(new XmlDevice(id, parameters));
+               }
+            services.add(new XmlService(FullColorLEDService.TYPE_ID, new XmlOperation(FullColorLEDService.OPERATION_NAME_SET_COLOR, devices)));
+            }
+         }
+
+      return XmlExpression.create(services);
+      }
+
+   /** Adds the given service, setting a random subset of its devices, to roughly three quarters of the expressions. */
+   private static void addService(@NotNull final Set<XmlService> services,
+                                  @NotNull final Random random,
+                                  @NotNull final String typeId,
+                                  @NotNull final String operationName,
+                                  final int deviceCount,
+                                  @NotNull final String parameterName,
+                                  final int minValue,
+                                  final int maxValue)
+      {
+      if (random.nextInt(4) == 0)
+         {
+         return;
+         }
+
+      final Set<XmlDevice> devices = new HashSet<XmlDevice>();
+      for (int id = 0; id < deviceCount; id++)
+         {
+         if (devices.isEmpty() || random.nextBoolean())
+            {
+            devices.add(new XmlDevice(id, new XmlParameter(parameterName, minValue + random.nextInt(maxValue - minValue + 1))));
+            }
+         }
+      services.add(new XmlService(typeId, new XmlOperation(operationName, devices)));
+      }
+
+   private void addExpressionElements(@NotNull final Element container,
+                                      @NotNull final List<File> expressionFiles,
+                                      @NotNull final Random random)
+      {
+      for (int i = 0; i < elementsPerLevel; i++)
+         {
+         final Element expression = new Element("expression");
+         expression.setAttribute("file", expressionFiles.get(random.nextInt(expressionFiles.size())).getName());
+         expression.setAttribute("delay-in-millis", String.valueOf(random.nextInt(10) * 10));
+         expression.addContent(createCommentElement());
+         container.addContent(expression);
+         }
+      }
+
+   @NotNull
+   private static Element createSavedSequenceElement(@NotNull final File sequenceFile)
+      {
+      final Element savedSequence = new Element("saved-sequence");
+      savedSequence.setAttribute("file", sequenceFile.getName());
+      savedSequence.addContent(createCommentElement());
+      return savedSequence;
+      }
+
+   @NotNull
+   private static Element createContainerElement()
+      {
+      return new Element("program-element-container");
+      }
+
+   @NotNull
+   private static Element createCommentElement()
+      {
+      final Element comment = new Element("comment");
+      comment.setAttribute("is-visible", "false");
+      comment.addContent(new CDATA(""));
+      return comment;
+      }
+
+   private static void writeSequence(@NotNull final File file, @NotNull final Element container) throws IOException
+      {
+      final Element sequence = new Element(SEQUENCE_ELEMENT_NAME);
+      sequence.setAttribute("version", "1.0");
+      sequence.addContent(container);
+      final Document document = new Document(sequence, (DocType)SEQUENCE_DOC_TYPE.clone());
+      FileUtils.writeStringToFile(file, XmlHelper.writeDocumentToStringFormatted(document), "UTF-8");
+      }
+
+   /** The files making up a generated corpus. */
+   public static final class Corpus
+      {
+      private final List<File> expressionFiles;
+      private final List<File> sequenceFiles;
+      private final File deepSequenceFile;
+
+      private Corpus(@NotNull final List<File> expressionFiles,
+                     @NotNull final List<File> sequenceFiles,
+                     @NotNull final File deepSequenceFile)
+         {
+         this.expressionFiles = Collections.unmodifiableList(expressionFiles);
+         this.sequenceFiles = Collections.unmodifiableList(sequenceFiles);
+         this.deepSequenceFile = deepSequenceFile;
+         }
+
+      @NotNull
+      public List<File> getExpressionFiles()
+         {
+         return expressionFiles;
+         }
+
+      /** Returns all the sequences, including the deep sequence. */
+      @NotNull
+      public List<File> getSequenceFiles()
+         {
+         return sequenceFiles;
+         }
+
+      @NotNull
+      public File getDeepSequenceFile()
+         {
+         return deepSequenceFile;
+         }
+      }
+   }
@@ -0,0 +1,106 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import edu.cmu.ri.createlab.util.DirectoryPoller;
+import edu.cmu.ri.createlab.util.FileProvider;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.xml.XmlFilenameFilter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>DirectoryScanningBenchmark</code> measures a full scan of the corpus's expressions directory by a
+ * {@link DirectoryPoller}, from {@link DirectoryPoller#forceRefresh()} until its listeners have been told about every
+ * file, which is what happens whenever the Visual Programmer switches to a device or the user forces a refresh.  The
+ * polling interval is long enough that no periodic scans happen during the run.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class DirectoryScanningBenchmark implements Benchmark
+   {
+   private static final long SCAN_TIMEOUT_IN_SECONDS = 60;
+
+   private final AtomicReference<CountDownLatch> scanCompleteLatch = new AtomicReference<CountDownLatch>();
+   private final AtomicReference<Set<File>> scannedFiles = new AtomicReference<Set<File>>();
+   private DirectoryPoller directoryPoller;
+
+   @NotNull
+   @Override
+   public String getName()
+      {
+      return "DirectoryPoller full scan";
+      }
+
+   @Override
+   public void setUp(@NotNull final BenchmarkContext context)
+      {
+      final File expressionsDirectory = PathManager.getInstance().getExpressionsDirectory();
+      final FileProvider directoryProvider =
+            new FileProvider()
+            {
+            @Override
+            public File getFile()
+               {
+               return expressionsDirectory;
+               }
+            };
+      directoryPoller = new DirectoryPoller(directoryProvider, new XmlFilenameFilter(), 1, TimeUnit.HOURS);
+      directoryPoller.addEventListener(
+            new DirectoryPoller.EventListener()
+            {
+            @Override
+            public void handleNewFileEvent(@NotNull final Set<File> files)
+               {
+               scannedFiles.set(files);
+               final CountDownLatch latch = scanCompleteLatch.get();
+               if (latch != null)
+                  {
+                  latch.countDown();
+                  }
+               }
+
+            @Override
+            public void handleModifiedFileEvent(@NotNull final Set<File> files)
+               {
+               // nothing to do
+               }
+
+            @Override
+            public void handleDeletedFileEvent(@NotNull final Set<File> files)
+               {
+               // nothing to do
+               }
+            });
+      }
+
+   @Override
+   public Object run() throws Exception
+      {
+      final CountDownLatch latch = new CountDownLatch(1);
+      scanCompleteLatch.set(latch);
+
+      // stopping the poller forgets the files it has seen, so the restart reports every file as new
+      directoryPoller.forceRefresh();
+      if (!latch.await(SCAN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS))
+         {
+         throw new TimeoutException("The DirectoryPoller did not report a scan within " + SCAN_TIMEOUT_IN_SECONDS + " seconds");
+         }
+      return scannedFiles.get();
+      }
+
+   @Override
+   public void tearDown()
+      {
+      if (directoryPoller != null)
+         {
+         directoryPoller.stop();
+         directoryPoller = null;
+         }
+      }
+   }
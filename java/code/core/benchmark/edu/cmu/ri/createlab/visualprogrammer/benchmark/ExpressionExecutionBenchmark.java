@@ -0,0 +1,80 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import edu.cmu.ri.createlab.sequencebuilder.CompiledExpression;
+import edu.cmu.ri.createlab.sequencebuilder.ExpressionExecutor;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>ExpressionExecutionBenchmark</code> measures {@link ExpressionExecutor#execute executing} the corpus's
+ * expressions, in turn, against the simulated device's {@link ServiceManager}.  The benchmark either executes
+ * precompiled {@link CompiledExpression}s, as the sequence executor does, or compiles each expression as it executes
+ * it, as the expression builder does.  With the default zero-latency {@link
+ * edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedLink link} this isolates the software overhead; with a
+ * latency set, it shows how much of that overhead is hidden behind the device.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class ExpressionExecutionBenchmark implements Benchmark
+   {
+   private final boolean isPrecompiled;
+   private final List<ExpressionModel> expressionModels = new ArrayList<ExpressionModel>();
+   private final List<CompiledExpression> compiledExpressions = new ArrayList<CompiledExpression>();
+   private ServiceManager serviceManager;
+   private int nextExpressionIndex = 0;
+
+   ExpressionExecutionBenchmark(final boolean isPrecompiled)
+      {
+      this.isPrecompiled = isPrecompiled;
+      }
+
+   @NotNull
+   @Override
+   public String getName()
+      {
+      return "ExpressionExecutor.execute (" + (isPrecompiled ? "precompiled" : "compile and execute") + ")";
+      }
+
+   @Override
+   public void setUp(@NotNull final BenchmarkContext context)
+      {
+      serviceManager = context.getDevice().getServiceManager();
+      for (final File file : context.getCorpus().getExpressionFiles())
+         {
+         final ExpressionModel expressionModel = new ExpressionModel(context.getDevice(), file);
+         expressionModels.add(expressionModel);
+         compiledExpressions.add(CompiledExpression.compile(serviceManager, expressionModel.getXmlExpression()));
+         }
+      }
+
+   @Override
+   public Object run()
+      {
+      final int i = nextExpressionIndex;
+      nextExpressionIndex = (nextExpressionIndex + 1) % expressionModels.size();
+      if (isPrecompiled)
+         {
+         final CompiledExpression compiledExpression = compiledExpressions.get(i);
+         ExpressionExecutor.getInstance().execute(compiledExpression);
+         return compiledExpression;
+         }
+
+      final ExpressionModel expressionModel = expressionModels.get(i);
+      ExpressionExecutor.getInstance().execute(serviceManager, expressionModel);
+      return expressionModel;
+      }
+
+   @Override
+   public void tearDown()
+      {
+      expressionModels.clear();
+      compiledExpressions.clear();
+      serviceManager = null;
+      }
+   }
@@ -0,0 +1,53 @@
+package edu.cmu.ri.createlab.visualprogrammer.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>XmlExpressionParsingBenchmark</code> measures parsing (and validating) an expression's XML into an
+ * {@link XmlExpression}, which is what every cache miss in the expression cache costs.  The corpus's expressions are
+ * read into memory first, so the benchmark doesn't include any file I/O, and are parsed in turn.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class XmlExpressionParsingBenchmark implements Benchmark
+   {
+   private final List<String> expressions = new ArrayList<String>();
+   private int nextExpressionIndex = 0;
+
+   @NotNull
+   @Override
+   public String getName()
+      {
+      return "XmlExpression.create";
+      }
+
+   @Override
+   public void setUp(@NotNull final BenchmarkContext context) throws Exception
+      {
+      for (final File file : context.getCorpus().getExpressionFiles())
+         {
+         expressions.add(FileUtils.readFileToString(file, "UTF-8"));
+         }
+      }
+
+   @Override
+   public Object run() throws Exception
+      {
+      final String xml = expressions.get(nextExpressionIndex);
+      nextExpressionIndex = (nextExpressionIndex + 1) % expressions.size();
+      return XmlExpression.create(xml);
+      }
+
+   @Override
+   public void tearDown()
+      {
+      expressions.clear();
+      }
+   }
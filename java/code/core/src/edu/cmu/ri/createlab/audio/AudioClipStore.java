@@ -0,0 +1,380 @@
+package edu.cmu.ri.createlab.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import edu.cmu.ri.createlab.util.FileUtils;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>AudioClipStore</code> is a singleton which holds the contents of the audio clips in the
+ * {@link PathManager#getAudioDirectory() audio directory} in memory, so that a clip played over and over&mdash;say,
+ * inside a loop&mdash;is only read from disk once.  Every caller playing the same clip is handed the same array, which
+ * can be passed straight to the {@link edu.cmu.ri.createlab.terk.services.audio.AudioService AudioService}.
+ * </p>
+ * <p>
+ * Clips are validated as they're loaded, by checking that Java Sound recognizes their format.  A clip which can't be
+ * loaded or played is remembered as such, so it's reported once rather than every time it's played.  Callers asking for
+ * a clip which is already being loaded wait for that load rather than starting another.  A clip is reloaded if its
+ * file's size or modification time changes, and the store is bounded, evicting the least recently used clips once it
+ * holds too many bytes.
+ * </p>
+ * <p>
+ * The clips a sequence will play can be {@link #preload(Collection) loaded ahead of time}, before playback begins.
+ * Stored clips are shared, so callers must treat the returned arrays as read-only.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class AudioClipStore
+   {
+   private static final Logger LOG = Logger.getLogger(AudioClipStore.class);
+
+   public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+   private static final AudioClipStore INSTANCE = new AudioClipStore(DEFAULT_MAX_BYTES);
+
+   public static AudioClipStore getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final long maxBytes;
+   private final ExecutorService preloadExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(this.getClass().getSimpleName()));
+
+   private final Lock lock = new ReentrantLock();
+   private final LinkedHashMap<File, Clip> clips = new LinkedHashMap<File, Clip>(16, 0.75f, true);
+   private final Map<File, FutureTask<byte[]>> pendingLoads = new HashMap<File, FutureTask<byte[]>>();
+   private long bytes = 0;
+   private long hitCount = 0;
+   private long missCount = 0;
+
+   private AudioClipStore(final long maxBytes)
+      {
+      // private to prevent instantiation
+      this.maxBytes = maxBytes;
+      }
+
+   /**
+    * Returns the contents of the clip with the given filename, relative to the
+    * {@link PathManager#getAudioDirectory() audio directory}, loading it if necessary.  Returns <code>null</code> if
+    * the filename is empty or the clip can't be read or isn't a recognized audio format.
+    */
+   @Nullable
+   public byte[] getClip(@Nullable final String filename)
+      {
+      if (filename == null || filename.length() == 0)
+         {
+         return null;
+         }
+      return getClip(new File(PathManager.getInstance().getAudioDirectory(), filename));
+      }
+
+   /**
+    * Returns the contents of the given clip file, loading it if it isn't stored or has changed since it was stored.
+    * Returns <code>null</code> if the clip can't be read or isn't a recognized audio format.
+    */
+   @Nullable
+   public byte[] getClip(@Nullable final File file)
+      {
+      if (file == null)
+         {
+         return null;
+         }
+
+      final File absoluteFile = file.getAbsoluteFile();
+      final long length = absoluteFile.length();
+      final long lastModified = absoluteFile.lastModified();
+
+      final FutureTask<byte[]> load;
+      lock.lock();  // block until condition holds
+      try
+         {
+         final Clip clip = clips.get(absoluteFile);
+         if (clip != null && clip.length == length && clip.lastModified == lastModified)
+            {
+            hitCount++;
+            return clip.data;
+            }
+
+         // join a load which is already underway, if any, rather than reading the file again
+         FutureTask<byte[]> pendingLoad = pendingLoads.get(absoluteFile);
+         if (pendingLoad == null)
+            {
+            missCount++;
+            pendingLoad = new FutureTask<byte[]>(new Load(absoluteFile, length, lastModified));
+            pendingLoads.put(absoluteFile, pendingLoad);
+            }
+         load = pendingLoad;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      // load outside the lock so that playing a stored clip never waits on the disk.  Running a FutureTask which has
+      // already been run, or is currently running, does nothing.
+      load.run();
+      try
+         {
+         return load.get();
+         }
+      catch (InterruptedException e)
+         {
+         LOG.debug("AudioClipStore.getClip(): interrupted while waiting for audio clip [" + absoluteFile + "] to load");
+         Thread.currentThread().interrupt();
+         }
+      catch (ExecutionException e)
+         {
+         LOG.error("AudioClipStore.getClip(): Exception while loading audio clip [" + absoluteFile + "]", e);
+         }
+      return null;
+      }
+
+   /**
+    * Loads, on the calling thread, every given clip which isn't already stored, returning once they're all stored, or
+    * early if the thread is interrupted.  Call this before playback begins so that the first play of each clip is
+    * instant.
+    */
+   public void preload(@Nullable final Collection<File> files)
+      {
+      if (files == null || files.isEmpty())
+         {
+         return;
+         }
+
+      for (final File file : new LinkedHashSet<File>(files))
+         {
+         if (Thread.currentThread().isInterrupted())
+            {
+            LOG.debug("AudioClipStore.preload(): interrupted, skipping the remaining clips");
+            return;
+            }
+         getClip(file);
+         }
+      }
+
+   /** Loads every given clip which isn't already stored, in the background. */
+   public void preloadInBackground(@Nullable final Collection<File> files)
+      {
+      if (files != null && !files.isEmpty())
+         {
+         final Set<File> filesCopy = new LinkedHashSet<File>(files);
+         preloadExecutor.execute(
+               new Runnable()
+               {
+               @Override
+               public void run()
+                  {
+                  preload(filesCopy);
+                  }
+               });
+         }
+      }
+
+   /**
+    * Removes all stored clips, but leaves the hit and miss counts untouched.  Loads which are underway still store
+    * their clips when they finish.
+    */
+   public void clear()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         clips.clear();
+         bytes = 0;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of calls to {@link #getClip(File)} which found the clip already stored. */
+   public long getHitCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return hitCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of calls to {@link #getClip(File)} which had to load the clip. */
+   public long getMissCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return missCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   // must be called while holding the lock
+   private void put(@NotNull final File file, @NotNull final Clip clip)
+      {
+      // a single clip bigger than a quarter of the store would evict too much to be worth keeping
+      if (clip.getSize() > maxBytes / 4)
+         {
+         return;
+         }
+
+      clips.put(file, clip);
+      bytes += clip.getSize();
+
+      // evict the least recently used clips until we're back under budget
+      while (bytes > maxBytes && !clips.isEmpty())
+         {
+         final Map.Entry<File, Clip> eldest = clips.entrySet().iterator().next();
+         bytes -= eldest.getValue().getSize();
+         clips.remove(eldest.getKey());
+         }
+      }
+
+   // must be called while holding the lock
+   private void remove(@NotNull final File file)
+      {
+      final Clip clip = clips.remove(file);
+      if (clip != null)
+         {
+         bytes -= clip.getSize();
+         }
+      }
+
+   /** Reads and validates the given clip, returning <code>null</code> if it can't be read or isn't playable. */
+   @Nullable
+   private static byte[] load(@NotNull final File file)
+      {
+      if (!file.isFile())
+         {
+         LOG.error("AudioClipStore.load(): audio clip [" + file + "] does not exist");
+         return null;
+         }
+
+      final byte[] data;
+      try
+         {
+         data = FileUtils.getFileAsBytes(file);
+         }
+      catch (IOException e)
+         {
+         LOG.error("AudioClipStore.load(): IOException while reading audio clip [" + file + "]", e);
+         return null;
+         }
+      if (data == null || data.length == 0)
+         {
+         LOG.error("AudioClipStore.load(): audio clip [" + file + "] is empty");
+         return null;
+         }
+
+      // make sure the clip can actually be played, so that a bad clip is reported now rather than on every play
+      try
+         {
+         AudioSystem.getAudioFileFormat(new ByteArrayInputStream(data));
+         }
+      catch (UnsupportedAudioFileException e)
+         {
+         LOG.error("AudioClipStore.load(): audio clip [" + file + "] is not in a supported audio format", e);
+         return null;
+         }
+      catch (IOException e)
+         {
+         LOG.error("AudioClipStore.load(): IOException while validating audio clip [" + file + "]", e);
+         return null;
+         }
+
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("AudioClipStore.load(): loaded audio clip [" + file + "] (" + data.length + " bytes)");
+         }
+      return data;
+      }
+
+   /** Loads a clip and stores it, whether or not it loaded, so that a bad clip is only reported once per version. */
+   private final class Load implements Callable<byte[]>
+      {
+      private final File file;
+      private final long length;
+      private final long lastModified;
+
+      private Load(@NotNull final File file, final long length, final long lastModified)
+         {
+         this.file = file;
+         this.length = length;
+         this.lastModified = lastModified;
+         }
+
+      @Override
+      @Nullable
+      public byte[] call()
+         {
+         byte[] data = null;
+         try
+            {
+            data = load(file);
+            return data;
+            }
+         finally
+            {
+            lock.lock();  // block until condition holds
+            try
+               {
+               remove(file);
+               put(file, new Clip(data, length, lastModified));
+               pendingLoads.remove(file);
+               }
+            finally
+               {
+               lock.unlock();
+               }
+            }
+         }
+      }
+
+   private static final class Clip
+      {
+      private final byte[] data;
+      private final long length;
+      private final long lastModified;
+
+      private Clip(@Nullable final byte[] data, final long length, final long lastModified)
+         {
+         this.data = data;
+         this.length = length;
+         this.lastModified = lastModified;
+         }
+
+      private int getSize()
+         {
+         return (data == null) ? 0 : data.length;
+         }
+      }
+   }
@@ -0,0 +1,469 @@
+package edu.cmu.ri.createlab.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import edu.cmu.ri.createlab.speech.AbstractMouth;
+import edu.cmu.ri.createlab.speech.Mouth;
+import edu.cmu.ri.createlab.util.DurableFileWriter;
+import edu.cmu.ri.createlab.util.FileUtils;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SpeechCache</code> is a singleton which caches the audio synthesized by the {@link Mouth}, so that a phrase is
+ * only synthesized once no matter how many times it's spoken, whether from the audio control panel or by an
+ * expression playing in a loop.  Speech is keyed on a hash of the text and the voice used to synthesize it, and kept
+ * in two tiers: a size-bounded, least-recently-used tier in memory, and a tier on disk, in the
+ * {@link PathManager#getSpeechCacheDirectory() speech cache directory}, which survives restarts.  The disk tier is
+ * also bounded, by deleting the least recently used files once it grows too large.
+ * </p>
+ * <p>
+ * Since synthesis is slow, the phrases a sequence will speak can be {@link #presynthesize(Collection) synthesized
+ * ahead of time}, before the sequence starts playing.  Requests for a phrase which is already being synthesized wait
+ * for that synthesis rather than starting another.
+ * </p>
+ * <p>
+ * Cached audio is shared, so callers must treat the returned arrays as read-only.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SpeechCache
+   {
+   private static final Logger LOG = Logger.getLogger(SpeechCache.class);
+
+   public static final int DEFAULT_MAX_MEMORY_BYTES = 16 * 1024 * 1024;
+   public static final long DEFAULT_MAX_DISK_BYTES = 64 * 1024 * 1024;
+
+   /** The voice used by the {@link Mouth}, which is part of every key since the same text sounds different in another voice. */
+   private static final String VOICE_NAME = AbstractMouth.DEFAULT_VOICE_NAME;
+
+   /** Bump this if the format of the synthesized audio ever changes, so that stale files on disk are ignored. */
+   private static final String KEY_VERSION = "1";
+
+   private static final String FILENAME_EXTENSION = ".speech";
+
+   private static final Comparator<File> LEAST_RECENTLY_MODIFIED_FIRST =
+         new Comparator<File>()
+         {
+         @Override
+         public int compare(final File file1, final File file2)
+            {
+            final long lastModified1 = file1.lastModified();
+            final long lastModified2 = file2.lastModified();
+            return (lastModified1 < lastModified2) ? -1 : ((lastModified1 == lastModified2) ? 0 : 1);
+            }
+         };
+
+   private static final SpeechCache INSTANCE = new SpeechCache(DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_DISK_BYTES);
+
+   public static SpeechCache getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final int maxMemoryBytes;
+   private final long maxDiskBytes;
+
+   /** Background work: writing to and pruning the disk tier, and presynthesis requested without waiting. */
+   private final ExecutorService executorService = Executors.newSingleThreadExecutor(new DaemonThreadFactory(this.getClass().getSimpleName()));
+
+   private final Lock lock = new ReentrantLock();
+   private final LinkedHashMap<String, byte[]> memoryTier = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+   private final Map<String, FutureTask<byte[]>> pendingSyntheses = new HashMap<String, FutureTask<byte[]>>();
+   private int memoryBytes = 0;
+   private long hitCount = 0;
+   private long missCount = 0;
+
+   // only touched by the executor's thread
+   private long diskBytes = -1;
+
+   private SpeechCache(final int maxMemoryBytes, final long maxDiskBytes)
+      {
+      // private to prevent instantiation
+      this.maxMemoryBytes = maxMemoryBytes;
+      this.maxDiskBytes = maxDiskBytes;
+      }
+
+   /**
+    * Returns the synthesized audio for the given text, synthesizing it only if it isn't in either tier of the cache.
+    * Returns <code>null</code> if the text is empty or couldn't be synthesized.
+    */
+   @Nullable
+   public byte[] getSpeech(@Nullable final String text)
+      {
+      if (text == null || text.length() == 0)
+         {
+         return null;
+         }
+
+      final String key = createKey(text);
+      final FutureTask<byte[]> synthesis;
+      lock.lock();  // block until condition holds
+      try
+         {
+         final byte[] speech = memoryTier.get(key);
+         if (speech != null)
+            {
+            hitCount++;
+            return speech;
+            }
+
+         // join a synthesis which is already underway, if any, rather than starting another
+         FutureTask<byte[]> pendingSynthesis = pendingSyntheses.get(key);
+         if (pendingSynthesis == null)
+            {
+            missCount++;
+            pendingSynthesis = new FutureTask<byte[]>(new Synthesis(key, text));
+            pendingSyntheses.put(key, pendingSynthesis);
+            }
+         synthesis = pendingSynthesis;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      // running a FutureTask which has already been run, or is currently running, does nothing
+      synthesis.run();
+      try
+         {
+         return synthesis.get();
+         }
+      catch (InterruptedException e)
+         {
+         LOG.debug("SpeechCache.getSpeech(): interrupted while waiting for speech to be synthesized");
+         Thread.currentThread().interrupt();
+         }
+      catch (ExecutionException e)
+         {
+         LOG.error("SpeechCache.getSpeech(): Exception while synthesizing speech for [" + text + "]", e);
+         }
+      return null;
+      }
+
+   /**
+    * Synthesizes, on the calling thread, every given text which isn't already cached, returning once they're all
+    * cached, or early if the thread is interrupted.  Call this before playback begins so that the first utterance of
+    * each phrase is instant.
+    */
+   public void presynthesize(@Nullable final Collection<String> texts)
+      {
+      if (texts == null || texts.isEmpty())
+         {
+         return;
+         }
+
+      final long startTime = System.currentTimeMillis();
+      for (final String text : new LinkedHashSet<String>(texts))
+         {
+         if (Thread.currentThread().isInterrupted())
+            {
+            LOG.debug("SpeechCache.presynthesize(): interrupted, skipping the remaining texts");
+            return;
+            }
+         getSpeech(text);
+         }
+
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("SpeechCache.presynthesize(): presynthesized [" + texts.size() + "] texts in [" + (System.currentTimeMillis() - startTime) + "] ms");
+         }
+      }
+
+   /** Synthesizes every given text which isn't already cached, in the background. */
+   public void presynthesizeInBackground(@Nullable final Collection<String> texts)
+      {
+      if (texts != null && !texts.isEmpty())
+         {
+         final Set<String> textsCopy = new LinkedHashSet<String>(texts);
+         executorService.execute(
+               new Runnable()
+               {
+               @Override
+               public void run()
+                  {
+                  presynthesize(textsCopy);
+                  }
+               });
+         }
+      }
+
+   /** Removes all speech from the memory tier, leaving the disk tier and the hit and miss counts untouched. */
+   public void clearMemory()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         memoryTier.clear();
+         memoryBytes = 0;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of calls to {@link #getSpeech(String)} which were answered from memory. */
+   public long getHitCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return hitCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of calls to {@link #getSpeech(String)} which had to read the disk or synthesize the speech. */
+   public long getMissCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return missCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   // must be called while holding the lock
+   private void putInMemory(@NotNull final String key, @NotNull final byte[] speech)
+      {
+      // a single clip bigger than a quarter of the memory tier would evict too much to be worth keeping
+      if (speech.length > maxMemoryBytes / 4)
+         {
+         return;
+         }
+
+      final byte[] previous = memoryTier.put(key, speech);
+      memoryBytes += speech.length - ((previous == null) ? 0 : previous.length);
+
+      // evict the least recently used speech until we're back under budget
+      while (memoryBytes > maxMemoryBytes && !memoryTier.isEmpty())
+         {
+         final Map.Entry<String, byte[]> eldest = memoryTier.entrySet().iterator().next();
+         memoryBytes -= eldest.getValue().length;
+         memoryTier.remove(eldest.getKey());
+         }
+      }
+
+   @Nullable
+   private static File getDiskFile(@NotNull final String key)
+      {
+      final File directory = PathManager.getInstance().getSpeechCacheDirectory();
+      return (directory == null) ? null : new File(directory, key + FILENAME_EXTENSION);
+      }
+
+   @Nullable
+   private static byte[] readFromDisk(@NotNull final String key)
+      {
+      final File file = getDiskFile(key);
+      if (file != null && file.isFile())
+         {
+         try
+            {
+            final byte[] speech = FileUtils.getFileAsBytes(file);
+            if (speech != null && speech.length > 0)
+               {
+               // mark it as recently used, so that pruning keeps it
+               if (!file.setLastModified(System.currentTimeMillis()))
+                  {
+                  LOG.debug("SpeechCache.readFromDisk(): failed to update the modification time of [" + file + "]");
+                  }
+               return speech;
+               }
+            }
+         catch (IOException e)
+            {
+            LOG.error("SpeechCache.readFromDisk(): IOException while reading [" + file + "], will synthesize instead", e);
+            }
+         }
+      return null;
+      }
+
+   private void writeToDiskInBackground(@NotNull final String key, @NotNull final byte[] speech)
+      {
+      executorService.execute(
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
+               final File file = getDiskFile(key);
+               if (file != null)
+                  {
+                  try
+                     {
+                     DurableFileWriter.write(file, speech);
+                     pruneDiskIfNecessary(file.getParentFile(), speech.length);
+                     }
+                  catch (IOException e)
+                     {
+                     LOG.error("SpeechCache.writeToDiskInBackground(): IOException while writing [" + file + "]", e);
+                     }
+                  }
+               }
+            });
+      }
+
+   // called on the executor's thread
+   private void pruneDiskIfNecessary(@NotNull final File directory, final long bytesAdded)
+      {
+      final File[] files = directory.listFiles();
+      if (files == null)
+         {
+         return;
+         }
+
+      // only measure the directory the first time; after that, keep a running total
+      if (diskBytes < 0)
+         {
+         diskBytes = 0;
+         for (final File file : files)
+            {
+            diskBytes += file.length();
+            }
+         }
+      else
+         {
+         diskBytes += bytesAdded;
+         }
+
+      if (diskBytes > maxDiskBytes)
+         {
+         // delete the least recently used files until we're comfortably under budget
+         final long targetBytes = maxDiskBytes * 3 / 4;
+         Arrays.sort(files, LEAST_RECENTLY_MODIFIED_FIRST);
+         for (int i = 0; i < files.length && diskBytes > targetBytes; i++)
+            {
+            final long length = files[i].length();
+            if (files[i].delete())
+               {
+               diskBytes -= length;
+               }
+            }
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("SpeechCache.pruneDiskIfNecessary(): pruned the disk tier to [" + diskBytes + "] bytes");
+            }
+         }
+      }
+
+   /** Returns a hex-encoded hash of the text and voice, which is safe to use as a filename. */
+   @NotNull
+   private static String createKey(@NotNull final String text)
+      {
+      try
+         {
+         final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+         digest.update((KEY_VERSION + "\n" + VOICE_NAME + "\n" + text).getBytes("UTF-8"));
+         final StringBuilder key = new StringBuilder();
+         for (final byte b : digest.digest())
+            {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+         return key.toString();
+         }
+      catch (NoSuchAlgorithmException e)
+         {
+         // every Java platform is required to support SHA-1
+         throw new IllegalStateException("SHA-1 is not supported", e);
+         }
+      catch (UnsupportedEncodingException e)
+         {
+         // every Java platform is required to support UTF-8
+         throw new IllegalStateException("UTF-8 is not supported", e);
+         }
+      }
+
+   /** Reads speech from the disk tier, or synthesizes it, and then caches it. */
+   private final class Synthesis implements Callable<byte[]>
+      {
+      private final String key;
+      private final String text;
+
+      private Synthesis(@NotNull final String key, @NotNull final String text)
+         {
+         this.key = key;
+         this.text = text;
+         }
+
+      @Override
+      public byte[] call()
+         {
+         try
+            {
+            byte[] speech = readFromDisk(key);
+            final boolean wasOnDisk = speech != null;
+            if (!wasOnDisk)
+               {
+               final long startTime = System.currentTimeMillis();
+               speech = Mouth.getInstance().getSpeech(text);
+               if (LOG.isDebugEnabled())
+                  {
+                  LOG.debug("SpeechCache$Synthesis.call(): synthesized [" + text + "] in [" + (System.currentTimeMillis() - startTime) + "] ms");
+                  }
+               }
+
+            if (speech != null && speech.length > 0)
+               {
+               lock.lock();  // block until condition holds
+               try
+                  {
+                  putInMemory(key, speech);
+                  }
+               finally
+                  {
+                  lock.unlock();
+                  }
+               if (!wasOnDisk)
+                  {
+                  writeToDiskInBackground(key, speech);
+                  }
+               return speech;
+               }
+            return null;
+            }
+         finally
+            {
+            lock.lock();  // block until condition holds
+            try
+               {
+               pendingSyntheses.remove(key);
+               }
+            finally
+               {
+               lock.unlock();
+               }
+            }
+         }
+      }
+   }
@@ -25,6 +25,7 @@ import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.xml.XmlDevice;
 import edu.cmu.ri.createlab.terk.xml.XmlOperation;
 import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 
 /**
@@ -44,6 +45,7 @@ public abstract class AbstractServiceControlPanel implements ServiceControlPanel
 
    private final JPanel devicesPanel = new JPanel();
    private final JPanel iconPanel = new JPanel();
+   private final List<SensorSamplingBus.Subscription> sensorSubscriptions = new ArrayList<SensorSamplingBus.Subscription>();
 
 
 
@@ -168,6 +170,32 @@ public abstract class AbstractServiceControlPanel implements ServiceControlPanel
       return val;
       }
 
+   /**
+    * Subscribes the given <code>listener</code> to the {@link SensorSamplingBus}'s samples of the given
+    * <code>service</code>.  The subscription is cancelled when this control panel is {@link #dispose() disposed}.
+    */
+   protected final void subscribeToSensorSamples(final Service service,
+                                                 final int periodInMillis,
+                                                 final SensorSamplingBus.SampleListener listener)
+      {
+      synchronized (sensorSubscriptions)
+         {
+         sensorSubscriptions.add(SensorSamplingBus.getInstance().subscribe(service, periodInMillis, listener));
+         }
+      }
+
+   public void dispose()
+      {
+      synchronized (sensorSubscriptions)
+         {
+         for (final SensorSamplingBus.Subscription subscription : sensorSubscriptions)
+            {
+            subscription.cancel();
+            }
+         sensorSubscriptions.clear();
+         }
+      }
+
    protected final ServiceControlPanelDevice getDeviceById(final int deviceIndex)
       {
       return deviceMap.get(deviceIndex);
@@ -44,6 +44,9 @@ public final class ControlPanelManagerImpl implements ControlPanelManager
 
    public void deviceConnected(final ServiceManager serviceManager)
       {
+      // release the control panels for the previous device, if any
+      disposeServiceControlPanels();
+
       // create the control panels
       serviceControlPanelsMap = ServiceControlPanelFactory.getInstance().createServiceControlPanelsMap(this, serviceManager);
 
@@ -59,7 +62,7 @@ public final class ControlPanelManagerImpl implements ControlPanelManager
 
    public void deviceDisconnected()
       {
-      serviceControlPanelsMap = null;
+      disposeServiceControlPanels();
 
       // notify listeners of the disconnection
       for (final ControlPanelManagerEventListener listener : controlPanelManagerEventListeners)
@@ -68,6 +71,21 @@ public final class ControlPanelManagerImpl implements ControlPanelManager
          }
       }
 
+   private void disposeServiceControlPanels()
+      {
+      if (serviceControlPanelsMap != null)
+         {
+         for (final ServiceControlPanel serviceControlPanel : serviceControlPanelsMap.values())
+            {
+            if (serviceControlPanel != null)
+               {
+               serviceControlPanel.dispose();
+               }
+            }
+         serviceControlPanelsMap = null;
+         }
+      }
+
    public void setDeviceActive(final String serviceTypeId, final int deviceIndex, final boolean isActive)
       {
       if (serviceControlPanelsMap != null)
@@ -215,7 +233,7 @@ public final class ControlPanelManagerImpl implements ControlPanelManager
          return XmlExpression.create(services);
          }
 
-      LOG.error("   no control panels have active devices, returning null");
+      LOG.debug("   no control panels have active devices, returning null");
       return null;
       }
    }
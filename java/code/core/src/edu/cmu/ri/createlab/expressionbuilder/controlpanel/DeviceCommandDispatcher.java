@@ -0,0 +1,277 @@
+package edu.cmu.ri.createlab.expressionbuilder.controlpanel;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>DeviceCommandDispatcher</code> sends commands from the control panels to the device on a small, shared pool of
+ * threads.  Commands are grouped into channels, one per device port, and within a channel the latest command wins: if
+ * a command is submitted while an earlier one is still waiting to run, the earlier one is simply dropped.  At most one
+ * command per channel is ever in flight, so dragging a slider results in the device being sent the slider's most
+ * recent value as soon as it's done with the previous one, instead of working through a backlog of stale values.
+ * </p>
+ * <p>
+ * Commands which are discrete events rather than a new value for some state (e.g. the notes played on the buzzer's
+ * piano) must not be dropped, so they should be submitted with {@link #submitInOrder(Object, int, Runnable)} instead,
+ * which queues them to run one after another, in the order in which they were submitted.
+ * </p>
+ * <p>
+ * An optional minimum interval between consecutive commands on the same channel can be used to cap the rate at which
+ * any single port is written to.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class DeviceCommandDispatcher
+   {
+   private static final Logger LOG = Logger.getLogger(DeviceCommandDispatcher.class);
+
+   private static final int NUM_THREADS = 2;
+
+   private static final DeviceCommandDispatcher INSTANCE = new DeviceCommandDispatcher();
+
+   public static DeviceCommandDispatcher getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(NUM_THREADS, new DaemonThreadFactory(this.getClass().getSimpleName()));
+   private final Lock lock = new ReentrantLock();
+   private final Map<ChannelKey, Channel> channels = new HashMap<ChannelKey, Channel>();
+   private long minimumIntervalBetweenCommandsInNanos = 0;
+
+   private DeviceCommandDispatcher()
+      {
+      // private to prevent instantiation
+      }
+
+   /**
+    * Sets the minimum time, in milliseconds, between the starts of consecutive commands on the same channel.  Zero (the
+    * default) means that a channel's next command runs as soon as the previous one completes.
+    */
+   public void setMinimumIntervalBetweenCommands(final long millis)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         minimumIntervalBetweenCommandsInNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Submits the given <code>command</code> for the channel identified by the given <code>channelOwner</code> and
+    * <code>deviceIndex</code>, replacing any command for that channel which hasn't yet started running.  Channel owners
+    * are compared by identity, so callers should use an object which is unique to the device they control (e.g. the
+    * service or the widget's execution strategy).  This method never blocks on the command itself.
+    */
+   public void submit(@NotNull final Object channelOwner, final int deviceIndex, @NotNull final Runnable command)
+      {
+      submit(channelOwner, deviceIndex, command, true);
+      }
+
+   /**
+    * Submits the given <code>command</code> for the channel identified by the given <code>channelOwner</code> and
+    * <code>deviceIndex</code>, to be run after all the commands already waiting on that channel.  Unlike
+    * {@link #submit(Object, int, Runnable)}, no command is ever dropped, so this is meant for discrete commands which
+    * must all reach the device, such as tones.  A later call to {@link #submit(Object, int, Runnable)} for the same
+    * channel still replaces every command which hasn't yet started running.  This method never blocks on the command
+    * itself.
+    */
+   public void submitInOrder(@NotNull final Object channelOwner, final int deviceIndex, @NotNull final Runnable command)
+      {
+      submit(channelOwner, deviceIndex, command, false);
+      }
+
+   private void submit(@NotNull final Object channelOwner,
+                       final int deviceIndex,
+                       @NotNull final Runnable command,
+                       final boolean willReplacePendingCommands)
+      {
+      final ChannelKey key = new ChannelKey(channelOwner, deviceIndex);
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         Channel channel = channels.get(key);
+         if (channel == null)
+            {
+            channel = new Channel(key);
+            channels.put(key, channel);
+            }
+
+         if (willReplacePendingCommands && !channel.pendingCommands.isEmpty())
+            {
+            if (LOG.isTraceEnabled())
+               {
+               LOG.trace("DeviceCommandDispatcher.submit(): dropping " + channel.pendingCommands.size() + " superseded command(s) for device [" + deviceIndex + "]");
+               }
+            channel.pendingCommands.clear();
+            }
+         channel.pendingCommands.add(command);
+
+         // if a command is already in flight, the channel will pick up the new one when it's done
+         if (!channel.isInFlight)
+            {
+            channel.isInFlight = true;
+            scheduleChannel(channel);
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Schedules the given channel to run its pending command, honoring the minimum interval between commands.
+    *
+    * MUST be called from within a lock block!
+    */
+   private void scheduleChannel(@NotNull final Channel channel)
+      {
+      final long delayInNanos = (channel.lastCommandStartTimeInNanos == null) ? 0 : Math.max(0, minimumIntervalBetweenCommandsInNanos - (System.nanoTime() - channel.lastCommandStartTimeInNanos));
+      executor.schedule(channel, delayInNanos, TimeUnit.NANOSECONDS);
+      }
+
+   private final class Channel implements Runnable
+      {
+      private final ChannelKey key;
+      private final Queue<Runnable> pendingCommands = new LinkedList<Runnable>();
+      private boolean isInFlight = false;
+      private Long lastCommandStartTimeInNanos = null;
+
+      private Channel(@NotNull final ChannelKey key)
+         {
+         this.key = key;
+         }
+
+      public void run()
+         {
+         final Runnable command;
+         lock.lock();  // block until condition holds
+         try
+            {
+            command = pendingCommands.poll();
+            lastCommandStartTimeInNanos = System.nanoTime();
+            }
+         finally
+            {
+            lock.unlock();
+            }
+
+         if (command != null)
+            {
+            try
+               {
+               command.run();
+               }
+            catch (Exception e)
+               {
+               LOG.error("DeviceCommandDispatcher$Channel.run(): Exception while running the command for device [" + key.deviceIndex + "]", e);
+               }
+            }
+
+         lock.lock();  // block until condition holds
+         try
+            {
+            if (pendingCommands.isEmpty())
+               {
+               // Nothing more to do, so release the channel so that it doesn't hang on to the channel owner.  If
+               // there's a rate cap, keep it around until the interval has passed so that the cap still applies to
+               // the next command.
+               isInFlight = false;
+               if (minimumIntervalBetweenCommandsInNanos > 0)
+                  {
+                  executor.schedule(
+                        new Runnable()
+                        {
+                        public void run()
+                           {
+                           removeIfIdle();
+                           }
+                        },
+                        minimumIntervalBetweenCommandsInNanos,
+                        TimeUnit.NANOSECONDS);
+                  }
+               else
+                  {
+                  channels.remove(key);
+                  }
+               }
+            else
+               {
+               scheduleChannel(this);
+               }
+            }
+         finally
+            {
+            lock.unlock();
+            }
+         }
+
+      private void removeIfIdle()
+         {
+         lock.lock();  // block until condition holds
+         try
+            {
+            if (!isInFlight && channels.get(key) == this)
+               {
+               channels.remove(key);
+               }
+            }
+         finally
+            {
+            lock.unlock();
+            }
+         }
+      }
+
+   private static final class ChannelKey
+      {
+      private final Object channelOwner;
+      private final int deviceIndex;
+
+      private ChannelKey(@NotNull final Object channelOwner, final int deviceIndex)
+         {
+         this.channelOwner = channelOwner;
+         this.deviceIndex = deviceIndex;
+         }
+
+      @Override
+      public boolean equals(final Object o)
+         {
+         if (this == o)
+            {
+            return true;
+            }
+         if (o == null || getClass() != o.getClass())
+            {
+            return false;
+            }
+
+         final ChannelKey that = (ChannelKey)o;
+         return deviceIndex == that.deviceIndex && channelOwner == that.channelOwner;
+         }
+
+      @Override
+      public int hashCode()
+         {
+         return 31 * System.identityHashCode(channelOwner) + deviceIndex;
+         }
+      }
+   }
@@ -54,4 +54,10 @@ public interface ServiceControlPanel
     * used to create an {@link XmlExpression}.
     */
    XmlService buildService();
+
+   /**
+    * Releases any resources held by this control panel, such as its sensor subscriptions.  Called when the control
+    * panel is discarded, e.g. when the device disconnects.  The control panel must not be used afterwards.
+    */
+   void dispose();
    }
\ No newline at end of file
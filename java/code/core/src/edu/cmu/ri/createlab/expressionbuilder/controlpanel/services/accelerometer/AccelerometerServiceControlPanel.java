@@ -6,8 +6,6 @@ import java.text.DecimalFormat;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -28,6 +26,7 @@ import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
 import edu.cmu.ri.createlab.userinterface.component.DatasetPlotter;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 
 /**
@@ -46,23 +45,26 @@ public final class AccelerometerServiceControlPanel extends AbstractServiceContr
       super(controlPanelManager, service);
       this.service = service;
 
-      final Timer pollingTimer = new Timer("AccelerometerPollingTimer", true);
-      pollingTimer.scheduleAtFixedRate(
-            new TimerTask()
+      // the sensor bus reads all the ports at once, and shares the reading with anyone else sampling this service
+      subscribeToSensorSamples(
+            service,
+            SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS,
+            new SensorSamplingBus.SampleListener()
             {
-            public void run()
+            public void handleSample(final Service sampledService, final SensorSamplingBus.SensorSample sample)
                {
-               updateAccelerometers();
+               updateAccelerometers(sample);
                }
-            },
-            0,
-            500);
+            });
       }
 
-   private void updateAccelerometers()
+   private void updateAccelerometers(final SensorSamplingBus.SensorSample sample)
       {
-      // todo: this is inefficient if there is more than one device.  It'd be better to fetch all the states
-      // at once with a single call to the service
+      if (sample == null)
+         {
+         return;
+         }
+
       for (int i = 0; i < service.getDeviceCount(); i++)
          {
          final ServiceControlPanelDevice device = getDeviceById(i);
@@ -70,7 +72,7 @@ public final class AccelerometerServiceControlPanel extends AbstractServiceContr
             {
             try
                {
-               final AccelerometerState state = service.getAccelerometerState(i);
+               final AccelerometerState state = (AccelerometerState)sample.getValue(i);
                ((ControlPanelDevice)device).setValue(state);
                }
             catch (Exception e)
@@ -100,7 +102,7 @@ public final class AccelerometerServiceControlPanel extends AbstractServiceContr
       {
       LOG.debug("AccelerometerServiceControlPanel.refresh()");
 
-      updateAccelerometers();
+      updateAccelerometers(SensorSamplingBus.getInstance().getLatestSample(service));
       }
 
    protected ServiceControlPanelDevice createServiceControlPanelDevice(final Service service, final int deviceIndex)
@@ -5,8 +5,6 @@ import java.awt.Component;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -20,8 +18,9 @@ import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 
 /**
@@ -40,23 +39,26 @@ public final class AnalogInputsServiceControlPanel extends AbstractServiceContro
       super(controlPanelManager, service);
       this.service = service;
 
-      final Timer pollingTimer = new Timer("AnalogInputsPollingTimer", true);
-      pollingTimer.scheduleAtFixedRate(
-            new TimerTask()
+      // the sensor bus reads all the ports at once, and shares the reading with anyone else sampling this service
+      subscribeToSensorSamples(
+            service,
+            SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS,
+            new SensorSamplingBus.SampleListener()
             {
-            public void run()
+            public void handleSample(final Service sampledService, final SensorSamplingBus.SensorSample sample)
                {
-               updateAnalogInputs();
+               updateAnalogInputs(sample);
                }
-            },
-            0,
-            500);
+            });
       }
 
-   private void updateAnalogInputs()
+   private void updateAnalogInputs(final SensorSamplingBus.SensorSample sample)
       {
-      // todo: this is inefficient if there is more than one device.  It'd be better to fetch all the states
-      // at once with a single call to the service
+      if (sample == null)
+         {
+         return;
+         }
+
       for (int i = 0; i < service.getDeviceCount(); i++)
          {
          final ServiceControlPanelDevice device = getDeviceById(i);
@@ -64,7 +66,7 @@ public final class AnalogInputsServiceControlPanel extends AbstractServiceContro
             {
             try
                {
-               final Integer value = service.getAnalogInputValue(i);
+               final Integer value = (Integer)sample.getValue(i);
                ((ControlPanelDevice)device).setValue(value);
                }
             catch (Exception e)
@@ -92,7 +94,7 @@ public final class AnalogInputsServiceControlPanel extends AbstractServiceContro
 
    public JLabel getLabelImage(String imageName)
       {
-      final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString(imageName)));
+      final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString(imageName)));
       icon.setToolTipText(getDisplayName());
       return icon;
       }
@@ -101,7 +103,7 @@ public final class AnalogInputsServiceControlPanel extends AbstractServiceContro
       {
       LOG.debug("AnalogInputsServiceControlPanel.refresh()");
 
-      updateAnalogInputs();
+      updateAnalogInputs(SensorSamplingBus.getInstance().getLatestSample(service));
       }
 
    protected ServiceControlPanelDevice createServiceControlPanelDevice(final Service service, final int deviceIndex)
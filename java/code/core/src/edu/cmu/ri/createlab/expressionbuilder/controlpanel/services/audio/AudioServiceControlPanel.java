@@ -4,7 +4,6 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
-import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,20 +16,20 @@ import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import edu.cmu.ri.createlab.audio.AudioClipStore;
 import edu.cmu.ri.createlab.audio.AudioControlPanel;
+import edu.cmu.ri.createlab.audio.SpeechCache;
 import edu.cmu.ri.createlab.audio.TerkAudioClipChooser;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.AbstractServiceControlPanel;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.AbstractServiceControlPanelDevice;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.ControlPanelManager;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.ServiceControlPanelDevice;
-import edu.cmu.ri.createlab.speech.Mouth;
 import edu.cmu.ri.createlab.terk.services.ExceptionHandler;
 import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.audio.AudioExpressionConstants;
 import edu.cmu.ri.createlab.terk.services.audio.AudioService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
-import edu.cmu.ri.createlab.util.FileUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.apache.log4j.Logger;
 
 /**
@@ -81,7 +80,7 @@ public final class AudioServiceControlPanel extends AbstractServiceControlPanel
 
    public JLabel getLabelImage(final String imageName)
       {
-      return new JLabel(ImageUtils.createImageIcon(RESOURCES.getString(imageName)));
+      return new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString(imageName)));
       }
 
    public void refresh()
@@ -106,9 +105,9 @@ public final class AudioServiceControlPanel extends AbstractServiceControlPanel
 
       private JLabel blockIcon = new JLabel();
 
-      private final ImageIcon act_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellow"));
-      private final ImageIcon dis_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowdisabled"));
-      private final ImageIcon off_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowoff"));
+      private final ImageIcon act_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellow"));
+      private final ImageIcon dis_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowdisabled"));
+      private final ImageIcon off_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowoff"));
       private int dIndex;
       private ControlPanelDevice(final int deviceIndex)
          {
@@ -152,7 +151,7 @@ public final class AudioServiceControlPanel extends AbstractServiceControlPanel
          {
          final JPanel act_box = new JPanel();
          final JPanel dis_box = new JPanel();
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.disabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.disabled")));
          icon.setAlignmentX(Component.LEFT_ALIGNMENT);
          icon.setToolTipText("Audio is disabled");
          act_box.setName("active_service_box");
@@ -373,24 +372,18 @@ public final class AudioServiceControlPanel extends AbstractServiceControlPanel
             {
             if (file != null)
                {
-               try
+               // the store only reads the clip once, no matter how many times it's previewed
+               final byte[] data = AudioClipStore.getInstance().getClip(file);
+               if (data != null)
                   {
-                  final byte[] data = FileUtils.getFileAsBytes(file);
-                  if (data != null)
-                     {
-                     service.playSoundAsynchronously(data, exceptionHandler);
-                     }
-                  }
-               catch (IOException e)
-                  {
-                  LOG.error("IOException while trying to read the file for playSound()", e);
+                  service.playSoundAsynchronously(data, exceptionHandler);
                   }
                }
             }
 
          public void playSpeech(final String speechText)
             {
-            final byte[] speechData = Mouth.getInstance().getSpeech(speechText);
+            final byte[] speechData = SpeechCache.getInstance().getSpeech(speechText);
             if (speechData != null && speechData.length > 0)
                {
                service.playSoundAsynchronously(speechData, null);
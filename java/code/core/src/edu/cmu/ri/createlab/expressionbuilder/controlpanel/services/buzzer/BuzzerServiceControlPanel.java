@@ -34,6 +34,7 @@ import edu.cmu.ri.createlab.audio.AudioHelper;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.AbstractServiceControlPanel;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.AbstractServiceControlPanelDevice;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.ControlPanelManager;
+import edu.cmu.ri.createlab.expressionbuilder.controlpanel.DeviceCommandDispatcher;
 import edu.cmu.ri.createlab.expressionbuilder.controlpanel.ServiceControlPanelDevice;
 import edu.cmu.ri.createlab.expressionbuilder.util.IntegerFormatter;
 import edu.cmu.ri.createlab.expressionbuilder.widgets.PianoGUI;
@@ -43,8 +44,8 @@ import edu.cmu.ri.createlab.terk.services.buzzer.BuzzerService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
 import edu.cmu.ri.createlab.userinterface.util.AbstractTimeConsumingAction;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.apache.log4j.Logger;
 
 /**
@@ -93,7 +94,7 @@ public final class BuzzerServiceControlPanel extends AbstractServiceControlPanel
 
    public JLabel getLabelImage(final String imageName)
       {
-      return new JLabel(ImageUtils.createImageIcon(RESOURCES.getString(imageName)));
+      return new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString(imageName)));
       }
 
    public void refresh()
@@ -121,9 +122,9 @@ public final class BuzzerServiceControlPanel extends AbstractServiceControlPanel
 
       private JLabel blockIcon = new JLabel();
 
-      private final ImageIcon act_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellow"));
-      private final ImageIcon dis_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowdisabled"));
-      private final ImageIcon off_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowoff"));
+      private final ImageIcon act_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellow"));
+      private final ImageIcon dis_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowdisabled"));
+      private final ImageIcon off_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowoff"));
 
       private final JTextField frequencyTextField = new JTextField(5);
       private final NumberFormatter formatter = new IntegerFormatter();
@@ -258,7 +259,7 @@ public final class BuzzerServiceControlPanel extends AbstractServiceControlPanel
          panel.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createLineBorder(Color.black), BorderFactory.createEmptyBorder(2, 2, 2, 2)));
          panel.setBackground(Color.WHITE);
 
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.enabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.enabled")));
          final JPanel iconTitle = new JPanel();
          iconTitle.setLayout(new BoxLayout(iconTitle, BoxLayout.X_AXIS));
          iconTitle.add(icon);
@@ -328,7 +329,7 @@ public final class BuzzerServiceControlPanel extends AbstractServiceControlPanel
          {
          final JPanel act_box = new JPanel();
          final JPanel dis_box = new JPanel();
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.disabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.disabled")));
          icon.setAlignmentX(Component.LEFT_ALIGNMENT);
          icon.setToolTipText("Audio is disabled");
          act_box.setName("active_service_box");
@@ -435,7 +436,7 @@ public final class BuzzerServiceControlPanel extends AbstractServiceControlPanel
 
       private JButton createPlayButton()
          {
-         final JButton playButton = new JButton("Play", ImageUtils.createImageIcon(RESOURCES.getString("button.play-image")));
+         final JButton playButton = new JButton("Play", IconRegistry.getInstance().getImageIcon(RESOURCES.getString("button.play-image")));
          playButton.setFont(GUIConstants.BUTTON_FONT);
          playButton.setName("PlayButton");
          return playButton;
@@ -746,7 +747,21 @@ public final class BuzzerServiceControlPanel extends AbstractServiceControlPanel
             {
             if (isValid)
                {
-               service.playTone(getDeviceIndex(), frequency, duration);
+               // copy the inputs, since another click may change them before the dispatcher gets to this one
+               final int toneFrequency = frequency;
+               final int toneDuration = duration;
+
+               // every tone is a separate note, so queue them rather than letting a later one replace an earlier one
+               DeviceCommandDispatcher.getInstance().submitInOrder(
+                     service,
+                     getDeviceIndex(),
+                     new Runnable()
+                     {
+                     public void run()
+                        {
+                        service.playTone(getDeviceIndex(), toneFrequency, toneDuration);
+                        }
+                     });
                }
             return null;
             }
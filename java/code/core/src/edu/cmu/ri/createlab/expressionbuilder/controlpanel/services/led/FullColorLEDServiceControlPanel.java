@@ -23,8 +23,8 @@ import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.led.FullColorLEDService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.userinterface.util.AbstractTimeConsumingAction;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.apache.log4j.Logger;
 
 /**
@@ -78,7 +78,7 @@ public final class FullColorLEDServiceControlPanel extends AbstractServiceContro
 
    public JLabel getLabelImage(String imageName)
       {
-      final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString(imageName)));
+      final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString(imageName)));
       icon.setToolTipText(getDisplayName());
       return icon;
       }
@@ -129,9 +129,9 @@ public final class FullColorLEDServiceControlPanel extends AbstractServiceContro
       private int value;
       private JLabel blockIcon = new JLabel();
 
-      private final ImageIcon act_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellow"));
-      private final ImageIcon dis_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowdisabled"));
-      private final ImageIcon off_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowoff"));
+      private final ImageIcon act_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellow"));
+      private final ImageIcon dis_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowdisabled"));
+      private final ImageIcon off_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowoff"));
 
       private ControlPanelDevice(final Service service, final int deviceIndex)
          {
@@ -268,7 +268,7 @@ public final class FullColorLEDServiceControlPanel extends AbstractServiceContro
          c.insets = new Insets(0, 0, 5, 0);
          colorPanel.add(deviceSliderB.getComponent(), c);
 
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.enabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.enabled")));
          final JPanel iconTitle = new JPanel();
          iconTitle.setLayout(new BoxLayout(iconTitle, BoxLayout.X_AXIS));
          iconTitle.add(icon);
@@ -349,7 +349,7 @@ public final class FullColorLEDServiceControlPanel extends AbstractServiceContro
          {
          final JPanel act_box = new JPanel();
          final JPanel dis_box = new JPanel();
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.disabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.disabled")));
          icon.setAlignmentX(Component.LEFT_ALIGNMENT);
          icon.setToolTipText(getSingleName() + " " + String.valueOf(dIndex + 1) + " is disabled");
 
@@ -29,8 +29,8 @@ import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.led.FullColorLEDService;
 import edu.cmu.ri.createlab.terk.services.led.SimpleLEDService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.apache.log4j.Logger;
 
 /**
@@ -80,7 +80,7 @@ public final class SimpleLEDServiceControlPanel extends AbstractServiceControlPa
 
    public JLabel getLabelImage(String imageName)
       {
-      final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString(imageName)));
+      final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString(imageName)));
       icon.setToolTipText(getDisplayName());
       return icon;
       }
@@ -123,9 +123,9 @@ public final class SimpleLEDServiceControlPanel extends AbstractServiceControlPa
       private int value;
       private JLabel blockIcon = new JLabel();
 
-      private final ImageIcon act_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellow"));
-      private final ImageIcon dis_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowdisabled"));
-      private final ImageIcon off_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowoff"));
+      private final ImageIcon act_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellow"));
+      private final ImageIcon dis_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowdisabled"));
+      private final ImageIcon off_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowoff"));
 
       private ControlPanelDevice(final Service service, final int deviceIndex)
          {
@@ -170,7 +170,7 @@ public final class SimpleLEDServiceControlPanel extends AbstractServiceControlPa
 
          // layout
 
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.enabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.enabled")));
          final JPanel iconTitle = new JPanel();
          iconTitle.setLayout(new BoxLayout(iconTitle, BoxLayout.X_AXIS));
          iconTitle.add(icon);
@@ -253,7 +253,7 @@ public final class SimpleLEDServiceControlPanel extends AbstractServiceControlPa
          {
          final JPanel act_box = new JPanel();
          final JPanel dis_box = new JPanel();
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.disabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.disabled")));
          icon.setAlignmentX(Component.LEFT_ALIGNMENT);
 
          act_box.setName("active_service_box");
@@ -36,8 +36,8 @@ import edu.cmu.ri.createlab.terk.services.motor.BaseVelocityControllableMotorSer
 import edu.cmu.ri.createlab.terk.services.motor.VelocityControllableMotorService;
 import edu.cmu.ri.createlab.terk.services.servo.SimpleServoService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.apache.log4j.Logger;
 
 /**
@@ -109,7 +109,7 @@ abstract class BaseVelocityControllableMotorServiceControlPanel extends Abstract
 
    public final JLabel getLabelImage(final String imageName)
       {
-      final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString(imageName)));
+      final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString(imageName)));
       icon.setToolTipText(getDisplayName());
       return icon;
       }
@@ -143,9 +143,9 @@ abstract class BaseVelocityControllableMotorServiceControlPanel extends Abstract
       private int value;
       private JLabel blockIcon = new JLabel();
 
-      private final ImageIcon act_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellow"));
-      private final ImageIcon dis_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowdisabled"));
-      private final ImageIcon off_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowoff"));
+      private final ImageIcon act_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellow"));
+      private final ImageIcon dis_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowdisabled"));
+      private final ImageIcon off_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowoff"));
 
       private ControlPanelDevice(final int deviceIndex)
          {
@@ -169,7 +169,7 @@ abstract class BaseVelocityControllableMotorServiceControlPanel extends Abstract
                                             "speed");
 
          // layout
-         final JButton stopButton = new JButton(ImageUtils.createImageIcon(RESOURCES.getString("image.stop")));
+         final JButton stopButton = new JButton(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.stop")));
          stopButton.setName("thinButton");
          stopButton.setFocusable(false);
          stopButton.addActionListener(
@@ -194,7 +194,7 @@ abstract class BaseVelocityControllableMotorServiceControlPanel extends Abstract
                   }
                });
 
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.enabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.enabled")));
          final JPanel iconTitle = new JPanel();
          iconTitle.setLayout(new BoxLayout(iconTitle, BoxLayout.X_AXIS));
          iconTitle.add(icon);
@@ -237,7 +237,7 @@ abstract class BaseVelocityControllableMotorServiceControlPanel extends Abstract
 
          panel.setName("enabledServicePanel");
 
-         final JLabel disicon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.disabled")));
+         final JLabel disicon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.disabled")));
          disicon.setAlignmentX(Component.LEFT_ALIGNMENT);
          disicon.setToolTipText(getSingleName() + " " + String.valueOf(dIndex + 1) + " is disabled");
 
@@ -11,8 +11,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -34,6 +32,7 @@ import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
 import edu.cmu.ri.createlab.userinterface.util.AbstractTimeConsumingAction;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 
 /**
@@ -66,23 +65,26 @@ public final class PositionControllableMotorServiceControlPanel extends Abstract
       super(controlPanelManager, service, OPERATIONS_TO_PARAMETERS_MAP);
       this.service = service;
 
-      final Timer pollingTimer = new Timer("PositionControllableMotorPollingTimer", true);
-      pollingTimer.scheduleAtFixedRate(
-            new TimerTask()
+      // the sensor bus reads all the ports at once, and shares the reading with anyone else sampling this service
+      subscribeToSensorSamples(
+            service,
+            SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS,
+            new SensorSamplingBus.SampleListener()
             {
-            public void run()
+            public void handleSample(final Service sampledService, final SensorSamplingBus.SensorSample sample)
                {
-               updateCurrentState();
+               updateCurrentState(sample);
                }
-            },
-            0,
-            500);
+            });
       }
 
-   private void updateCurrentState()
+   private void updateCurrentState(final SensorSamplingBus.SensorSample sample)
       {
-      // todo: this is inefficient if there is more than one device.  It'd be better to fetch all the states
-      // at once with a single call to the service
+      if (sample == null)
+         {
+         return;
+         }
+
       for (int i = 0; i < service.getDeviceCount(); i++)
          {
          final ServiceControlPanelDevice device = getDeviceById(i);
@@ -90,7 +92,7 @@ public final class PositionControllableMotorServiceControlPanel extends Abstract
             {
             try
                {
-               final PositionControllableMotorState currentState = service.getState(i);
+               final PositionControllableMotorState currentState = (PositionControllableMotorState)sample.getValue(i);
                if (currentState != null)
                   {
                   ((ControlPanelDevice)device).setCurrentState(currentState);
@@ -123,7 +125,7 @@ public final class PositionControllableMotorServiceControlPanel extends Abstract
       {
       LOG.debug("PositionControllableMotorServiceControlPanel.refresh()");
 
-      updateCurrentState();
+      updateCurrentState(SensorSamplingBus.getInstance().getLatestSample(service));
       }
 
    protected ServiceControlPanelDevice createServiceControlPanelDevice(final Service service, final int deviceIndex)
@@ -28,8 +28,8 @@ import edu.cmu.ri.createlab.expressionbuilder.widgets.IntensitySlider;
 import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.motor.SpeedControllableMotorService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.apache.log4j.Logger;
 
 /**
@@ -93,7 +93,7 @@ public final class SpeedControllableMotorServiceControlPanel extends AbstractSer
 
    public JLabel getLabelImage(final String imageName)
       {
-      final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString(imageName)));
+      final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString(imageName)));
       icon.setToolTipText(getDisplayName());
       return icon;
       }
@@ -126,9 +126,9 @@ public final class SpeedControllableMotorServiceControlPanel extends AbstractSer
       private static final int DISPLAY_INITIAL_VALUE = 0;
 
       private JLabel blockIcon = new JLabel();
-      private final ImageIcon act_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellow"));
-      private final ImageIcon dis_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowdisabled"));
-      private final ImageIcon off_icon = ImageUtils.createImageIcon(RESOURCES.getString("image.yellowoff"));
+      private final ImageIcon act_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellow"));
+      private final ImageIcon dis_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowdisabled"));
+      private final ImageIcon off_icon = IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.yellowoff"));
       private int value;
 
       private final JPanel panel = new JPanel();
@@ -169,7 +169,7 @@ public final class SpeedControllableMotorServiceControlPanel extends AbstractSer
                   }
                });
 
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.enabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.enabled")));
          final JPanel iconTitle = new JPanel();
          iconTitle.setLayout(new BoxLayout(iconTitle, BoxLayout.X_AXIS));
          iconTitle.add(icon);
@@ -248,7 +248,7 @@ public final class SpeedControllableMotorServiceControlPanel extends AbstractSer
          {
          final JPanel act_box = new JPanel();
          final JPanel dis_box = new JPanel();
-         final JLabel icon = new JLabel(ImageUtils.createImageIcon(RESOURCES.getString("image.disabled")));
+         final JLabel icon = new JLabel(IconRegistry.getInstance().getImageIcon(RESOURCES.getString("image.disabled")));
          icon.setAlignmentX(Component.LEFT_ALIGNMENT);
          icon.setToolTipText(getSingleName() + " " + String.valueOf(dIndex + 1) + " is disabled");
 
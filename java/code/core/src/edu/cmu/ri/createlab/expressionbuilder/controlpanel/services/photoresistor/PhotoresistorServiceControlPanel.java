@@ -5,8 +5,6 @@ import java.awt.Component;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
@@ -20,6 +18,7 @@ import edu.cmu.ri.createlab.terk.services.photoresistor.PhotoresistorService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 
 /**
@@ -38,23 +37,26 @@ public final class PhotoresistorServiceControlPanel extends AbstractServiceContr
       super(controlPanelManager, service);
       this.service = service;
 
-      final Timer pollingTimer = new Timer("PhotoresistorPollingTimer", true);
-      pollingTimer.scheduleAtFixedRate(
-            new TimerTask()
+      // the sensor bus reads all the ports at once, and shares the reading with anyone else sampling this service
+      subscribeToSensorSamples(
+            service,
+            SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS,
+            new SensorSamplingBus.SampleListener()
             {
-            public void run()
+            public void handleSample(final Service sampledService, final SensorSamplingBus.SensorSample sample)
                {
-               updatePhotoresistors();
+               updatePhotoresistors(sample);
                }
-            },
-            0,
-            500);
+            });
       }
 
-   private void updatePhotoresistors()
+   private void updatePhotoresistors(final SensorSamplingBus.SensorSample sample)
       {
-      // todo: this is inefficient if there is more than one device.  It'd be better to fetch all the states
-      // at once with a single call to the service
+      if (sample == null)
+         {
+         return;
+         }
+
       for (int i = 0; i < service.getDeviceCount(); i++)
          {
          final ServiceControlPanelDevice device = getDeviceById(i);
@@ -62,7 +64,7 @@ public final class PhotoresistorServiceControlPanel extends AbstractServiceContr
             {
             try
                {
-               final Integer state = service.getPhotoresistorValue(i);
+               final Integer state = (Integer)sample.getValue(i);
                if (state != null)
                   {
                   ((ControlPanelDevice)device).setValue(state);
@@ -95,7 +97,7 @@ public final class PhotoresistorServiceControlPanel extends AbstractServiceContr
       {
       LOG.debug("PhotoresistorServiceControlPanel.refresh()");
 
-      updatePhotoresistors();
+      updatePhotoresistors(SensorSamplingBus.getInstance().getLatestSample(service));
       }
 
    protected ServiceControlPanelDevice createServiceControlPanelDevice(final Service service, final int deviceIndex)
@@ -6,8 +6,6 @@ import java.text.DecimalFormat;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
@@ -24,6 +22,7 @@ import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
 import edu.cmu.ri.createlab.userinterface.util.SpringLayoutUtilities;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 
 /**
@@ -42,23 +41,26 @@ public final class ThermistorServiceControlPanel extends AbstractServiceControlP
       super(controlPanelManager, service);
       this.service = service;
 
-      final Timer pollingTimer = new Timer("ThermistorPollingTimer", true);
-      pollingTimer.scheduleAtFixedRate(
-            new TimerTask()
+      // the sensor bus reads all the ports at once, and shares the reading with anyone else sampling this service
+      subscribeToSensorSamples(
+            service,
+            SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS,
+            new SensorSamplingBus.SampleListener()
             {
-            public void run()
+            public void handleSample(final Service sampledService, final SensorSamplingBus.SensorSample sample)
                {
-               updateThermistors();
+               updateThermistors(sample);
                }
-            },
-            0,
-            500);
+            });
       }
 
-   private void updateThermistors()
+   private void updateThermistors(final SensorSamplingBus.SensorSample sample)
       {
-      // todo: this is inefficient if there is more than one device.  It'd be better to fetch all the states
-      // at once with a single call to the service
+      if (sample == null)
+         {
+         return;
+         }
+
       for (int i = 0; i < service.getDeviceCount(); i++)
          {
          final ServiceControlPanelDevice device = getDeviceById(i);
@@ -66,7 +68,7 @@ public final class ThermistorServiceControlPanel extends AbstractServiceControlP
             {
             try
                {
-               final Integer state = service.getThermistorValue(i);
+               final Integer state = (Integer)sample.getValue(i);
                if (state != null)
                   {
                   ((ControlPanelDevice)device).setValue(state);
@@ -99,7 +101,7 @@ public final class ThermistorServiceControlPanel extends AbstractServiceControlP
       {
       LOG.debug("ThermistorServiceControlPanel.refresh()");
 
-      updateThermistors();
+      updateThermistors(SensorSamplingBus.getInstance().getLatestSample(service));
       }
 
    protected ServiceControlPanelDevice createServiceControlPanelDevice(final Service service, final int deviceIndex)
@@ -7,14 +7,12 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.lang.reflect.InvocationTargetException;
 import java.text.NumberFormat;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import edu.cmu.ri.createlab.expressionbuilder.controlpanel.DeviceCommandDispatcher;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
-import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
 import org.apache.log4j.Logger;
 
 /**
@@ -28,7 +26,6 @@ public class DeviceSlider
    private static final int SLIDER_WIDTH = 100;
 
    final JPanel panel = new JPanel();
-   private final ExecutorService executorPool = Executors.newCachedThreadPool(new DaemonThreadFactory("DeviceSlider"));
    public final JSlider slider;
    public final JFormattedTextField textField;
    private final ChangeListener sliderChangeListenerForExecutionStrategy;
@@ -117,17 +114,19 @@ public class DeviceSlider
                {
                final JSlider source = (JSlider)e.getSource();
                final int value = source.getValue();
-               if (!source.getValueIsAdjusting())
-                  {
-                  executorPool.execute(
-                        new Runnable()
+
+               // Send values while dragging too, so the device follows the slider.  The dispatcher only keeps the
+               // latest value per device, so a fast drag can't build up a backlog of stale ones.
+               DeviceCommandDispatcher.getInstance().submit(
+                     executionStrategy,
+                     deviceIndex,
+                     new Runnable()
+                     {
+                     public void run()
                         {
-                        public void run()
-                           {
-                           executionStrategy.execute(deviceIndex, value);
-                           }
-                        });
-                  }
+                        executionStrategy.execute(deviceIndex, value);
+                        }
+                     });
                }
             };
       slider.addChangeListener(sliderChangeListenerForExecutionStrategy);
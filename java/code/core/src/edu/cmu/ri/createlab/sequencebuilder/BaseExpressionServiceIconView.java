@@ -1,11 +1,15 @@
 package edu.cmu.ri.createlab.sequencebuilder;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.swing.BoxLayout;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import edu.cmu.ri.createlab.terk.services.DeviceController;
@@ -14,12 +18,16 @@ import edu.cmu.ri.createlab.terk.xml.XmlDevice;
 import edu.cmu.ri.createlab.terk.xml.XmlOperation;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * <p>
  * <code>BaseExpressionServiceIconView</code> provides base functionality for {@link ExpressionServiceIconView}
- * implementations.
+ * implementations.  Each service's row of device icons is drawn from a single image composited by the
+ * {@link IconRegistry}, which is shared by every expression block showing the same combination of device states.
  * </p>
  *
  * @author Chris Bartley (bartley@cmu.edu)
@@ -103,31 +111,62 @@ public abstract class BaseExpressionServiceIconView implements ExpressionService
             }
          }
 
+      final List<Icon> deviceIcons = new ArrayList<Icon>(deviceCount);
       for (int i = 0; i < deviceCount; i++)
          {
          if (xmlService != null)
             {
             if (expressionDevices[i] == 2)
                {
-               iconPanel.add(new JLabel(enabledIconMap.get(typeID).getIcon()));
+               deviceIcons.add(enabledIconMap.get(typeID).getIcon());
                }
             else if (expressionDevices[i] == 1)
                {
-               iconPanel.add(new JLabel(offIconMap.get(typeID).getIcon()));
+               deviceIcons.add(offIconMap.get(typeID).getIcon());
                }
             else
                {
-               iconPanel.add(new JLabel(disabledIconMap.get(typeID).getIcon()));
+               deviceIcons.add(disabledIconMap.get(typeID).getIcon());
                }
             }
          else
             {
-            iconPanel.add(new JLabel(disabledIconMap.get(typeID).getIcon()));
+            deviceIcons.add(disabledIconMap.get(typeID).getIcon());
             }
          }
 
+      // draw the whole row of device icons as a single, shared image rather than with one label per device
+      final ImageIcon strip = getHorizontalStrip(deviceIcons);
+      if (strip == null)
+         {
+         for (final Icon icon : deviceIcons)
+            {
+            iconPanel.add(new JLabel(icon));
+            }
+         }
+      else
+         {
+         iconPanel.add(new JLabel(strip));
+         }
+
       iconPanel.setToolTipText(toolTipTextMap.get(typeID));
 
       return iconPanel;
       }
+
+   /** Returns the {@link IconRegistry}'s composite of the given icons, or <code>null</code> if they can't be composited. */
+   @Nullable
+   private static ImageIcon getHorizontalStrip(@NotNull final List<Icon> icons)
+      {
+      final List<ImageIcon> imageIcons = new ArrayList<ImageIcon>(icons.size());
+      for (final Icon icon : icons)
+         {
+         if (!(icon instanceof ImageIcon))
+            {
+            return null;
+            }
+         imageIcons.add((ImageIcon)icon);
+         }
+      return IconRegistry.getInstance().getHorizontalStrip(imageIcons);
+      }
    }
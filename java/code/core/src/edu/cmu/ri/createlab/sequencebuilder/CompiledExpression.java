@@ -0,0 +1,409 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import edu.cmu.ri.createlab.audio.AudioClipStore;
+import edu.cmu.ri.createlab.audio.SpeechCache;
+import edu.cmu.ri.createlab.terk.expression.ExpressionOperationExecutor;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.audio.AudioExpressionConstants;
+import edu.cmu.ri.createlab.terk.services.audio.AudioService;
+import edu.cmu.ri.createlab.terk.services.buzzer.BuzzerService;
+import edu.cmu.ri.createlab.terk.xml.XmlDevice;
+import edu.cmu.ri.createlab.terk.xml.XmlOperation;
+import edu.cmu.ri.createlab.terk.xml.XmlParameter;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>CompiledExpression</code> is an immutable, pre-resolved form of an {@link XmlExpression}.  The services
+ * targeted by the expression's operations are looked up in the {@link ServiceManager} once, at compile time, so that
+ * executing the expression requires no service lookups or type checks.  Speech and clip operations are compiled to
+ * play their audio from the {@link SpeechCache} and the {@link AudioClipStore}, so that each phrase is only synthesized
+ * once and each clip is only read once.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class CompiledExpression
+   {
+   private static final Logger LOG = Logger.getLogger(CompiledExpression.class);
+
+   private static final ExpressionOperationExecutor[] EMPTY_EXECUTORS = new ExpressionOperationExecutor[0];
+   private static final XmlOperation[] EMPTY_OPERATIONS = new XmlOperation[0];
+   private static final String[] EMPTY_OPERATION_LABELS = new String[0];
+   private static final String[] EMPTY_SERVICE_TYPE_IDS = new String[0];
+
+   /**
+    * Compiles the given {@link XmlExpression} against the given {@link ServiceManager}.  Operations whose service is
+    * not available, or whose service does not implement {@link ExpressionOperationExecutor}, are dropped (and logged).
+    * Each service's operations are kept together, and, for services whose operations set the state of their devices,
+    * {@link #coalesceOperations(Collection) coalesced}, so that executing the expression makes as few round-trips to
+    * the device as the services allow.
+    * If the {@link ServiceManager} is <code>null</code>, the returned <code>CompiledExpression</code> does nothing
+    * when executed.
+    */
+   @NotNull
+   public static CompiledExpression compile(@Nullable final ServiceManager serviceManager, @Nullable final XmlExpression xmlExpression)
+      {
+      final List<ExpressionOperationExecutor> executors = new ArrayList<ExpressionOperationExecutor>();
+      final List<XmlOperation> operations = new ArrayList<XmlOperation>();
+      final List<String> operationLabels = new ArrayList<String>();
+      final List<String> serviceTypeIds = new ArrayList<String>();
+      final List<String> speechTexts = new ArrayList<String>();
+      final List<File> clipFiles = new ArrayList<File>();
+
+      if (serviceManager != null && xmlExpression != null)
+         {
+         final Set<XmlService> xmlServices = xmlExpression.getServices();
+         if (xmlServices != null)
+            {
+            // group the operations by service, so that each service is visited once even if the expression
+            // mentions it more than once
+            final Map<String, List<XmlOperation>> operationsByServiceTypeId = new LinkedHashMap<String, List<XmlOperation>>();
+            for (final XmlService xmlService : xmlServices)
+               {
+               List<XmlOperation> serviceOperations = operationsByServiceTypeId.get(xmlService.getTypeId());
+               if (serviceOperations == null)
+                  {
+                  serviceOperations = new ArrayList<XmlOperation>();
+                  operationsByServiceTypeId.put(xmlService.getTypeId(), serviceOperations);
+                  }
+               serviceOperations.addAll(xmlService.getOperations());
+               }
+
+            for (final Map.Entry<String, List<XmlOperation>> entry : operationsByServiceTypeId.entrySet())
+               {
+               final Service service = serviceManager.getServiceByTypeId(entry.getKey());
+               if (service == null)
+                  {
+                  if (LOG.isDebugEnabled())
+                     {
+                     LOG.debug("CompiledExpression.compile(): Service " + entry.getKey() + " not available for execution.");
+                     }
+                  }
+               else if (service instanceof ExpressionOperationExecutor)
+                  {
+                  // coalesce this service's operations so that each one is a single write to the device, unless they
+                  // play something (a phrase, a clip, a tone) rather than set a state, in which case each one counts
+                  final String serviceName = entry.getKey().substring(entry.getKey().lastIndexOf(':') + 1);
+                  final boolean isEventService = service instanceof AudioService || service instanceof BuzzerService;
+                  for (final XmlOperation operation : isEventService ? entry.getValue() : coalesceOperations(entry.getValue()))
+                     {
+                     final String speechText = getSpeechText(service, operation);
+                     final File clipFile = getClipFile(service, operation);
+                     if (speechText != null)
+                        {
+                        // speak from the SpeechCache, so that the same phrase is only synthesized once
+                        executors.add(new CachedSpeechOperationExecutor((AudioService)service, speechText));
+                        speechTexts.add(speechText);
+                        }
+                     else if (clipFile != null)
+                        {
+                        // play from the AudioClipStore, so that the same clip is only read once
+                        executors.add(new StoredClipOperationExecutor((AudioService)service, clipFile));
+                        clipFiles.add(clipFile);
+                        }
+                     else
+                        {
+                        executors.add((ExpressionOperationExecutor)service);
+                        }
+                     operations.add(operation);
+                     operationLabels.add(serviceName + "." + operation.getName());
+                     serviceTypeIds.add(entry.getKey());
+                     }
+                  }
+               else
+                  {
+                  LOG.warn("CompiledExpression.compile(): Operations not compiled since service [" + service.getTypeId() + "] does not implement the OperationExecutor interface.");
+                  }
+               }
+            }
+         }
+
+      return new CompiledExpression(executors.toArray(EMPTY_EXECUTORS),
+                                    operations.toArray(EMPTY_OPERATIONS),
+                                    operationLabels.toArray(EMPTY_OPERATION_LABELS),
+                                    serviceTypeIds.toArray(EMPTY_SERVICE_TYPE_IDS),
+                                    speechTexts,
+                                    clipFiles);
+      }
+
+   /**
+    * Returns the text to be spoken if the given operation is a speech operation on an {@link AudioService} which
+    * supports speech, or <code>null</code> otherwise.
+    */
+   @Nullable
+   private static String getSpeechText(@NotNull final Service service, @NotNull final XmlOperation operation)
+      {
+      if (service instanceof AudioService &&
+          AudioExpressionConstants.OPERATION_NAME_SPEAK.equalsIgnoreCase(operation.getName()) &&
+          ((AudioService)service).isSpeechSupported())
+         {
+         return getFirstParameterValue(operation, AudioExpressionConstants.PARAMETER_NAME_SPEAK_TEXT);
+         }
+      return null;
+      }
+
+   /**
+    * Returns the clip file, in the {@link PathManager#getAudioDirectory() audio directory}, to be played if the given
+    * operation is a clip operation on an {@link AudioService}, or <code>null</code> otherwise.
+    */
+   @Nullable
+   private static File getClipFile(@NotNull final Service service, @NotNull final XmlOperation operation)
+      {
+      if (service instanceof AudioService &&
+          (AudioExpressionConstants.OPERATION_NAME_PLAY_CLIP.equalsIgnoreCase(operation.getName()) ||
+           AudioExpressionConstants.OPERATION_NAME_PLAY_CLIP_ASYNCHRONOUSLY.equalsIgnoreCase(operation.getName())))
+         {
+         final String clipFilename = getFirstParameterValue(operation, AudioExpressionConstants.PARAMETER_NAME_CLIP_FILE);
+         if (clipFilename != null)
+            {
+            return new File(PathManager.getInstance().getAudioDirectory(), clipFilename);
+            }
+         }
+      return null;
+      }
+
+   /** Returns the first non-empty value of the named parameter among the operation's devices, if any. */
+   @Nullable
+   private static String getFirstParameterValue(@NotNull final XmlOperation operation, @NotNull final String parameterName)
+      {
+      for (final XmlDevice device : operation.getDevices())
+         {
+         final XmlParameter parameter = device.getParameter(parameterName);
+         final String value = (parameter == null) ? null : parameter.getValue();
+         if (value != null && value.length() > 0)
+            {
+            return value;
+            }
+         }
+      return null;
+      }
+
+   /**
+    * Coalesces the given operations, which must all be for the same state-setting service, into as few operations as
+    * possible without changing the order in which they take effect.  An operation is merged into the operation
+    * immediately before it, if that one has the same name and every device they have in common is given exactly the
+    * same set of parameters by both, in which case the later device overwrites the earlier one (exactly as it would if
+    * the operations were executed one after the other).  Otherwise, the operation is kept as a new operation, since it
+    * either has a different name&mdash;and merging across it would reorder the writes&mdash;or may only partially
+    * overwrite the earlier one.  Since the services apply an operation's devices with a single masked command, each
+    * coalesced operation costs only one round-trip to the hardware.
+    */
+   @NotNull
+   static List<XmlOperation> coalesceOperations(@Nullable final Collection<XmlOperation> operations)
+      {
+      if (operations == null || operations.isEmpty())
+         {
+         return Collections.emptyList();
+         }
+      if (operations.size() == 1)
+         {
+         return new ArrayList<XmlOperation>(operations);
+         }
+
+      // the coalesced operations, in order, each as its name and its devices keyed by id
+      final List<String> names = new ArrayList<String>();
+      final List<Map<Integer, XmlDevice>> devicesList = new ArrayList<Map<Integer, XmlDevice>>();
+      Map<Integer, XmlDevice> devices = null;
+      for (final XmlOperation operation : operations)
+         {
+         if (devices == null || !operation.getName().equals(names.get(names.size() - 1)) || !canMerge(devices, operation))
+            {
+            devices = new LinkedHashMap<Integer, XmlDevice>();
+            names.add(operation.getName());
+            devicesList.add(devices);
+            }
+         for (final XmlDevice device : operation.getDevices())
+            {
+            final XmlDevice overwrittenDevice = devices.put(device.getId(), device);
+            if (overwrittenDevice != null && LOG.isDebugEnabled())
+               {
+               LOG.debug("CompiledExpression.coalesceOperations(): dropping " + operation.getName() + " for device " + device.getId() + " " + overwrittenDevice.getParametersValuesAsMap() + " since a later one overwrites it with " + device.getParametersValuesAsMap());
+               }
+            }
+         }
+
+      final List<XmlOperation> coalescedOperations = new ArrayList<XmlOperation>(names.size());
+      for (int i = 0; i < names.size(); i++)
+         {
+         coalescedOperations.add(new XmlOperation(names.get(i), new LinkedHashSet<XmlDevice>(devicesList.get(i).values())));
+         }
+      return coalescedOperations;
+      }
+
+   /**
+    * Returns <code>true</code> if every device of the given operation which is already in the given devices has
+    * exactly the same parameter names as the existing device, so that it completely overwrites it.
+    */
+   private static boolean canMerge(@NotNull final Map<Integer, XmlDevice> devices, @NotNull final XmlOperation operation)
+      {
+      for (final XmlDevice device : operation.getDevices())
+         {
+         final XmlDevice existingDevice = devices.get(device.getId());
+         if (existingDevice != null && !existingDevice.getParametersAsMap().keySet().equals(device.getParametersAsMap().keySet()))
+            {
+            return false;
+            }
+         }
+      return true;
+      }
+
+   private final ExpressionOperationExecutor[] executors;
+   private final XmlOperation[] operations;
+   private final String[] operationLabels;
+   private final String[] serviceTypeIds;
+   private final List<String> speechTexts;
+   private final List<File> clipFiles;
+
+   private CompiledExpression(@NotNull final ExpressionOperationExecutor[] executors,
+                              @NotNull final XmlOperation[] operations,
+                              @NotNull final String[] operationLabels,
+                              @NotNull final String[] serviceTypeIds,
+                              @NotNull final List<String> speechTexts,
+                              @NotNull final List<File> clipFiles)
+      {
+      this.executors = executors;
+      this.operations = operations;
+      this.operationLabels = operationLabels;
+      this.serviceTypeIds = serviceTypeIds;
+      this.speechTexts = Collections.unmodifiableList(speechTexts);
+      this.clipFiles = Collections.unmodifiableList(clipFiles);
+      }
+
+   /** Returns the number of operations in this expression. */
+   public int getOperationCount()
+      {
+      return operations.length;
+      }
+
+   /** Returns the {@link ExpressionOperationExecutor} for the operation at the given <code>index</code>. */
+   @NotNull
+   ExpressionOperationExecutor getExecutor(final int index)
+      {
+      return executors[index];
+      }
+
+   /** Returns the {@link XmlOperation} at the given <code>index</code>. */
+   @NotNull
+   XmlOperation getOperation(final int index)
+      {
+      return operations[index];
+      }
+
+   /**
+    * Returns a short label for the operation at the given <code>index</code>, made of the unqualified type id of its
+    * service and the operation's name, e.g. <code>SimpleServoService.setPosition</code>.  Labels are built at compile
+    * time so that {@link ExecutionTracer tracing} a device call doesn't build a string.
+    */
+   @NotNull
+   String getOperationLabel(final int index)
+      {
+      return operationLabels[index];
+      }
+
+   /**
+    * Returns the type id of the service targeted by the operation at the given <code>index</code>.  All of a
+    * service's operations are adjacent.
+    */
+   @NotNull
+   String getServiceTypeId(final int index)
+      {
+      return serviceTypeIds[index];
+      }
+
+   /** Returns the texts spoken by this expression's speech operations, so that they can be synthesized ahead of time. */
+   @NotNull
+   List<String> getSpeechTexts()
+      {
+      return speechTexts;
+      }
+
+   /** Returns the audio clip files played by this expression, so that they can be loaded ahead of time. */
+   @NotNull
+   List<File> getClipFiles()
+      {
+      return clipFiles;
+      }
+
+   /**
+    * Executes a speech operation by playing the speech from the {@link SpeechCache}, rather than having the service
+    * synthesize it again.  Falls back to the service if the speech can't be synthesized.
+    */
+   private static final class CachedSpeechOperationExecutor implements ExpressionOperationExecutor<Object>
+      {
+      private final AudioService audioService;
+      private final String speechText;
+
+      private CachedSpeechOperationExecutor(@NotNull final AudioService audioService, @NotNull final String speechText)
+         {
+         this.audioService = audioService;
+         this.speechText = speechText;
+         }
+
+      @Override
+      public Object executeExpressionOperation(final XmlOperation operation)
+         {
+         final byte[] speech = SpeechCache.getInstance().getSpeech(speechText);
+         if (speech == null)
+            {
+            audioService.speak(speechText);
+            }
+         else
+            {
+            audioService.playSound(speech);
+            }
+         return null;
+         }
+      }
+
+   /**
+    * Executes a clip operation by playing the clip from the {@link AudioClipStore}, rather than having the service read
+    * the file again.  Clips which can't be loaded are skipped, since the store has already reported the problem.
+    */
+   private static final class StoredClipOperationExecutor implements ExpressionOperationExecutor<Object>
+      {
+      private final AudioService audioService;
+      private final File clipFile;
+
+      private StoredClipOperationExecutor(@NotNull final AudioService audioService, @NotNull final File clipFile)
+         {
+         this.audioService = audioService;
+         this.clipFile = clipFile;
+         }
+
+      @Override
+      public Object executeExpressionOperation(final XmlOperation operation)
+         {
+         final byte[] clip = AudioClipStore.getInstance().getClip(clipFile);
+         if (clip == null)
+            {
+            return null;
+            }
+
+         if (AudioExpressionConstants.OPERATION_NAME_PLAY_CLIP_ASYNCHRONOUSLY.equalsIgnoreCase(operation.getName()))
+            {
+            audioService.playSoundAsynchronously(clip, null);
+            }
+         else
+            {
+            audioService.playSound(clip);
+            }
+         return null;
+         }
+      }
+   }
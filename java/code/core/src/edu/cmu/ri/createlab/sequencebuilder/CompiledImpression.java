@@ -0,0 +1,162 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.util.List;
+import java.util.Set;
+import edu.cmu.ri.createlab.terk.impression.ImpressionOperationExecutor;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerService;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerState;
+import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
+import edu.cmu.ri.createlab.terk.services.obstacle.SimpleObstacleDetectorService;
+import edu.cmu.ri.createlab.terk.services.photoresistor.PhotoresistorService;
+import edu.cmu.ri.createlab.terk.services.thermistor.ThermistorService;
+import edu.cmu.ri.createlab.terk.xml.XmlDevice;
+import edu.cmu.ri.createlab.terk.xml.XmlOperation;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>CompiledImpression</code> is an immutable, pre-resolved form of an impression (i.e. a sensor read) described
+ * by an {@link XmlService}.  The service is looked up in the {@link ServiceManager} once, at compile time, so that
+ * reading the sensor requires no service lookups, type checks, or XML object creation.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class CompiledImpression
+   {
+   private static final Logger LOG = Logger.getLogger(CompiledImpression.class);
+
+   /**
+    * Compiles the first operation of the given {@link XmlService} against the given {@link ServiceManager}.  If the
+    * service is not available, does not implement {@link ImpressionOperationExecutor}, or has no operations, the
+    * returned <code>CompiledImpression</code> always evaluates to <code>null</code>.
+    */
+   public static CompiledImpression compile(@Nullable final ServiceManager serviceManager, @Nullable final XmlService xmlService)
+      {
+      if (serviceManager == null || xmlService == null)
+         {
+         LOG.debug("CompiledImpression.compile(): The ServiceManager and/or XmlService was null.");
+         }
+      else
+         {
+         final Service service = serviceManager.getServiceByTypeId(xmlService.getTypeId());
+         final List<XmlOperation> operations = xmlService.getOperations();
+         if (service == null)
+            {
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("CompiledImpression.compile(): Service " + xmlService.getTypeId() + " not available for execution.");
+               }
+            }
+         else if (!(service instanceof ImpressionOperationExecutor))
+            {
+            LOG.warn("CompiledImpression.compile(): Operation not compiled since service [" + service.getTypeId() + "] does not implement the OperationExecutor interface.");
+            }
+         else if (operations != null && !operations.isEmpty())
+            {
+            final XmlOperation operation = operations.get(0);
+            final Set<XmlDevice> devices = operation.getDevices();
+            final boolean isSingleSensorRead = devices.size() == 1 && isSingleSensorReadOperation(service, operation.getName());
+            return new CompiledImpression(xmlService.getTypeId(),
+                                          (ImpressionOperationExecutor)service,
+                                          operation,
+                                          isSingleSensorRead ? service : null,
+                                          isSingleSensorRead ? devices.iterator().next().getId() : -1);
+            }
+         }
+
+      return new CompiledImpression(xmlService == null ? null : xmlService.getTypeId(), null, null, null, -1);
+      }
+
+   /**
+    * Returns <code>true</code> if the given operation reads a single port of a service which the
+    * {@link SensorSamplingBus} samples, and so can be answered from a {@link SensorSamplingBus.SensorSample}.
+    */
+   private static boolean isSingleSensorReadOperation(@NotNull final Service service, @Nullable final String operationName)
+      {
+      return (service instanceof AnalogInputsService && AnalogInputsService.OPERATION_NAME_GET_ANALOG_INPUT_VALUE.equalsIgnoreCase(operationName)) ||
+             (service instanceof PhotoresistorService && PhotoresistorService.OPERATION_NAME_GET_PHOTORESISTOR_VALUE.equalsIgnoreCase(operationName)) ||
+             (service instanceof SimpleObstacleDetectorService && SimpleObstacleDetectorService.OPERATION_NAME_IS_OBSTACLE_DETECTED.equalsIgnoreCase(operationName)) ||
+             (service instanceof ThermistorService && ThermistorService.OPERATION_NAME_GET_THERMISTOR_VALUE.equalsIgnoreCase(operationName)) ||
+             (service instanceof AccelerometerService && AccelerometerService.OPERATION_NAME_GET_ACCELEROMETER_STATE.equalsIgnoreCase(operationName)) ||
+             (service instanceof AccelerometerService && AccelerometerService.OPERATION_NAME_GET_ACCELEROMETER_GS.equalsIgnoreCase(operationName));
+      }
+
+   @Nullable
+   private final String serviceTypeId;
+
+   @Nullable
+   private final ImpressionOperationExecutor executor;
+
+   @Nullable
+   private final XmlOperation operation;
+
+   @Nullable
+   private final Service sampledService;
+
+   private final int sampledPortNumber;
+   private final boolean willConvertToGs;
+
+   private CompiledImpression(@Nullable final String serviceTypeId,
+                              @Nullable final ImpressionOperationExecutor executor,
+                              @Nullable final XmlOperation operation,
+                              @Nullable final Service sampledService,
+                              final int sampledPortNumber)
+      {
+      this.serviceTypeId = serviceTypeId;
+      this.executor = executor;
+      this.operation = operation;
+      this.sampledService = sampledService;
+      this.sampledPortNumber = sampledPortNumber;
+      this.willConvertToGs = sampledService != null && AccelerometerService.OPERATION_NAME_GET_ACCELEROMETER_GS.equalsIgnoreCase(operation.getName());
+      }
+
+   @Nullable
+   public String getServiceTypeId()
+      {
+      return serviceTypeId;
+      }
+
+   @Nullable
+   ImpressionOperationExecutor getExecutor()
+      {
+      return executor;
+      }
+
+   @Nullable
+   XmlOperation getOperation()
+      {
+      return operation;
+      }
+
+   /**
+    * Returns the service whose {@link SensorSamplingBus.SensorSample samples} can answer this impression, or
+    * <code>null</code> if the impression must always be executed against the device.
+    */
+   @Nullable
+   Service getSampledService()
+      {
+      return sampledService;
+      }
+
+   /**
+    * Extracts this impression's value from the given sample of the {@link #getSampledService() sampled service},
+    * returning exactly what executing the impression's operation would have returned.
+    */
+   @Nullable
+   Object getValueFromSample(@NotNull final SensorSamplingBus.SensorSample sample)
+      {
+      final Object value = sample.getValue(sampledPortNumber);
+      if (willConvertToGs && value instanceof AccelerometerState)
+         {
+         return ((AccelerometerService)sampledService).convertToGs((AccelerometerState)value);
+         }
+      return value;
+      }
+   }
@@ -0,0 +1,382 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import edu.cmu.ri.createlab.audio.AudioClipStore;
+import edu.cmu.ri.createlab.audio.SpeechCache;
+import edu.cmu.ri.createlab.util.DirectoryPoller;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>CompiledSavedSequenceCache</code> is a process-wide, size-bounded, least-recently-used cache of the
+ * {@link ExecutionPlan}s compiled from saved sequence files.  A saved sequence is loaded and compiled the first time
+ * it's needed, and every later execution of it&mdash;every iteration of an enclosing loop, every run of the sequence on
+ * the stage, and every other reference to the same file&mdash;reuses the same immutable plan without touching the
+ * disk.
+ * </p>
+ * <p>
+ * Since a hit does no file I/O at all, entries are not checked against the file's modification time.  Instead, the
+ * cache listens to the {@link PathManager}'s sequences {@link DirectoryPoller} and drops a saved sequence's plans as
+ * soon as its file is modified or deleted.  A compiled plan also contains the compiled expressions of the sequence, so
+ * all plans are dropped whenever an expression file is modified or deleted.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class CompiledSavedSequenceCache implements DirectoryPoller.EventListener
+   {
+   private static final Logger LOG = Logger.getLogger(CompiledSavedSequenceCache.class);
+
+   public static final int DEFAULT_MAX_ENTRIES = 64;
+
+   private static final CompiledSavedSequenceCache INSTANCE = new CompiledSavedSequenceCache(DEFAULT_MAX_ENTRIES);
+
+   public static CompiledSavedSequenceCache getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final ExecutorService prefetchExecutor = Executors.newFixedThreadPool(2, new DaemonThreadFactory(this.getClass().getSimpleName()));
+
+   private final Lock lock = new ReentrantLock();
+   private final Map<Key, FutureTask<ExecutionPlan>> entries;
+   private long hitCount = 0;
+   private long missCount = 0;
+
+   private final DirectoryPoller.EventListener expressionsDirectoryPollerEventListener =
+         new DirectoryPoller.EventListener()
+         {
+         @Override
+         public void handleNewFileEvent(@NotNull final Set<File> files)
+            {
+            // nothing to do, a new expression can't already be part of a compiled plan
+            }
+
+         @Override
+         public void handleModifiedFileEvent(@NotNull final Set<File> files)
+            {
+            clear();
+            }
+
+         @Override
+         public void handleDeletedFileEvent(@NotNull final Set<File> files)
+            {
+            clear();
+            }
+         };
+
+   private CompiledSavedSequenceCache(final int maxEntries)
+      {
+      // private to prevent instantiation
+
+      // an access-ordered LinkedHashMap which evicts the least recently used entry once it's full
+      entries = new LinkedHashMap<Key, FutureTask<ExecutionPlan>>(16, 0.75f, true)
+      {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Key, FutureTask<ExecutionPlan>> eldest)
+         {
+         return size() > maxEntries;
+         }
+      };
+
+      // the PathManager remembers these and adds them to the pollers whenever they're (re)created
+      PathManager.getInstance().registerSequencesDirectoryPollerEventListener(this);
+      PathManager.getInstance().registerExpressionsDirectoryPollerEventListener(expressionsDirectoryPollerEventListener);
+      }
+
+   /**
+    * Returns the compiled contents of the saved sequence identified by the given key, loading and compiling it on the
+    * calling thread if it isn't already cached (or waiting for it, if it's already being compiled on another thread).
+    * Returns <code>null</code> if the saved sequence could not be loaded, in which case nothing is cached, so that it
+    * will be tried again the next time.
+    */
+   @Nullable
+   ExecutionPlan get(@NotNull final Key key)
+      {
+      final FutureTask<ExecutionPlan> task = getOrCreateTask(key, true);
+
+      // running a FutureTask which has already been run, or is currently running, does nothing
+      task.run();
+      ExecutionPlan plan = null;
+      try
+         {
+         plan = task.get();
+         }
+      catch (InterruptedException e)
+         {
+         LOG.debug("CompiledSavedSequenceCache.get(): interrupted while waiting for [" + key.savedSequenceFile + "] to be compiled");
+         Thread.currentThread().interrupt();
+         return null;
+         }
+      catch (ExecutionException e)
+         {
+         LOG.error("CompiledSavedSequenceCache.get(): Exception while compiling [" + key.savedSequenceFile + "].  Skipping this element.", e);
+         }
+
+      if (plan == null)
+         {
+         remove(key, task);
+         }
+      return plan;
+      }
+
+   /** Starts loading and compiling the given saved sequence in the background, if it isn't already cached. */
+   void prefetch(@NotNull final Key key)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (entries.containsKey(key))
+            {
+            return;
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("CompiledSavedSequenceCache.prefetch(): prefetching [" + key.savedSequenceFile + "]");
+         }
+      prefetchExecutor.execute(getOrCreateTask(key, false));
+      }
+
+   @NotNull
+   private FutureTask<ExecutionPlan> getOrCreateTask(@NotNull final Key key, final boolean willCountHitsAndMisses)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         FutureTask<ExecutionPlan> task = entries.get(key);
+         if (task == null)
+            {
+            task = new FutureTask<ExecutionPlan>(
+                  new Callable<ExecutionPlan>()
+                  {
+                  @Override
+                  public ExecutionPlan call()
+                     {
+                     final ExecutionPlan plan = SequenceCompiler.compileSavedSequenceContents(key.visualProgrammerDevice,
+                                                                                              key.savedSequenceFile,
+                                                                                              key.enclosingSavedSequenceFiles);
+                     if (plan != null)
+                        {
+                        // the sequence is about to be executed, so get its audio ready too
+                        AudioClipStore.getInstance().preloadInBackground(plan.getClipFiles());
+                        SpeechCache.getInstance().presynthesizeInBackground(plan.getSpeechTexts());
+                        }
+                     return plan;
+                     }
+                  });
+            entries.put(key, task);
+            if (willCountHitsAndMisses)
+               {
+               missCount++;
+               }
+            }
+         else if (willCountHitsAndMisses)
+            {
+            hitCount++;
+            }
+         return task;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Removes the given task, unless it has already been replaced by a newer one. */
+   private void remove(@NotNull final Key key, @NotNull final FutureTask<ExecutionPlan> task)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (entries.get(key) == task)
+            {
+            entries.remove(key);
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Removes the cached plans, if any, compiled from the given saved sequence file. */
+   public void invalidate(@NotNull final File savedSequenceFile)
+      {
+      final File absoluteFile = savedSequenceFile.getAbsoluteFile();
+      lock.lock();  // block until condition holds
+      try
+         {
+         for (final Iterator<Key> iterator = entries.keySet().iterator(); iterator.hasNext(); )
+            {
+            if (absoluteFile.equals(iterator.next().savedSequenceFile))
+               {
+               iterator.remove();
+               }
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Removes all cached plans, but leaves the hit and miss counts untouched. */
+   public void clear()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         entries.clear();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of plans currently cached. */
+   public int getSize()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return entries.size();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of saved sequence executions which found their plan already cached (or being compiled). */
+   public long getHitCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return hitCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of saved sequence executions which had to load and compile their plan. */
+   public long getMissCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return missCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   public void handleNewFileEvent(@NotNull final Set<File> files)
+      {
+      // nothing to do, saved sequences which couldn't be loaded aren't cached
+      }
+
+   @Override
+   public void handleModifiedFileEvent(@NotNull final Set<File> files)
+      {
+      for (final File file : files)
+         {
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("CompiledSavedSequenceCache.handleModifiedFileEvent(): invalidating [" + file + "]");
+            }
+         invalidate(file);
+         }
+      }
+
+   @Override
+   public void handleDeletedFileEvent(@NotNull final Set<File> files)
+      {
+      for (final File file : files)
+         {
+         invalidate(file);
+         }
+      }
+
+   /**
+    * Identifies a compiled saved sequence.  Besides the file, a plan depends on the device it was compiled for, and on
+    * the saved sequences enclosing it, since references back to any of those are skipped to guard against cycles.
+    */
+   static final class Key
+      {
+      private final VisualProgrammerDevice visualProgrammerDevice;
+      private final File savedSequenceFile;
+      private final Set<File> enclosingSavedSequenceFiles;
+      private final int hashCode;
+
+      Key(@NotNull final VisualProgrammerDevice visualProgrammerDevice,
+          @NotNull final File savedSequenceFile,
+          @NotNull final Set<File> enclosingSavedSequenceFiles)
+         {
+         this.visualProgrammerDevice = visualProgrammerDevice;
+         this.savedSequenceFile = savedSequenceFile.getAbsoluteFile();
+         this.enclosingSavedSequenceFiles = Collections.unmodifiableSet(new HashSet<File>(enclosingSavedSequenceFiles));
+
+         // keys are looked up before every instruction while prefetching, so compute the hash code only once
+         int result = visualProgrammerDevice.hashCode();
+         result = 31 * result + this.savedSequenceFile.hashCode();
+         result = 31 * result + this.enclosingSavedSequenceFiles.hashCode();
+         hashCode = result;
+         }
+
+      @Override
+      public boolean equals(final Object o)
+         {
+         if (this == o)
+            {
+            return true;
+            }
+         if (o == null || getClass() != o.getClass())
+            {
+            return false;
+            }
+
+         final Key that = (Key)o;
+         return hashCode == that.hashCode &&
+                visualProgrammerDevice.equals(that.visualProgrammerDevice) &&
+                savedSequenceFile.equals(that.savedSequenceFile) &&
+                enclosingSavedSequenceFiles.equals(that.enclosingSavedSequenceFiles);
+         }
+
+      @Override
+      public int hashCode()
+         {
+         return hashCode;
+         }
+      }
+   }
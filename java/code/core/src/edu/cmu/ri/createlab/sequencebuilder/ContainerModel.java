@@ -448,6 +448,8 @@ public final class ContainerModel
          final Element containerElement = rootElement.getChild(ContainerModel.XML_ELEMENT_NAME);
          if (containerElement != null)
             {
+            // read all the referenced files in parallel first, so that assembling the models doesn't wait on each one
+            SequenceFilePreloader.getInstance().preload(containerElement);
             load(visualProgrammerDevice, containerElement);
             }
          }
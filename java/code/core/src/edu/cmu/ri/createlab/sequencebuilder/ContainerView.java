@@ -5,13 +5,16 @@ import java.awt.datatransfer.DataFlavor;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.awt.event.MouseMotionListener;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.Box;
 import javax.swing.ImageIcon;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
@@ -20,9 +23,12 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 import javax.swing.TransferHandler;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ProgramElementView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewFactory;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewUpdatePump;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.ProgramElementDestinationTransferHandler;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.standard.InsertionHighlightArea;
 import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
@@ -32,12 +38,30 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
+ * <p>
+ * <code>ContainerView</code> is the view for a {@link ContainerModel}.
+ * </p>
+ * <p>
+ * Once a container with a {@link #setScrollPaneParent(JScrollPane) scroll pane parent} (i.e. the stage) holds more than
+ * {@link #VIRTUALIZATION_THRESHOLD} elements, it's virtualized: views are only realized for the elements within (or
+ * near) the scroll pane's viewport, and every other element is represented by an empty spacer of the same height.
+ * Views scrolled far enough away are swapped back out for spacers, but are kept and reused if their elements scroll
+ * back into view.  Since views are only ever created for elements that have been near the viewport, bulk operations
+ * such as {@link #resetContainedViewsForSequenceExecution()} only visit those, rather than every element.
+ * </p>
+ *
  * @author Chris Bartley (bartley@cmu.edu)
  */
 public final class ContainerView
    {
    private static final Logger LOG = Logger.getLogger(ContainerView.class);
 
+   /** Containers with more elements than this are virtualized (but only if they have a scroll pane parent). */
+   public static final int VIRTUALIZATION_THRESHOLD = 50;
+
+   /** The height assumed for elements which have never been realized, until some have been. */
+   private static final int DEFAULT_ESTIMATED_VIEW_HEIGHT = 100;
+
    private final UUID uuid = UUID.randomUUID();
    private final JFrame jFrame;
    private final ContainerModel containerModel;
@@ -55,6 +79,12 @@ public final class ContainerView
 
    private IndicatorLayeredPane scrollPaneIndicators;
 
+   // the state used for virtualization, which is only ever touched in the Swing thread
+   private final List<Slot> slots = new ArrayList<Slot>();
+   private final Map<ProgramElementModel, Integer> knownViewHeights = new HashMap<ProgramElementModel, Integer>();
+   private long knownViewHeightsSum = 0;
+   private int maxKnownViewWidth = 0;
+
    private final Runnable redrawEverythingRunnable =
          new Runnable()
          {
@@ -205,22 +235,45 @@ public final class ContainerView
                   panel.add(SwingUtils.createRigidSpacer(10), c);
                   }
 
+               // When virtualized, only realize views for the elements which (going by their known or estimated
+               // heights) will be near the viewport.  The viewport listener corrects for any bad estimates once the
+               // panel has been laid out.
+               slots.clear();
+               final List<ProgramElementModel> models = containerModel.getAsList();
+               final boolean isVirtualized = isVirtualized(models.size());
+               final Rectangle realizationBounds = isVirtualized ? getRealizationBounds(1) : null;
+               int estimatedY = hasParentProgramElementView() ? 0 : 10;
+
                int count = 1;
-               for (final ProgramElementModel model : containerModel.getAsList())
+               for (int i = 0; i < models.size(); i++)
                   {
-                  // make sure there's a view for this model (there will be if it's a drag-and-drop, but there won't be if it's coming from loaded XML)
-                  final ProgramElementView view = ensureViewIsCreatedForModelWorkhorse(model);
-
-                  if (view == null)
+                  final ProgramElementModel model = models.get(i);
+                  final int estimatedHeight = getEstimatedViewHeight(model);
+                  final Component component;
+                  if (realizationBounds == null || isPinned(i, models.size()) || intersects(realizationBounds, estimatedY, estimatedHeight))
                      {
-                     LOG.error("ContainerView.redrawEverythingRunnable(): found a null view for model [" + model + "].  This should only happen if the ViewFactory doesn't know how to create a view for the given model.");
+                     // make sure there's a view for this model (there will be if it's a drag-and-drop, but there won't be if it's coming from loaded XML)
+                     final ProgramElementView view = ensureViewIsCreatedForModelWorkhorse(model);
+
+                     if (view == null)
+                        {
+                        LOG.error("ContainerView.redrawEverythingRunnable(): found a null view for model [" + model + "].  This should only happen if the ViewFactory doesn't know how to create a view for the given model.");
+                        continue;
+                        }
+                     component = view.getComponent();
                      }
                   else
                      {
-                     final JComponent component = view.getComponent();
-                     c.gridy = count;
-                     panel.add(component, c);
-                     count++;
+                     component = createPlaceholder(estimatedHeight);
+                     }
+
+                  c.gridy = count;
+                  panel.add(component, c);
+                  count++;
+                  estimatedY += estimatedHeight;
+                  if (isVirtualized)
+                     {
+                     slots.add(new Slot(model, component, isPinned(i, models.size())));
                      }
                   }
 
@@ -235,6 +288,13 @@ public final class ContainerView
 
             containerHighlight.setVisible(false);
 
+            // once the panel has been laid out, correct the realized views for any bad height estimates
+            if (!slots.isEmpty())
+               {
+               panel.revalidate();
+               SwingUtilities.invokeLater(updateRealizedViewsRunnable);
+               }
+
             // repaint
             panel.repaint();
 
@@ -246,6 +306,37 @@ public final class ContainerView
             }
          };
 
+   private final Runnable updateRealizedViewsRunnable =
+         new Runnable()
+         {
+         @Override
+         public void run()
+            {
+            updateRealizedViews();
+            }
+         };
+
+   private final Runnable resetContainedViewsForSequenceExecutionRunnable =
+         new Runnable()
+         {
+         @Override
+         public void run()
+            {
+            resetContainedViewsForSequenceExecution();
+            }
+         };
+
+   private final Runnable forgetAllViewSizesRunnable =
+         new Runnable()
+         {
+         @Override
+         public void run()
+            {
+            knownViewHeights.clear();
+            knownViewHeightsSum = 0;
+            }
+         };
+
    /** Creates a <code>ContainerView</code> with no parent {@link ProgramElementView}. */
    public ContainerView(final JFrame jFrame, final ContainerModel containerModel, final ViewFactory viewFactory)
       {
@@ -302,6 +393,19 @@ public final class ContainerView
    public void setScrollPaneParent(final JScrollPane scrollPane)
       {
       scrollPaneParent = scrollPane;
+      if (scrollPane != null)
+         {
+         // the viewport fires a change event whenever it's scrolled or resized, or its view changes size
+         scrollPane.getViewport().addChangeListener(
+               new ChangeListener()
+               {
+               @Override
+               public void stateChanged(final ChangeEvent e)
+                  {
+                  updateRealizedViewsRunnable.run();
+                  }
+               });
+         }
       }
 
    public void setScrollPaneIndicators(final IndicatorLayeredPane indicators)
@@ -438,6 +542,145 @@ public final class ContainerView
          }
       }
 
+   private boolean isVirtualized(final int elementCount)
+      {
+      return scrollPaneParent != null && elementCount > VIRTUALIZATION_THRESHOLD;
+      }
+
+   /** The head and tail are always realized, since drops onto the container are shown as inserts before or after them. */
+   private static boolean isPinned(final int index, final int elementCount)
+      {
+      return index == 0 || index == elementCount - 1;
+      }
+
+   private static boolean intersects(@NotNull final Rectangle bounds, final int y, final int height)
+      {
+      return y < bounds.y + bounds.height && bounds.y < y + height;
+      }
+
+   /**
+    * Returns the part of the panel within which views should be realized: the viewport's view rect, extended by the
+    * given number of viewport heights above and below.
+    */
+   @NotNull
+   private Rectangle getRealizationBounds(final int marginInViewportHeights)
+      {
+      final Rectangle viewRect = scrollPaneParent.getViewport().getViewRect();
+      final int margin = viewRect.height * marginInViewportHeights;
+      return new Rectangle(viewRect.x, viewRect.y - margin, viewRect.width, viewRect.height + 2 * margin);
+      }
+
+   /**
+    * Returns the height last measured for the given model's view, or, if it has never been measured, the average of
+    * the heights measured so far.
+    */
+   private int getEstimatedViewHeight(@NotNull final ProgramElementModel model)
+      {
+      final Integer knownHeight = knownViewHeights.get(model);
+      if (knownHeight != null)
+         {
+         return knownHeight;
+         }
+      return knownViewHeights.isEmpty() ? DEFAULT_ESTIMATED_VIEW_HEIGHT : (int)(knownViewHeightsSum / knownViewHeights.size());
+      }
+
+   private void recordViewSize(@NotNull final ProgramElementModel model, @NotNull final Component component)
+      {
+      if (component.getHeight() > 0)
+         {
+         final Integer previousHeight = knownViewHeights.put(model, component.getHeight());
+         knownViewHeightsSum += component.getHeight() - (previousHeight == null ? 0 : previousHeight);
+         maxKnownViewWidth = Math.max(maxKnownViewWidth, component.getWidth());
+         }
+      }
+
+   private void forgetViewSize(@NotNull final ProgramElementModel model)
+      {
+      final Integer previousHeight = knownViewHeights.remove(model);
+      if (previousHeight != null)
+         {
+         knownViewHeightsSum -= previousHeight;
+         }
+      }
+
+   @NotNull
+   private Component createPlaceholder(final int height)
+      {
+      return SwingUtils.createRigidSpacer(Math.max(1, maxKnownViewWidth), height);
+      }
+
+   /**
+    * Realizes views for the elements now near the viewport, and swaps the views of elements which are now far from it
+    * out for placeholders.  Views are realized within one viewport height of the viewport, but only swapped out once
+    * they're more than two away, so that views near the edge don't flip back and forth as heights are corrected.
+    *
+    * MUST be called from the Swing thread!
+    */
+   private void updateRealizedViews()
+      {
+      if (slots.isEmpty() || !isVirtualized(slots.size()))
+         {
+         return;
+         }
+
+      final Rectangle realizationBounds = getRealizationBounds(1);
+      final Rectangle retentionBounds = getRealizationBounds(2);
+      final GridBagLayout layout = (GridBagLayout)panel.getLayout();
+
+      int realizedCount = 0;
+      int unrealizedCount = 0;
+      for (final Slot slot : slots)
+         {
+         final Rectangle bounds = slot.component.getBounds();
+         if (bounds.height <= 0 || slot.isPinned)
+            {
+            // not laid out yet, or always realized
+            continue;
+            }
+
+         final boolean isRealized = !(slot.component instanceof Box.Filler);
+         if (isRealized)
+            {
+            recordViewSize(slot.model, slot.component);
+            if (!intersects(retentionBounds, bounds.y, bounds.height))
+               {
+               replaceComponent(layout, slot, createPlaceholder(bounds.height));
+               unrealizedCount++;
+               }
+            }
+         else if (intersects(realizationBounds, bounds.y, bounds.height))
+            {
+            final ProgramElementView view = ensureViewIsCreatedForModelWorkhorse(slot.model);
+            if (view != null)
+               {
+               // it may have been showing an insert location when it was swapped out
+               view.hideInsertLocations();
+               replaceComponent(layout, slot, view.getComponent());
+               realizedCount++;
+               }
+            }
+         }
+
+      if (realizedCount > 0 || unrealizedCount > 0)
+         {
+         if (LOG.isTraceEnabled())
+            {
+            LOG.trace("ContainerView[" + uuid + "].updateRealizedViews(): realized [" + realizedCount + "] and unrealized [" + unrealizedCount + "] views");
+            }
+         panel.revalidate();
+         panel.repaint();
+         }
+      }
+
+   private void replaceComponent(@NotNull final GridBagLayout layout, @NotNull final Slot slot, @NotNull final Component newComponent)
+      {
+      final GridBagConstraints constraints = layout.getConstraints(slot.component);
+      final int zOrder = panel.getComponentZOrder(slot.component);
+      panel.remove(slot.component);
+      panel.add(newComponent, constraints, zOrder);
+      slot.component = newComponent;
+      }
+
    /**
     * Calls {@link ProgramElementView#hideInsertLocations()} on all {@link ProgramElementView}s contained by this container.
     *
@@ -470,6 +713,7 @@ public final class ContainerView
 
    /**
     * Calls {@link ProgramElementView#resetViewForSequenceExecution()} on all {@link ProgramElementView}s contained by this container.
+    * When virtualized, elements which have never been realized have no view, and so nothing to reset.
     *
     * MUST be called from the Swing thread!
     */
@@ -510,8 +754,12 @@ public final class ContainerView
             {
             LOG.trace("ContainerView[" + uuid + "]$ContainerModelEventListener.handleElementAddedEvent(" + model + "|" + model.getUuid() + ")");
             }
-         // make sure there's a view for this model (there will be if it's a drag-and-drop, but there won't be if it's coming from loaded XML)
-         ensureViewIsCreatedForModel(model);
+         // Make sure there's a view for this model (there will be if it's a drag-and-drop, but there won't be if it's
+         // coming from loaded XML).  When virtualized, the redraw decides which elements need views.
+         if (!isVirtualized(containerModel.size()))
+            {
+            ensureViewIsCreatedForModel(model);
+            }
          refresh();
          }
 
@@ -535,6 +783,15 @@ public final class ContainerView
             {
             lock.unlock();
             }
+         SwingUtils.runInGUIThread(
+               new Runnable()
+               {
+               @Override
+               public void run()
+                  {
+                  forgetViewSize(model);
+                  }
+               });
          refresh();
          }
 
@@ -561,13 +818,30 @@ public final class ContainerView
             {
             lock.unlock();
             }
+         SwingUtils.runInGUIThread(forgetAllViewSizesRunnable);
          refresh();
          }
 
       @Override
       public void handleResetAllProgressBarsForExecution()
          {
-         resetContainedViewsForSequenceExecution();
+         // this is called from the model's notification thread, but the reset must happen in the Swing thread
+         ViewUpdatePump.getInstance().post(ContainerView.this, resetContainedViewsForSequenceExecutionRunnable);
+         }
+      }
+
+   /** An element's place in a virtualized container, holding either the element's view, or a placeholder for it. */
+   private static final class Slot
+      {
+      private final ProgramElementModel model;
+      private final boolean isPinned;
+      private Component component;
+
+      private Slot(@NotNull final ProgramElementModel model, @NotNull final Component component, final boolean isPinned)
+         {
+         this.model = model;
+         this.component = component;
+         this.isPinned = isPinned;
          }
       }
 
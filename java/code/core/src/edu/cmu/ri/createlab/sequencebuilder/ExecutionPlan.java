@@ -0,0 +1,518 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.visualprogrammer.Sensor;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>ExecutionPlan</code> is an immutable, flat array of instructions produced by the {@link SequenceCompiler}.
+ * Containers (loops, conditionals and saved sequences) are flattened into jumps, and all services and sensors are
+ * resolved at compile time, so the interpreter loop in {@link #execute()} performs no lookups, list copies, or
+ * allocations beyond a little per-run state (see {@link RunState}).
+ * </p>
+ * <p>
+ * When conditionals may use sensor snapshots (see {@link SequenceExecutor#setSensorSnapshotMaxStalenessInMillis(int)}),
+ * each conditional keeps its sensor sampled only while it's executing, so that the device isn't polled for the rest of
+ * the run.
+ * </p>
+ * <p>
+ * The one exception is saved sequences, each of which is compiled into its own plan on demand, the first time it's
+ * reached, and then cached until its file changes.  To hide the cost of loading, saved sequences a few instructions
+ * ahead of the current one are prefetched in the background.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class ExecutionPlan
+   {
+   private static final Logger LOG = Logger.getLogger(ExecutionPlan.class);
+
+   /** How many instructions ahead of the current one to look for saved sequences to prefetch. */
+   private static final int SAVED_SEQUENCE_PREFETCH_DISTANCE = 4;
+
+   private static final SensorSamplingBus.SampleListener NO_OP_SAMPLE_LISTENER =
+         new SensorSamplingBus.SampleListener()
+         {
+         @Override
+         public void handleSample(@NotNull final Service service, @NotNull final SensorSamplingBus.SensorSample sample)
+            {
+            // nothing to do, we only subscribe to keep the sensor snapshots fresh
+            }
+         };
+
+   private final Instruction[] instructions;
+   private final int numSlots;
+
+   /** The distinct texts spoken by this plan's expressions. */
+   private final Set<String> speechTexts = new LinkedHashSet<String>();
+
+   /** The distinct audio clip files played by this plan's expressions. */
+   private final Set<File> clipFiles = new LinkedHashSet<File>();
+
+   ExecutionPlan(@NotNull final List<Instruction> instructions, final int numSlots)
+      {
+      this.instructions = instructions.toArray(new Instruction[instructions.size()]);
+      this.numSlots = numSlots;
+      for (final Instruction instruction : this.instructions)
+         {
+         if (instruction instanceof ExpressionInstruction)
+            {
+            final CompiledExpression compiledExpression = ((ExpressionInstruction)instruction).compiledExpression;
+            speechTexts.addAll(compiledExpression.getSpeechTexts());
+            clipFiles.addAll(compiledExpression.getClipFiles());
+            }
+         }
+      }
+
+   /**
+    * Returns the distinct texts spoken by this plan's expressions (but not those of the saved sequences it refers to),
+    * so that they can be synthesized before the plan is executed.
+    */
+   @NotNull
+   public Set<String> getSpeechTexts()
+      {
+      return Collections.unmodifiableSet(speechTexts);
+      }
+
+   /**
+    * Returns the distinct audio clip files played by this plan's expressions (but not those of the saved sequences it
+    * refers to), so that they can be loaded before the plan is executed.
+    */
+   @NotNull
+   public Set<File> getClipFiles()
+      {
+      return Collections.unmodifiableSet(clipFiles);
+      }
+
+   /** Returns the number of instructions in this plan. */
+   public int size()
+      {
+      return instructions.length;
+      }
+
+   /** Returns <code>true</code> if this plan contains no instructions; <code>false</code> otherwise. */
+   public boolean isEmpty()
+      {
+      return instructions.length == 0;
+      }
+
+   /**
+    * Executes the plan on the calling thread, for as long as the {@link SequenceExecutor} is running.  Returns
+    * <code>true</code> if every instruction was executed, <code>false</code> if execution was stopped early.
+    */
+   public boolean execute()
+      {
+      return execute(new TimingEngine.Timeline());
+      }
+
+   /**
+    * Executes the plan as part of a run whose steps are timed on the given {@link TimingEngine.Timeline}, as a saved
+    * sequence's plan is executed as part of the run of the plan which refers to it.
+    */
+   boolean execute(@NotNull final TimingEngine.Timeline timeline)
+      {
+      final SequenceExecutor sequenceExecutor = SequenceExecutor.getInstance();
+      final RunState state = new RunState(numSlots, timeline);
+      try
+         {
+         int pc = 0;
+         while (pc < instructions.length && sequenceExecutor.isRunning())
+            {
+            prefetchSavedSequencesFollowing(pc);
+            pc = instructions[pc].execute(pc, state);
+            }
+         return pc >= instructions.length;
+         }
+      finally
+         {
+         // a stopped run may have left conditionals executing, so make sure their sensors aren't sampled forever
+         state.stopAllSampling();
+         }
+      }
+
+   /** Starts loading any saved sequences among the next few instructions, so that they're ready when reached. */
+   private void prefetchSavedSequencesFollowing(final int pc)
+      {
+      final int last = Math.min(pc + SAVED_SEQUENCE_PREFETCH_DISTANCE, instructions.length - 1);
+      for (int i = pc + 1; i <= last; i++)
+         {
+         if (instructions[i] instanceof SavedSequenceInstruction)
+            {
+            ((SavedSequenceInstruction)instructions[i]).prefetch();
+            }
+         }
+      }
+
+   /**
+    * The per-run state of a plan: a slot per loop or conditional (holding loop counters, etc.), the sensor
+    * subscriptions of the conditionals which are currently executing, indexed by the conditional's slot, and the
+    * run's {@link TimingEngine.Timeline}.
+    */
+   static final class RunState
+      {
+      private final int[] slots;
+      private final SensorSamplingBus.Subscription[] subscriptions;
+      private final TimingEngine.Timeline timeline;
+
+      private RunState(final int numSlots, @NotNull final TimingEngine.Timeline timeline)
+         {
+         slots = new int[numSlots];
+         subscriptions = new SensorSamplingBus.Subscription[numSlots];
+         this.timeline = timeline;
+         }
+
+      /** Keeps the given service sampled at least every <code>periodInMillis</code>, until the slot stops sampling. */
+      private void startSampling(final int slot, @NotNull final Service service, final int periodInMillis)
+         {
+         stopSampling(slot);
+         subscriptions[slot] = SensorSamplingBus.getInstance().subscribe(service, periodInMillis, NO_OP_SAMPLE_LISTENER);
+         }
+
+      private void stopSampling(final int slot)
+         {
+         if (subscriptions[slot] != null)
+            {
+            subscriptions[slot].cancel();
+            subscriptions[slot] = null;
+            }
+         }
+
+      private void stopAllSampling()
+         {
+         for (int slot = 0; slot < subscriptions.length; slot++)
+            {
+            stopSampling(slot);
+            }
+         }
+      }
+
+   /**
+    * A single step of an {@link ExecutionPlan}.  Instructions are immutable; any per-run state (loop counters, etc.)
+    * lives in the {@link RunState} passed to {@link #execute(int, RunState)}.
+    */
+   abstract static class Instruction
+      {
+      /** Executes this instruction and returns the index of the next instruction to execute. */
+      abstract int execute(final int pc, @NotNull final RunState state);
+      }
+
+   static final class ExpressionInstruction extends Instruction
+      {
+      private final ExpressionModel model;
+      private final CompiledExpression compiledExpression;
+
+      ExpressionInstruction(@NotNull final ExpressionModel model, @NotNull final CompiledExpression compiledExpression)
+         {
+         this.model = model;
+         this.compiledExpression = compiledExpression;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         model.execute(compiledExpression, state.timeline);
+         return pc + 1;
+         }
+      }
+
+   static final class LoopBeginInstruction extends Instruction
+      {
+      private final CounterLoopModel model;
+      private final int slot;
+
+      LoopBeginInstruction(@NotNull final CounterLoopModel model, final int slot)
+         {
+         this.model = model;
+         this.slot = slot;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         model.publishExecutionStart();
+         state.slots[slot] = 0;
+         return pc + 1;
+         }
+      }
+
+   static final class LoopTestInstruction extends Instruction
+      {
+      private final CounterLoopModel model;
+      private final int slot;
+      private final int numberOfIterations;
+      private final int exitPc;
+
+      LoopTestInstruction(@NotNull final CounterLoopModel model, final int slot, final int numberOfIterations, final int exitPc)
+         {
+         this.model = model;
+         this.slot = slot;
+         this.numberOfIterations = numberOfIterations;
+         this.exitPc = exitPc;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         if (state.slots[slot] >= numberOfIterations)
+            {
+            return exitPc;
+            }
+
+         state.slots[slot]++;
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("ExecutionPlan$LoopTestInstruction.execute(): iteration " + state.slots[slot]);
+            }
+         model.getContainerModel().resetProgressBarsForExecution();
+         return pc + 1;
+         }
+      }
+
+   static final class LoopNextInstruction extends Instruction
+      {
+      private final CounterLoopModel model;
+      private final int slot;
+      private final int testPc;
+
+      LoopNextInstruction(@NotNull final CounterLoopModel model, final int slot, final int testPc)
+         {
+         this.model = model;
+         this.slot = slot;
+         this.testPc = testPc;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         // notify listeners that we just completed the ith iteration
+         model.publishElapsedIterations(state.slots[slot]);
+         return testPc;
+         }
+      }
+
+   static final class LoopEndInstruction extends Instruction
+      {
+      private final CounterLoopModel model;
+
+      LoopEndInstruction(@NotNull final CounterLoopModel model)
+         {
+         this.model = model;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         model.publishExecutionEnd();
+         return pc + 1;
+         }
+      }
+
+   static final class ConditionalBeginInstruction extends Instruction
+      {
+      private final LoopableConditionalModel model;
+      private final Service sampledService;
+      private final int slot;
+
+      ConditionalBeginInstruction(@NotNull final LoopableConditionalModel model, @Nullable final Service sampledService, final int slot)
+         {
+         this.model = model;
+         this.sampledService = sampledService;
+         this.slot = slot;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         model.publishExecutionStart();
+         state.slots[slot] = 0;
+
+         // if the condition may be answered from sensor snapshots, keep them fresh until the conditional ends
+         final int maxStalenessInMillis = SequenceExecutor.getInstance().getSensorSnapshotMaxStalenessInMillis();
+         if (sampledService != null && maxStalenessInMillis >= 0)
+            {
+            state.startSampling(slot, sampledService, maxStalenessInMillis);
+            }
+         return pc + 1;
+         }
+      }
+
+   static final class ConditionalTestInstruction extends Instruction
+      {
+      private final LoopableConditionalModel model;
+      private final CompiledImpression compiledImpression;
+      private final Sensor sensor;
+      private final int thresholdPercentage;
+      private final boolean willReevaluateConditionAfterIfBranchCompletes;
+      private final int slot;
+      private final int elsePc;
+      private final int endPc;
+
+      ConditionalTestInstruction(@NotNull final LoopableConditionalModel model,
+                                 @NotNull final CompiledImpression compiledImpression,
+                                 final int slot,
+                                 final int elsePc,
+                                 final int endPc)
+         {
+         this.model = model;
+         this.compiledImpression = compiledImpression;
+         this.sensor = model.getSelectedSensor().getSensor();
+         this.thresholdPercentage = model.getSelectedSensor().getThresholdPercentage();
+         this.willReevaluateConditionAfterIfBranchCompletes = model.willReevaluateConditionAfterIfBranchCompletes();
+         this.slot = slot;
+         this.elsePc = elsePc;
+         this.endPc = endPc;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         // check sensor, using a recent enough snapshot if allowed
+         final int maxStalenessInMillis = SequenceExecutor.getInstance().getSensorSnapshotMaxStalenessInMillis();
+         final long readStartTimeInNanos = System.nanoTime();
+         final Object rawValue = (maxStalenessInMillis >= 0) ?
+                                 ImpressionExecutor.getInstance().execute(compiledImpression, maxStalenessInMillis) :
+                                 ImpressionExecutor.getInstance().execute(compiledImpression);
+         ExecutionTracer.getInstance().recordSensorRead(sensor.getName(), readStartTimeInNanos);
+
+         model.getIfBranchContainerModel().resetProgressBarsForExecution();
+         model.getElseBranchContainerModel().resetProgressBarsForExecution();
+
+         // convert raw value to percentage
+         final Integer percentage = (rawValue == null) ? null : sensor.convertRawValueToPercentage(rawValue);
+         if (percentage == null)
+            {
+            // No reading, so try again if we're supposed to be reevaluating, otherwise we're done.  The slot is
+            // non-zero if we got here by reevaluating the condition after a branch completed.
+            return (state.slots[slot] != 0 || willReevaluateConditionAfterIfBranchCompletes) ? pc : endPc;
+            }
+
+         if (percentage < thresholdPercentage)
+            {
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("ExecutionPlan$ConditionalTestInstruction.execute(): chose if branch (percentage=" + percentage + ")");
+               }
+            model.publishIfBranchHighlight(sensor, percentage);
+            return pc + 1;
+            }
+
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("ExecutionPlan$ConditionalTestInstruction.execute(): chose else branch (percentage=" + percentage + ")");
+            }
+         model.publishElseBranchHighlight(sensor, percentage);
+         return elsePc;
+         }
+      }
+
+   static final class ConditionalBranchEndInstruction extends Instruction
+      {
+      private final boolean willReevaluateCondition;
+      private final int slot;
+      private final int testPc;
+      private final int endPc;
+
+      ConditionalBranchEndInstruction(final boolean willReevaluateCondition, final int slot, final int testPc, final int endPc)
+         {
+         this.willReevaluateCondition = willReevaluateCondition;
+         this.slot = slot;
+         this.testPc = testPc;
+         this.endPc = endPc;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         if (willReevaluateCondition)
+            {
+            state.slots[slot] = 1;
+            return testPc;
+            }
+         return endPc;
+         }
+      }
+
+   static final class ConditionalEndInstruction extends Instruction
+      {
+      private final LoopableConditionalModel model;
+      private final int slot;
+
+      ConditionalEndInstruction(@NotNull final LoopableConditionalModel model, final int slot)
+         {
+         this.model = model;
+         this.slot = slot;
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         state.stopSampling(slot);
+         model.publishExecutionEnd();
+         return pc + 1;
+         }
+      }
+
+   /**
+    * Executes a saved sequence, whose contents are compiled into their own plan and kept in the
+    * {@link CompiledSavedSequenceCache}, so that they're only loaded the first time the saved sequence is either
+    * executed or {@link #prefetch() prefetched}, and not again until the saved sequence's file changes.
+    */
+   static final class SavedSequenceInstruction extends Instruction
+      {
+      private final SavedSequenceModel model;
+      private final CompiledSavedSequenceCache.Key key;
+
+      SavedSequenceInstruction(@NotNull final SavedSequenceModel model, @NotNull final Set<File> enclosingSavedSequenceFiles)
+         {
+         this.model = model;
+         this.key = new CompiledSavedSequenceCache.Key(model.getVisualProgrammerDevice(), model.getSavedSequenceFile(), enclosingSavedSequenceFiles);
+         }
+
+      /** Starts loading and compiling the saved sequence's contents in the background, if not already cached. */
+      void prefetch()
+         {
+         CompiledSavedSequenceCache.getInstance().prefetch(key);
+         }
+
+      @Override
+      int execute(final int pc, @NotNull final RunState state)
+         {
+         model.publishExecutionStart();
+         final ExecutionTracer.Span span = ExecutionTracer.getInstance().startElement(ExecutionTracer.EventType.SAVED_SEQUENCE, model.getName());
+
+         try
+            {
+            final ExecutionPlan contents = CompiledSavedSequenceCache.getInstance().get(key);
+            if (contents != null)
+               {
+               model.publishExecutionVisual();
+               if (!contents.execute(state.timeline))
+                  {
+                  // execution was stopped, so stay on this instruction so that this plan reports being stopped too
+                  return pc;
+                  }
+               }
+            return pc + 1;
+            }
+         finally
+            {
+            // end the span and the highlight even if execution was stopped or failed, so neither is left dangling
+            ExecutionTracer.getInstance().endElement(span);
+            model.publishExecutionEnd();
+            }
+         }
+      }
+   }
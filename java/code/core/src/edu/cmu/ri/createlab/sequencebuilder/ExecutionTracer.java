@@ -0,0 +1,443 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import edu.cmu.ri.createlab.util.LatencyHistogram;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>ExecutionTracer</code> is a singleton which records where the time goes while the {@link SequenceExecutor}
+ * runs a sequence.  Tracing is off by default, in which case every hook costs a single volatile read.  When
+ * {@link #setEnabled(boolean) enabled}, the tracer records, for every run:
+ * </p>
+ * <ul>
+ *    <li>each expression and saved sequence: its planned and actual start time, its duration, and, for expressions,
+ *    how far it overran its delay</li>
+ *    <li>each device call made by an expression, and how long it took</li>
+ *    <li>each sensor read made by a conditional, and how long it took</li>
+ * </ul>
+ * <p>
+ * The planned timeline starts when the run starts and advances only by the expressions' delays, which is how a user
+ * reads a sequence.  The difference between an element's actual and planned start time is therefore the drift which
+ * has accumulated so far, from device calls, sensor reads, scheduling delays and so on.  Note that conditionals which
+ * wait on a sensor legitimately add to the drift.
+ * </p>
+ * <p>
+ * Every measurement is added to a {@link LatencyHistogram} for its {@link Metric}, both overall and per element,
+ * operation or sensor name.  The individual events are also kept, up to a {@link #setMaxEventCount(int) limit}, and
+ * both can be exported as CSV files.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class ExecutionTracer
+   {
+   private static final Logger LOG = Logger.getLogger(ExecutionTracer.class);
+
+   public static final int DEFAULT_MAX_EVENT_COUNT = 100000;
+
+   private static final ExecutionTracer INSTANCE = new ExecutionTracer();
+
+   private static final double NANOS_PER_MICRO = 1000.0;
+   private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+   private static final long NOT_APPLICABLE = -1;
+
+   public static ExecutionTracer getInstance()
+      {
+      return INSTANCE;
+      }
+
+   /** The kinds of events recorded by the tracer. */
+   public enum EventType
+      {
+      EXPRESSION, SAVED_SEQUENCE, DEVICE_CALL, SENSOR_READ
+      }
+
+   /** The quantities for which the tracer keeps {@link LatencyHistogram histograms}, all in nanoseconds. */
+   public enum Metric
+      {
+      /** How late an element started, relative to the planned timeline. */
+      START_DRIFT,
+
+      /** How much longer an expression took than its delay. */
+      OVERRUN,
+
+      /** How long a device call took. */
+      DEVICE_CALL_LATENCY,
+
+      /** How long a sensor read took. */
+      SENSOR_READ_LATENCY
+      }
+
+   /** An element which has started but not yet ended.  Returned by {@link #startElement} when tracing is enabled. */
+   public static final class Span
+      {
+      private final EventType type;
+      private final String name;
+      private final long plannedStartInNanos;
+      private final long startTimeInNanos;
+
+      private Span(@NotNull final EventType type, @NotNull final String name, final long plannedStartInNanos, final long startTimeInNanos)
+         {
+         this.type = type;
+         this.name = name;
+         this.plannedStartInNanos = plannedStartInNanos;
+         this.startTimeInNanos = startTimeInNanos;
+         }
+      }
+
+   private volatile boolean isEnabled = false;
+   private volatile int maxEventCount = DEFAULT_MAX_EVENT_COUNT;
+
+   /** The run number and start time are written on the execution thread, but read by device calls on other threads. */
+   private volatile int runNumber = 0;
+   private volatile long runStartTimeInNanos = System.nanoTime();
+
+   /** Only ever touched by the execution thread. */
+   private long plannedOffsetInNanos = 0;
+
+   private final Map<Metric, LatencyHistogram> histograms = new EnumMap<Metric, LatencyHistogram>(Metric.class);
+   private final Map<Metric, ConcurrentMap<String, LatencyHistogram>> histogramsByName = new EnumMap<Metric, ConcurrentMap<String, LatencyHistogram>>(Metric.class);
+
+   private final Lock eventsLock = new ReentrantLock();
+   private final List<Event> events = new ArrayList<Event>();
+   private final AtomicLong droppedEventCount = new AtomicLong(0);
+
+   private ExecutionTracer()
+      {
+      for (final Metric metric : Metric.values())
+         {
+         histograms.put(metric, new LatencyHistogram());
+         histogramsByName.put(metric, new ConcurrentHashMap<String, LatencyHistogram>());
+         }
+      }
+
+   public boolean isEnabled()
+      {
+      return isEnabled;
+      }
+
+   /** Turns tracing on or off.  Data already recorded is kept until {@link #clear() cleared}. */
+   public void setEnabled(final boolean isEnabled)
+      {
+      this.isEnabled = isEnabled;
+      LOG.debug("ExecutionTracer.setEnabled(): isEnabled = [" + isEnabled + "]");
+      }
+
+   /** Sets the maximum number of events kept for export.  Events beyond the limit are counted, but dropped. */
+   public void setMaxEventCount(final int maxEventCount)
+      {
+      this.maxEventCount = Math.max(0, maxEventCount);
+      }
+
+   /** Returns the number of events which were dropped because the event limit had been reached. */
+   public long getDroppedEventCount()
+      {
+      return droppedEventCount.get();
+      }
+
+   /** Forgets all recorded events and histograms. */
+   public void clear()
+      {
+      eventsLock.lock();  // block until condition holds
+      try
+         {
+         events.clear();
+         droppedEventCount.set(0);
+         }
+      finally
+         {
+         eventsLock.unlock();
+         }
+      for (final Metric metric : Metric.values())
+         {
+         histograms.get(metric).reset();
+         histogramsByName.get(metric).clear();
+         }
+      }
+
+   /** Returns the overall histogram for the given {@link Metric}. */
+   @NotNull
+   public LatencyHistogram getHistogram(@NotNull final Metric metric)
+      {
+      return histograms.get(metric);
+      }
+
+   /** Returns an unmodifiable snapshot of the given {@link Metric}'s histograms, keyed and sorted by name. */
+   @NotNull
+   public Map<String, LatencyHistogram> getHistogramsByName(@NotNull final Metric metric)
+      {
+      return Collections.unmodifiableMap(new TreeMap<String, LatencyHistogram>(histogramsByName.get(metric)));
+      }
+
+   /** Called by the {@link SequenceExecutor} on the execution thread when a run starts. */
+   void handleRunStart()
+      {
+      if (isEnabled)
+         {
+         runNumber++;
+         plannedOffsetInNanos = 0;
+         runStartTimeInNanos = System.nanoTime();
+         }
+      }
+
+   /**
+    * Called on the execution thread when an element starts.  Returns a {@link Span} to pass to {@link #endElement} or
+    * {@link #endTimedElement} when the element ends, or <code>null</code> if tracing is disabled.
+    */
+   @Nullable
+   public Span startElement(@NotNull final EventType type, @NotNull final String name)
+      {
+      if (isEnabled)
+         {
+         return new Span(type, name, plannedOffsetInNanos, System.nanoTime());
+         }
+      return null;
+      }
+
+   /**
+    * Called on the execution thread when an element which contains other elements (e.g. a saved sequence) ends.  The
+    * element's planned duration is the sum of the delays of the expressions executed within it.
+    */
+   public void endElement(@Nullable final Span span)
+      {
+      if (span != null)
+         {
+         recordElement(span, System.nanoTime(), plannedOffsetInNanos - span.plannedStartInNanos);
+         }
+      }
+
+   /** Called on the execution thread when an element with a delay (i.e. an expression) ends. */
+   public void endTimedElement(@Nullable final Span span, final int delayInMillis)
+      {
+      if (span != null)
+         {
+         final long endTimeInNanos = System.nanoTime();
+         final long plannedDurationInNanos = delayInMillis * NANOS_PER_MILLI;
+         plannedOffsetInNanos = span.plannedStartInNanos + plannedDurationInNanos;
+         recordElement(span, endTimeInNanos, plannedDurationInNanos);
+
+         final long overrunInNanos = (endTimeInNanos - span.startTimeInNanos) - plannedDurationInNanos;
+         record(Metric.OVERRUN, span.name, overrunInNanos);
+         }
+      }
+
+   /**
+    * Records a call to the device which started at the given time (as returned by {@link System#nanoTime()}) and has
+    * just ended.  May be called on any thread.
+    */
+   void recordDeviceCall(@NotNull final String name, final long startTimeInNanos)
+      {
+      recordCall(EventType.DEVICE_CALL, Metric.DEVICE_CALL_LATENCY, name, startTimeInNanos);
+      }
+
+   /**
+    * Records a read of a sensor which started at the given time (as returned by {@link System#nanoTime()}) and has
+    * just ended.  May be called on any thread.
+    */
+   void recordSensorRead(@NotNull final String name, final long startTimeInNanos)
+      {
+      recordCall(EventType.SENSOR_READ, Metric.SENSOR_READ_LATENCY, name, startTimeInNanos);
+      }
+
+   private void recordCall(@NotNull final EventType type, @NotNull final Metric metric, @NotNull final String name, final long startTimeInNanos)
+      {
+      if (isEnabled)
+         {
+         final long durationInNanos = System.nanoTime() - startTimeInNanos;
+         record(metric, name, durationInNanos);
+         addEvent(new Event(runNumber, type, name, NOT_APPLICABLE, startTimeInNanos - runStartTimeInNanos, durationInNanos, NOT_APPLICABLE));
+         }
+      }
+
+   private void recordElement(@NotNull final Span span, final long endTimeInNanos, final long plannedDurationInNanos)
+      {
+      final long actualStartInNanos = span.startTimeInNanos - runStartTimeInNanos;
+      record(Metric.START_DRIFT, span.name, actualStartInNanos - span.plannedStartInNanos);
+      addEvent(new Event(runNumber,
+                         span.type,
+                         span.name,
+                         span.plannedStartInNanos,
+                         actualStartInNanos,
+                         endTimeInNanos - span.startTimeInNanos,
+                         plannedDurationInNanos));
+      }
+
+   private void record(@NotNull final Metric metric, @NotNull final String name, final long valueInNanos)
+      {
+      histograms.get(metric).record(valueInNanos);
+
+      final ConcurrentMap<String, LatencyHistogram> histogramsForMetric = histogramsByName.get(metric);
+      LatencyHistogram histogram = histogramsForMetric.get(name);
+      if (histogram == null)
+         {
+         final LatencyHistogram newHistogram = new LatencyHistogram();
+         histogram = histogramsForMetric.putIfAbsent(name, newHistogram);
+         if (histogram == null)
+            {
+            histogram = newHistogram;
+            }
+         }
+      histogram.record(valueInNanos);
+      }
+
+   private void addEvent(@NotNull final Event event)
+      {
+      eventsLock.lock();  // block until condition holds
+      try
+         {
+         if (events.size() < maxEventCount)
+            {
+            events.add(event);
+            }
+         else
+            {
+            droppedEventCount.incrementAndGet();
+            }
+         }
+      finally
+         {
+         eventsLock.unlock();
+         }
+      }
+
+   /**
+    * Writes the recorded events to the given file as CSV, one row per event, with all times in microseconds relative
+    * to the start of the event's run.  Columns which don't apply to an event are left empty.
+    */
+   public void exportTrace(@NotNull final File file) throws IOException
+      {
+      final List<Event> eventsSnapshot;
+      eventsLock.lock();  // block until condition holds
+      try
+         {
+         eventsSnapshot = new ArrayList<Event>(events);
+         }
+      finally
+         {
+         eventsLock.unlock();
+         }
+
+      final Writer writer = new BufferedWriter(new FileWriter(file));
+      try
+         {
+         writer.write("run,type,name,planned_start_us,actual_start_us,start_drift_us,duration_us,planned_duration_us,overrun_us\n");
+         for (final Event event : eventsSnapshot)
+            {
+            final boolean isPlanned = event.plannedStartInNanos != NOT_APPLICABLE;
+            writer.write(event.runNumber + "," +
+                         event.type + "," +
+                         quote(event.name) + "," +
+                         (isPlanned ? formatMicros(event.plannedStartInNanos) : "") + "," +
+                         formatMicros(event.actualStartInNanos) + "," +
+                         (isPlanned ? formatMicros(event.actualStartInNanos - event.plannedStartInNanos) : "") + "," +
+                         formatMicros(event.durationInNanos) + "," +
+                         (isPlanned ? formatMicros(event.plannedDurationInNanos) : "") + "," +
+                         (isPlanned ? formatMicros(event.durationInNanos - event.plannedDurationInNanos) : "") + "\n");
+            }
+         }
+      finally
+         {
+         writer.close();
+         }
+      }
+
+   /**
+    * Writes a summary of every histogram to the given file as CSV, one row for each metric overall (with an empty
+    * name) followed by one row per name, with all values in microseconds.
+    */
+   public void exportHistograms(@NotNull final File file) throws IOException
+      {
+      final Writer writer = new BufferedWriter(new FileWriter(file));
+      try
+         {
+         writer.write("metric,name,count,min_us,mean_us,p50_us,p90_us,p99_us,max_us\n");
+         for (final Metric metric : Metric.values())
+            {
+            writeHistogram(writer, metric, "", histograms.get(metric));
+            for (final Map.Entry<String, LatencyHistogram> entry : getHistogramsByName(metric).entrySet())
+               {
+               writeHistogram(writer, metric, entry.getKey(), entry.getValue());
+               }
+            }
+         }
+      finally
+         {
+         writer.close();
+         }
+      }
+
+   private static void writeHistogram(@NotNull final Writer writer,
+                                      @NotNull final Metric metric,
+                                      @NotNull final String name,
+                                      @NotNull final LatencyHistogram histogram) throws IOException
+      {
+      writer.write(metric + "," +
+                   quote(name) + "," +
+                   histogram.getCount() + "," +
+                   formatMicros(histogram.getMin()) + "," +
+                   String.format("%.1f", histogram.getMean() / NANOS_PER_MICRO) + "," +
+                   formatMicros(histogram.getValueAtPercentile(50)) + "," +
+                   formatMicros(histogram.getValueAtPercentile(90)) + "," +
+                   formatMicros(histogram.getValueAtPercentile(99)) + "," +
+                   formatMicros(histogram.getMax()) + "\n");
+      }
+
+   @NotNull
+   private static String formatMicros(final long nanos)
+      {
+      return String.format("%.1f", nanos / NANOS_PER_MICRO);
+      }
+
+   @NotNull
+   private static String quote(@NotNull final String s)
+      {
+      return "\"" + s.replace("\"", "\"\"") + "\"";
+      }
+
+   private static final class Event
+      {
+      private final int runNumber;
+      private final EventType type;
+      private final String name;
+      private final long plannedStartInNanos;
+      private final long actualStartInNanos;
+      private final long durationInNanos;
+      private final long plannedDurationInNanos;
+
+      private Event(final int runNumber,
+                    @NotNull final EventType type,
+                    @NotNull final String name,
+                    final long plannedStartInNanos,
+                    final long actualStartInNanos,
+                    final long durationInNanos,
+                    final long plannedDurationInNanos)
+         {
+         this.runNumber = runNumber;
+         this.type = type;
+         this.name = name;
+         this.plannedStartInNanos = plannedStartInNanos;
+         this.actualStartInNanos = actualStartInNanos;
+         this.durationInNanos = durationInNanos;
+         this.plannedDurationInNanos = plannedDurationInNanos;
+         }
+      }
+   }
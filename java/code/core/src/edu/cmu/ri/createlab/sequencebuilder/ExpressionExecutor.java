@@ -1,16 +1,20 @@
 package edu.cmu.ri.createlab.sequencebuilder;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
-import edu.cmu.ri.createlab.terk.expression.ExpressionOperationExecutor;
 import edu.cmu.ri.createlab.terk.expression.XmlExpression;
-import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.audio.AudioService;
 import edu.cmu.ri.createlab.terk.xml.XmlOperation;
-import edu.cmu.ri.createlab.terk.xml.XmlService;
 import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -19,6 +23,19 @@ import org.jetbrains.annotations.NotNull;
  * <p>
  * <code>ExpressionExecutor</code> executes an {@link ExpressionModel}.
  * </p>
+ * <p>
+ * Asynchronous execution gives each service its own dispatch thread.  The operations for a service reach it in the
+ * order they were submitted, back-to-back, rather than racing each other for the device's command queue, but a slow
+ * service never holds up the motor, servo or LED writes queued behind it.  Audio plays synchronously, so it instead
+ * gets a small pool of threads, which lets clips, speech and tones overlap as they always have.
+ * </p>
+ * <p>
+ * Each service holds at most {@link #MAX_PENDING_BATCHES_PER_SERVICE} batches of operations waiting to execute.  When
+ * expressions are submitted faster than a service can take them (e.g. in a tight loop with no delays), the oldest
+ * waiting batch is dropped, since a later write to the same service would soon overwrite it anyway.
+ * {@link #cancelPending()} drops every waiting batch, stops in-flight batches before their next operation, and
+ * interrupts any audio which is playing.
+ * </p>
  *
  * @author Alex Styler (styler@cmu.edu)
  * @author Chris Bartley (bartley@cmu.edu)
@@ -28,7 +45,23 @@ public final class ExpressionExecutor
    private static final Logger LOG = Logger.getLogger(ExpressionExecutor.class);
 
    private static final ExpressionExecutor INSTANCE = new ExpressionExecutor();
-   private final ExecutorService executorService = Executors.newCachedThreadPool(new DaemonThreadFactory(this.getClass().getSimpleName()));
+
+   /** The maximum number of batches of operations which may wait for a service's dispatch thread(s). */
+   static final int MAX_PENDING_BATCHES_PER_SERVICE = 8;
+
+   /** The maximum number of audio batches (clips, speech or tones) which may play at once. */
+   private static final int MAX_CONCURRENT_AUDIO_BATCHES = 4;
+
+   private static final long IDLE_AUDIO_THREAD_KEEP_ALIVE_IN_SECONDS = 60;
+
+   /** The dispatch thread(s) for each service, keyed on the service's type id, created the first time they're needed. */
+   private final ConcurrentMap<String, ThreadPoolExecutor> executorServicesByServiceTypeId = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+
+   /** Incremented by {@link #cancelPending()}, so that batches submitted before the cancel know to stop. */
+   private final AtomicInteger generation = new AtomicInteger(0);
+
+   /** The threads currently playing audio, so that {@link #cancelPending()} can interrupt them. */
+   private final Set<Thread> audioThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
 
    public static ExpressionExecutor getInstance()
       {
@@ -42,16 +75,59 @@ public final class ExpressionExecutor
 
    public void executeAsynchronously(@NotNull final ServiceManager serviceManager, @NotNull final ExpressionModel expressionModel)
       {
-      executorService.execute(
-            new Runnable()
+      executeAsynchronously(CompiledExpression.compile(serviceManager, expressionModel.getXmlExpression()));
+      }
+
+   /**
+    * Queues each service's operations on that service's dispatch thread, and returns immediately.  The services are
+    * written to independently of each other.
+    */
+   public void executeAsynchronously(@NotNull final CompiledExpression compiledExpression)
+      {
+      final int batchGeneration = generation.get();
+      final int operationCount = compiledExpression.getOperationCount();
+      int serviceStart = 0;
+      while (serviceStart < operationCount)
+         {
+         final String serviceTypeId = compiledExpression.getServiceTypeId(serviceStart);
+         int serviceEnd = serviceStart + 1;
+         while (serviceEnd < operationCount && serviceTypeId.equals(compiledExpression.getServiceTypeId(serviceEnd)))
             {
-            @Override
-            public void run()
+            serviceEnd++;
+            }
+
+         final int start = serviceStart;
+         final int end = serviceEnd;
+         final boolean isAudio = AudioService.TYPE_ID.equals(serviceTypeId);
+         getExecutorService(serviceTypeId).execute(
+               new Runnable()
                {
-               execute(serviceManager, expressionModel);
+               @Override
+               public void run()
+                  {
+                  if (isAudio)
+                     {
+                     audioThreads.add(Thread.currentThread());
+                     }
+                  try
+                     {
+                     execute(compiledExpression, start, end, batchGeneration);
+                     }
+                  finally
+                     {
+                     if (isAudio)
+                        {
+                        audioThreads.remove(Thread.currentThread());
+
+                        // clear any interrupt from cancelPending() so that it can't leak into the next batch
+                        Thread.interrupted();
+                        }
+                     }
+                  }
                }
-            }
-      );
+         );
+         serviceStart = serviceEnd;
+         }
       }
 
    public void execute(@NotNull final ServiceManager serviceManager, @NotNull final ExpressionModel expressionModel)
@@ -62,42 +138,124 @@ public final class ExpressionExecutor
          LOG.trace("ExpressionExecutor.execute(): Executing expression: \n" + xmlExpression.toXmlStringFormatted());
          }
 
-      final Set<XmlService> xmlServices = xmlExpression.getServices();
-      if (xmlServices != null)
+      execute(CompiledExpression.compile(serviceManager, xmlExpression));
+      }
+
+   /** Executes the operations on the calling thread, one service after another, returning once they're all done. */
+   public void execute(@NotNull final CompiledExpression compiledExpression)
+      {
+      execute(compiledExpression, 0, compiledExpression.getOperationCount(), generation.get());
+      }
+
+   /**
+    * Drops every batch of operations which is waiting to execute, stops the batches which are executing before their
+    * next operation, and interrupts any audio which is playing.  Operations submitted afterwards execute as usual.
+    */
+   public void cancelPending()
+      {
+      generation.incrementAndGet();
+
+      int droppedBatchCount = 0;
+      final List<Runnable> droppedBatches = new ArrayList<Runnable>();
+      for (final ThreadPoolExecutor executorService : executorServicesByServiceTypeId.values())
+         {
+         executorService.getQueue().drainTo(droppedBatches);
+         droppedBatchCount += droppedBatches.size();
+         droppedBatches.clear();
+         }
+
+      for (final Thread audioThread : audioThreads)
+         {
+         audioThread.interrupt();
+         }
+
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("ExpressionExecutor.cancelPending(): dropped [" + droppedBatchCount + "] pending batches");
+         }
+      }
+
+   /**
+    * Executes the operations in the range [<code>start</code>, <code>end</code>) on the calling thread, stopping early
+    * if {@link #cancelPending()} is called after the batch's generation.
+    */
+   private void execute(@NotNull final CompiledExpression compiledExpression, final int start, final int end, final int batchGeneration)
+      {
+      final ExecutionTracer tracer = ExecutionTracer.getInstance();
+      for (int i = start; i < end; i++)
          {
-         for (final XmlService xmlService : xmlServices)
+         if (generation.get() != batchGeneration)
             {
-            final Service service = serviceManager.getServiceByTypeId(xmlService.getTypeId());
-            if (service != null)
-               {
-               final List<XmlOperation> operations = xmlService.getOperations();
-               for (final XmlOperation operation : operations)
-                  {
-                  if (service instanceof ExpressionOperationExecutor)
-                     {
-                     try
-                        {
-                        ((ExpressionOperationExecutor)service).executeExpressionOperation(operation);
-                        }
-                     catch (UnsupportedOperationException e)
-                        {
-                        LOG.error("ExpressionExecutor.execute(): UnsupportedOperationException while trying to execute the operation [" + operation.getName() + "] on the [" + xmlService.getTypeId() + "] service.  Ignoring and continuing.", e);
-                        }
-                     }
-                  else
-                     {
-                     LOG.warn("ExpressionExecutor.execute(): Operation not executed since service [" + service.getTypeId() + "] does not implement the OperationExecutor interface.");
-                     }
-                  }
-               }
-            else
-               {
-               if (LOG.isDebugEnabled())
-                  {
-                  LOG.debug("ExpressionExecutor.execute(): Service " + xmlService.getTypeId() + " not available for execution.");
-                  }
-               }
+            LOG.debug("ExpressionExecutor.execute(): cancelled, skipping the rest of the batch");
+            return;
+            }
+
+         final XmlOperation operation = compiledExpression.getOperation(i);
+         try
+            {
+            final long callStartTimeInNanos = System.nanoTime();
+            compiledExpression.getExecutor(i).executeExpressionOperation(operation);
+            tracer.recordDeviceCall(compiledExpression.getOperationLabel(i), callStartTimeInNanos);
+            }
+         catch (UnsupportedOperationException e)
+            {
+            LOG.error("ExpressionExecutor.execute(): UnsupportedOperationException while trying to execute the operation [" + operation.getName() + "].  Ignoring and continuing.", e);
+            }
+         }
+      }
+
+   @NotNull
+   private ThreadPoolExecutor getExecutorService(@NotNull final String serviceTypeId)
+      {
+      ThreadPoolExecutor executorService = executorServicesByServiceTypeId.get(serviceTypeId);
+      if (executorService == null)
+         {
+         final String serviceName = serviceTypeId.substring(serviceTypeId.lastIndexOf(':') + 1);
+         final int threadCount = AudioService.TYPE_ID.equals(serviceTypeId) ? MAX_CONCURRENT_AUDIO_BATCHES : 1;
+         final ThreadPoolExecutor newExecutorService = new ThreadPoolExecutor(threadCount,
+                                                                              threadCount,
+                                                                              IDLE_AUDIO_THREAD_KEEP_ALIVE_IN_SECONDS,
+                                                                              TimeUnit.SECONDS,
+                                                                              new ArrayBlockingQueue<Runnable>(MAX_PENDING_BATCHES_PER_SERVICE),
+                                                                              new DaemonThreadFactory(this.getClass().getSimpleName() + "_" + serviceName),
+                                                                              new DiscardOldestBatchPolicy(serviceName));
+         if (threadCount > 1)
+            {
+            // audio is only played now and then, so don't keep its threads around
+            newExecutorService.allowCoreThreadTimeOut(true);
+            }
+         executorService = executorServicesByServiceTypeId.putIfAbsent(serviceTypeId, newExecutorService);
+         if (executorService == null)
+            {
+            executorService = newExecutorService;
+            }
+         else
+            {
+            // another thread got there first, and ours hasn't started a thread yet, so just discard it
+            newExecutorService.shutdown();
+            }
+         }
+      return executorService;
+      }
+
+   /** Drops the oldest waiting batch to make room for a new one, when a service can't keep up. */
+   private static final class DiscardOldestBatchPolicy extends ThreadPoolExecutor.DiscardOldestPolicy
+      {
+      private final String serviceName;
+
+      private DiscardOldestBatchPolicy(@NotNull final String serviceName)
+         {
+         this.serviceName = serviceName;
+         }
+
+      @Override
+      public void rejectedExecution(final Runnable runnable, final ThreadPoolExecutor executor)
+         {
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("ExpressionExecutor$DiscardOldestBatchPolicy.rejectedExecution(): the [" + serviceName + "] service can't keep up, dropping its oldest pending batch");
             }
+         super.rejectedExecution(runnable, executor);
          }
       }
    }
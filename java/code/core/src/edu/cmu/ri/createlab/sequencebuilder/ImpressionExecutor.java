@@ -6,7 +6,9 @@ import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.ServiceManager;
 import edu.cmu.ri.createlab.terk.xml.XmlOperation;
 import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -80,4 +82,45 @@ public final class ImpressionExecutor
 
       return null;
       }
+
+   /** Evaluates the given {@link CompiledImpression}, returning the raw value, or <code>null</code> if unavailable. */
+   @Nullable
+   public Object execute(@NotNull final CompiledImpression compiledImpression)
+      {
+      final ImpressionOperationExecutor executor = compiledImpression.getExecutor();
+      final XmlOperation operation = compiledImpression.getOperation();
+      if (executor != null && operation != null)
+         {
+         try
+            {
+            return executor.executeImpressionOperation(operation);
+            }
+         catch (UnsupportedOperationException e)
+            {
+            LOG.error("ImpressionExecutor.execute(): UnsupportedOperationException while trying to execute the operation [" + operation.getName() + "] on the [" + compiledImpression.getServiceTypeId() + "] service.  Ignoring and continuing.", e);
+            }
+         }
+      return null;
+      }
+
+   /**
+    * Evaluates the given {@link CompiledImpression}, preferring a {@link SensorSamplingBus} sample which is no more
+    * than <code>maxStalenessInMillis</code> milliseconds old.  The device is only read if no such sample exists (in
+    * which case the fresh reading becomes the new sample).  Impressions which can't be answered from a sample are
+    * simply {@link #execute(CompiledImpression) executed}.
+    */
+   @Nullable
+   public Object execute(@NotNull final CompiledImpression compiledImpression, final int maxStalenessInMillis)
+      {
+      final Service sampledService = compiledImpression.getSampledService();
+      if (sampledService != null)
+         {
+         final SensorSamplingBus.SensorSample sample = SensorSamplingBus.getInstance().getSample(sampledService, maxStalenessInMillis);
+         if (sample != null)
+            {
+            return compiledImpression.getValueFromSample(sample);
+            }
+         }
+      return execute(compiledImpression);
+      }
    }
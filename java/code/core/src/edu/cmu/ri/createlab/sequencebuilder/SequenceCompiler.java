@@ -0,0 +1,176 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SequenceCompiler</code> compiles a list of {@link ProgramElementModel}s into a flat {@link ExecutionPlan}.
+ * Expressions and sensor reads are compiled against the device's service manager, and the contents of loops and
+ * conditionals are inlined, so that the plan can be executed without walking the model tree.  Saved sequences are
+ * compiled into a single instruction which only loads and compiles the sequence's file when it is first reached or
+ * prefetched, so that deeply nested saved sequences don't all have to be loaded before execution can begin, and the
+ * result is kept in the {@link CompiledSavedSequenceCache} so that the file isn't loaded again until it changes.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SequenceCompiler
+   {
+   private static final Logger LOG = Logger.getLogger(SequenceCompiler.class);
+
+   /** Compiles the given {@link ProgramElementModel}s, in order, into an {@link ExecutionPlan}. */
+   @NotNull
+   public static ExecutionPlan compile(@NotNull final List<ProgramElementModel> models)
+      {
+      final SequenceCompiler compiler = new SequenceCompiler();
+      compiler.compileModels(models);
+      return new ExecutionPlan(compiler.instructions, compiler.numSlots);
+      }
+
+   /**
+    * Loads the contents of the given saved sequence file and compiles them, for the given device, into their own
+    * {@link ExecutionPlan}.  Returns <code>null</code> if the saved sequence could not be loaded.  Callers should go
+    * through the {@link CompiledSavedSequenceCache} rather than calling this directly.
+    */
+   @Nullable
+   static ExecutionPlan compileSavedSequenceContents(@NotNull final VisualProgrammerDevice visualProgrammerDevice,
+                                                     @NotNull final File savedSequenceFile,
+                                                     @NotNull final Set<File> enclosingSavedSequenceFiles)
+      {
+      final ContainerModel containerModel = new ContainerModel();
+      try
+         {
+         containerModel.load(visualProgrammerDevice, XmlHelper.createDocument(savedSequenceFile));
+         }
+      catch (final Exception e)
+         {
+         LOG.error("IOException while trying to read [" + savedSequenceFile + "] as XML.  Skipping this element.", e);
+         return null;
+         }
+
+      final SequenceCompiler compiler = new SequenceCompiler();
+      compiler.savedSequenceFilesBeingCompiled.addAll(enclosingSavedSequenceFiles);
+      compiler.compileModels(containerModel.getAsList());
+      return new ExecutionPlan(compiler.instructions, compiler.numSlots);
+      }
+
+   private final List<ExecutionPlan.Instruction> instructions = new ArrayList<ExecutionPlan.Instruction>();
+   private int numSlots = 0;
+
+   /** The saved sequence files currently being inlined, used to guard against sequences which include themselves. */
+   private final Set<File> savedSequenceFilesBeingCompiled = new HashSet<File>();
+
+   private SequenceCompiler()
+      {
+      // private to prevent instantiation
+      }
+
+   private void compileModels(@NotNull final List<ProgramElementModel> models)
+      {
+      for (final ProgramElementModel model : models)
+         {
+         if (model instanceof ExpressionModel)
+            {
+            compileExpression((ExpressionModel)model);
+            }
+         else if (model instanceof CounterLoopModel)
+            {
+            compileCounterLoop((CounterLoopModel)model);
+            }
+         else if (model instanceof LoopableConditionalModel)
+            {
+            compileLoopableConditional((LoopableConditionalModel)model);
+            }
+         else if (model instanceof SavedSequenceModel)
+            {
+            compileSavedSequence((SavedSequenceModel)model);
+            }
+         else
+            {
+            LOG.warn("SequenceCompiler.compileModels(): Skipping unexpected program element [" + model + "]");
+            }
+         }
+      }
+
+   private void compileExpression(@NotNull final ExpressionModel model)
+      {
+      final CompiledExpression compiledExpression = CompiledExpression.compile(model.getVisualProgrammerDevice().getServiceManager(),
+                                                                               model.getXmlExpression());
+      instructions.add(new ExecutionPlan.ExpressionInstruction(model, compiledExpression));
+      }
+
+   private void compileCounterLoop(@NotNull final CounterLoopModel model)
+      {
+      final int slot = numSlots++;
+      instructions.add(new ExecutionPlan.LoopBeginInstruction(model, slot));
+
+      // reserve a spot for the loop test, since we don't know the exit location until the body is compiled
+      final int testPc = reservePlaceholder();
+      compileModels(model.getContainerModel().getAsList());
+      instructions.add(new ExecutionPlan.LoopNextInstruction(model, slot, testPc));
+
+      final int endPc = instructions.size();
+      instructions.set(testPc, new ExecutionPlan.LoopTestInstruction(model, slot, model.getNumberOfIterations(), endPc));
+      instructions.add(new ExecutionPlan.LoopEndInstruction(model));
+      }
+
+   private void compileLoopableConditional(@NotNull final LoopableConditionalModel model)
+      {
+      final CompiledImpression compiledImpression = CompiledImpression.compile(model.getVisualProgrammerDevice().getServiceManager(),
+                                                                               model.getSelectedSensor().toXmlService());
+      final int slot = numSlots++;
+      instructions.add(new ExecutionPlan.ConditionalBeginInstruction(model, compiledImpression.getSampledService(), slot));
+
+      // reserve spots for the test and the if-branch's end, since we don't know the jump targets until the branches are compiled
+      final int testPc = reservePlaceholder();
+      compileModels(model.getIfBranchContainerModel().getAsList());
+      final int ifBranchEndPc = reservePlaceholder();
+
+      final int elsePc = instructions.size();
+      compileModels(model.getElseBranchContainerModel().getAsList());
+      final int elseBranchEndPc = reservePlaceholder();
+
+      final int endPc = instructions.size();
+      instructions.set(testPc, new ExecutionPlan.ConditionalTestInstruction(model, compiledImpression, slot, elsePc, endPc));
+      instructions.set(ifBranchEndPc, new ExecutionPlan.ConditionalBranchEndInstruction(model.willReevaluateConditionAfterIfBranchCompletes(), slot, testPc, endPc));
+      instructions.set(elseBranchEndPc, new ExecutionPlan.ConditionalBranchEndInstruction(model.willReevaluateConditionAfterElseBranchCompletes(), slot, testPc, endPc));
+      instructions.add(new ExecutionPlan.ConditionalEndInstruction(model, slot));
+      }
+
+   private void compileSavedSequence(@NotNull final SavedSequenceModel model)
+      {
+      final File savedSequenceFile = model.getSavedSequenceFile();
+      if (savedSequenceFilesBeingCompiled.contains(savedSequenceFile))
+         {
+         LOG.error("SequenceCompiler.compileSavedSequence(): Saved sequence [" + savedSequenceFile + "] includes itself.  Skipping this element.");
+         return;
+         }
+
+      // The saved sequence's contents aren't loaded until the instruction is reached (or prefetched), so remember
+      // which saved sequences enclose it in order to continue guarding against cycles when it's finally compiled.
+      final Set<File> enclosingSavedSequenceFiles = new HashSet<File>(savedSequenceFilesBeingCompiled);
+      enclosingSavedSequenceFiles.add(savedSequenceFile);
+      instructions.add(new ExecutionPlan.SavedSequenceInstruction(model, enclosingSavedSequenceFiles));
+      }
+
+   /** Appends a placeholder instruction which must later be replaced, and returns its index. */
+   private int reservePlaceholder()
+      {
+      instructions.add(null);
+      return instructions.size() - 1;
+      }
+   }
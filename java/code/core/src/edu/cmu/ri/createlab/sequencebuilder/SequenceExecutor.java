@@ -1,25 +1,33 @@
 package edu.cmu.ri.createlab.sequencebuilder;
 
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import edu.cmu.ri.createlab.audio.AudioClipStore;
+import edu.cmu.ri.createlab.audio.SpeechCache;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewEventPublisher;
 import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerConstants;
 import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
  * <p>
  * <code>SequenceExecutor</code> is a singleton which manages execution of a {@link Sequence}.
  * </p>
+ * <p>
+ * Sequences run one at a time on a single, long-lived execution thread.  Stopping is cooperative: {@link #stop()}
+ * moves the executor to {@link State#STOPPING}, wakes any timed wait and interrupts the execution thread, and the run
+ * ends before its next instruction.  A run requested while the previous one is still stopping is started as soon as
+ * the previous one has ended.
+ * </p>
  *
  * @author Chris Bartley (bartley@cmu.edu)
  */
@@ -34,6 +42,9 @@ public final class SequenceExecutor
 
    private static final Logger LOG = Logger.getLogger(SequenceExecutor.class);
 
+   /** Value for {@link #setSensorSnapshotMaxStalenessInMillis(int)} which makes conditionals always read the device. */
+   public static final int SENSOR_SNAPSHOTS_DISABLED = -1;
+
    private static final SequenceExecutor INSTANCE = new SequenceExecutor();
 
    public static SequenceExecutor getInstance()
@@ -41,20 +52,40 @@ public final class SequenceExecutor
       return INSTANCE;
       }
 
-   private final AtomicBoolean isRunning = new AtomicBoolean(false);
+   /** The states through which the executor moves.  It only ever goes IDLE, RUNNING, STOPPING, and back to IDLE. */
+   public enum State
+      {
+      IDLE, RUNNING, STOPPING
+      }
+
+   /** Callback for learning when a run started with {@link #start(Sequence, CompletionListener)} has finished. */
+   public interface CompletionListener
+      {
+      /**
+       * Called on the execution thread once the run has finished and the executor is idle again.
+       * <code>didComplete</code> is <code>true</code> if the sequence ran to the end, or <code>false</code> if it was
+       * stopped or failed.
+       */
+      void handleExecutionComplete(final boolean didComplete);
+      }
+
+   private final AtomicReference<State> state = new AtomicReference<State>(State.IDLE);
    private final AtomicBoolean willLoopPlayback = new AtomicBoolean(false);
-   private ExecutorService sequenceExecutionExecutor = null;
-   private final Set<EventListener> eventListeners = new HashSet<EventListener>();
-   private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(5, new DaemonThreadFactory(this.getClass().getSimpleName()));
-   private Runnable resetViewsRunnable =
-         new Runnable()
-         {
-         @Override
-         public void run()
-            {
-            ViewEventPublisher.getInstance().publishResetViewsForSequenceExecutionEvent();
-            }
-         };
+   private volatile int sensorSnapshotMaxStalenessInMillis = Math.max(SENSOR_SNAPSHOTS_DISABLED, VisualProgrammerConstants.Tuning.SENSOR_SNAPSHOT_MAX_STALENESS_IN_MILLIS);
+   private final Set<EventListener> eventListeners = new CopyOnWriteArraySet<EventListener>();
+
+   /** A single, long-lived thread on which every run executes, so that starting a run never creates a thread. */
+   private final ExecutorService sequenceExecutionExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("SequenceExecutionExecutor_" + this.getClass().getSimpleName()));
+
+   /** Guards {@link #executionThread}, so that {@link #stop()} can never interrupt a run other than the current one. */
+   private final Lock executionThreadLock = new ReentrantLock();
+   private Thread executionThread = null;
+
+   /** Guards the transitions into and out of {@link State#IDLE}, and {@link #pendingRun}. */
+   private final Lock pendingRunLock = new ReentrantLock();
+
+   /** A run requested while the executor was {@link State#STOPPING stopping}, to be started once it's idle. */
+   private ProgramElementExecutor pendingRun = null;
 
    public void addEventListener(@Nullable final EventListener listener)
       {
@@ -73,100 +104,160 @@ public final class SequenceExecutor
       }
 
    /**
-    * Starts executing the given {@link Sequence}.  Does nothing if the {@link Sequence} is <code>null</code> and/or
-    * if the <code>SequenceExecutor</code> is already running.
+    * Starts executing the given {@link Sequence}.  Equivalent to calling {@link #start(Sequence, CompletionListener)}
+    * with a <code>null</code> {@link CompletionListener}.
+    */
+   public boolean start(@Nullable final Sequence sequence)
+      {
+      return start(sequence, null);
+      }
+
+   /**
+    * Starts executing the given {@link Sequence} on the execution thread and returns immediately.  Returns
+    * <code>true</code> if the run was started, or if the previous run is still {@link State#STOPPING stopping}, in
+    * which case the run will start as soon as the previous one has ended (replacing any other run requested in the
+    * meantime).  Returns <code>false</code> if the {@link Sequence} is <code>null</code> or the
+    * <code>SequenceExecutor</code> is already {@link State#RUNNING running}.  The given {@link CompletionListener}, if
+    * non-<code>null</code>, is notified when the run finishes (or is abandoned).
     *
-    * @see #isRunning()
+    * @see #getState()
     */
-   public void start(final Sequence sequence)
+   public boolean start(@Nullable final Sequence sequence, @Nullable final CompletionListener completionListener)
       {
-      LOG.debug("SequenceExecutor.start(" + sequence + ")");
-      if (sequence != null)
+      return start(sequence == null ? null : sequence.getContainerModel(), completionListener);
+      }
+
+   /**
+    * Starts executing the program elements in the given {@link ContainerModel}.  This is the same as
+    * {@link #start(Sequence, CompletionListener)}, but doesn't need a {@link Sequence} (and so doesn't need any views),
+    * which makes it usable without a GUI.
+    */
+   public boolean start(@Nullable final ContainerModel containerModel, @Nullable final CompletionListener completionListener)
+      {
+      LOG.debug("SequenceExecutor.start(" + containerModel + ")");
+      if (containerModel == null)
          {
-         if (isRunning.compareAndSet(false, true))
-            {
-            // notify listeners
-            if (!eventListeners.isEmpty())
-               {
-               for (final EventListener listener : eventListeners)
-                  {
-                  listener.handleExecutionStart();
-                  }
-               }
+         return false;
+         }
 
-            LOG.debug("SequenceExecutor.start(): calling ViewEventPublisher.publishResetViewsForSequenceExecutionEvent()...");
-            ViewEventPublisher.getInstance().publishResetViewsForSequenceExecutionEvent();
-            LOG.debug("SequenceExecutor.start(): about to start executing...");
-            try
-               {
-               LOG.debug("SequenceExecutor.start(): creating the sequenceExecutionExecutor");
-               sequenceExecutionExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("SequenceExecutionExecutor_" + this.getClass().getSimpleName()));
+      final ProgramElementExecutor run = new ProgramElementExecutor(containerModel, completionListener);
+      final boolean willLaunchNow;
+      ProgramElementExecutor abandonedRun = null;
+      pendingRunLock.lock();  // block until condition holds
+      try
+         {
+         if (state.compareAndSet(State.IDLE, State.RUNNING))
+            {
+            willLaunchNow = true;
+            }
+         else if (state.get() == State.STOPPING)
+            {
+            LOG.debug("SequenceExecutor.start(): the previous run is still stopping, so this run will start once it has ended");
+            willLaunchNow = false;
+            abandonedRun = pendingRun;
+            pendingRun = run;
+            }
+         else
+            {
+            return false;
+            }
+         }
+      finally
+         {
+         pendingRunLock.unlock();
+         }
 
-               do
-                  {
-                  LOG.debug("SequenceExecutor.start(): submitting the ProgramElementExecutor to the sequenceExecutionExecutor");
-                  final Future<Boolean> future = sequenceExecutionExecutor.submit(new ProgramElementExecutor(sequence.getContainerModel().getAsList()));
-                  LOG.debug("SequenceExecutor.start(): about to call future.get()");
-                  if (future.get())
-                     {
-                     LOG.debug("SequenceExecutor.start(): Execution completed successfully.");
-                     }
-                  else
-                     {
-                     LOG.debug("SequenceExecutor.start(): Execution completed with a failure.");
-                     }
-                  }
-               while (willLoopPlayback.get() && isRunning());
-               }
-            catch (Exception e)
-               {
-               LOG.error("SequenceExecutor.start(): Exception while executing the sequence", e);
-               }
+      if (willLaunchNow)
+         {
+         launch(run);
+         }
+      else if (abandonedRun != null)
+         {
+         abandonedRun.abandon();
+         }
+      return true;
+      }
 
-            // we're done, so call stop...
-            stop();
-            }
+   /**
+    * Notifies the listeners that the given run is starting, and hands it to the execution thread.  The executor must
+    * already be {@link State#RUNNING running}.
+    */
+   private void launch(@NotNull final ProgramElementExecutor run)
+      {
+      // notify listeners
+      for (final EventListener listener : eventListeners)
+         {
+         listener.handleExecutionStart();
          }
+
+      publishResetViewsEvent();
+
+      sequenceExecutionExecutor.execute(run);
       }
 
    /**
-    * Stops the executor.  Does nothing if the executor is not running.
+    * Asks the current run to stop, and returns immediately.  Any step which is waiting for its deadline is woken, and
+    * the execution thread is interrupted so that a blocking wait or device call returns right away, after which no
+    * further instructions are executed.  Expression operations which haven't reached the device yet are dropped, and
+    * any audio which is playing is interrupted.  The views are reset immediately, and again once the run has actually ended.
+    * Does nothing if the executor is not running.
     */
    public void stop()
       {
       LOG.debug("SequenceExecutor.stop()");
-      if (isRunning.compareAndSet(true, false))
+
+      // stopping also cancels any run which was waiting for the current one to stop
+      final ProgramElementExecutor abandonedRun;
+      pendingRunLock.lock();  // block until condition holds
+      try
+         {
+         abandonedRun = pendingRun;
+         pendingRun = null;
+         }
+      finally
+         {
+         pendingRunLock.unlock();
+         }
+      if (abandonedRun != null)
          {
-         if (sequenceExecutionExecutor != null)
+         abandonedRun.abandon();
+         }
+
+      if (state.compareAndSet(State.RUNNING, State.STOPPING))
+         {
+         // wake any step which is waiting for its deadline
+         TimingEngine.getInstance().cancelAll();
+
+         // drop the device writes and audio which haven't happened yet, so that the device stops changing right away
+         ExpressionExecutor.getInstance().cancelPending();
+
+         executionThreadLock.lock();  // block until condition holds
+         try
             {
-            try
+            if (executionThread != null)
                {
-               sequenceExecutionExecutor.shutdownNow();
-               sequenceExecutionExecutor = null;
-               }
-            catch (Exception e)
-               {
-               LOG.error("SequenceExecutor.stop(): Exception while trying to shut down the sequence execution executor.", e);
+               executionThread.interrupt();
                }
             }
-
-         // notify listeners
-         if (!eventListeners.isEmpty())
+         finally
             {
-            for (final EventListener listener : eventListeners)
-               {
-               listener.handleExecutionEnd();
-               }
+            executionThreadLock.unlock();
             }
          }
 
-      // reset the views, but do so with a delay to allow time for stuff to stop (yes, this is a bit hacky)
-      scheduledExecutorService.schedule(resetViewsRunnable, 100, TimeUnit.MILLISECONDS);
+      publishResetViewsEvent();
+      }
+
+   @NotNull
+   public State getState()
+      {
+      return state.get();
       }
 
+   /** Returns <code>true</code> if the executor is {@link State#RUNNING running} and hasn't been asked to stop. */
    public boolean isRunning()
       {
-      return isRunning.get();
+      return state.get() == State.RUNNING;
       }
 
    public void setWillLoopPlayback(final boolean willLoopPlayback)
@@ -175,36 +266,179 @@ public final class SequenceExecutor
       LOG.debug("SequenceExecutor.setWillLoopPlayback(): willLoopPlayback = [" + this.willLoopPlayback + "]");
       }
 
-   private final class ProgramElementExecutor implements Callable<Boolean>
+   public int getSensorSnapshotMaxStalenessInMillis()
+      {
+      return sensorSnapshotMaxStalenessInMillis;
+      }
+
+   /**
+    * Sets the maximum age of a sensor reading which conditionals may use.  When non-negative, conditionals read from
+    * a continuously refreshed snapshot of the sensors (see {@link SensorSamplingBus}) and only go to the device when
+    * the snapshot is older than the given staleness, which makes tight sensor loops much faster.  Use
+    * {@link #SENSOR_SNAPSHOTS_DISABLED} to have conditionals always read the device.  The default is
+    * {@link VisualProgrammerConstants.Tuning#SENSOR_SNAPSHOT_MAX_STALENESS_IN_MILLIS}, which disables snapshots unless
+    * overridden.  A conditional's sensor is only sampled while that conditional is executing.
+    */
+   public void setSensorSnapshotMaxStalenessInMillis(final int sensorSnapshotMaxStalenessInMillis)
+      {
+      this.sensorSnapshotMaxStalenessInMillis = Math.max(SENSOR_SNAPSHOTS_DISABLED, sensorSnapshotMaxStalenessInMillis);
+      LOG.debug("SequenceExecutor.setSensorSnapshotMaxStalenessInMillis(): sensorSnapshotMaxStalenessInMillis = [" + this.sensorSnapshotMaxStalenessInMillis + "]");
+      }
+
+   /**
+    * Ends the current run: returns the executor to {@link State#IDLE idle} and notifies the event listeners and the
+    * given {@link CompletionListener}, and then starts the run, if any, which was requested while this one was
+    * stopping.
+    */
+   private void finish(final boolean didComplete, @Nullable final CompletionListener completionListener)
       {
-      private final List<ProgramElementModel> programElementModels;
+      final ProgramElementExecutor nextRun;
+      pendingRunLock.lock();  // block until condition holds
+      try
+         {
+         state.set(State.IDLE);
+         nextRun = pendingRun;
+         pendingRun = null;
+         }
+      finally
+         {
+         pendingRunLock.unlock();
+         }
 
-      private ProgramElementExecutor(final List<ProgramElementModel> programElementModels)
+      // notify listeners
+      for (final EventListener listener : eventListeners)
          {
-         this.programElementModels = programElementModels;
+         listener.handleExecutionEnd();
+         }
+
+      // now that everything has really stopped, make sure no view is left showing progress
+      publishResetViewsEvent();
+
+      if (completionListener != null)
+         {
+         try
+            {
+            completionListener.handleExecutionComplete(didComplete);
+            }
+         catch (Exception e)
+            {
+            LOG.error("SequenceExecutor.finish(): Exception while notifying the CompletionListener", e);
+            }
+         }
+
+      if (nextRun != null)
+         {
+         // someone else may have started a run since we went idle, in which case the pending one loses
+         if (state.compareAndSet(State.IDLE, State.RUNNING))
+            {
+            launch(nextRun);
+            }
+         else
+            {
+            nextRun.abandon();
+            }
+         }
+      }
+
+   private void publishResetViewsEvent()
+      {
+      // there's no publisher when running without a GUI, in which case there are no views to reset
+      if (ViewEventPublisher.isCreated())
+         {
+         ViewEventPublisher.getInstance().publishResetViewsForSequenceExecutionEvent();
+         }
+      }
+
+   private final class ProgramElementExecutor implements Runnable
+      {
+      private final ContainerModel containerModel;
+      private final CompletionListener completionListener;
+
+      private ProgramElementExecutor(@NotNull final ContainerModel containerModel, @Nullable final CompletionListener completionListener)
+         {
+         this.containerModel = containerModel;
+         this.completionListener = completionListener;
+         }
+
+      /** Tells the {@link CompletionListener}, if any, that this run was never started. */
+      private void abandon()
+         {
+         LOG.debug("SequenceExecutor$ProgramElementExecutor.abandon(): a run requested while stopping was abandoned");
+         if (completionListener != null)
+            {
+            try
+               {
+               completionListener.handleExecutionComplete(false);
+               }
+            catch (Exception e)
+               {
+               LOG.error("SequenceExecutor$ProgramElementExecutor.abandon(): Exception while notifying the CompletionListener", e);
+               }
+            }
          }
 
       @Override
-      public Boolean call() throws Exception
+      public void run()
          {
+         executionThreadLock.lock();  // block until condition holds
          try
             {
-            // iterate over the models and execute them
-            for (final ProgramElementModel model : programElementModels)
+            executionThread = Thread.currentThread();
+            }
+         finally
+            {
+            executionThreadLock.unlock();
+            }
+
+         boolean didComplete = false;
+         try
+            {
+            // compile the sequence here rather than in start(), so that a large sequence doesn't hold up the GUI
+            // thread, and compile it only once, so that looped playback reuses the same plan
+            final ExecutionPlan executionPlan = SequenceCompiler.compile(containerModel.getAsList());
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("SequenceExecutor$ProgramElementExecutor.run(): compiled the sequence into a plan of [" + executionPlan.size() + "] instructions");
+               }
+
+            // synthesize all the speech and load all the clips up front, so that audio doesn't stall the sequence
+            // partway through (stop() interrupts this thread, which abandons any work not yet started)
+            AudioClipStore.getInstance().preload(executionPlan.getClipFiles());
+            SpeechCache.getInstance().presynthesize(executionPlan.getSpeechTexts());
+
+            do
                {
-               if (isRunning())
+               ExecutionTracer.getInstance().handleRunStart();
+               didComplete = executionPlan.execute();
+               if (LOG.isDebugEnabled())
                   {
-                  model.execute();
+                  LOG.debug("SequenceExecutor$ProgramElementExecutor.run(): Execution " + (didComplete ? "completed successfully." : "was stopped early."));
                   }
                }
+            while (didComplete && willLoopPlayback.get() && isRunning());
             }
          catch (Exception e)
             {
-            LOG.error("SequenceExecutor$ProgramElementExecutor.call(): Exception while executing the sequence.", e);
-            return false;
+            LOG.error("SequenceExecutor$ProgramElementExecutor.run(): Exception while compiling or executing the sequence.", e);
+            didComplete = false;
             }
+         finally
+            {
+            executionThreadLock.lock();  // block until condition holds
+            try
+               {
+               executionThread = null;
 
-         return true;
+               // clear any interrupt from stop() so that it can't leak into the next run on this thread
+               Thread.interrupted();
+               }
+            finally
+               {
+               executionThreadLock.unlock();
+               }
+
+            finish(didComplete, completionListener);
+            }
          }
       }
    }
@@ -0,0 +1,299 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.terk.expression.manager.XmlExpressionCache;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.apache.log4j.Logger;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SequenceFilePreloader</code> reads, in parallel, the files a sequence refers to, so that the
+ * {@link ContainerModel} can then be assembled without waiting on file I/O one element at a time.  Starting from a
+ * sequence's container element, it collects the expression and saved sequence files referenced anywhere within it
+ * (including inside loops and conditionals), and reads each distinct file once on a small, bounded pool of threads.
+ * Expressions are parsed into the {@link XmlExpressionCache}, where the {@link ExpressionModel}s created during
+ * assembly will find them, and {@link #preload(Element)} waits for them.
+ * </p>
+ * <p>
+ * Saved sequences are only loaded when they're executed, so {@link #preload(Element)} doesn't wait for them.  Instead,
+ * they're parsed in the background to discover the files <em>they</em> refer to, which are then read in turn, so that
+ * the expressions of nested saved sequences are already cached by the time the sequences are loaded for execution.
+ * This background work runs on a separate, smaller pool, so that a sequence being opened never waits behind the scans
+ * started by sequences opened earlier.
+ * </p>
+ * <p>
+ * Preloading is purely an optimization: files which can't be read are skipped here and reported by the normal load.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SequenceFilePreloader
+   {
+   private static final Logger LOG = Logger.getLogger(SequenceFilePreloader.class);
+
+   /** File reads are mostly waiting on the disk (or network), so use a few more threads than there are cores. */
+   private static final int THREAD_COUNT = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() * 2));
+
+   /** Nobody waits on the background work, so it only gets a couple of threads, leaving the disk to the foreground. */
+   private static final int BACKGROUND_THREAD_COUNT = 2;
+
+   private static final String XML_ATTRIBUTE_FILE = "file";
+
+   private static final SequenceFilePreloader INSTANCE = new SequenceFilePreloader();
+
+   public static SequenceFilePreloader getInstance()
+      {
+      return INSTANCE;
+      }
+
+   /** Reads the expressions which {@link #preload(Element)} waits for. */
+   private final ExecutorService foregroundExecutorService = Executors.newFixedThreadPool(THREAD_COUNT, new DaemonThreadFactory(this.getClass().getSimpleName()));
+
+   /** Scans saved sequences and reads the files they refer to, which nobody waits for. */
+   private final ExecutorService backgroundExecutorService = Executors.newFixedThreadPool(BACKGROUND_THREAD_COUNT, new DaemonThreadFactory(this.getClass().getSimpleName() + ".background"));
+
+   /**
+    * The modification times of the saved sequences already scanned.  Loading a saved sequence for execution preloads
+    * it too, so this keeps nested saved sequences from being rescanned at every level unless they've changed.
+    */
+   private final ConcurrentMap<File, Long> scannedSavedSequenceModificationTimes = new ConcurrentHashMap<File, Long>();
+
+   private SequenceFilePreloader()
+      {
+      // private to prevent instantiation
+      }
+
+   /**
+    * Reads every expression file referred to by the given container element, blocking until they've all been read,
+    * and starts reading the saved sequences it refers to (and the files they refer to) in the background.
+    */
+   public void preload(@NotNull final Element containerElement)
+      {
+      final long startTime = System.currentTimeMillis();
+
+      final List<FileReference> references = new ArrayList<FileReference>();
+      collectFileReferences(containerElement, references);
+
+      // nothing to gain from handing a single expression to another thread
+      if (references.isEmpty() || (references.size() == 1 && !references.get(0).isSavedSequence))
+         {
+         return;
+         }
+
+      // each distinct file is read once, no matter how many times it's referenced, here or in nested saved sequences
+      final Set<File> seenFiles = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+      final List<Callable<Object>> expressionReads = new ArrayList<Callable<Object>>();
+      for (final FileReference reference : references)
+         {
+         if (seenFiles.add(reference.file))
+            {
+            if (reference.isSavedSequence)
+               {
+               scanInBackground(reference.file, seenFiles);
+               }
+            else if (!isCached(reference.file))
+               {
+               expressionReads.add(Executors.callable(new ExpressionRead(reference.file)));
+               }
+            }
+         }
+
+      // handing work to the pool only pays off if there's more than one file to read
+      if (expressionReads.size() > 1)
+         {
+         try
+            {
+            foregroundExecutorService.invokeAll(expressionReads);
+            }
+         catch (InterruptedException e)
+            {
+            LOG.debug("SequenceFilePreloader.preload(): interrupted while waiting for expressions to be read");
+            Thread.currentThread().interrupt();
+            }
+         }
+
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("SequenceFilePreloader.preload(): read [" + expressionReads.size() + "] expressions in [" + (System.currentTimeMillis() - startTime) + "] ms");
+         }
+      }
+
+   /**
+    * Scans the given saved sequence on the background pool, unless it has already been scanned and hasn't changed
+    * since.
+    */
+   private void scanInBackground(@NotNull final File savedSequenceFile, @NotNull final Set<File> seenFiles)
+      {
+      final Long lastModified = savedSequenceFile.lastModified();
+      if (!lastModified.equals(scannedSavedSequenceModificationTimes.put(savedSequenceFile, lastModified)))
+         {
+         backgroundExecutorService.execute(new SavedSequenceScan(savedSequenceFile, seenFiles));
+         }
+      }
+
+   private static boolean isCached(@NotNull final File expressionFile)
+      {
+      try
+         {
+         return XmlExpressionCache.getInstance().isCached(expressionFile);
+         }
+      catch (IOException e)
+         {
+         // let the pool try (and fail) to read it, rather than failing here
+         return false;
+         }
+      }
+
+   /**
+    * Adds a {@link FileReference} to the given list for every expression and saved sequence element found within the
+    * given element, in document order.
+    */
+   private static void collectFileReferences(@NotNull final Element element, @NotNull final List<FileReference> references)
+      {
+      for (final Object o : element.getChildren())
+         {
+         final Element child = (Element)o;
+         if (ExpressionModel.XML_ELEMENT_NAME.equals(child.getName()))
+            {
+            addFileReference(PathManager.getInstance().getExpressionsDirectory(), child, false, references);
+            }
+         else if (SavedSequenceModel.XML_ELEMENT_NAME.equals(child.getName()))
+            {
+            addFileReference(PathManager.getInstance().getSequencesDirectory(), child, true, references);
+            }
+         else
+            {
+            // loops, conditionals and their branches can all contain more program elements
+            collectFileReferences(child, references);
+            }
+         }
+      }
+
+   private static void addFileReference(@Nullable final File directory,
+                                        @NotNull final Element element,
+                                        final boolean isSavedSequence,
+                                        @NotNull final List<FileReference> references)
+      {
+      final String filename = element.getAttributeValue(XML_ATTRIBUTE_FILE);
+      if (directory != null && filename != null)
+         {
+         references.add(new FileReference(new File(directory, filename), isSavedSequence));
+         }
+      }
+
+   private static final class FileReference
+      {
+      private final File file;
+      private final boolean isSavedSequence;
+
+      private FileReference(@NotNull final File file, final boolean isSavedSequence)
+         {
+         this.file = file;
+         this.isSavedSequence = isSavedSequence;
+         }
+      }
+
+   /** Parses an expression file into the {@link XmlExpressionCache}. */
+   private static final class ExpressionRead implements Runnable
+      {
+      private final File file;
+
+      private ExpressionRead(@NotNull final File file)
+         {
+         this.file = file;
+         }
+
+      @Override
+      public void run()
+         {
+         try
+            {
+            if (file.isFile())
+               {
+               XmlExpressionCache.getInstance().get(file);
+               }
+            }
+         catch (Exception e)
+            {
+            // the normal load will report the problem
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("SequenceFilePreloader$ExpressionRead.run(): Exception while reading [" + file + "], skipping it", e);
+               }
+            }
+         }
+      }
+
+   /** Parses a saved sequence file and reads the files it refers to which haven't been seen yet, in the background. */
+   private final class SavedSequenceScan implements Runnable
+      {
+      private final File file;
+      private final Set<File> seenFiles;
+
+      private SavedSequenceScan(@NotNull final File file, @NotNull final Set<File> seenFiles)
+         {
+         this.file = file;
+         this.seenFiles = seenFiles;
+         }
+
+      @Override
+      public void run()
+         {
+         final List<FileReference> references = new ArrayList<FileReference>();
+         try
+            {
+            if (file.isFile())
+               {
+               final Document document = XmlHelper.createDocument(file);
+               final Element rootElement = (document == null) ? null : document.getRootElement();
+               final Element containerElement = (rootElement == null) ? null : rootElement.getChild(ContainerModel.XML_ELEMENT_NAME);
+               if (containerElement != null)
+                  {
+                  collectFileReferences(containerElement, references);
+                  }
+               }
+            }
+         catch (Exception e)
+            {
+            // the normal load will report the problem, if the saved sequence is ever executed
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("SequenceFilePreloader$SavedSequenceScan.run(): Exception while reading [" + file + "], skipping it", e);
+               }
+            }
+
+         for (final FileReference reference : references)
+            {
+            if (seenFiles.add(reference.file))
+               {
+               if (reference.isSavedSequence)
+                  {
+                  scanInBackground(reference.file, seenFiles);
+                  }
+               else
+                  {
+                  backgroundExecutorService.execute(new ExpressionRead(reference.file));
+                  }
+               }
+            }
+         }
+      }
+   }
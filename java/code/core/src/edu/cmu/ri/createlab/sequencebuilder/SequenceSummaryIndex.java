@@ -0,0 +1,865 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.util.DirectoryPoller;
+import edu.cmu.ri.createlab.util.DurableFileWriter;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SequenceSummaryIndex</code> is a singleton which keeps a {@link Summary} of every saved sequence file: how many
+ * of each kind of program element it contains at its top level, which expression and saved sequence files it refers
+ * to (at any depth), and roughly how long it takes to play.  Views which only need to describe a saved sequence (such
+ * as the sequence palette and the saved sequence blocks on the stage) use the summary instead of loading the sequence.
+ * </p>
+ * <p>
+ * Summaries are computed by a single streaming pass over the file, which neither builds a DOM nor validates against
+ * the DTD, and are persisted to the {@link PathManager#getSequenceSummaryIndexFile() index file} next to the sequences
+ * directory, so that they survive restarts.  A summary is only used while the file's modification time and size still
+ * match those seen when it was computed; otherwise the file is scanned again.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SequenceSummaryIndex implements DirectoryPoller.EventListener
+   {
+   private static final Logger LOG = Logger.getLogger(SequenceSummaryIndex.class);
+
+   /** How long to wait after a summary changes before writing the index, so that a burst of scans is written once. */
+   private static final long SAVE_DELAY_IN_MILLIS = 2000;
+
+   // version 2 stopped counting the saved sequences in both branches of a conditional as played
+   private static final String INDEX_HEADER = "# sequence summary index, version 2";
+   private static final String FIELD_SEPARATOR = "\t";
+   private static final String LIST_SEPARATOR = ",";
+   private static final String COUNT_SEPARATOR = "=";
+   private static final int FIELD_COUNT = 10;
+   private static final String ENCODING = "UTF-8";
+
+   private static final String XML_ELEMENT_IF_BRANCH = "if-branch";
+   private static final String XML_ELEMENT_ELSE_BRANCH = "else-branch";
+   private static final String XML_ATTRIBUTE_FILE = "file";
+   private static final String XML_ATTRIBUTE_DELAY_IN_MILLIS = "delay-in-millis";
+   private static final String XML_ATTRIBUTE_ITERATIONS = "iterations";
+
+   private static final SequenceSummaryIndex INSTANCE = new SequenceSummaryIndex();
+
+   public static SequenceSummaryIndex getInstance()
+      {
+      return INSTANCE;
+      }
+
+   /** A summary of the contents of a saved sequence file.  Summaries are immutable. */
+   public static final class Summary
+      {
+      private final long lastModified;
+      private final long length;
+      private final int topLevelCounterLoopCount;
+      private final int topLevelLoopableConditionalCount;
+      private final Map<String, Integer> topLevelExpressionReferences;
+      private final Map<String, Integer> topLevelSavedSequenceReferences;
+      private final Set<String> expressionFilenames;
+      private final Map<String, Long> savedSequencePlayCounts;
+      private final long ownDurationInMillis;
+
+      private Summary(final long lastModified,
+                      final long length,
+                      final int topLevelCounterLoopCount,
+                      final int topLevelLoopableConditionalCount,
+                      @NotNull final Map<String, Integer> topLevelExpressionReferences,
+                      @NotNull final Map<String, Integer> topLevelSavedSequenceReferences,
+                      @NotNull final Set<String> expressionFilenames,
+                      @NotNull final Map<String, Long> savedSequencePlayCounts,
+                      final long ownDurationInMillis)
+         {
+         this.lastModified = lastModified;
+         this.length = length;
+         this.topLevelCounterLoopCount = topLevelCounterLoopCount;
+         this.topLevelLoopableConditionalCount = topLevelLoopableConditionalCount;
+         this.topLevelExpressionReferences = Collections.unmodifiableMap(topLevelExpressionReferences);
+         this.topLevelSavedSequenceReferences = Collections.unmodifiableMap(topLevelSavedSequenceReferences);
+         this.expressionFilenames = Collections.unmodifiableSet(expressionFilenames);
+         this.savedSequencePlayCounts = Collections.unmodifiableMap(savedSequencePlayCounts);
+         this.ownDurationInMillis = ownDurationInMillis;
+         }
+
+      /** Returns the number of counter loops at the top level of the sequence. */
+      public int getTopLevelCounterLoopCount()
+         {
+         return topLevelCounterLoopCount;
+         }
+
+      /** Returns the number of loopable conditionals at the top level of the sequence. */
+      public int getTopLevelLoopableConditionalCount()
+         {
+         return topLevelLoopableConditionalCount;
+         }
+
+      /**
+       * Returns the names of the expression files referred to at the top level of the sequence, mapped to the number of
+       * times each is referred to there.
+       */
+      @NotNull
+      public Map<String, Integer> getTopLevelExpressionReferences()
+         {
+         return topLevelExpressionReferences;
+         }
+
+      /**
+       * Returns the names of the saved sequence files referred to at the top level of the sequence, mapped to the
+       * number of times each is referred to there.
+       */
+      @NotNull
+      public Map<String, Integer> getTopLevelSavedSequenceReferences()
+         {
+         return topLevelSavedSequenceReferences;
+         }
+
+      /** Returns the names of the expression files referred to anywhere in the sequence, including inside loops. */
+      @NotNull
+      public Set<String> getReferencedExpressionFilenames()
+         {
+         return expressionFilenames;
+         }
+
+      /** Returns the names of the saved sequence files referred to anywhere in the sequence, including inside loops. */
+      @NotNull
+      public Set<String> getReferencedSavedSequenceFilenames()
+         {
+         return savedSequencePlayCounts.keySet();
+         }
+
+      /**
+       * Returns the names of the saved sequence files referred to anywhere in the sequence, mapped to the number of
+       * times each is played per play of the sequence.  Loops are counted for their number of iterations, and
+       * conditionals for their longer branch, so a saved sequence which is only in the shorter branch is played zero
+       * times.
+       */
+      @NotNull
+      public Map<String, Long> getSavedSequencePlayCounts()
+         {
+         return savedSequencePlayCounts;
+         }
+
+      /**
+       * Returns the estimated time, in milliseconds, the sequence takes to play, not counting the saved sequences it
+       * contains.  Loops are counted for their number of iterations, and conditionals for their longer branch.
+       *
+       * @see SequenceSummaryIndex#getEstimatedDurationInMillis(File)
+       */
+      public long getOwnDurationInMillis()
+         {
+         return ownDurationInMillis;
+         }
+      }
+
+   private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(this.getClass().getSimpleName()));
+
+   private final Lock lock = new ReentrantLock();
+   private final Map<File, Summary> summaries = new HashMap<File, Summary>();
+   private File loadedIndexFile = null;
+   private boolean isSavePending = false;
+
+   private final XMLInputFactory xmlInputFactory;
+
+   private final Runnable saveRunnable =
+         new Runnable()
+         {
+         @Override
+         public void run()
+            {
+            save();
+            }
+         };
+
+   private SequenceSummaryIndex()
+      {
+      // private to prevent instantiation
+
+      // the summary doesn't need anything from the DTD, so don't read it (or, worse, fetch it over the network)
+      xmlInputFactory = XMLInputFactory.newInstance();
+      xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      xmlInputFactory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+      xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+      // the PathManager remembers this and adds it to the poller whenever it's (re)created
+      PathManager.getInstance().registerSequencesDirectoryPollerEventListener(this);
+      }
+
+   /**
+    * Returns the summary of the given saved sequence file, scanning the file only if it isn't already summarized or
+    * has changed since it was summarized.  Returns <code>null</code> if the file doesn't exist or can't be read.
+    */
+   @Nullable
+   public Summary getSummary(@NotNull final File savedSequenceFile)
+      {
+      final File file = savedSequenceFile.getAbsoluteFile();
+      final long lastModified = file.lastModified();
+      final long length = file.length();
+      if (lastModified == 0L)
+         {
+         return null;
+         }
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         loadIfNecessary();
+         final Summary summary = summaries.get(file);
+         if (summary != null && summary.lastModified == lastModified && summary.length == length)
+            {
+            return summary;
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      // scan outside of the lock so that a large file doesn't block lookups of other files
+      final Summary summary = scan(file, lastModified, length);
+      if (summary != null)
+         {
+         lock.lock();  // block until condition holds
+         try
+            {
+            summaries.put(file, summary);
+            scheduleSave();
+            }
+         finally
+            {
+            lock.unlock();
+            }
+         }
+      return summary;
+      }
+
+   /**
+    * Returns the estimated time, in milliseconds, the given saved sequence takes to play, including the saved sequences
+    * it contains.  Returns 0 if the file can't be read.  Saved sequences which (directly or indirectly) contain
+    * themselves are only counted once.
+    */
+   public long getEstimatedDurationInMillis(@NotNull final File savedSequenceFile)
+      {
+      return getEstimatedDurationInMillis(savedSequenceFile.getAbsoluteFile(), new HashSet<File>());
+      }
+
+   private long getEstimatedDurationInMillis(@NotNull final File file, @NotNull final Set<File> enclosingFiles)
+      {
+      final Summary summary = getSummary(file);
+      if (summary == null || !enclosingFiles.add(file))
+         {
+         return 0;
+         }
+
+      long duration = summary.ownDurationInMillis;
+      for (final Map.Entry<String, Long> entry : summary.savedSequencePlayCounts.entrySet())
+         {
+         final long nestedDuration = getEstimatedDurationInMillis(new File(file.getParentFile(), entry.getKey()), enclosingFiles);
+         duration = saturatedAdd(duration, saturatedMultiply(nestedDuration, entry.getValue()));
+         }
+      enclosingFiles.remove(file);
+      return duration;
+      }
+
+   /** Forgets the summary, if any, of the given saved sequence file, so that it will be scanned again when next needed. */
+   public void invalidate(@NotNull final File savedSequenceFile)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (summaries.remove(savedSequenceFile.getAbsoluteFile()) != null)
+            {
+            scheduleSave();
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Forgets every summary, including those loaded from the index file, which will be loaded again when next needed.
+    * The index file itself is left alone.
+    */
+   public void clear()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         summaries.clear();
+         loadedIndexFile = null;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   public void handleNewFileEvent(@NotNull final Set<File> files)
+      {
+      // nothing to do, new files will be summarized on demand
+      }
+
+   @Override
+   public void handleModifiedFileEvent(@NotNull final Set<File> files)
+      {
+      // nothing to do, the changed modification time will cause the file to be scanned again when next needed
+      }
+
+   @Override
+   public void handleDeletedFileEvent(@NotNull final Set<File> files)
+      {
+      for (final File file : files)
+         {
+         invalidate(file);
+         }
+      }
+
+   /**
+    * Scans the given file, returning <code>null</code> if it can't be read or parsed.  Nothing here is specific to
+    * the index's state, so it's safe to call without holding the lock.
+    */
+   @Nullable
+   private Summary scan(@NotNull final File file, final long lastModified, final long length)
+      {
+      final long startTime = System.currentTimeMillis();
+      int topLevelCounterLoopCount = 0;
+      int topLevelLoopableConditionalCount = 0;
+      final Map<String, Integer> topLevelExpressionReferences = new HashMap<String, Integer>();
+      final Map<String, Integer> topLevelSavedSequenceReferences = new HashMap<String, Integer>();
+      final Set<String> expressionFilenames = new HashSet<String>();
+
+      // the durations and saved sequence play counts of the loops, conditionals and branches currently open, innermost first
+      final LinkedList<Frame> frames = new LinkedList<Frame>();
+      frames.addFirst(new Frame(1, 1));
+      int containerDepth = 0;
+
+      InputStream inputStream = null;
+      XMLStreamReader reader = null;
+      try
+         {
+         inputStream = new BufferedInputStream(new FileInputStream(file));
+         reader = xmlInputFactory.createXMLStreamReader(inputStream);
+         while (reader.hasNext())
+            {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+               {
+               final String name = reader.getLocalName();
+               final boolean isTopLevel = containerDepth == 1;
+               if (ContainerModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  containerDepth++;
+                  }
+               else if (ExpressionModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  final String filename = reader.getAttributeValue(null, XML_ATTRIBUTE_FILE);
+                  if (filename != null)
+                     {
+                     expressionFilenames.add(filename);
+                     if (isTopLevel)
+                        {
+                        increment(topLevelExpressionReferences, filename);
+                        }
+                     }
+                  final Frame frame = frames.getFirst();
+                  frame.durationInMillis = saturatedAdd(frame.durationInMillis, parseLong(reader.getAttributeValue(null, XML_ATTRIBUTE_DELAY_IN_MILLIS), 0));
+                  }
+               else if (SavedSequenceModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  final String filename = reader.getAttributeValue(null, XML_ATTRIBUTE_FILE);
+                  if (filename != null)
+                     {
+                     addPlayCount(frames.getFirst().savedSequencePlayCounts, filename, frames.getFirst().multiplier);
+                     if (isTopLevel)
+                        {
+                        increment(topLevelSavedSequenceReferences, filename);
+                        }
+                     }
+                  }
+               else if (CounterLoopModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  if (isTopLevel)
+                     {
+                     topLevelCounterLoopCount++;
+                     }
+                  final long iterations = Math.max(CounterLoopModel.MIN_NUMBER_OF_ITERATIONS,
+                                                   parseLong(reader.getAttributeValue(null, XML_ATTRIBUTE_ITERATIONS), CounterLoopModel.MIN_NUMBER_OF_ITERATIONS));
+                  frames.addFirst(new Frame(saturatedMultiply(frames.getFirst().multiplier, iterations), iterations));
+                  }
+               else if (LoopableConditionalModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  if (isTopLevel)
+                     {
+                     topLevelLoopableConditionalCount++;
+                     }
+                  frames.addFirst(new Frame(frames.getFirst().multiplier, 1));
+                  }
+               else if (XML_ELEMENT_IF_BRANCH.equals(name) || XML_ELEMENT_ELSE_BRANCH.equals(name))
+                  {
+                  frames.addFirst(new Frame(frames.getFirst().multiplier, 1));
+                  }
+               }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+               {
+               final String name = reader.getLocalName();
+               if (ContainerModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  containerDepth--;
+                  }
+               else if (CounterLoopModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  final Frame loop = frames.removeFirst();
+                  final Frame parent = frames.getFirst();
+                  parent.durationInMillis = saturatedAdd(parent.durationInMillis, saturatedMultiply(loop.durationInMillis, loop.iterations));
+                  mergePlayCounts(loop.savedSequencePlayCounts, parent.savedSequencePlayCounts, true);
+                  }
+               else if (XML_ELEMENT_IF_BRANCH.equals(name) || XML_ELEMENT_ELSE_BRANCH.equals(name))
+                  {
+                  final Frame branch = frames.removeFirst();
+                  frames.getFirst().branches.add(branch);
+                  }
+               else if (LoopableConditionalModel.XML_ELEMENT_NAME.equals(name))
+                  {
+                  // only one branch is taken, so assume it's the longer one (or the if branch, if they're as long)
+                  final Frame conditional = frames.removeFirst();
+                  Frame longestBranch = null;
+                  for (final Frame branch : conditional.branches)
+                     {
+                     if (longestBranch == null || branch.durationInMillis > longestBranch.durationInMillis)
+                        {
+                        longestBranch = branch;
+                        }
+                     }
+
+                  // the other branch's saved sequences are still referred to, but aren't counted as played
+                  final Frame parent = frames.getFirst();
+                  for (final Frame branch : conditional.branches)
+                     {
+                     mergePlayCounts(branch.savedSequencePlayCounts, parent.savedSequencePlayCounts, branch == longestBranch);
+                     }
+                  if (longestBranch != null)
+                     {
+                     parent.durationInMillis = saturatedAdd(parent.durationInMillis, longestBranch.durationInMillis);
+                     }
+                  }
+               }
+            }
+         }
+      catch (IOException e)
+         {
+         LOG.error("SequenceSummaryIndex.scan(): IOException while trying to read [" + file + "]", e);
+         return null;
+         }
+      catch (XMLStreamException e)
+         {
+         LOG.error("SequenceSummaryIndex.scan(): XMLStreamException while trying to parse [" + file + "]", e);
+         return null;
+         }
+      catch (RuntimeException e)
+         {
+         // e.g. end tags without matching start tags, which a well-formedness check would normally catch
+         LOG.error("SequenceSummaryIndex.scan(): Exception while trying to parse [" + file + "]", e);
+         return null;
+         }
+      finally
+         {
+         close(reader, inputStream);
+         }
+
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("SequenceSummaryIndex.scan(): scanned [" + file + "] in [" + (System.currentTimeMillis() - startTime) + "] ms");
+         }
+      return new Summary(lastModified,
+                         length,
+                         topLevelCounterLoopCount,
+                         topLevelLoopableConditionalCount,
+                         topLevelExpressionReferences,
+                         topLevelSavedSequenceReferences,
+                         expressionFilenames,
+                         frames.getFirst().savedSequencePlayCounts,
+                         frames.getFirst().durationInMillis);
+      }
+
+   // must be called while holding the lock
+   private void loadIfNecessary()
+      {
+      final File indexFile = PathManager.getInstance().getSequenceSummaryIndexFile();
+      if (indexFile == null || indexFile.equals(loadedIndexFile))
+         {
+         return;
+         }
+
+      // the device (and thus the sequences directory) changed, so start over with the new device's index
+      summaries.clear();
+      loadedIndexFile = indexFile;
+      final File sequencesDirectory = PathManager.getInstance().getSequencesDirectory();
+      if (sequencesDirectory == null || !indexFile.isFile())
+         {
+         return;
+         }
+
+      BufferedReader reader = null;
+      try
+         {
+         reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), ENCODING));
+         if (!INDEX_HEADER.equals(reader.readLine()))
+            {
+            LOG.info("SequenceSummaryIndex.loadIfNecessary(): Ignoring index [" + indexFile + "] since it's in an unknown format");
+            return;
+            }
+         String line;
+         while ((line = reader.readLine()) != null)
+            {
+            final String[] fields = line.split(FIELD_SEPARATOR, -1);
+            if (fields.length == FIELD_COUNT)
+               {
+               try
+                  {
+                  summaries.put(new File(sequencesDirectory, decode(fields[0])).getAbsoluteFile(),
+                                new Summary(Long.parseLong(fields[1]),
+                                            Long.parseLong(fields[2]),
+                                            Integer.parseInt(fields[3]),
+                                            Integer.parseInt(fields[4]),
+                                            decodeIntegerCounts(fields[5]),
+                                            decodeIntegerCounts(fields[6]),
+                                            decodeSet(fields[7]),
+                                            decodeLongCounts(fields[8]),
+                                            Long.parseLong(fields[9])));
+                  }
+               catch (NumberFormatException e)
+                  {
+                  // skip the damaged line, the file will simply be scanned again
+                  LOG.debug("SequenceSummaryIndex.loadIfNecessary(): Skipping damaged line in [" + indexFile + "]", e);
+                  }
+               }
+            }
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("SequenceSummaryIndex.loadIfNecessary(): loaded [" + summaries.size() + "] summaries from [" + indexFile + "]");
+            }
+         }
+      catch (IOException e)
+         {
+         LOG.error("SequenceSummaryIndex.loadIfNecessary(): IOException while reading [" + indexFile + "], will rebuild it", e);
+         summaries.clear();
+         }
+      finally
+         {
+         if (reader != null)
+            {
+            try
+               {
+               reader.close();
+               }
+            catch (IOException ignored)
+               {
+               LOG.debug("SequenceSummaryIndex.loadIfNecessary(): IOException while closing [" + indexFile + "]");
+               }
+            }
+         }
+      }
+
+   // must be called while holding the lock
+   private void scheduleSave()
+      {
+      if (!isSavePending && loadedIndexFile != null)
+         {
+         isSavePending = true;
+         executorService.schedule(saveRunnable, SAVE_DELAY_IN_MILLIS, TimeUnit.MILLISECONDS);
+         }
+      }
+
+   // called on the executor's thread
+   private void save()
+      {
+      final File indexFile;
+      final File sequencesDirectory = PathManager.getInstance().getSequencesDirectory();
+      final StringBuilder contents = new StringBuilder(INDEX_HEADER).append("\n");
+      lock.lock();  // block until condition holds
+      try
+         {
+         isSavePending = false;
+         indexFile = loadedIndexFile;
+         if (indexFile == null || sequencesDirectory == null || !indexFile.equals(PathManager.getInstance().getSequenceSummaryIndexFile()))
+            {
+            return;
+            }
+
+         // only summaries of files in the sequences directory belong in the index
+         final File absoluteSequencesDirectory = sequencesDirectory.getAbsoluteFile();
+         for (final Map.Entry<File, Summary> entry : summaries.entrySet())
+            {
+            if (absoluteSequencesDirectory.equals(entry.getKey().getParentFile()))
+               {
+               appendLine(contents, entry.getKey().getName(), entry.getValue());
+               }
+            }
+         }
+      catch (UnsupportedEncodingException e)
+         {
+         LOG.error("SequenceSummaryIndex.save(): UnsupportedEncodingException while encoding the index", e);
+         return;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      try
+         {
+         DurableFileWriter.write(indexFile, contents.toString());
+         }
+      catch (IOException e)
+         {
+         LOG.error("SequenceSummaryIndex.save(): IOException while writing [" + indexFile + "]", e);
+         }
+      }
+
+   private static void appendLine(@NotNull final StringBuilder contents, @NotNull final String filename, @NotNull final Summary summary) throws UnsupportedEncodingException
+      {
+      contents.append(encode(filename)).append(FIELD_SEPARATOR)
+            .append(summary.lastModified).append(FIELD_SEPARATOR)
+            .append(summary.length).append(FIELD_SEPARATOR)
+            .append(summary.topLevelCounterLoopCount).append(FIELD_SEPARATOR)
+            .append(summary.topLevelLoopableConditionalCount).append(FIELD_SEPARATOR)
+            .append(encodeCounts(summary.topLevelExpressionReferences)).append(FIELD_SEPARATOR)
+            .append(encodeCounts(summary.topLevelSavedSequenceReferences)).append(FIELD_SEPARATOR)
+            .append(encodeSet(summary.expressionFilenames)).append(FIELD_SEPARATOR)
+            .append(encodeCounts(summary.savedSequencePlayCounts)).append(FIELD_SEPARATOR)
+            .append(summary.ownDurationInMillis).append("\n");
+      }
+
+   // filenames are URL-encoded, so they can't contain any of the separators
+   private static String encode(@NotNull final String filename) throws UnsupportedEncodingException
+      {
+      return URLEncoder.encode(filename, ENCODING);
+      }
+
+   private static String decode(@NotNull final String encodedFilename) throws UnsupportedEncodingException
+      {
+      return URLDecoder.decode(encodedFilename, ENCODING);
+      }
+
+   private static String encodeSet(@NotNull final Set<String> filenames) throws UnsupportedEncodingException
+      {
+      final StringBuilder s = new StringBuilder();
+      for (final String filename : filenames)
+         {
+         if (s.length() > 0)
+            {
+            s.append(LIST_SEPARATOR);
+            }
+         s.append(encode(filename));
+         }
+      return s.toString();
+      }
+
+   private static String encodeCounts(@NotNull final Map<String, ? extends Number> counts) throws UnsupportedEncodingException
+      {
+      final StringBuilder s = new StringBuilder();
+      for (final Map.Entry<String, ? extends Number> entry : counts.entrySet())
+         {
+         if (s.length() > 0)
+            {
+            s.append(LIST_SEPARATOR);
+            }
+         s.append(encode(entry.getKey())).append(COUNT_SEPARATOR).append(entry.getValue());
+         }
+      return s.toString();
+      }
+
+   @NotNull
+   private static Set<String> decodeSet(@NotNull final String field) throws UnsupportedEncodingException
+      {
+      final Set<String> filenames = new HashSet<String>();
+      for (final String item : splitList(field))
+         {
+         filenames.add(decode(item));
+         }
+      return filenames;
+      }
+
+   @NotNull
+   private static Map<String, Integer> decodeIntegerCounts(@NotNull final String field) throws UnsupportedEncodingException
+      {
+      final Map<String, Integer> counts = new HashMap<String, Integer>();
+      for (final String item : splitList(field))
+         {
+         final String[] parts = item.split(COUNT_SEPARATOR, 2);
+         if (parts.length != 2)
+            {
+            throw new NumberFormatException("Malformed count [" + item + "]");
+            }
+         counts.put(decode(parts[0]), Integer.parseInt(parts[1]));
+         }
+      return counts;
+      }
+
+   @NotNull
+   private static Map<String, Long> decodeLongCounts(@NotNull final String field) throws UnsupportedEncodingException
+      {
+      final Map<String, Long> counts = new HashMap<String, Long>();
+      for (final String item : splitList(field))
+         {
+         final String[] parts = item.split(COUNT_SEPARATOR, 2);
+         if (parts.length != 2)
+            {
+            throw new NumberFormatException("Malformed count [" + item + "]");
+            }
+         counts.put(decode(parts[0]), Long.parseLong(parts[1]));
+         }
+      return counts;
+      }
+
+   @NotNull
+   private static List<String> splitList(@NotNull final String field)
+      {
+      final List<String> items = new ArrayList<String>();
+      if (field.length() > 0)
+         {
+         Collections.addAll(items, field.split(LIST_SEPARATOR));
+         }
+      return items;
+      }
+
+   private static void increment(@NotNull final Map<String, Integer> counts, @NotNull final String key)
+      {
+      final Integer count = counts.get(key);
+      counts.put(key, (count == null) ? 1 : count + 1);
+      }
+
+   private static void addPlayCount(@NotNull final Map<String, Long> playCounts, @NotNull final String filename, final long playCount)
+      {
+      final Long existingPlayCount = playCounts.get(filename);
+      playCounts.put(filename, saturatedAdd((existingPlayCount == null) ? 0 : existingPlayCount, playCount));
+      }
+
+   /**
+    * Adds the given play counts to the parent's.  If <code>isPlayed</code> is <code>false</code>, the saved sequences
+    * are only recorded as being referred to, with no plays.
+    */
+   private static void mergePlayCounts(@NotNull final Map<String, Long> playCounts, @NotNull final Map<String, Long> parentPlayCounts, final boolean isPlayed)
+      {
+      for (final Map.Entry<String, Long> entry : playCounts.entrySet())
+         {
+         addPlayCount(parentPlayCounts, entry.getKey(), isPlayed ? entry.getValue() : 0);
+         }
+      }
+
+   private static long parseLong(@Nullable final String value, final long defaultValue)
+      {
+      if (value != null)
+         {
+         try
+            {
+            return Math.max(0, Long.parseLong(value.trim()));
+            }
+         catch (NumberFormatException ignored)
+            {
+            // fall through to the default
+            }
+         }
+      return defaultValue;
+      }
+
+   private static long saturatedAdd(final long a, final long b)
+      {
+      final long sum = a + b;
+      return (sum < 0) ? Long.MAX_VALUE : sum;
+      }
+
+   private static long saturatedMultiply(final long a, final long b)
+      {
+      if (a == 0 || b == 0)
+         {
+         return 0;
+         }
+      return (a > Long.MAX_VALUE / b) ? Long.MAX_VALUE : a * b;
+      }
+
+   private static void close(@Nullable final XMLStreamReader reader, @Nullable final InputStream inputStream)
+      {
+      if (reader != null)
+         {
+         try
+            {
+            reader.close();
+            }
+         catch (XMLStreamException ignored)
+            {
+            LOG.debug("SequenceSummaryIndex.close(): XMLStreamException while closing the reader");
+            }
+         }
+      if (inputStream != null)
+         {
+         try
+            {
+            inputStream.close();
+            }
+         catch (IOException ignored)
+            {
+            LOG.debug("SequenceSummaryIndex.close(): IOException while closing the input stream");
+            }
+         }
+      }
+
+   /** The accumulated duration and saved sequence play counts of an open loop, conditional or branch. */
+   private static final class Frame
+      {
+      /** How many times the contents of this frame are played for each play of the sequence. */
+      private final long multiplier;
+      private final long iterations;
+      private long durationInMillis = 0;
+
+      /** The number of times each saved sequence in this frame is played for each play of the sequence. */
+      private final Map<String, Long> savedSequencePlayCounts = new HashMap<String, Long>();
+
+      /** For a conditional, its branches which have been closed so far. */
+      private final List<Frame> branches = new ArrayList<Frame>(2);
+
+      private Frame(final long multiplier, final long iterations)
+         {
+         this.multiplier = multiplier;
+         this.iterations = iterations;
+         }
+      }
+   }
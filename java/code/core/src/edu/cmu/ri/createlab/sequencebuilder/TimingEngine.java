@@ -0,0 +1,259 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerConstants;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>TimingEngine</code> is a singleton which times the steps of an executing sequence.  All steps share a single
+ * scheduled timer thread which wakes each step exactly at its deadline and delivers progress ticks to the step's
+ * {@link ProgressListener} at a configurable rate.  The rate defaults to
+ * {@link VisualProgrammerConstants.Tuning#PROGRESS_INTERVAL_IN_MILLIS}, which can be set at launch with the
+ * <code>visual-programmer.progress-interval-millis</code> system property.  The thread executing the sequence simply blocks in
+ * {@link #await(Timeline, int, ProgressListener)} until the step's deadline arrives, so no extra worker thread is needed
+ * per step.
+ * </p>
+ * <p>
+ * The steps of a run share a {@link Timeline}, so that each step's deadline is measured from the previous step's
+ * planned deadline rather than from whenever the step actually began.  That way, the time spent between steps
+ * (executing expressions, evaluating conditionals, etc.) doesn't accumulate into drift over a long run.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class TimingEngine
+   {
+   private static final Logger LOG = Logger.getLogger(TimingEngine.class);
+
+   public interface ProgressListener
+      {
+      void handleElapsedTimeInMillis(final int millis);
+      }
+
+   public static final int MIN_PROGRESS_INTERVAL_IN_MILLIS = 10;
+
+   private static final TimingEngine INSTANCE = new TimingEngine();
+
+   public static TimingEngine getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(this.getClass().getSimpleName()));
+   private final Set<Step> activeSteps = Collections.newSetFromMap(new ConcurrentHashMap<Step, Boolean>());
+   private volatile int progressIntervalInMillis;
+
+   private TimingEngine()
+      {
+      // private to prevent instantiation
+      setProgressIntervalInMillis(VisualProgrammerConstants.Tuning.PROGRESS_INTERVAL_IN_MILLIS);
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("TimingEngine.TimingEngine(): progress interval is [" + progressIntervalInMillis + "] millis");
+         }
+      }
+
+   public int getProgressIntervalInMillis()
+      {
+      return progressIntervalInMillis;
+      }
+
+   /**
+    * Sets the rate at which progress ticks are delivered to {@link ProgressListener}s.  This method ensures that the
+    * interval is no less than {@link #MIN_PROGRESS_INTERVAL_IN_MILLIS}.  The new interval applies to steps which begin
+    * after this method is called.
+    */
+   public void setProgressIntervalInMillis(final int progressIntervalInMillis)
+      {
+      this.progressIntervalInMillis = Math.max(MIN_PROGRESS_INTERVAL_IN_MILLIS, progressIntervalInMillis);
+      }
+
+   /**
+    * The planned deadline of the latest step of a run.  A timeline belongs to a single run, and must only be used by
+    * the thread executing that run.
+    */
+   public static final class Timeline
+      {
+      private boolean isStarted = false;
+      private long plannedDeadlineInNanos;
+
+      /** Returns the time at which the next step is planned to begin, or <code>now</code> if there's no plan yet. */
+      private long getPlannedStartTimeInNanos(final long nowInNanos)
+         {
+         return isStarted ? plannedDeadlineInNanos : nowInNanos;
+         }
+
+      private void setPlannedDeadlineInNanos(final long plannedDeadlineInNanos)
+         {
+         this.plannedDeadlineInNanos = plannedDeadlineInNanos;
+         isStarted = true;
+         }
+      }
+
+   /**
+    * Waits for a step with the given duration on a timeline of its own.  Equivalent to calling
+    * {@link #await(Timeline, int, ProgressListener)} with a new {@link Timeline}.
+    */
+   public boolean await(final int durationInMillis, @Nullable final ProgressListener listener)
+      {
+      return await(new Timeline(), durationInMillis, listener);
+      }
+
+   /**
+    * Blocks the calling thread until the step's deadline arrives, the step is {@link #cancelAll() cancelled}, or the
+    * calling thread is interrupted.  The step is planned to begin at the given {@link Timeline timeline's} previous
+    * deadline, so its deadline is that plus the given duration.  If the run has fallen so far behind that the deadline
+    * has already passed, the step ends immediately and the timeline starts over from now, so that a stall (a slow
+    * device, say) is absorbed by one step instead of making every following step zero-length.
+    * <p>
+    * While waiting, the given {@link ProgressListener} (if non-<code>null</code>) is notified of the elapsed time at
+    * the current progress interval, and notified once more with the final elapsed time when the wait ends.  Progress
+    * ticks are delivered on the timer thread, so listeners must not block.
+    * </p>
+    *
+    * @return <code>true</code> if the full duration elapsed; <code>false</code> if the wait was cancelled or
+    *         interrupted
+    */
+   public boolean await(@NotNull final Timeline timeline, final int durationInMillis, @Nullable final ProgressListener listener)
+      {
+      final int duration = Math.max(0, durationInMillis);
+      final long nowInNanos = System.nanoTime();
+      final long plannedStartTimeInNanos = timeline.getPlannedStartTimeInNanos(nowInNanos);
+      final long plannedDeadlineInNanos = plannedStartTimeInNanos + TimeUnit.MILLISECONDS.toNanos(duration);
+
+      final Step step;
+      if (plannedDeadlineInNanos - nowInNanos >= 0)
+         {
+         step = new Step(plannedStartTimeInNanos, plannedDeadlineInNanos, duration, listener);
+         }
+      else
+         {
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("TimingEngine.await(): the run is [" + TimeUnit.NANOSECONDS.toMillis(nowInNanos - plannedDeadlineInNanos) + "] millis behind, so starting the timeline over");
+            }
+         step = new Step(nowInNanos - TimeUnit.MILLISECONDS.toNanos(duration), nowInNanos, duration, listener);
+         }
+      timeline.setPlannedDeadlineInNanos(step.deadlineInNanos);
+
+      activeSteps.add(step);
+      try
+         {
+         return step.await();
+         }
+      finally
+         {
+         activeSteps.remove(step);
+         }
+      }
+
+   /** Cancels all steps which are currently waiting, causing their calls to {@link #await} to return immediately. */
+   public void cancelAll()
+      {
+      for (final Step step : activeSteps)
+         {
+         step.cancel();
+         }
+      }
+
+   private final class Step
+      {
+      private final long startTimeInNanos;
+      private final long deadlineInNanos;
+      private final int durationInMillis;
+      @Nullable
+      private final ProgressListener listener;
+      private final CountDownLatch latch = new CountDownLatch(1);
+      private final AtomicBoolean wasCancelled = new AtomicBoolean(false);
+
+      private final Runnable deadlineRunnable =
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
+               latch.countDown();
+               }
+            };
+
+      private final Runnable progressRunnable =
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
+               // don't publish stale ticks once the step has ended
+               if (latch.getCount() > 0)
+                  {
+                  publishElapsedTime();
+                  }
+               }
+            };
+
+      private Step(final long startTimeInNanos, final long deadlineInNanos, final int durationInMillis, @Nullable final ProgressListener listener)
+         {
+         this.startTimeInNanos = startTimeInNanos;
+         this.deadlineInNanos = deadlineInNanos;
+         this.durationInMillis = durationInMillis;
+         this.listener = listener;
+         }
+
+      private boolean await()
+         {
+         final ScheduledFuture<?> deadlineFuture = timer.schedule(deadlineRunnable, deadlineInNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+         final ScheduledFuture<?> progressFuture = (listener == null) ? null : timer.scheduleAtFixedRate(progressRunnable, 0, progressIntervalInMillis, TimeUnit.MILLISECONDS);
+
+         boolean wasInterrupted = false;
+         try
+            {
+            latch.await();
+            }
+         catch (InterruptedException ignored)
+            {
+            LOG.debug("TimingEngine$Step.await(): interrupted while waiting for the step's deadline");
+            wasInterrupted = true;
+            Thread.currentThread().interrupt();
+            }
+         finally
+            {
+            deadlineFuture.cancel(false);
+            if (progressFuture != null)
+               {
+               progressFuture.cancel(false);
+               }
+            }
+
+         // publish the final elapsed time so that the listener always sees the end of the step
+         publishElapsedTime();
+
+         return !wasInterrupted && !wasCancelled.get();
+         }
+
+      private void cancel()
+         {
+         wasCancelled.set(true);
+         latch.countDown();
+         }
+
+      private void publishElapsedTime()
+         {
+         if (listener != null)
+            {
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeInNanos);
+            listener.handleElapsedTimeInMillis((int)Math.max(0, Math.min(elapsedMillis, durationInMillis)));
+            }
+         }
+      }
+   }
@@ -1,363 +1,421 @@
 package edu.cmu.ri.createlab.sequencebuilder.export;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.swing.JOptionPane;
-import javax.xml.xpath.XPathExpressionException;
-import org.xml.sax.SAXException;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import org.apache.log4j.Logger;
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.NotNull;
 
 /**
+ * <p>
+ * <code>ArduinoCodeWriter</code> converts a sequence or an expression into an Arduino sketch for the Hummingbird.  Each
+ * file is parsed once by an {@link ArduinoSketchParser}, and the sketch is then streamed straight to the output file in
+ * a single walk over the parsed statements.  Every distinct expression becomes one method, emitted after the
+ * <code>loop()</code> function in the order in which the expressions are first used.
+ * </p>
+ *
  * Created by c3morales on 07-11-14.
  */
-
 public class ArduinoCodeWriter
    {
-   private File file;
-   private File outputFile;
-   private FileWriter writer;
+   private static final Logger LOG = Logger.getLogger(ArduinoCodeWriter.class);
+
+   private static final String HEADER = "#include <Hummingbird.h>\n" +
+                                        "Hummingbird hummingbird; \n" +
+                                        " void setup()\n" +
+                                        "{  \n" +
+                                        "\thummingbird.init();\n " +
+                                        "}\n\n void loop(){\n";
+
+   /** The largest value read from one of the Hummingbird's (10-bit) sensor ports. */
+   private static final int MAX_SENSOR_VALUE = 1023;
+
+   /** The largest value of the 8-bit sensor readings in which the Visual Programmer gives its sensor ranges. */
+   private static final int MAX_8_BIT_SENSOR_VALUE = 255;
+
+   /** Sensors which use the whole range of the port, so their threshold is simply a percentage of that range. */
+   private static final String LIGHT_SENSOR_NAME = "Light Sensor";
+   private static final String RAW_VALUE_SENSOR_NAME = "Raw Value";
+
+   /**
+    * The ranges of the remaining sensors, keyed on sensor name.  These duplicate the <code>sensor.*.min-value</code> and
+    * <code>sensor.*.max-value</code> properties in HummingbirdVisualProgrammerDevice.properties, since that file belongs
+    * to the Hummingbird module, which this one can't depend on.
+    */
+   private static final Map<String, SensorRange> SENSOR_RANGES;
+
+   static
+      {
+      final Map<String, SensorRange> sensorRanges = new HashMap<String, SensorRange>();
+      sensorRanges.put("Distance Sensor", new SensorRange(0, 170, true));
+      sensorRanges.put("Distance Sensor Duo", new SensorRange(32, 200, true));
+      sensorRanges.put("Potentiometer", new SensorRange(0, 255, true));
+      sensorRanges.put("Sound Sensor", new SensorRange(0, 150, false));
+      sensorRanges.put("Sound Sensor Duo", new SensorRange(18, 80, false));
+      sensorRanges.put("Temperature Sensor", new SensorRange(67, 158, false));
+      SENSOR_RANGES = Collections.unmodifiableMap(sensorRanges);
+      }
+
+   private final File outputFile;
+   private final File file;
+   private final Writer writer;
+   private final ArduinoSketchParser parser = new ArduinoSketchParser();
+
+   /** Expressions used so far, keyed on lower-cased file name, in the order in which they were first used. */
+   private final Map<String, Method> methods = new LinkedHashMap<String, Method>();
+
+   /** Canonical files of the sequences currently being written, used to detect a sequence which includes itself. */
+   private final Set<File> sequencesInProgress = new HashSet<File>();
+
    private boolean cancel = false;
 
    public ArduinoCodeWriter(final ArduinoFileManager manager) throws IOException
       {
-
       outputFile = new File(manager.getArduinoFile() + File.separator + manager.getArduinoFileName());
-      writer = new FileWriter(outputFile);
+      writer = new BufferedWriter(new FileWriter(outputFile));
       file = manager.getMainFile();
       }
 
    public void generateSequence()
       {
-
       try
          {
-         final CodeGenerator gen = new CodeGenerator(file.toString());
-         init();
-         driver(gen);
-
-         if (!cancel)
+         try
             {
-            writer.write("\n}\n");
+            final List<ArduinoSketchParser.Statement> statements = parser.parseSequence(file);
+            writer.write(HEADER);
+            sequencesInProgress.add(file.getCanonicalFile());
+            writeStatements(statements, file.getName(), 1);
 
-            //prints methods of methods
-            final ArrayList<Method_Manager> method2 = gen.getMethodList();
-            for (final Method_Manager myVal : method2)
+            if (!cancel)
                {
-               writer.write("void " + myVal.getName().replace(" ", "").replace(".xml", "").replace("-", "") + "(){\n");
-               writer.write(myVal.getInstructions());
+               writer.write("\n}\n");
+               for (final Method method : methods.values())
+                  {
+                  writer.write("void " + method.getName() + "(){\n");
+                  writeLines(method.getExpressionBody().getLines(), 1);
+                  writer.write("}\n");
+                  }
                }
             }
-         gen.clearList();
-         writer.flush();
-         writer.close();
+         finally
+            {
+            writer.close();
+            }
 
-         if (cancel)
+         if (cancel && !outputFile.delete())
             {
-            outputFile.delete();
+            LOG.error("ArduinoCodeWriter.generateSequence(): Failed to delete the output file [" + outputFile + "]");
             }
          }
-      catch (final SAXException e)
+      catch (JDOMException e)
          {
-         e.printStackTrace();
+         LOG.error("ArduinoCodeWriter.generateSequence(): JDOMException while parsing the sequence [" + file + "]", e);
          }
-      catch (final XPathExpressionException e)
+      catch (IOException e)
          {
-         e.printStackTrace();
-         }
-      catch (final IOException e)
-         {
-         e.printStackTrace();
+         LOG.error("ArduinoCodeWriter.generateSequence(): IOException while converting the sequence [" + file + "]", e);
          }
       }
 
    public void generateExpression()
       {
-
       try
          {
-         final Expression_CodeGenerator ardCode = new Expression_CodeGenerator(file.toString());
-         init();
-         writer.write(ardCode.getInstruction());
-         writer.close();
+         try
+            {
+            final ArduinoSketchParser.ExpressionBody expressionBody = parser.parseExpression(file);
+            writer.write(HEADER);
+            writeLines(expressionBody.getLines(), 1);
+            writer.write("}\n");
+            }
+         finally
+            {
+            writer.close();
+            }
          }
-      catch (final IOException e)
+      catch (JDOMException e)
          {
-         e.printStackTrace();
+         LOG.error("ArduinoCodeWriter.generateExpression(): JDOMException while parsing the expression [" + file + "]", e);
          }
-      catch (final XPathExpressionException e)
+      catch (IOException e)
          {
-         e.printStackTrace();
+         LOG.error("ArduinoCodeWriter.generateExpression(): IOException while converting the expression [" + file + "]", e);
          }
       }
 
-   //Method that manage most of the call to other
-   private void driver(final CodeGenerator gen) throws XPathExpressionException, IOException
+   private void writeStatements(@NotNull final List<ArduinoSketchParser.Statement> statements,
+                                @NotNull final String sequenceName,
+                                final int depth) throws IOException
       {
-      final String[] order = gen.getOrder();
-
-      //expC = is use to have access to the expressions on the XML Doc
-      //loopC = is use to have access to the sequences on the XML Doc
-      //countC= is use to have access to the counts on the XML Doc
-      int expC = 1;
-      int loopC = 1;
-      int seqC = 1;
-      int countC = 1;
-      //count = to go through all the operations
-      for (final String anOrder : order)
-         {
-         if (anOrder.contains("expression") && !cancel)
+      for (final ArduinoSketchParser.Statement statement : statements)
+         {
+         if (cancel)
             {
-            try
-               {
-               writer.write("\t" + gen.getExpression(expC));
-               }
-            catch (final IOException e)
-               {
-               error(gen.getExpFile(expC), gen.getCurrentSeq());
-               }
-            finally
-               {
-               expC++;
-               }
+            return;
             }
-         //if is a sequence, it calls himself with the name of the new document.
-         else if (anOrder.contains("sequence") && !cancel)
+
+         if (statement instanceof ArduinoSketchParser.ExpressionStatement)
             {
-            writer.write("//Start Seq: " + gen.getSeqFile(seqC) + ": " + gen.getSeqComment(seqC) + "\n");
-            try
-               {
-               final CodeGenerator temp = new CodeGenerator(file.getParent() + File.separator + gen.getSeqFile(seqC));
-               driver(temp);
-               writer.write("//End Seq: " + gen.getSeqFile(seqC) + "\n");
-               }
-            catch (final SAXException ignored)
-               {
-               }
-            catch (final IOException e)
-               {
-               error(gen.getSeqFile(seqC), gen.getCurrentSeq());
-               }
-            finally
-               {
-               seqC++;
-               }
+            writeExpression((ArduinoSketchParser.ExpressionStatement)statement, sequenceName, depth);
             }
-         else if (anOrder.contains("loopable"))
+         else if (statement instanceof ArduinoSketchParser.SavedSequenceStatement)
             {
-            try
-               {
-               printLoop(gen, loopC);
-               }
-            finally
-               {
-               loopC++;
-               }
+            writeSavedSequence((ArduinoSketchParser.SavedSequenceStatement)statement, sequenceName, depth);
             }
-         else if (anOrder.contains("counter"))
+         else if (statement instanceof ArduinoSketchParser.CounterLoopStatement)
             {
-            try
-               {
-               printCounter(gen, countC);
-               }
-            finally
-               {
-               countC++;
-               }
+            writeCounterLoop((ArduinoSketchParser.CounterLoopStatement)statement, sequenceName, depth);
+            }
+         else if (statement instanceof ArduinoSketchParser.ConditionalStatement)
+            {
+            writeConditional((ArduinoSketchParser.ConditionalStatement)statement, sequenceName, depth);
             }
          }
       }
 
-   private void printLoop(final CodeGenerator gen, final int loopC) throws NumberFormatException, XPathExpressionException, IOException
+   private void writeExpression(@NotNull final ArduinoSketchParser.ExpressionStatement statement,
+                                @NotNull final String sequenceName,
+                                final int depth) throws IOException
       {
-
-      //order needs to be change when the user wants to repeat the else branch and not the if branch
-      writer.write(gen.getIfBranchHead(loopC));
-      if (gen.isRegularLoop())
+      final String fileName = statement.getFileName();
+      final String methodKey = fileName.toLowerCase();
+      Method method = methods.get(methodKey);
+      if (method == null)
          {
-         ///////////////if branch /////////////////////
-         printLoopIfBranch(gen, loopC);
-         writer.write("\n}\n");
-
-         ////////////// else- branch//////////////
-         writer.write(gen.getElseBranchHead(loopC));
-         printLoopElseBranch(gen, loopC);
-         writer.write(gen.getElseBranchFoot(loopC));
+         try
+            {
+            method = new Method(getMethodName(fileName), parser.parseExpression(new File(PathManager.getInstance().getExpressionsDirectory(), fileName)));
+            methods.put(methodKey, method);
+            }
+         catch (FileNotFoundException ignored)
+            {
+            error(fileName, sequenceName);
+            return;
+            }
+         catch (JDOMException e)
+            {
+            LOG.error("ArduinoCodeWriter.writeExpression(): JDOMException while parsing the expression [" + fileName + "], skipping it", e);
+            return;
+            }
          }
-      else
-         {
-         ///////////////if branch /////////////////////
-         //   writer.write(gen.getIfBranchHead(loopC));
-         printLoopElseBranch(gen, loopC);
-         writer.write("\n}\n\t");
 
-         ////////////// else- branch//////////////
-         writer.write(gen.getElseBranchHead(loopC));
-         printLoopIfBranch(gen, loopC);
-         writer.write(gen.getElseBranchFoot(loopC));
+      writeComment(statement, depth);
+      writeLine(method.getName() + "();", depth);
+      if (statement.getDelayInMillis() != 0)
+         {
+         writeLine("delay(" + statement.getDelayInMillis() + ");", depth);
          }
       }
 
-   private void printLoopIfBranch(final CodeGenerator gen, final int loopC) throws NumberFormatException, XPathExpressionException
+   private void writeSavedSequence(@NotNull final ArduinoSketchParser.SavedSequenceStatement statement,
+                                   @NotNull final String sequenceName,
+                                   final int depth) throws IOException
       {
-      final String[] ifOrder = gen.getIfBranchOrder(loopC);
+      final String fileName = statement.getFileName();
+      final File savedSequenceFile = new File(file.getParentFile(), fileName);
+
+      final List<ArduinoSketchParser.Statement> statements;
+      try
+         {
+         statements = parser.parseSequence(savedSequenceFile);
+         }
+      catch (FileNotFoundException ignored)
+         {
+         error(fileName, sequenceName);
+         return;
+         }
+      catch (JDOMException e)
+         {
+         LOG.error("ArduinoCodeWriter.writeSavedSequence(): JDOMException while parsing the sequence [" + fileName + "], skipping it", e);
+         return;
+         }
 
-      //ifLoopExpC = to have access to the expressions inside the if-branch on the XML Doc
-      //ifLoopSeqC = to have access to the sequences inside the if-branch on the XMLDoc
-      int ifloopExpC = 1;
-      int ifloopSeqC = 1;
-      for (final String anIfOrder : ifOrder)
+      final String comment = statement.getComment();
+      writeLine("//Start Seq: " + fileName + (comment.length() > 0 ? ": " + comment : ""), depth);
+      final File canonicalFile = savedSequenceFile.getCanonicalFile();
+      if (sequencesInProgress.add(canonicalFile))
          {
-         if (anIfOrder.contains("expression"))
+         try
             {
-            try
-               {
-               writer.write(gen.getIfBranchExpression(loopC, ifloopExpC));
-               }
-            catch (final IOException e)
-               {
-               error(gen.getIfBranchExpFile(loopC, ifloopExpC), gen.getCurrentSeq());
-               }
-            finally
-               {
-               ifloopExpC++;
-               }
+            writeStatements(statements, fileName, depth);
             }
-         else
+         finally
             {
-
-            try
-               {
-               writer.write("//Start Seq: " + gen.getIfBranchSeqFile(loopC, ifloopSeqC) + "\n");
-               final CodeGenerator temp = new CodeGenerator(file.getParent() + File.separator + gen.getIfBranchSeqFile(loopC, ifloopSeqC));
-               driver(temp);
-               writer.write("//End Seq: " + gen.getIfBranchSeqFile(loopC, ifloopSeqC) + "\n");
-               }
-            catch (final SAXException ignored)
-               {
-               }
-            catch (final IOException e)
-               {
-               error(gen.getIfBranchSeqFile(loopC, ifloopSeqC), gen.getCurrentSeq());
-               }
-            finally
-               {
-               ifloopSeqC++;
-               }
+            sequencesInProgress.remove(canonicalFile);
             }
          }
+      else
+         {
+         // inlining a sequence which (directly or indirectly) includes itself would never end
+         LOG.error("ArduinoCodeWriter.writeSavedSequence(): Sequence [" + fileName + "] includes itself, so it will not be expanded again");
+         writeLine("//Skipped Seq: " + fileName + " because it includes itself", depth);
+         }
+      writeLine("//End Seq: " + fileName, depth);
       }
 
-   private void printLoopElseBranch(final CodeGenerator gen, final int loopC) throws NumberFormatException, XPathExpressionException
+   private void writeCounterLoop(@NotNull final ArduinoSketchParser.CounterLoopStatement statement,
+                                 @NotNull final String sequenceName,
+                                 final int depth) throws IOException
       {
-      final String[] ElseOrder = gen.getElseBranchOrder(loopC);
+      writeComment(statement, depth);
+      writeLine("for(int counter = 0; counter <" + statement.getNumberOfIterations() + "; counter++){", depth);
+      writeStatements(statement.getBody(), sequenceName, depth + 1);
+      writeLine("}", depth);
+      }
 
-      //LoopExpC = to have access to the expressions inside the if-branch on the XML Doc
-      //LoopSeqC = to have access to the sequences inside the if-branch on the XMLDoc
-      int loopExpC = 1;
-      int loopSeqC = 1;
-      for (final String aElseOrder : ElseOrder)
-         {
-         if (aElseOrder.contains("expression") && !cancel)
-            {
-            try
-               {
-               writer.write("\t" + gen.getElseBranchExpression(loopC, loopExpC) + "\n");
-               }
-            catch (final IOException e)
-               {
-               error(gen.getElseBranchExpFile(loopC, loopExpC), gen.getCurrentSeq());
-               }
-            finally
-               {
-               loopExpC++;
-               }
-            }
-         else if (!cancel)
-            {
+   private void writeConditional(@NotNull final ArduinoSketchParser.ConditionalStatement statement,
+                                 @NotNull final String sequenceName,
+                                 final int depth) throws IOException
+      {
+      writeComment(statement, depth);
 
-            try
-               {
-               writer.write("//Start Seq: " + gen.getElseBranchSeqFile(loopC, loopSeqC) + "\n");
-               final CodeGenerator temp = new CodeGenerator(file.getParent() + File.separator + gen.getElseBranchSeqFile(loopC, loopSeqC));
-               driver(temp);
-               writer.write("//End Seq: " + gen.getElseBranchSeqFile(loopC, loopSeqC) + "\n");
-               }
-            catch (final SAXException ignored)
-               {
-               }
-            catch (final IOException e)
-               {
-               error(gen.getElseBranchSeqFile(loopC, loopSeqC), gen.getCurrentSeq());
-               }
-            finally
-               {
-               loopSeqC++;
-               }
-            }
+      final boolean willRepeatIfBranch = statement.willReevaluateAfterIfBranch();
+      final boolean willRepeatElseBranch = statement.willReevaluateAfterElseBranch();
+      if (willRepeatIfBranch && willRepeatElseBranch)
+         {
+         writeLine("while(true){", depth);
+         writeLine("if(" + getSensorCondition(statement, true) + "){", depth + 1);
+         writeStatements(statement.getIfBranch(), sequenceName, depth + 2);
+         writeLine("} else {", depth + 1);
+         writeStatements(statement.getElseBranch(), sequenceName, depth + 2);
+         writeLine("}", depth + 1);
+         writeLine("}", depth);
+         }
+      else if (willRepeatIfBranch)
+         {
+         // loop the if branch while the condition holds, then do the else branch once it no longer does
+         writeLine("while(" + getSensorCondition(statement, true) + "){", depth);
+         writeStatements(statement.getIfBranch(), sequenceName, depth + 1);
+         writeLine("}", depth);
+         writeStatements(statement.getElseBranch(), sequenceName, depth);
+         }
+      else if (willRepeatElseBranch)
+         {
+         // loop the else branch while the condition doesn't hold, then do the if branch once it does
+         writeLine("while(" + getSensorCondition(statement, false) + "){", depth);
+         writeStatements(statement.getElseBranch(), sequenceName, depth + 1);
+         writeLine("}", depth);
+         writeStatements(statement.getIfBranch(), sequenceName, depth);
+         }
+      else
+         {
+         writeLine("if(" + getSensorCondition(statement, true) + "){", depth);
+         writeStatements(statement.getIfBranch(), sequenceName, depth + 1);
+         writeLine("} else {", depth);
+         writeStatements(statement.getElseBranch(), sequenceName, depth + 1);
+         writeLine("}", depth);
          }
       }
 
-   private void printCounter(final CodeGenerator gen, final int countC) throws NumberFormatException, XPathExpressionException, IOException
+   /**
+    * Returns the Arduino expression which is true when the conditional's if branch should run (if
+    * <code>isIfBranchCondition</code> is <code>true</code>) or when its else branch should run (otherwise).
+    */
+   @NotNull
+   private static String getSensorCondition(@NotNull final ArduinoSketchParser.ConditionalStatement statement, final boolean isIfBranchCondition)
       {
-      final String[] counterOrder = gen.getCounterOrder(countC);
+      final String sensorName = statement.getSensorName();
+      final int percentage = statement.getThresholdPercentage();
+      final String comparison;
+      final int value;
 
-      writer.write(gen.getCounterHead(countC) + "\n");
-      int countSeq = 1;
-      int countExp = 1;
-      for (final String aCounterOrder : counterOrder)
+      final SensorRange sensorRange = SENSOR_RANGES.get(sensorName);
+      if (sensorRange != null)
          {
-         if (aCounterOrder.contains("expression") && !cancel)
+         final int min = scale8BitTo10Bit(sensorRange.getMin());
+         final int max = scale8BitTo10Bit(sensorRange.getMax());
+         if (sensorRange.isInverted())
             {
-            try
-               {
-               writer.write(gen.getCounterExpression(countC, countExp));
-               }
-            catch (final IOException e)
-               {
-               error(gen.getCountExpFile(countC, countExp), gen.getCurrentSeq()
-               );
-               }
-            finally
-               {
-               countExp++;
-               }
+            // these sensors' values decrease as the percentage increases, so the comparison and the value are inverted
+            comparison = isIfBranchCondition ? ">" : "<";
+            value = max - getValueFromPercentage(percentage, min, max) + min;
             }
-         else if (!cancel)
+         else
             {
-
-            try
-               {
-               writer.write("//Start Seq: " + gen.getCountSeqFile(countC, countSeq) + "\n");
-               final CodeGenerator temp = new CodeGenerator(file.getParent() + File.separator + gen.getCountSeqFile(countC, countSeq));
-               driver(temp);
-               writer.write("//End Seq: " + gen.getCountSeqFile(countC, countSeq) + "\n");
-               }
-            catch (final SAXException ignored)
-               {
-               }
-            catch (final IOException e)
-               {
-               error(gen.getCountSeqFile(countC, countSeq), gen.getCurrentSeq());
-               }
-            finally
-               {
-               countSeq++;
-               }
+            comparison = isIfBranchCondition ? "<" : ">";
+            value = getValueFromPercentage(percentage, min, max);
             }
          }
-      writer.write("}\n");
+      else if (LIGHT_SENSOR_NAME.equals(sensorName) || RAW_VALUE_SENSOR_NAME.equals(sensorName))
+         {
+         comparison = isIfBranchCondition ? "<" : ">";
+         value = MAX_SENSOR_VALUE * percentage / 100;
+         }
+      else
+         {
+         LOG.error("ArduinoCodeWriter.getSensorCondition(): Unsupported sensor [" + sensorName + "]");
+         return "hummingbird.readSensorValue(ERROR)";
+         }
+
+      return "hummingbird.readSensorValue(" + statement.getPortNumber() + ")" + comparison + value;
       }
 
-   private void init() throws IOException
+   // converts the given percentage into a number falling within [min, max]
+   private static int getValueFromPercentage(final int percentage, final int min, final int max)
       {
-      writer.write("#include <Hummingbird.h>\n" +
-                   "Hummingbird hummingbird; \n" +
+      if (percentage <= 0)
+         {
+         return min;
+         }
+      else if (percentage >= 100)
+         {
+         return max;
+         }
 
-                   " void setup()\n" +
-                   "{  \n" +
-                   "\thummingbird.init();\n " +
-                   "}\n\n void loop(){\n");
+      final int value = (int)((percentage / 100.0 * (max - min)) + min);
+      return Math.min(Math.max(min, value), max);
+      }
+
+   private static int scale8BitTo10Bit(final int eightBitNum)
+      {
+      return (int)(eightBitNum / (double)MAX_8_BIT_SENSOR_VALUE * MAX_SENSOR_VALUE);
+      }
+
+   @NotNull
+   private static String getMethodName(@NotNull final String expressionFileName)
+      {
+      return expressionFileName.replace(" ", "").replace(".xml", "").replace("-", "");
+      }
+
+   private void writeComment(@NotNull final ArduinoSketchParser.Statement statement, final int depth) throws IOException
+      {
+      final String comment = statement.getComment();
+      if (comment.length() > 0)
+         {
+         writeLine("//" + comment, depth);
+         }
+      }
+
+   private void writeLines(@NotNull final List<String> lines, final int depth) throws IOException
+      {
+      for (final String line : lines)
+         {
+         writeLine(line, depth);
+         }
+      }
+
+   private void writeLine(@NotNull final String line, final int depth) throws IOException
+      {
+      for (int i = 0; i < depth; i++)
+         {
+         writer.write('\t');
+         }
+      writer.write(line);
+      writer.write('\n');
       }
 
    public void error(final String file, final String seq)
@@ -373,4 +431,58 @@ public class ArduinoCodeWriter
       {
       return cancel;
       }
+
+   /** The range of a sensor's 8-bit values, and whether its values fall as the threshold percentage rises. */
+   private static final class SensorRange
+      {
+      private final int min;
+      private final int max;
+      private final boolean isInverted;
+
+      private SensorRange(final int min, final int max, final boolean isInverted)
+         {
+         this.min = min;
+         this.max = max;
+         this.isInverted = isInverted;
+         }
+
+      private int getMin()
+         {
+         return min;
+         }
+
+      private int getMax()
+         {
+         return max;
+         }
+
+      private boolean isInverted()
+         {
+         return isInverted;
+         }
+      }
+
+   private static final class Method
+      {
+      private final String name;
+      private final ArduinoSketchParser.ExpressionBody expressionBody;
+
+      private Method(@NotNull final String name, @NotNull final ArduinoSketchParser.ExpressionBody expressionBody)
+         {
+         this.name = name;
+         this.expressionBody = expressionBody;
+         }
+
+      @NotNull
+      private String getName()
+         {
+         return name;
+         }
+
+      @NotNull
+      private ArduinoSketchParser.ExpressionBody getExpressionBody()
+         {
+         return expressionBody;
+         }
+      }
    }
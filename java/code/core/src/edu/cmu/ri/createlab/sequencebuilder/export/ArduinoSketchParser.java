@@ -0,0 +1,441 @@
+package edu.cmu.ri.createlab.sequencebuilder.export;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import edu.cmu.ri.createlab.sequencebuilder.ContainerModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.apache.log4j.Logger;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>ArduinoSketchParser</code> reads sequence and expression files into a simple intermediate representation from
+ * which the {@link ArduinoCodeWriter} generates an Arduino sketch.  Each file is parsed with JDOM exactly once, in a
+ * single walk over its elements, and the result is remembered for the lifetime of the parser, so a sequence which
+ * refers to the same expression or saved sequence many times only reads it once.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class ArduinoSketchParser
+   {
+   private static final Logger LOG = Logger.getLogger(ArduinoSketchParser.class);
+
+   private static final String XML_ELEMENT_COMMENT = "comment";
+   private static final String XML_ELEMENT_IF_BRANCH = "if-branch";
+   private static final String XML_ELEMENT_ELSE_BRANCH = "else-branch";
+   private static final String XML_ELEMENT_SENSOR_CONDITIONAL = "sensor-conditional";
+   private static final String XML_ELEMENT_SERVICE = "service";
+   private static final String XML_ELEMENT_OPERATION = "operation";
+   private static final String XML_ELEMENT_DEVICE = "device";
+   private static final String XML_ELEMENT_PARAMETER = "parameter";
+   private static final String XML_ATTRIBUTE_FILE = "file";
+   private static final String XML_ATTRIBUTE_DELAY_IN_MILLIS = "delay-in-millis";
+   private static final String XML_ATTRIBUTE_ITERATIONS = "iterations";
+   private static final String XML_ATTRIBUTE_WILL_REEVALUATE_AFTER_IF_BRANCH = "will-reevaluate-conditional-after-if-branch-completes";
+   private static final String XML_ATTRIBUTE_WILL_REEVALUATE_AFTER_ELSE_BRANCH = "will-reevaluate-conditional-after-else-branch-completes";
+   private static final String XML_ATTRIBUTE_SENSOR_NAME = "sensor-name";
+   private static final String XML_ATTRIBUTE_THRESHOLD_PERCENTAGE = "threshold-percentage";
+   private static final String XML_ATTRIBUTE_ID = "id";
+   private static final String XML_ATTRIBUTE_NAME = "name";
+
+   /** A single element of a sequence. */
+   abstract static class Statement
+      {
+      @NotNull
+      private final String comment;
+
+      private Statement(@NotNull final Element element)
+         {
+         this.comment = readComment(element);
+         }
+
+      /** Returns the element's comment, with line breaks removed, or an empty string if it has none. */
+      @NotNull
+      String getComment()
+         {
+         return comment;
+         }
+      }
+
+   static final class ExpressionStatement extends Statement
+      {
+      private final String fileName;
+      private final int delayInMillis;
+
+      private ExpressionStatement(@NotNull final Element element)
+         {
+         super(element);
+         this.fileName = getAttributeValue(element, XML_ATTRIBUTE_FILE);
+         this.delayInMillis = getIntAttributeValue(element, XML_ATTRIBUTE_DELAY_IN_MILLIS);
+         }
+
+      @NotNull
+      String getFileName()
+         {
+         return fileName;
+         }
+
+      int getDelayInMillis()
+         {
+         return delayInMillis;
+         }
+      }
+
+   static final class SavedSequenceStatement extends Statement
+      {
+      private final String fileName;
+
+      private SavedSequenceStatement(@NotNull final Element element)
+         {
+         super(element);
+         this.fileName = getAttributeValue(element, XML_ATTRIBUTE_FILE);
+         }
+
+      @NotNull
+      String getFileName()
+         {
+         return fileName;
+         }
+      }
+
+   static final class CounterLoopStatement extends Statement
+      {
+      private final int numberOfIterations;
+      private final List<Statement> body;
+
+      private CounterLoopStatement(@NotNull final Element element)
+         {
+         super(element);
+         this.numberOfIterations = getIntAttributeValue(element, XML_ATTRIBUTE_ITERATIONS);
+         this.body = parseContainer(element.getChild(ContainerModel.XML_ELEMENT_NAME));
+         }
+
+      int getNumberOfIterations()
+         {
+         return numberOfIterations;
+         }
+
+      @NotNull
+      List<Statement> getBody()
+         {
+         return body;
+         }
+      }
+
+   static final class ConditionalStatement extends Statement
+      {
+      private final boolean willReevaluateAfterIfBranch;
+      private final boolean willReevaluateAfterElseBranch;
+      private final String sensorName;
+      private final int thresholdPercentage;
+      private final int portNumber;
+      private final List<Statement> ifBranch;
+      private final List<Statement> elseBranch;
+
+      private ConditionalStatement(@NotNull final Element element)
+         {
+         super(element);
+         this.willReevaluateAfterIfBranch = Boolean.valueOf(element.getAttributeValue(XML_ATTRIBUTE_WILL_REEVALUATE_AFTER_IF_BRANCH));
+         this.willReevaluateAfterElseBranch = Boolean.valueOf(element.getAttributeValue(XML_ATTRIBUTE_WILL_REEVALUATE_AFTER_ELSE_BRANCH));
+
+         final Element sensorConditional = element.getChild(XML_ELEMENT_SENSOR_CONDITIONAL);
+         this.sensorName = getAttributeValue(sensorConditional, XML_ATTRIBUTE_SENSOR_NAME);
+         this.thresholdPercentage = getIntAttributeValue(sensorConditional, XML_ATTRIBUTE_THRESHOLD_PERCENTAGE);
+
+         // the device ids in the XML start at 0, but the Hummingbird's ports start at 1
+         final Element service = (sensorConditional == null) ? null : sensorConditional.getChild(XML_ELEMENT_SERVICE);
+         final Element operation = (service == null) ? null : service.getChild(XML_ELEMENT_OPERATION);
+         this.portNumber = getIntAttributeValue(operation == null ? null : operation.getChild(XML_ELEMENT_DEVICE), XML_ATTRIBUTE_ID) + 1;
+
+         this.ifBranch = parseBranch(element.getChild(XML_ELEMENT_IF_BRANCH));
+         this.elseBranch = parseBranch(element.getChild(XML_ELEMENT_ELSE_BRANCH));
+         }
+
+      boolean willReevaluateAfterIfBranch()
+         {
+         return willReevaluateAfterIfBranch;
+         }
+
+      boolean willReevaluateAfterElseBranch()
+         {
+         return willReevaluateAfterElseBranch;
+         }
+
+      @NotNull
+      String getSensorName()
+         {
+         return sensorName;
+         }
+
+      int getThresholdPercentage()
+         {
+         return thresholdPercentage;
+         }
+
+      int getPortNumber()
+         {
+         return portNumber;
+         }
+
+      @NotNull
+      List<Statement> getIfBranch()
+         {
+         return ifBranch;
+         }
+
+      @NotNull
+      List<Statement> getElseBranch()
+         {
+         return elseBranch;
+         }
+
+      @NotNull
+      private static List<Statement> parseBranch(@Nullable final Element branchElement)
+         {
+         return parseContainer(branchElement == null ? null : branchElement.getChild(ContainerModel.XML_ELEMENT_NAME));
+         }
+      }
+
+   /** The Arduino statements for a single expression, which the {@link ArduinoCodeWriter} turns into a method. */
+   static final class ExpressionBody
+      {
+      private final List<String> lines;
+
+      private ExpressionBody(@NotNull final List<String> lines)
+         {
+         this.lines = Collections.unmodifiableList(lines);
+         }
+
+      @NotNull
+      List<String> getLines()
+         {
+         return lines;
+         }
+      }
+
+   private final Map<File, List<Statement>> parsedSequences = new HashMap<File, List<Statement>>();
+   private final Map<File, ExpressionBody> parsedExpressions = new HashMap<File, ExpressionBody>();
+
+   /**
+    * Returns the statements in the given sequence file.
+    *
+    * @throws FileNotFoundException if the file does not exist
+    * @throws IOException if the file cannot be read
+    * @throws JDOMException if the file cannot be parsed
+    */
+   @NotNull
+   List<Statement> parseSequence(@NotNull final File sequenceFile) throws IOException, JDOMException
+      {
+      final File canonicalFile = getExistingCanonicalFile(sequenceFile);
+      List<Statement> statements = parsedSequences.get(canonicalFile);
+      if (statements == null)
+         {
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("ArduinoSketchParser.parseSequence(): parsing [" + canonicalFile + "]");
+            }
+         final Element sequenceElement = XmlHelper.createElementNoValidate(canonicalFile);
+         statements = parseContainer(sequenceElement.getChild(ContainerModel.XML_ELEMENT_NAME));
+         parsedSequences.put(canonicalFile, statements);
+         }
+      return statements;
+      }
+
+   /**
+    * Returns the Arduino statements for the given expression file.
+    *
+    * @throws FileNotFoundException if the file does not exist
+    * @throws IOException if the file cannot be read
+    * @throws JDOMException if the file cannot be parsed
+    */
+   @NotNull
+   ExpressionBody parseExpression(@NotNull final File expressionFile) throws IOException, JDOMException
+      {
+      final File canonicalFile = getExistingCanonicalFile(expressionFile);
+      ExpressionBody expressionBody = parsedExpressions.get(canonicalFile);
+      if (expressionBody == null)
+         {
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("ArduinoSketchParser.parseExpression(): parsing [" + canonicalFile + "]");
+            }
+         final Element expressionElement = XmlHelper.createElementNoValidate(canonicalFile);
+         expressionBody = new ExpressionBody(createExpressionLines(expressionElement));
+         parsedExpressions.put(canonicalFile, expressionBody);
+         }
+      return expressionBody;
+      }
+
+   @NotNull
+   private static File getExistingCanonicalFile(@NotNull final File file) throws IOException
+      {
+      if (!file.isFile())
+         {
+         throw new FileNotFoundException("File [" + file + "] does not exist");
+         }
+      return file.getCanonicalFile();
+      }
+
+   @NotNull
+   private static List<Statement> parseContainer(@Nullable final Element containerElement)
+      {
+      final List<Statement> statements = new ArrayList<Statement>();
+      if (containerElement != null)
+         {
+         for (final Object o : containerElement.getChildren())
+            {
+            final Element element = (Element)o;
+            final String name = element.getName();
+            if (ExpressionModel.XML_ELEMENT_NAME.equals(name))
+               {
+               statements.add(new ExpressionStatement(element));
+               }
+            else if (SavedSequenceModel.XML_ELEMENT_NAME.equals(name))
+               {
+               statements.add(new SavedSequenceStatement(element));
+               }
+            else if (CounterLoopModel.XML_ELEMENT_NAME.equals(name))
+               {
+               statements.add(new CounterLoopStatement(element));
+               }
+            else if (LoopableConditionalModel.XML_ELEMENT_NAME.equals(name))
+               {
+               statements.add(new ConditionalStatement(element));
+               }
+            else
+               {
+               LOG.warn("ArduinoSketchParser.parseContainer(): Skipping unexpected program element [" + element + "]");
+               }
+            }
+         }
+      return statements;
+      }
+
+   @NotNull
+   private static List<String> createExpressionLines(@NotNull final Element expressionElement)
+      {
+      final List<String> lines = new ArrayList<String>();
+      final Element servicesElement = XmlExpression.ELEMENT_NAME.equals(expressionElement.getName()) ? expressionElement.getChild(XmlExpression.SERVICES_ELEMENT_NAME) : null;
+      if (servicesElement != null)
+         {
+         for (final Object serviceObject : servicesElement.getChildren(XML_ELEMENT_SERVICE))
+            {
+            for (final Object operationObject : ((Element)serviceObject).getChildren(XML_ELEMENT_OPERATION))
+               {
+               final Element operation = (Element)operationObject;
+               final String operationName = operation.getAttributeValue(XML_ATTRIBUTE_NAME);
+               for (final Object deviceObject : operation.getChildren(XML_ELEMENT_DEVICE))
+                  {
+                  lines.add(createDeviceLine(operationName, (Element)deviceObject));
+                  }
+               }
+            }
+         }
+      return lines;
+      }
+
+   @NotNull
+   private static String createDeviceLine(@Nullable final String operationName, @NotNull final Element device)
+      {
+      // the device ids in the XML start at 0, but the Hummingbird's ports start at 1
+      final int portNumber = getIntAttributeValue(device, XML_ATTRIBUTE_ID) + 1;
+
+      if ("setColor".equals(operationName))
+         {
+         int red = 0;
+         int green = 0;
+         int blue = 0;
+         for (final Object o : device.getChildren(XML_ELEMENT_PARAMETER))
+            {
+            final Element parameter = (Element)o;
+            final String parameterName = parameter.getAttributeValue(XML_ATTRIBUTE_NAME);
+            final int value = parseInt(parameter.getTextTrim());
+            if (parameterName != null && parameterName.startsWith("r"))
+               {
+               red = value;
+               }
+            else if (parameterName != null && parameterName.startsWith("g"))
+               {
+               green = value;
+               }
+            else if (parameterName != null && parameterName.startsWith("b"))
+               {
+               blue = value;
+               }
+            }
+         return "hummingbird.setTriColorLED(" + portNumber + "," + red + "," + green + "," + blue + ");";
+         }
+
+      final Element parameter = device.getChild(XML_ELEMENT_PARAMETER);
+      final int value = (parameter == null) ? 0 : parseInt(parameter.getTextTrim());
+      if ("setPosition".equals(operationName))
+         {
+         return "hummingbird.setServo(" + portNumber + "," + value + ");";
+         }
+      if ("setVelocity".equals(operationName))
+         {
+         // the motors turn the opposite way on the Arduino
+         return "hummingbird.setMotor(" + portNumber + "," + (-1 * value) + ");";
+         }
+      if ("setSpeed".equals(operationName))
+         {
+         return "hummingbird.setVibration(" + portNumber + "," + value + ");";
+         }
+      if ("setIntensity".equals(operationName))
+         {
+         return "hummingbird.setLED(" + portNumber + "," + value + ");";
+         }
+      return "//Sound is not supported";
+      }
+
+   @NotNull
+   private static String readComment(@NotNull final Element element)
+      {
+      final Element commentElement = element.getChild(XML_ELEMENT_COMMENT);
+      if (commentElement == null)
+         {
+         return "";
+         }
+      return commentElement.getValue().replace("\r", "").replace("\n", "");
+      }
+
+   @NotNull
+   private static String getAttributeValue(@Nullable final Element element, @NotNull final String attributeName)
+      {
+      final String value = (element == null) ? null : element.getAttributeValue(attributeName);
+      return (value == null) ? "" : value;
+      }
+
+   private static int getIntAttributeValue(@Nullable final Element element, @NotNull final String attributeName)
+      {
+      return parseInt(getAttributeValue(element, attributeName));
+      }
+
+   private static int parseInt(@Nullable final String s)
+      {
+      try
+         {
+         return Integer.parseInt(s == null ? "" : s.trim());
+         }
+      catch (NumberFormatException e)
+         {
+         LOG.error("ArduinoSketchParser.parseInt(): Invalid integer [" + s + "], using 0 instead");
+         }
+      return 0;
+      }
+   }
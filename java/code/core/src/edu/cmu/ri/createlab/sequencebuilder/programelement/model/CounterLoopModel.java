@@ -1,10 +1,11 @@
 package edu.cmu.ri.createlab.sequencebuilder.programelement.model;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import edu.cmu.ri.createlab.sequencebuilder.ContainerModel;
-import edu.cmu.ri.createlab.sequencebuilder.SequenceExecutor;
+import edu.cmu.ri.createlab.sequencebuilder.SequenceCompiler;
 import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
 import org.apache.log4j.Logger;
 import org.jdom.Element;
@@ -152,52 +153,39 @@ public final class CounterLoopModel extends BaseProgramElementModel<CounterLoopM
    public void execute()
       {
       LOG.debug("CounterLoopModel.execute()");
-      if (SequenceExecutor.getInstance().isRunning())
+      SequenceCompiler.compile(Collections.<ProgramElementModel>singletonList(this)).execute();
+      }
+
+   /** Notifies {@link ExecutionEventListener}s that execution of this loop is beginning. */
+   public void publishExecutionStart()
+      {
+      // notify listeners that we're about to begin
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleExecutionStart();
+         }
+
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleHighlight();
+         }
+      }
+
+   /** Notifies {@link ExecutionEventListener}s that the given number of iterations have been completed. */
+   public void publishElapsedIterations(final int elapsedIterations)
+      {
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleElapsedIterations(elapsedIterations);
+         }
+      }
+
+   /** Notifies {@link ExecutionEventListener}s that execution of this loop has ended. */
+   public void publishExecutionEnd()
+      {
+      for (final ExecutionEventListener listener : executionEventListeners)
          {
-         // notify listeners that we're about to begin
-         for (final ExecutionEventListener listener : executionEventListeners)
-            {
-            listener.handleExecutionStart();
-            }
-
-         for (final ExecutionEventListener listener : executionEventListeners)
-            {
-            listener.handleHighlight();
-            }
-
-         for (int i = 1; i <= numberOfIterations; i++)
-            {
-            if (!SequenceExecutor.getInstance().isRunning())
-               {
-               break;
-               }
-
-            if (LOG.isDebugEnabled())
-               {
-               LOG.debug("CounterLoopModel.execute(): iteration " + i);
-               }
-
-            containerModel.resetProgressBarsForExecution();
-
-            // iterate over the models and execute them
-            final List<ProgramElementModel> programElementModels = containerModel.getAsList();
-            for (final ProgramElementModel model : programElementModels)
-               {
-               model.execute();
-               }
-
-            // notify listeners that we just completed the ith iteration
-            for (final ExecutionEventListener listener : executionEventListeners)
-               {
-               listener.handleElapsedIterations(i);
-               }
-            }
-
-         // notify listeners that we're done
-         for (final ExecutionEventListener listener : executionEventListeners)
-            {
-            listener.handleExecutionEnd();
-            }
+         listener.handleExecutionEnd();
          }
       }
 
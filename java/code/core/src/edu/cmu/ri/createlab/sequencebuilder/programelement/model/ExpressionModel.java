@@ -2,17 +2,19 @@ package edu.cmu.ri.createlab.sequencebuilder.programelement.model;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 import javax.swing.JPanel;
-import javax.swing.SwingWorker;
+import edu.cmu.ri.createlab.sequencebuilder.CompiledExpression;
+import edu.cmu.ri.createlab.sequencebuilder.ExecutionTracer;
 import edu.cmu.ri.createlab.sequencebuilder.ExpressionExecutor;
 import edu.cmu.ri.createlab.sequencebuilder.ExpressionServiceIconView;
+import edu.cmu.ri.createlab.sequencebuilder.SequenceCompiler;
 import edu.cmu.ri.createlab.sequencebuilder.SequenceExecutor;
+import edu.cmu.ri.createlab.sequencebuilder.TimingEngine;
 import edu.cmu.ri.createlab.terk.expression.XmlExpression;
-import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.expression.manager.XmlExpressionCache;
 import edu.cmu.ri.createlab.visualprogrammer.PathManager;
 import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
 import org.apache.log4j.Level;
@@ -92,6 +94,18 @@ public final class ExpressionModel extends BaseProgramElementModel<ExpressionMod
    private int delayInMillis;
    private final Set<ExecutionEventListener> executionEventListeners = new HashSet<ExecutionEventListener>();
    private final Set<RefreshEventListener> refreshEventListeners = new HashSet<RefreshEventListener>();
+   private final TimingEngine.ProgressListener elapsedTimeListener =
+         new TimingEngine.ProgressListener()
+         {
+         @Override
+         public void handleElapsedTimeInMillis(final int millis)
+            {
+            for (final ExecutionEventListener listener : executionEventListeners)
+               {
+               listener.handleElapsedTimeInMillis(millis);
+               }
+            }
+         };
 
    /**
     * Creates an <code>ExpressionModel</code> for the given <code>expressionFile</code> with an empty hidden comment and
@@ -124,7 +138,7 @@ public final class ExpressionModel extends BaseProgramElementModel<ExpressionMod
       {
       try
          {
-         return XmlExpression.create(expressionFile);
+         return XmlExpressionCache.getInstance().get(expressionFile);
          }
       catch (IOException e)
          {
@@ -233,6 +247,16 @@ public final class ExpressionModel extends BaseProgramElementModel<ExpressionMod
 
    @Override
    public void execute()
+      {
+      SequenceCompiler.compile(Collections.<ProgramElementModel>singletonList(this)).execute();
+      }
+
+   /**
+    * Executes the given {@link CompiledExpression} (which must have been compiled from this model's expression) and
+    * then waits for this model's delay to expire, notifying {@link ExecutionEventListener}s along the way.  The delay
+    * is a step on the given {@link TimingEngine.Timeline}, which is shared by all the steps of the run.
+    */
+   public void execute(@NotNull final CompiledExpression compiledExpression, @NotNull final TimingEngine.Timeline timeline)
       {
       if (LOG.isDebugEnabled())
          {
@@ -241,81 +265,18 @@ public final class ExpressionModel extends BaseProgramElementModel<ExpressionMod
 
       if (SequenceExecutor.getInstance().isRunning())
          {
-         final ServiceManager serviceManager = getVisualProgrammerDevice().getServiceManager();
-
-         // create the swing worker
-         final long startTime = System.currentTimeMillis();
-         final long endTime = startTime + delayInMillis;
-         final SwingWorker<Object, Integer> sw =
-               new SwingWorker<Object, Integer>()
-               {
-
-               @Override
-               protected Boolean doInBackground() throws Exception
-                  {
-                  // execute the expression (asynchronously)
-                  ExpressionExecutor.getInstance().executeAsynchronously(serviceManager, ExpressionModel.this);
-
-                  long currentTime;
-                  do
-                     {
-                     currentTime = System.currentTimeMillis();
-                     final int elapsedMillis = (int)(currentTime - startTime);
-                     publish(elapsedMillis);
-                     try
-                        {
-                        // TODO: not thrilled about the busy-wait here...
-                        Thread.sleep(50);
-                        }
-                     catch (InterruptedException ignored)
-                        {
-                        LOG.error("ExpressionModel.execute().doInBackground(): InterruptedException while sleeping");
-                        }
-                     }
-                  while (currentTime < endTime && !isCancelled() && SequenceExecutor.getInstance().isRunning());
-
-                  return null;
-                  }
-
-               @Override
-               protected void process(final List<Integer> integers)
-                  {
-                  // just publish the latest update
-                  final Integer millis = integers.get(integers.size() - 1);
-                  for (final ExecutionEventListener listener : executionEventListeners)
-                     {
-                     listener.handleElapsedTimeInMillis(millis);
-                     }
-                  }
-               };
-
          // notify listeners that we're about to begin
          for (final ExecutionEventListener listener : executionEventListeners)
             {
             listener.handleExecutionStart();
             }
 
-         // start the worker and wait for it to finish
-         sw.execute();
-         try
-            {
-            sw.get();
-            }
-         catch (InterruptedException ignored)
-            {
-            sw.cancel(true);
-            LOG.error("ExpressionModel.execute(): InterruptedException while waiting for the SwingWorker to finish");
-            }
-         catch (ExecutionException ignored)
-            {
-            sw.cancel(true);
-            LOG.error("ExpressionModel.execute(): ExecutionException while waiting for the SwingWorker to finish");
-            }
-         catch (Exception e)
-            {
-            sw.cancel(true);
-            LOG.error("ExpressionModel.execute(): Exception while waiting for the SwingWorker to finish", e);
-            }
+         // execute the expression (asynchronously) and then wait until the delay expires, publishing the elapsed time
+         // to the listeners along the way
+         final ExecutionTracer.Span span = ExecutionTracer.getInstance().startElement(ExecutionTracer.EventType.EXPRESSION, getName());
+         ExpressionExecutor.getInstance().executeAsynchronously(compiledExpression);
+         TimingEngine.getInstance().await(timeline, delayInMillis, elapsedTimeListener);
+         ExecutionTracer.getInstance().endTimedElement(span, delayInMillis);
 
          // notify listeners that we're done
          for (final ExecutionEventListener listener : executionEventListeners)
@@ -1,12 +1,11 @@
 package edu.cmu.ri.createlab.sequencebuilder.programelement.model;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import edu.cmu.ri.createlab.sequencebuilder.ContainerModel;
-import edu.cmu.ri.createlab.sequencebuilder.ImpressionExecutor;
-import edu.cmu.ri.createlab.sequencebuilder.SequenceExecutor;
+import edu.cmu.ri.createlab.sequencebuilder.SequenceCompiler;
 import edu.cmu.ri.createlab.terk.xml.XmlDevice;
 import edu.cmu.ri.createlab.terk.xml.XmlOperation;
 import edu.cmu.ri.createlab.terk.xml.XmlService;
@@ -199,68 +198,43 @@ public final class LoopableConditionalModel extends BaseProgramElementModel<Loop
    public void execute()
       {
       LOG.debug("LoopableConditionalModel.execute()");
-      if (SequenceExecutor.getInstance().isRunning())
-         {
-         // notify listeners that we're about to begin
-         for (final ExecutionEventListener listener : executionEventListeners)
-            {
-            listener.handleExecutionStart();
-            }
+      SequenceCompiler.compile(Collections.<ProgramElementModel>singletonList(this)).execute();
+      }
 
-         boolean willReevaluateCondition = willReevaluateConditionAfterIfBranchCompletes;
-         do
-            {
-            // check sensor
-            final Object rawValue = ImpressionExecutor.getInstance().execute(getVisualProgrammerDevice().getServiceManager(), selectedSensor.toXmlService());
+   /** Notifies {@link ExecutionEventListener}s that execution of this conditional is beginning. */
+   public void publishExecutionStart()
+      {
+      // notify listeners that we're about to begin
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleExecutionStart();
+         }
+      }
 
-            ifBranchContainerModel.resetProgressBarsForExecution();
-            elseBranchContainerModel.resetProgressBarsForExecution();
+   /** Notifies {@link ExecutionEventListener}s that the if branch was chosen for the given sensor reading. */
+   public void publishIfBranchHighlight(@NotNull final Sensor sensor, @NotNull final Integer percentage)
+      {
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleIfBranchHighlight(sensor, percentage);
+         }
+      }
 
-            // convert raw value to percentage
-            if (rawValue != null)
-               {
-               final Sensor sensor = selectedSensor.getSensor();
-               final Integer percentage = sensor.convertRawValueToPercentage(rawValue);
-               if (percentage != null)
-                  {
-                  final ContainerModel containerModelOfChosenBranch;
-                  if (percentage < selectedSensor.getThresholdPercentage())
-                     {
-                     LOG.debug("LoopableConditionalModel.execute(): chose if branch (percentage=" + percentage + ")");
-                     for (final ExecutionEventListener listener : executionEventListeners)
-                        {
-                        listener.handleIfBranchHighlight(sensor, percentage);
-                        }
-                     containerModelOfChosenBranch = ifBranchContainerModel;
-                     willReevaluateCondition = willReevaluateConditionAfterIfBranchCompletes;
-                     }
-                  else
-                     {
-                     LOG.debug("LoopableConditionalModel.execute(): chose else branch (percentage=" + percentage + ")");
-                     for (final ExecutionEventListener listener : executionEventListeners)
-                        {
-                        listener.handleElseBranchHighlight(sensor, percentage);
-                        }
-                     containerModelOfChosenBranch = elseBranchContainerModel;
-                     willReevaluateCondition = willReevaluateConditionAfterElseBranchCompletes;
-                     }
-
-                  // iterate over the models and execute them
-                  final List<ProgramElementModel> programElementModels = containerModelOfChosenBranch.getAsList();
-                  for (final ProgramElementModel model : programElementModels)
-                     {
-                     model.execute();
-                     }
-                  }
-               }
-            }
-         while (willReevaluateCondition && SequenceExecutor.getInstance().isRunning());
+   /** Notifies {@link ExecutionEventListener}s that the else branch was chosen for the given sensor reading. */
+   public void publishElseBranchHighlight(@NotNull final Sensor sensor, @NotNull final Integer percentage)
+      {
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleElseBranchHighlight(sensor, percentage);
+         }
+      }
 
-         // notify listeners that we're done
-         for (final ExecutionEventListener listener : executionEventListeners)
-            {
-            listener.handleExecutionEnd();
-            }
+   /** Notifies {@link ExecutionEventListener}s that execution of this conditional has ended. */
+   public void publishExecutionEnd()
+      {
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleExecutionEnd();
          }
       }
 
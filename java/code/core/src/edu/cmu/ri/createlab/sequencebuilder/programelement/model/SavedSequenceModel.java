@@ -1,16 +1,15 @@
 package edu.cmu.ri.createlab.sequencebuilder.programelement.model;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import edu.cmu.ri.createlab.sequencebuilder.ContainerModel;
-import edu.cmu.ri.createlab.sequencebuilder.SequenceExecutor;
+import edu.cmu.ri.createlab.sequencebuilder.SequenceCompiler;
+import edu.cmu.ri.createlab.sequencebuilder.SequenceSummaryIndex;
 import edu.cmu.ri.createlab.visualprogrammer.PathManager;
 import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
-import edu.cmu.ri.createlab.xml.XmlHelper;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.jdom.Element;
@@ -86,9 +85,6 @@ public final class SavedSequenceModel extends BaseProgramElementModel<SavedSeque
       {
       super(visualProgrammerDevice, comment, isCommentVisible);
       this.savedSequenceFile = savedSequenceFile;
-
-      //LOG.debug("Saved Sequence Role Call:  " +  getElementCounts().toString());
-
       }
 
    /** Copy constructor */
@@ -121,35 +117,56 @@ public final class SavedSequenceModel extends BaseProgramElementModel<SavedSeque
       return XML_ELEMENT_NAME;
       }
 
+   /**
+    * Returns the number of each kind of program element at the top level of this saved sequence, keyed on the
+    * elements' {@link #getElementType() types}.  Expressions and saved sequences whose files don't exist aren't
+    * counted, since they wouldn't be loaded.  The counts come from the {@link SequenceSummaryIndex}, so the sequence
+    * is only read if it has changed since it was last summarized, and then without building any models.
+    */
    public Map<String, Integer> getElementCounts()
       {
-      //Creates the counts shown in the SavedSequence Standard Views
       final Map<String, Integer> countMap = new HashMap<String, Integer>();
-      try
+      final SequenceSummaryIndex.Summary summary = SequenceSummaryIndex.getInstance().getSummary(savedSequenceFile);
+      if (summary != null)
          {
-         final ContainerModel containerModel = new ContainerModel();
-         containerModel.load(getVisualProgrammerDevice(), XmlHelper.createDocument(savedSequenceFile));
+         putIfPositive(countMap, ExpressionModel.XML_ELEMENT_NAME, countExistingFiles(PathManager.getInstance().getExpressionsDirectory(), summary.getTopLevelExpressionReferences()));
+         putIfPositive(countMap, XML_ELEMENT_NAME, countExistingFiles(PathManager.getInstance().getSequencesDirectory(), summary.getTopLevelSavedSequenceReferences()));
+         putIfPositive(countMap, CounterLoopModel.XML_ELEMENT_NAME, summary.getTopLevelCounterLoopCount());
+         putIfPositive(countMap, LoopableConditionalModel.XML_ELEMENT_NAME, summary.getTopLevelLoopableConditionalCount());
+         }
+      return countMap;
+      }
 
-         // iterate over the models and execute them
-         final List<ProgramElementModel> programElementModels = containerModel.getAsList();
-         for (final ProgramElementModel model : programElementModels)
+   /**
+    * Returns the estimated time, in milliseconds, this saved sequence takes to play, including any saved sequences it
+    * contains.
+    *
+    * @see SequenceSummaryIndex#getEstimatedDurationInMillis(File)
+    */
+   public long getEstimatedDurationInMillis()
+      {
+      return SequenceSummaryIndex.getInstance().getEstimatedDurationInMillis(savedSequenceFile);
+      }
+
+   private static int countExistingFiles(@Nullable final File directory, @NotNull final Map<String, Integer> fileReferenceCounts)
+      {
+      int count = 0;
+      for (final Map.Entry<String, Integer> entry : fileReferenceCounts.entrySet())
+         {
+         if (directory != null && new File(directory, entry.getKey()).exists())
             {
-            //LOG.debug("Sequence Model: Role Call:   " + model.getElementType());
-            if (countMap.containsKey(model.getElementType()))
-               {
-               countMap.put(model.getElementType(), countMap.get(model.getElementType()) + 1);
-               }
-            else
-               {
-               countMap.put(model.getElementType(), 1);
-               }
+            count += entry.getValue();
             }
          }
-      catch (final Exception e)
+      return count;
+      }
+
+   private static void putIfPositive(@NotNull final Map<String, Integer> countMap, @NotNull final String elementType, final int count)
+      {
+      if (count > 0)
          {
-         LOG.error("IOException while trying to read [" + savedSequenceFile + "] as XML.  Skipping this element.", e);
+         countMap.put(elementType, count);
          }
-      return countMap;
       }
 
    /** Returns the saved sequence's file name, without the .xml extension. */
@@ -195,41 +212,34 @@ public final class SavedSequenceModel extends BaseProgramElementModel<SavedSeque
    public void execute()
       {
       LOG.debug("SavedSequenceModel.execute(): executing [" + this + "]");
-      if (SequenceExecutor.getInstance().isRunning())
-         {
-         // notify listeners that we're about to begin
-         for (final ExecutionEventListener listener : executionEventListeners)
-            {
-            listener.handleExecutionStart();
-            }
-
-         try
-            {
-            final ContainerModel containerModel = new ContainerModel();
-            containerModel.load(getVisualProgrammerDevice(), XmlHelper.createDocument(savedSequenceFile));
+      SequenceCompiler.compile(Collections.<ProgramElementModel>singletonList(this)).execute();
+      }
 
-            for (final ExecutionEventListener listener : executionEventListeners)
-               {
-               listener.handleExecutionVisual();
-               }
+   /** Notifies {@link ExecutionEventListener}s that execution of this saved sequence is beginning. */
+   public void publishExecutionStart()
+      {
+      // notify listeners that we're about to begin
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleExecutionStart();
+         }
+      }
 
-            // iterate over the models and execute them
-            final List<ProgramElementModel> programElementModels = containerModel.getAsList();
-            for (final ProgramElementModel model : programElementModels)
-               {
-               model.execute();
-               }
-            }
-         catch (final Exception e)
-            {
-            LOG.error("IOException while trying to read [" + savedSequenceFile + "] as XML.  Skipping this element.", e);
-            }
+   /** Notifies {@link ExecutionEventListener}s that this saved sequence was loaded and its contents are executing. */
+   public void publishExecutionVisual()
+      {
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleExecutionVisual();
+         }
+      }
 
-         // notify listeners that we're done
-         for (final ExecutionEventListener listener : executionEventListeners)
-            {
-            listener.handleExecutionEnd();
-            }
+   /** Notifies {@link ExecutionEventListener}s that execution of this saved sequence has ended. */
+   public void publishExecutionEnd()
+      {
+      for (final ExecutionEventListener listener : executionEventListeners)
+         {
+         listener.handleExecutionEnd();
          }
       }
 
@@ -237,7 +247,7 @@ public final class SavedSequenceModel extends BaseProgramElementModel<SavedSeque
    public void refresh()
       {
       LOG.debug("SavedSequenceModel.refresh(): refreshing " + getName());
-      // Nothing to do (TODO: I think?)
+      // Nothing to do, the element counts are always read from an up-to-date summary
       }
 
    public File getSavedSequenceFile()
@@ -38,6 +38,20 @@ public final class ViewEventPublisher
          }
       }
 
+   /** Returns <code>true</code> if {@link #createInstance(ContainerView)} has been called (i.e. there's a GUI). */
+   public static boolean isCreated()
+      {
+      INSTANCE_LOCK.lock();
+      try
+         {
+         return INSTANCE != null;
+         }
+      finally
+         {
+         INSTANCE_LOCK.unlock();
+         }
+      }
+
    public static ViewEventPublisher getInstance()
       {
       INSTANCE_LOCK.lock();
@@ -91,9 +105,12 @@ public final class ViewEventPublisher
       SwingUtils.runInGUIThread(hideAllInsertLocationsRunnable);
       }
 
-   /** Calls the {@link ProgramElementView#resetViewForSequenceExecution()} method on all views.  Runs in the Swing thread. */
+   /**
+    * Calls the {@link ProgramElementView#resetViewForSequenceExecution()} method on all views.  Runs in the Swing
+    * thread, via the {@link ViewUpdatePump}, which discards any view updates still pending from the execution.
+    */
    public void publishResetViewsForSequenceExecutionEvent()
       {
-      SwingUtils.runInGUIThread(resetContainedViewsForExecutionRunnable);
+      ViewUpdatePump.getInstance().postReset(resetContainedViewsForExecutionRunnable);
       }
    }
@@ -0,0 +1,155 @@
+package edu.cmu.ri.createlab.sequencebuilder.programelement.view;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.Timer;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>ViewUpdatePump</code> is a singleton which applies the updates that executing program elements make to their
+ * views (progress bars, highlighted containers, sensor readings, etc.) at most once per display frame, rather than
+ * posting a separate event to the Swing event queue for every update.  Each update is posted with a key identifying
+ * the piece of view state it sets (typically the component it modifies), and only the latest update posted for a key
+ * is kept, so a progress bar ticking every few milliseconds, or a loop spinning through its iterations, costs at most
+ * one update per frame.  Pending updates are applied in the Swing thread, in the order in which they were last posted.
+ * </p>
+ * <p>
+ * The pump's timer only runs while updates are pending, so it costs nothing while no sequence is executing.
+ * </p>
+ * <p>
+ * A reset (see {@link #postReset(Runnable)}) goes through the pump too, so that it can't be overtaken by updates which
+ * were posted before it but not yet applied, which would otherwise leave stale progress bars and highlights behind.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class ViewUpdatePump
+   {
+   private static final Logger LOG = Logger.getLogger(ViewUpdatePump.class);
+
+   /** Roughly one frame at 60 frames per second. */
+   public static final int FRAME_INTERVAL_IN_MILLIS = 16;
+
+   private static final ViewUpdatePump INSTANCE = new ViewUpdatePump();
+
+   /** The key under which resets are posted. */
+   private static final Object RESET_KEY = new Object();
+
+   public static ViewUpdatePump getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final Lock lock = new ReentrantLock();
+   private final Map<Object, Runnable> pendingUpdates = new LinkedHashMap<Object, Runnable>();
+   private boolean isTimerRunning = false;
+   private final Timer timer;
+
+   private ViewUpdatePump()
+      {
+      // private to prevent instantiation
+      timer = new Timer(FRAME_INTERVAL_IN_MILLIS,
+                        new ActionListener()
+                        {
+                        @Override
+                        public void actionPerformed(final ActionEvent e)
+                           {
+                           applyPendingUpdates();
+                           }
+                        });
+      timer.setCoalesce(true);
+      }
+
+   /**
+    * Schedules the given update to run in the Swing thread at the next frame, replacing any update still pending for
+    * the given key.  May be called from any thread.
+    */
+   public void post(@NotNull final Object key, @NotNull final Runnable update)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         // remove first so that the key moves to the end, keeping updates in the order in which they were last posted
+         pendingUpdates.remove(key);
+         pendingUpdates.put(key, update);
+         startTimer();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Schedules the given reset to run in the Swing thread at the next frame, discarding every update still pending,
+    * since the reset supersedes them.  Updates posted after the reset are applied after it.  May be called from any
+    * thread.
+    */
+   public void postReset(@NotNull final Runnable reset)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         pendingUpdates.clear();
+         pendingUpdates.put(RESET_KEY, reset);
+         startTimer();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   // must be called while holding the lock
+   private void startTimer()
+      {
+      if (!isTimerRunning)
+         {
+         isTimerRunning = true;
+         timer.start();
+         }
+      }
+
+   // called in the Swing thread
+   private void applyPendingUpdates()
+      {
+      final List<Runnable> updates;
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (pendingUpdates.isEmpty())
+            {
+            // nothing happened during the last frame, so stop until something does
+            isTimerRunning = false;
+            timer.stop();
+            return;
+            }
+         updates = new ArrayList<Runnable>(pendingUpdates.values());
+         pendingUpdates.clear();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      for (final Runnable update : updates)
+         {
+         try
+            {
+            update.run();
+            }
+         catch (Exception e)
+            {
+            LOG.error("ViewUpdatePump.applyPendingUpdates(): Exception while applying a view update", e);
+            }
+         }
+      }
+   }
@@ -3,7 +3,7 @@ package edu.cmu.ri.createlab.sequencebuilder.programelement.view.listcell;
 import edu.cmu.ri.createlab.sequencebuilder.ContainerView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
@@ -21,7 +21,7 @@ public final class CounterLoopListCellView extends BaseProgramElementListCellVie
    public CounterLoopListCellView(@NotNull final ContainerView containerView, @NotNull final CounterLoopModel model)
       {
       super(containerView, model);
-      setIcon(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/counter-loop-icon.png"));
+      setIcon(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/counter-loop-icon.png"));
       setText("Counter");
       label.setVerticalTextPosition(JLabel.BOTTOM);
       label.setHorizontalTextPosition(JLabel.CENTER);
@@ -2,7 +2,7 @@ package edu.cmu.ri.createlab.sequencebuilder.programelement.view.listcell;
 
 import edu.cmu.ri.createlab.sequencebuilder.ContainerView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -17,6 +17,6 @@ public final class ExpressionListCellView extends BaseProgramElementListCellView
    public ExpressionListCellView(@NotNull final ContainerView containerView, @NotNull final ExpressionModel model)
       {
       super(containerView, model);
-      setIcon(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/expression-icon-small.png"));
+      setIcon(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/expression-icon-small.png"));
       }
    }
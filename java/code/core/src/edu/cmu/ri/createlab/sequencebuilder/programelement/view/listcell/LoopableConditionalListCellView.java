@@ -3,7 +3,7 @@ package edu.cmu.ri.createlab.sequencebuilder.programelement.view.listcell;
 import edu.cmu.ri.createlab.sequencebuilder.ContainerView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
 import edu.cmu.ri.createlab.userinterface.GUIConstants;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.jdom.Parent;
 import org.jetbrains.annotations.NotNull;
 
@@ -22,7 +22,7 @@ public final class LoopableConditionalListCellView extends BaseProgramElementLis
    public LoopableConditionalListCellView(@NotNull final ContainerView containerView, @NotNull final LoopableConditionalModel model)
       {
       super(containerView, model);
-      setIcon(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/loopable-conditional-icon.png"));
+      setIcon(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/loopable-conditional-icon.png"));
       setText("Sensor");
       label.setVerticalTextPosition(JLabel.BOTTOM);
       label.setHorizontalTextPosition(JLabel.CENTER);
@@ -1,22 +1,38 @@
 package edu.cmu.ri.createlab.sequencebuilder.programelement.view.listcell;
 
+import java.text.MessageFormat;
+import java.util.PropertyResourceBundle;
 import edu.cmu.ri.createlab.sequencebuilder.ContainerView;
+import edu.cmu.ri.createlab.sequencebuilder.SequenceSummaryIndex;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * <p>
- * <code>ExpressionListCellView</code> helps render a {@link SavedSequenceModel} as a cell in a list.
+ * <code>ExpressionListCellView</code> helps render a {@link SavedSequenceModel} as a cell in a list.  The cell's
+ * tooltip describes the saved sequence using its {@link SequenceSummaryIndex summary}, so the sequence palette never
+ * has to load the sequences it lists.
  * </p>
  *
  * @author Chris Bartley (bartley@cmu.edu)
  */
 public final class SavedSequenceListCellView extends BaseProgramElementListCellView<SavedSequenceModel>
    {
+   private static final PropertyResourceBundle RESOURCES = (PropertyResourceBundle)PropertyResourceBundle.getBundle(SavedSequenceListCellView.class.getName());
+
    public SavedSequenceListCellView(@NotNull final ContainerView containerView, @NotNull final SavedSequenceModel model)
       {
       super(containerView, model);
-      setIcon(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/sequence-icon-small.png"));
+      setIcon(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/sequence-icon-small.png"));
+
+      final SequenceSummaryIndex.Summary summary = SequenceSummaryIndex.getInstance().getSummary(model.getSavedSequenceFile());
+      if (summary != null)
+         {
+         label.setToolTipText(MessageFormat.format(RESOURCES.getString("tooltip.summary"),
+                                                   getName(),
+                                                   summary.getReferencedExpressionFilenames().size(),
+                                                   model.getEstimatedDurationInMillis() / 1000.0));
+         }
       }
    }
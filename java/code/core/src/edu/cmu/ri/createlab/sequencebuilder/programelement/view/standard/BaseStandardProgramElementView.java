@@ -25,8 +25,8 @@ import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementM
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.BaseProgramElementView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ProgramElementView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.NoDropsAllowedTransferHandler;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -44,7 +44,7 @@ abstract class BaseStandardProgramElementView<ModelClass extends ProgramElementM
    private final InsertionHighlightArea insertBeforeHighlightArea; //= new InsertionHighlightArea();
    private final JPanel contentPanel = new JPanel();
    private final InsertionHighlightArea insertAfterHighlightArea; //= new InsertionHighlightArea();
-   private final JButton deleteButton = new JButton(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/deleteMark.png"));
+   private final JButton deleteButton = new JButton(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/deleteMark.png"));
    private final JScrollPane commentTextAreaScrollPane;
    private final JLabel spacerArrow;
    private final JPanel spacerPanel;
@@ -185,7 +185,7 @@ abstract class BaseStandardProgramElementView<ModelClass extends ProgramElementM
       insertAfterHighlightArea = new InsertionHighlightArea(containerView.hasParentProgramElementView());
       insertBeforeHighlightArea = new InsertionHighlightArea(containerView.hasParentProgramElementView());
 
-      spacerArrow = new JLabel(ImageUtils.createImageIcon(iconStyle));
+      spacerArrow = new JLabel(IconRegistry.getInstance().getImageIcon(iconStyle));
       spacerPanel = new JPanel();
 
       spacerArrow.setVisible(true);
@@ -394,10 +394,10 @@ abstract class BaseStandardProgramElementView<ModelClass extends ProgramElementM
 
    private static final class CommentToggleButton extends JToggleButton
       {
-      private static final Icon SHOW_EMPTY_COMMENT_ICON = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/show-empty-comment-icon.png");
-      private static final Icon HIDE_EMPTY_COMMENT_ICON = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/hide-empty-comment-icon.png");
-      private static final Icon SHOW_NONEMPTY_COMMENT_ICON = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/show-nonempty-comment-icon.png");
-      private static final Icon HIDE_NONEMPTY_COMMENT_ICON = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/hide-nonempty-comment-icon.png");
+      private static final Icon SHOW_EMPTY_COMMENT_ICON = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/show-empty-comment-icon.png");
+      private static final Icon HIDE_EMPTY_COMMENT_ICON = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/hide-empty-comment-icon.png");
+      private static final Icon SHOW_NONEMPTY_COMMENT_ICON = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/show-nonempty-comment-icon.png");
+      private static final Icon HIDE_NONEMPTY_COMMENT_ICON = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/hide-nonempty-comment-icon.png");
       private String  helpText;
 
       private CommentToggleButton(@NotNull final ProgramElementModel programElementModel, String commentHelpText)
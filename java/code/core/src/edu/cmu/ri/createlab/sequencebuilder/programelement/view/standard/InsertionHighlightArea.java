@@ -1,11 +1,11 @@
 package edu.cmu.ri.createlab.sequencebuilder.programelement.view.standard;
 
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import javax.swing.*;
+import edu.cmu.ri.createlab.util.IconRegistry;
 
 /**
  * @author Chris Bartley (bartley@cmu.edu)
@@ -23,8 +23,8 @@ final public class InsertionHighlightArea
       String blockStyle = "/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/addBlockPurple.png";
       String panelStyle = "purpleElement";
 
-      JLabel spacerArrow = new JLabel(ImageUtils.createImageIcon(arrowStyle));
-      JLabel spacerBlock = new JLabel(ImageUtils.createImageIcon(blockStyle));
+      JLabel spacerArrow = new JLabel(IconRegistry.getInstance().getImageIcon(arrowStyle));
+      JLabel spacerBlock = new JLabel(IconRegistry.getInstance().getImageIcon(blockStyle));
 
       spacerArrow.setAlignmentX((float)0.5);
       spacerBlock.setAlignmentX((float)0.5);
@@ -42,8 +42,8 @@ final public class InsertionHighlightArea
       String blockStyle = isInsideLoop ? "/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/addBlockOrange.png" : "/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/addBlockPurple.png";
       String panelStyle = isInsideLoop ? "orangeElement" : "purpleElement";
 
-      JLabel spacerArrow = new JLabel(ImageUtils.createImageIcon(arrowStyle));
-      JLabel spacerBlock = new JLabel(ImageUtils.createImageIcon(blockStyle));
+      JLabel spacerArrow = new JLabel(IconRegistry.getInstance().getImageIcon(arrowStyle));
+      JLabel spacerBlock = new JLabel(IconRegistry.getInstance().getImageIcon(blockStyle));
 
       spacerArrow.setAlignmentX((float)0.5);
       spacerBlock.setAlignmentX((float)0.5);
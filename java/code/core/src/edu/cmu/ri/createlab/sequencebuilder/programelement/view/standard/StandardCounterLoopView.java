@@ -14,11 +14,12 @@ import edu.cmu.ri.createlab.sequencebuilder.ContainerView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewConstants;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewUpdatePump;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.AlwaysInsertAfterTransferHandler;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.AlwaysInsertBeforeTransferHandler;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.ProgramElementDestinationTransferHandler;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import edu.cmu.ri.createlab.xml.SaveXmlDocumentDialogRunnable;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -35,15 +36,15 @@ public class StandardCounterLoopView extends BaseStandardProgramElementView<Coun
 
    private final JPanel displayIterationsPanel = new JPanel();
    private final JPanel editIterationsPanel = new JPanel();
-   private final JButton displayModeEditButton = new JButton(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallLock.png"));
-   private final JButton editModeEditButton = new JButton(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallUnlock.png"));
+   private final JButton displayModeEditButton = new JButton(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallLock.png"));
+   private final JButton editModeEditButton = new JButton(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallUnlock.png"));
    private final ContainerView loopContainerView;
    private final JProgressBar iterationsProgressBar;
    private final MyExecutionEventListener executionEventListener = new MyExecutionEventListener();
    private final JPanel containerViewPanel;
 
-   private final ImageIcon greenArrow = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/greenArrow.png");
-   private final ImageIcon wideOrangeArrow = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/wideOrangeArrow.png");
+   private final ImageIcon greenArrow = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/greenArrow.png");
+   private final ImageIcon wideOrangeArrow = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/wideOrangeArrow.png");
    private final Border arrowBorder = BorderFactory.createCompoundBorder(BorderFactory.createLineBorder(new Color(0, 128, 0), 3), BorderFactory.createMatteBorder(16, 0, 0, 0, greenArrow));
    private final Border selectedBorder = BorderFactory.createCompoundBorder(BorderFactory.createLineBorder(Color.BLACK, 1), arrowBorder);
    private final Border orangeArrowBorder = BorderFactory.createCompoundBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3), BorderFactory.createMatteBorder(16, 0, 0, 0, wideOrangeArrow));
@@ -64,7 +65,7 @@ public class StandardCounterLoopView extends BaseStandardProgramElementView<Coun
       final JPanel topBarPanel = new JPanel();
       final JLabel titleLabel = new JLabel(RESOURCES.getString("title.label"));
       titleLabel.setName("loopBlockTitle");
-      titleLabel.setIcon(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/count_icon.png"));
+      titleLabel.setIcon(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/count_icon.png"));
 
       final JButton deleteButton = getDeleteButton();
       displayModeEditButton.setName("thinButton");
@@ -322,7 +323,7 @@ public class StandardCounterLoopView extends BaseStandardProgramElementView<Coun
 
       // configure the bottom bar area ---------------------------------------------------------------------------------
 
-      final JLabel loopIconLabel = new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/loop-icon.png"));
+      final JLabel loopIconLabel = new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/loop-icon.png"));
 
       final JPanel bottomBarPanel = new JPanel();
 
@@ -458,7 +459,6 @@ public class StandardCounterLoopView extends BaseStandardProgramElementView<Coun
             public void run()
                {
                iterationsProgressBar.setValue(iterationsProgressBar.getMinimum());
-               resetHighlightContainers();
                }
             };
 
@@ -469,52 +469,66 @@ public class StandardCounterLoopView extends BaseStandardProgramElementView<Coun
             public void run()
                {
                iterationsProgressBar.setValue(iterationsProgressBar.getMaximum());
+               }
+            };
+
+      private final Runnable highlightContainerRunnable =
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
+               highlightContainer();
+               }
+            };
+
+      private final Runnable resetHighlightContainersRunnable =
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
                resetHighlightContainers();
                }
             };
 
+      // the progress bar and the container's highlight are updated independently, so they're posted under separate keys
+
       @Override
       public void handleExecutionStart()
          {
-         SwingUtils.runInGUIThread(handleExecutionStartRunnable);
+         ViewUpdatePump.getInstance().post(iterationsProgressBar, handleExecutionStartRunnable);
+         ViewUpdatePump.getInstance().post(containerViewPanel, resetHighlightContainersRunnable);
          }
 
       @Override
       public void handleHighlight()
          {
-         SwingUtils.runInGUIThread(
-               new Runnable()
-               {
-               @Override
-               public void run()
-                  {
-
-                  highlightContainer();
-                  }
-               }
-         );
+         ViewUpdatePump.getInstance().post(containerViewPanel, highlightContainerRunnable);
          }
 
       @Override
       public void handleElapsedIterations(final int elapsedIterations)
          {
-         SwingUtils.runInGUIThread(
+         ViewUpdatePump.getInstance().post(
+               iterationsProgressBar,
                new Runnable()
                {
                @Override
                public void run()
                   {
                   iterationsProgressBar.setValue(elapsedIterations);
-                  highlightContainer();
                   }
                }
          );
+         ViewUpdatePump.getInstance().post(containerViewPanel, highlightContainerRunnable);
          }
 
       @Override
       public void handleExecutionEnd()
          {
-         SwingUtils.runInGUIThread(handleExecutionEndRunnable);
+         ViewUpdatePump.getInstance().post(iterationsProgressBar, handleExecutionEndRunnable);
+         ViewUpdatePump.getInstance().post(containerViewPanel, resetHighlightContainersRunnable);
          }
       }
    }
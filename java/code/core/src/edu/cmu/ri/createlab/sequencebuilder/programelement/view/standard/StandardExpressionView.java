@@ -22,9 +22,10 @@ import javax.swing.SwingUtilities;
 import edu.cmu.ri.createlab.sequencebuilder.ContainerView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewUpdatePump;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.ProgramElementDestinationTransferHandler;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import edu.cmu.ri.createlab.util.MultiLineLabel;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -87,8 +88,8 @@ public class StandardExpressionView extends BaseStandardProgramElementView<Expre
       final JLabel delayTextFieldLabel = new JLabel(RESOURCES.getString("delay.label"));
       final JLabel secondsLabel1 = new JLabel(RESOURCES.getString("seconds.label"));
       final JLabel secondsLabel2 = new JLabel(RESOURCES.getString("seconds.label"));
-      final JButton displayModeSetDelayButton = new JButton(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/clock-icon-small.png"));
-      final JButton editModeSetDelayButton = new JButton(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/checkMark.png"));
+      final JButton displayModeSetDelayButton = new JButton(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/clock-icon-small.png"));
+      final JButton editModeSetDelayButton = new JButton(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/checkMark.png"));
 
       displayModeSetDelayButton.setName("thinButton");
       editModeSetDelayButton.setName("thinButton");
@@ -501,13 +502,14 @@ public class StandardExpressionView extends BaseStandardProgramElementView<Expre
       @Override
       public void handleExecutionStart()
          {
-         SwingUtils.runInGUIThread(handleExecutionStartRunnable);
+         ViewUpdatePump.getInstance().post(delayProgressBar, handleExecutionStartRunnable);
          }
 
       @Override
       public void handleElapsedTimeInMillis(final int millis)
          {
-         SwingUtils.runInGUIThread(
+         ViewUpdatePump.getInstance().post(
+               delayProgressBar,
                new Runnable()
                {
                @Override
@@ -522,7 +524,7 @@ public class StandardExpressionView extends BaseStandardProgramElementView<Expre
       @Override
       public void handleExecutionEnd()
          {
-         SwingUtils.runInGUIThread(handleExecutionEndRunnable);
+         ViewUpdatePump.getInstance().post(delayProgressBar, handleExecutionEndRunnable);
          }
       }
    }
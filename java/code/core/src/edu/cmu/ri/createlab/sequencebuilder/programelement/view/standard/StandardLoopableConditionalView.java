@@ -30,7 +30,6 @@ import javax.swing.JProgressBar;
 import javax.swing.JSlider;
 import javax.swing.JToggleButton;
 import javax.swing.ListCellRenderer;
-import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -38,11 +37,12 @@ import edu.cmu.ri.createlab.sequencebuilder.ContainerView;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewConstants;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewUpdatePump;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.AlwaysInsertAfterTransferHandler;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.AlwaysInsertBeforeTransferHandler;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.ProgramElementDestinationTransferHandler;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import edu.cmu.ri.createlab.visualprogrammer.Sensor;
 import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
 import org.apache.log4j.Logger;
@@ -58,11 +58,11 @@ public class StandardLoopableConditionalView extends BaseStandardProgramElementV
 
    private static final PropertyResourceBundle RESOURCES = (PropertyResourceBundle)PropertyResourceBundle.getBundle(StandardLoopableConditionalView.class.getName());
    private static final Dimension PREFERRED_CONTAINER_DIMENSION = new Dimension(196, 220);
-   private static final ImageIcon BOOLEAN_SENSOR_FALSE_ARROWS = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/boolean_arrows_false.png");
-   private static final ImageIcon BOOLEAN_SENSOR_TRUE_ARROWS = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/boolean_arrows_true.png");
+   private static final ImageIcon BOOLEAN_SENSOR_FALSE_ARROWS = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/boolean_arrows_false.png");
+   private static final ImageIcon BOOLEAN_SENSOR_TRUE_ARROWS = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/boolean_arrows_true.png");
 
-   private final JButton displayModeEditButton = new JButton(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallLock.png"));
-   private final JButton editModeEditButton = new JButton(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallUnlock.png"));
+   private final JButton displayModeEditButton = new JButton(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallLock.png"));
+   private final JButton editModeEditButton = new JButton(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/smallUnlock.png"));
    private final JLabel sensorLabel = new JLabel("");
    private final JComboBox sensorComboBox = new JComboBox();
    private final JLabel sensorPortNumberValueLabel = new JLabel("");
@@ -76,8 +76,8 @@ public class StandardLoopableConditionalView extends BaseStandardProgramElementV
    private final ContainerView ifBranchLoopContainerView;
    private final ContainerView elseBranchLoopContainerView;
 
-   private final ImageIcon greenArrow = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/greenArrow.png");
-   private final ImageIcon wideOrangeArrow = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/wideOrangeArrow.png");
+   private final ImageIcon greenArrow = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/greenArrow.png");
+   private final ImageIcon wideOrangeArrow = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/wideOrangeArrow.png");
    private final Border arrowBorder = BorderFactory.createCompoundBorder(BorderFactory.createLineBorder(new Color(0, 128, 0), 3), BorderFactory.createMatteBorder(16, 0, 0, 0, greenArrow));
    private final Border selectedBorder = BorderFactory.createCompoundBorder(BorderFactory.createLineBorder(Color.BLACK, 1), arrowBorder);
    private final Border orangeArrowBorder = BorderFactory.createCompoundBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3), BorderFactory.createMatteBorder(16, 0, 0, 0, wideOrangeArrow));
@@ -147,7 +147,9 @@ public class StandardLoopableConditionalView extends BaseStandardProgramElementV
 
    private void renderSensorValue(@NotNull final Sensor sensor, @NotNull final Integer percentage)
       {
-      SwingUtilities.invokeLater(
+      // keyed by the meter, but stands for the whole sensor value display, since only the latest reading matters
+      ViewUpdatePump.getInstance().post(
+            sensorMeter,
             new Runnable()
             {
             @Override
@@ -189,7 +191,7 @@ public class StandardLoopableConditionalView extends BaseStandardProgramElementV
 
       final JPanel topBarPanel = new JPanel();
       final JLabel titleLabel = new JLabel(RESOURCES.getString("title.label"));
-      titleLabel.setIcon(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/Sensor.png"));
+      titleLabel.setIcon(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/Sensor.png"));
 
       titleLabel.setName("loopBlockTitle");
 
@@ -762,25 +764,27 @@ public class StandardLoopableConditionalView extends BaseStandardProgramElementV
       loopableConditionalModel.getVisualProgrammerDevice().removeSensorListener(sensorListener);
       }
 
+   // The highlight runnables all set the borders of both branches, so they share a single key.
+
    public void highlightIfContainer()
       {
-      SwingUtils.runInGUIThread(highlightIfBranchRunnable);
+      ViewUpdatePump.getInstance().post(ifBranchContainerViewPanel, highlightIfBranchRunnable);
       }
 
    public void highlightElseContainer()
       {
-      SwingUtils.runInGUIThread(highlightElseBranchRunnable);
+      ViewUpdatePump.getInstance().post(ifBranchContainerViewPanel, highlightElseBranchRunnable);
       }
 
    public void resetHighlightContainers()
       {
-      SwingUtils.runInGUIThread(resetHighlightContainersRunnable);
+      ViewUpdatePump.getInstance().post(ifBranchContainerViewPanel, resetHighlightContainersRunnable);
       }
 
    private abstract static class LoopToggleButton extends JToggleButton
       {
-      private static final Icon LOOP_ICON = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/toggle-button-loop-icon.png");
-      private static final Icon PASS_THROUGH_ICON = ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/toggle-button-passthrough-icon.png");
+      private static final Icon LOOP_ICON = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/toggle-button-loop-icon.png");
+      private static final Icon PASS_THROUGH_ICON = IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/toggle-button-passthrough-icon.png");
 
       private LoopToggleButton(final boolean initialStateOfWillReevaluateConditional)
          {
@@ -5,6 +5,7 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Point;
 import java.awt.datatransfer.DataFlavor;
+import java.text.MessageFormat;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
@@ -19,9 +20,9 @@ import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.view.ViewUpdatePump;
 import edu.cmu.ri.createlab.sequencebuilder.programelement.view.dnd.ProgramElementDestinationTransferHandler;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
-import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 import edu.cmu.ri.createlab.util.MultiLineLabel;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -85,9 +86,9 @@ public class StandardSavedSequenceView extends BaseStandardProgramElementView<Sa
       final JLabel expressionCountIcon = new JLabel(expressionCount.toString());
       final JLabel loopCountIcon = new JLabel(loopCount.toString());
 
-      final JLabel sequenceIcon = new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/sequenceCountIcon.png"), JLabel.CENTER);
-      final JLabel expressionIcon = new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/expressionCountIcon.png"), JLabel.CENTER);
-      final JLabel loopIcon = new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/loopCountIcon.png"), JLabel.CENTER);
+      final JLabel sequenceIcon = new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/sequenceCountIcon.png"), JLabel.CENTER);
+      final JLabel expressionIcon = new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/expressionCountIcon.png"), JLabel.CENTER);
+      final JLabel loopIcon = new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/loopCountIcon.png"), JLabel.CENTER);
 
       sequenceCountIcon.setToolTipText("Sequences");
       expressionCountIcon.setToolTipText("Expressions");
@@ -204,6 +205,8 @@ public class StandardSavedSequenceView extends BaseStandardProgramElementView<Sa
       contentsPanel.add(loopCountIcon, c);
 
       contentsPanel.setName("sequenceBlockGreen");
+      contentsPanel.setToolTipText(MessageFormat.format(RESOURCES.getString("tooltip.estimated-duration"),
+                                                        model.getEstimatedDurationInMillis() / 1000.0));
 
       //Element Layout*****************************
       final JPanel panel = getContentPanel();
@@ -325,13 +328,14 @@ public class StandardSavedSequenceView extends BaseStandardProgramElementView<Sa
       @Override
       public void handleExecutionStart()
          {
-         SwingUtils.runInGUIThread(handleExecutionStartRunnable);
+         ViewUpdatePump.getInstance().post(progressBar, handleExecutionStartRunnable);
          }
 
       @Override
       public void handleExecutionVisual()
          {
-         SwingUtils.runInGUIThread(
+         ViewUpdatePump.getInstance().post(
+               progressBar,
                new Runnable()
                {
                @Override
@@ -346,7 +350,7 @@ public class StandardSavedSequenceView extends BaseStandardProgramElementView<Sa
       @Override
       public void handleExecutionEnd()
          {
-         SwingUtils.runInGUIThread(handleExecutionEndRunnable);
+         ViewUpdatePump.getInstance().post(progressBar, handleExecutionEndRunnable);
          }
       }
 
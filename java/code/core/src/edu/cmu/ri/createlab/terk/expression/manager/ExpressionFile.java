@@ -28,7 +28,7 @@ public final class ExpressionFile implements Comparable<ExpressionFile>
       {
       try
          {
-         return XmlExpression.create(file);
+         return XmlExpressionCache.getInstance().get(file);
          }
       catch (IOException e)
          {
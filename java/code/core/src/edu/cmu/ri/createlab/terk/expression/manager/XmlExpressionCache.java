@@ -0,0 +1,250 @@
+package edu.cmu.ri.createlab.terk.expression.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import edu.cmu.ri.createlab.util.DirectoryPoller;
+import org.apache.log4j.Logger;
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>XmlExpressionCache</code> is a process-wide, size-bounded, least-recently-used cache of {@link XmlExpression}s
+ * parsed from files.  Entries are keyed on the file's canonical path and are only used if the file's modification
+ * time and size still match those seen when the file was parsed, so a stale expression is never returned even if an
+ * invalidation is missed.  The cache is also a {@link DirectoryPoller.EventListener} so that it can drop entries as
+ * soon as their files are modified or deleted.
+ * </p>
+ * <p>
+ * Cached expressions are shared, so callers must treat them as read-only.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class XmlExpressionCache implements DirectoryPoller.EventListener
+   {
+   private static final Logger LOG = Logger.getLogger(XmlExpressionCache.class);
+
+   public static final int DEFAULT_MAX_ENTRIES = 256;
+
+   private static final XmlExpressionCache INSTANCE = new XmlExpressionCache(DEFAULT_MAX_ENTRIES);
+
+   public static XmlExpressionCache getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final Lock lock = new ReentrantLock();
+   private final Map<File, Entry> entries;
+   private long hitCount = 0;
+   private long missCount = 0;
+
+   private XmlExpressionCache(final int maxEntries)
+      {
+      // an access-ordered LinkedHashMap which evicts the least recently used entry once it's full
+      entries = new LinkedHashMap<File, Entry>(16, 0.75f, true)
+      {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<File, Entry> eldest)
+         {
+         return size() > maxEntries;
+         }
+      };
+      }
+
+   /**
+    * Returns the {@link XmlExpression} contained in the given file, parsing the file only if it isn't already cached or
+    * has changed since it was cached.
+    *
+    * @throws IOException if the file cannot be read
+    * @throws JDOMException if the file cannot be parsed
+    */
+   @NotNull
+   public XmlExpression get(@NotNull final File file) throws IOException, JDOMException
+      {
+      final File canonicalFile = file.getCanonicalFile();
+      final long lastModified = canonicalFile.lastModified();
+      final long length = canonicalFile.length();
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         final Entry entry = entries.get(canonicalFile);
+         if (entry != null && entry.lastModified == lastModified && entry.length == length)
+            {
+            hitCount++;
+            return entry.xmlExpression;
+            }
+         missCount++;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      // parse outside of the lock so that a slow file doesn't block lookups of other files
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("XmlExpressionCache.get(): cache miss for [" + canonicalFile + "], parsing");
+         }
+      final XmlExpression xmlExpression = XmlExpression.create(canonicalFile);
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         entries.put(canonicalFile, new Entry(xmlExpression, lastModified, length));
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      return xmlExpression;
+      }
+
+   /**
+    * Returns <code>true</code> if an up-to-date {@link XmlExpression} for the given file is cached, i.e. if
+    * {@link #get(File)} would return without parsing the file.  Doesn't count as a hit or a miss.
+    */
+   public boolean isCached(@NotNull final File file) throws IOException
+      {
+      final File canonicalFile = file.getCanonicalFile();
+      final long lastModified = canonicalFile.lastModified();
+      final long length = canonicalFile.length();
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         final Entry entry = entries.get(canonicalFile);
+         return entry != null && entry.lastModified == lastModified && entry.length == length;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Removes the cached expression, if any, for the given file. */
+   public void invalidate(@NotNull final File file)
+      {
+      File canonicalFile;
+      try
+         {
+         canonicalFile = file.getCanonicalFile();
+         }
+      catch (IOException e)
+         {
+         LOG.debug("XmlExpressionCache.invalidate(): IOException while getting the canonical file for [" + file + "], will use the absolute file instead", e);
+         canonicalFile = file.getAbsoluteFile();
+         }
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         entries.remove(canonicalFile);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Removes all cached expressions, but leaves the hit and miss counts untouched. */
+   public void clear()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         entries.clear();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of expressions currently cached. */
+   public int getSize()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return entries.size();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of calls to {@link #get(File)} which were answered from the cache. */
+   public long getHitCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return hitCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of calls to {@link #get(File)} which had to parse the file. */
+   public long getMissCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return missCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   public void handleNewFileEvent(@NotNull final Set<File> files)
+      {
+      // nothing to do, new files will be parsed on demand
+      }
+
+   @Override
+   public void handleModifiedFileEvent(@NotNull final Set<File> files)
+      {
+      for (final File file : files)
+         {
+         invalidate(file);
+         }
+      }
+
+   @Override
+   public void handleDeletedFileEvent(@NotNull final Set<File> files)
+      {
+      for (final File file : files)
+         {
+         invalidate(file);
+         }
+      }
+
+   private static final class Entry
+      {
+      private final XmlExpression xmlExpression;
+      private final long lastModified;
+      private final long length;
+
+      private Entry(@NotNull final XmlExpression xmlExpression, final long lastModified, final long length)
+         {
+         this.xmlExpression = xmlExpression;
+         this.lastModified = lastModified;
+         this.length = length;
+         }
+      }
+   }
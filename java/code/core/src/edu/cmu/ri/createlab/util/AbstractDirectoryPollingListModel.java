@@ -1,8 +1,11 @@
 package edu.cmu.ri.createlab.util;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -15,6 +18,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
+ * <p>
+ * <code>AbstractDirectoryPollingListModel</code> is a list model of items created from the files reported by a
+ * {@link DirectoryPoller}.  Items are kept sorted in a {@link TreeList}, so inserting, removing and looking up an item
+ * takes O(log n) index operations, and each batch of file events fires list data events for only the index ranges
+ * which actually changed.
+ * </p>
+ *
  * @author Chris Bartley (bartley@cmu.edu)
  */
 public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListModel implements DirectoryPoller.EventListener
@@ -36,6 +46,9 @@ public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListM
       {
       if (!files.isEmpty())
          {
+         // create the list items outside of the lock, since doing so might require reading the files
+         final List<T> newListItems = new ArrayList<T>(files.size());
+         final Map<T, File> newListItemToFileMap = new TreeMap<T, File>(listItemComparator);
          for (final File file : files)
             {
             if (LOG.isTraceEnabled())
@@ -45,50 +58,56 @@ public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListM
             final T listItem = createListItemInstance(file);
             if (listItem != null)
                {
-               final int insertionPostion;
-
-               dataSynchronizationLock.lock();
-               try
-                  {
-                  // Do a binary search to figure out where to insert this list item since TreeList's add() and
-                  // addAll() methods merely (and unintuitively, IMO!) append to the end of the list.
-                  final int searchResult = Collections.binarySearch(listItems, listItem, listItemComparator);
-                  if (searchResult >= 0)
-                     {
-                     if (LOG.isTraceEnabled())
-                        {
-                        LOG.trace("AbstractDirectoryPollingListModel.handleNewFileEvent(): File " + file.getName() + " already exists in the list, so we'll just ignore it.");
-                        }
-                     continue;
-                     }
+               newListItems.add(listItem);
+               newListItemToFileMap.put(listItem, file);
+               }
+            else
+               {
+               LOG.error("AbstractDirectoryPollingListModel.handleNewFileEvent(): Could not create a list item instance for file [" + file + "].  Ignoring.");
+               }
+            }
 
-                  // compute the insertion position from the search result (see javadocs for binarySearch())
-                  insertionPostion = -searchResult - 1;
-                  listItems.add(insertionPostion, listItem);
-                  fileToListItemMap.put(file, listItem);
-                  }
-               finally
-                  {
-                  dataSynchronizationLock.unlock();
-                  }
+         // Insert in ascending order so that each insertion lands after all of the previous ones.  That way, the
+         // indices of the earlier insertions are still valid once we're done, and contiguous insertions can be
+         // reported as a single interval.
+         Collections.sort(newListItems, listItemComparator);
+         final IndexRangeCollector insertedIndices = new IndexRangeCollector();
 
-               if (insertionPostion >= 0)
+         dataSynchronizationLock.lock();  // block until condition holds
+         try
+            {
+            for (final T listItem : newListItems)
+               {
+               final File file = newListItemToFileMap.get(listItem);
+               final int searchResult = binarySearch(listItem);
+               if (searchResult >= 0)
                   {
-                  fireIntervalAdded(this, insertionPostion, insertionPostion);
-                  if (LOG.isDebugEnabled())
+                  if (LOG.isTraceEnabled())
                      {
-                     LOG.debug("AbstractDirectoryPollingListModel.handleNewFileEvent(): File added: [" + file.getName() + "]");
+                     LOG.trace("AbstractDirectoryPollingListModel.handleNewFileEvent(): File " + file.getName() + " already exists in the list, so we'll just ignore it.");
                      }
+                  continue;
                   }
-               else
+
+               // compute the insertion position from the search result (same convention as Collections.binarySearch())
+               final int insertionPosition = -searchResult - 1;
+               listItems.add(insertionPosition, listItem);
+               fileToListItemMap.put(file, listItem);
+               insertedIndices.add(insertionPosition);
+               if (LOG.isDebugEnabled())
                   {
-                  LOG.error("AbstractDirectoryPollingListModel.handleNewFileEvent(): Index for file [" + file + "] not found!");
+                  LOG.debug("AbstractDirectoryPollingListModel.handleNewFileEvent(): File added: [" + file.getName() + "]");
                   }
                }
-            else
-               {
-               LOG.error("AbstractDirectoryPollingListModel.handleNewFileEvent(): Could not create a list item instance for file [" + file + "].  Ignoring.");
-               }
+            }
+         finally
+            {
+            dataSynchronizationLock.unlock();
+            }
+
+         for (final int[] range : insertedIndices.getRanges())
+            {
+            fireIntervalAdded(this, range[0], range[1]);
             }
          }
       }
@@ -105,16 +124,36 @@ public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListM
                LOG.trace("AbstractDirectoryPollingListModel.handleModifiedFileEvent(" + file.getName() + ")");
                }
 
-            int index = -1;
-            dataSynchronizationLock.lock();
+            // recreate the list item, so that it reflects the file's new contents
+            final T newListItem = createListItemInstance(file);
+
+            int oldIndex = -1;
+            int newIndex = -1;
+            dataSynchronizationLock.lock();  // block until condition holds
             try
                {
                // look up the file entry
                final T listItemForModifiedFile = fileToListItemMap.get(file);
                if (listItemForModifiedFile != null)
                   {
-                  // get the index
-                  index = listItems.indexOf(listItemForModifiedFile);
+                  oldIndex = indexOfListItem(listItemForModifiedFile);
+                  newIndex = oldIndex;
+                  if (oldIndex >= 0 && newListItem != null)
+                     {
+                     fileToListItemMap.put(file, newListItem);
+                     if (listItemComparator.compare(listItemForModifiedFile, newListItem) == 0)
+                        {
+                        // the sort position hasn't changed, so just swap in the new item
+                        listItems.set(oldIndex, newListItem);
+                        }
+                     else
+                        {
+                        listItems.remove(oldIndex);
+                        final int searchResult = binarySearch(newListItem);
+                        newIndex = (searchResult >= 0) ? searchResult : -searchResult - 1;
+                        listItems.add(newIndex, newListItem);
+                        }
+                     }
                   }
                }
             finally
@@ -122,9 +161,10 @@ public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListM
                dataSynchronizationLock.unlock();
                }
 
-            if (index >= 0)
+            if (oldIndex >= 0)
                {
-               fireContentsChanged(this, index, index);
+               // if the item moved, then everything between its old and new positions shifted by one
+               fireContentsChanged(this, Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex));
                if (LOG.isDebugEnabled())
                   {
                   LOG.debug("AbstractDirectoryPollingListModel.handleModifiedFileEvent(): File modified: [" + file.getName() + "]");
@@ -143,42 +183,53 @@ public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListM
       {
       if (!files.isEmpty())
          {
-         for (final File file : files)
+         final IndexRangeCollector removedIndices = new IndexRangeCollector();
+
+         dataSynchronizationLock.lock();  // block until condition holds
+         try
             {
-            if (LOG.isTraceEnabled())
+            // find the indices of all the deleted files first...
+            final List<Integer> indicesToRemove = new ArrayList<Integer>(files.size());
+            for (final File file : files)
                {
-               LOG.trace("AbstractDirectoryPollingListModel.handleDeletedFileEvent(" + file.getName() + ")");
-               }
+               if (LOG.isTraceEnabled())
+                  {
+                  LOG.trace("AbstractDirectoryPollingListModel.handleDeletedFileEvent(" + file.getName() + ")");
+                  }
 
-            int index = -1;
-            dataSynchronizationLock.lock();
-            try
-               {
                final T listItemForDeletedFile = fileToListItemMap.remove(file);
-               if (listItemForDeletedFile != null)
+               final int index = (listItemForDeletedFile == null) ? -1 : indexOfListItem(listItemForDeletedFile);
+               if (index >= 0)
                   {
-                  index = listItems.indexOf(listItemForDeletedFile);
-                  listItems.remove(listItemForDeletedFile);
+                  indicesToRemove.add(index);
+                  if (LOG.isDebugEnabled())
+                     {
+                     LOG.debug("AbstractDirectoryPollingListModel.handleDeletedFileEvent(): File deleted: [" + file.getName() + "]");
+                     }
                   }
-               }
-            finally
-               {
-               dataSynchronizationLock.unlock();
-               }
-
-            if (index >= 0)
-               {
-               fireIntervalRemoved(this, index, index);
-               if (LOG.isDebugEnabled())
+               else
                   {
-                  LOG.debug("AbstractDirectoryPollingListModel.handleDeletedFileEvent(): File deleted: [" + file.getName() + "]");
+                  LOG.error("AbstractDirectoryPollingListModel.handleDeletedFileEvent(): Index for file [" + file + "] not found!");
                   }
                }
-            else
+
+            // ...then remove them in descending order, so that each removal doesn't shift the ones still to come
+            Collections.sort(indicesToRemove, Collections.reverseOrder());
+            for (final int index : indicesToRemove)
                {
-               LOG.error("AbstractDirectoryPollingListModel.handleDeletedFileEvent(): Index for file [" + file + "] not found!");
+               listItems.remove(index);
+               removedIndices.add(index);
                }
             }
+         finally
+            {
+            dataSynchronizationLock.unlock();
+            }
+
+         for (final int[] range : removedIndices.getRanges())
+            {
+            fireIntervalRemoved(this, range[0], range[1]);
+            }
          }
       }
 
@@ -220,7 +271,15 @@ public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListM
       {
       if (obj != null)
          {
-         return listItems.indexOf(obj);
+         dataSynchronizationLock.lock();
+         try
+            {
+            return indexOfListItem(obj);
+            }
+         finally
+            {
+            dataSynchronizationLock.unlock();
+            }
          }
       return -1;
       }
@@ -235,4 +294,95 @@ public abstract class AbstractDirectoryPollingListModel<T> extends AbstractListM
       }
 
    protected abstract T createListItemInstance(@NotNull final File file);
+
+   /**
+    * Returns the index of the given item, or <code>-1</code> if the list contains no item which is equal to it.
+    *
+    * MUST be called from within a lock block!
+    */
+   private int indexOfListItem(@NotNull final T listItem)
+      {
+      final int searchResult = binarySearch(listItem);
+      if (searchResult < 0)
+         {
+         return -1;
+         }
+      if (listItem.equals(listItems.get(searchResult)))
+         {
+         return searchResult;
+         }
+
+      // the comparator isn't necessarily consistent with equals(), so fall back to a linear search
+      return listItems.indexOf(listItem);
+      }
+
+   /**
+    * Binary search using the same return value convention as {@link Collections#binarySearch(List, Object, Comparator)}.
+    * We can't use that method since {@link TreeList} doesn't implement {@link java.util.RandomAccess}, so for large
+    * lists it would iterate instead of using the O(log n) {@link TreeList#get(int)}.
+    *
+    * MUST be called from within a lock block!
+    */
+   private int binarySearch(@NotNull final T listItem)
+      {
+      int low = 0;
+      int high = listItems.size() - 1;
+
+      while (low <= high)
+         {
+         final int mid = (low + high) >>> 1;
+         final int comparison = listItemComparator.compare((T)listItems.get(mid), listItem);
+
+         if (comparison < 0)
+            {
+            low = mid + 1;
+            }
+         else if (comparison > 0)
+            {
+            high = mid - 1;
+            }
+         else
+            {
+            return mid;
+            }
+         }
+      return -(low + 1);
+      }
+
+   /**
+    * Collects indices, in the order in which they were inserted or removed, into contiguous ranges so that each run can
+    * be reported with a single list data event.
+    */
+   private static final class IndexRangeCollector
+      {
+      private final List<int[]> ranges = new ArrayList<int[]>();
+      private int[] currentRange = null;
+
+      /**
+       * Adds the given index.  An index extends the current range if it's either just after it (as happens with
+       * ascending insertions) or just before it (as happens with descending removals).
+       */
+      private void add(final int index)
+         {
+         if (currentRange != null && index == currentRange[1] + 1)
+            {
+            currentRange[1] = index;
+            }
+         else if (currentRange != null && index == currentRange[0] - 1)
+            {
+            currentRange[0] = index;
+            }
+         else
+            {
+            currentRange = new int[]{index, index};
+            ranges.add(currentRange);
+            }
+         }
+
+      @NotNull
+      private List<int[]> getRanges()
+         {
+         return ranges;
+         }
+      }
    }
@@ -23,6 +23,12 @@ import org.jetbrains.annotations.Nullable;
  * whenever files are created, modified, or deleted.  The poller can be configured with a {@link FileFilter} so that
  * it only watches a particular kind of file.
  * </p>
+ * <p>
+ * When running on Java 7 or later, the directory is watched with a {@link java.nio.file.WatchService} so that only the
+ * files which actually changed are rescanned, after a short delay which coalesces bursts of changes into a single
+ * event.  Since watch services can miss events (and aren't available for every file system), the whole directory is
+ * still rescanned periodically, but much less often than when simply polling.
+ * </p>
  *
  * @author Chris Bartley (bartley@cmu.edu)
  */
@@ -30,6 +36,14 @@ public final class DirectoryPoller
    {
    private static final Logger LOG = Logger.getLogger(DirectoryPoller.class);
 
+   /** How long to wait for a burst of watched changes to settle before scanning the changed files. */
+   private static final long COALESCING_WINDOW_IN_MILLIS = 250;
+
+   /** When the directory is being watched, full rescans happen this many times less often than the polling delay. */
+   private static final long FALLBACK_RESCAN_DELAY_MULTIPLIER = 10;
+
+   private static final boolean IS_WATCH_SERVICE_AVAILABLE = isWatchServiceAvailable();
+
    public interface EventListener
       {
       void handleNewFileEvent(@NotNull final Set<File> files);
@@ -55,6 +69,12 @@ public final class DirectoryPoller
    private final Lock lock = new ReentrantLock();
    private final HashMap<File, Long> fileModificationTimeMap = new HashMap<File, Long>();
 
+   @Nullable
+   private DirectoryWatcher directoryWatcher = null;
+   private final Set<File> pendingChangedFiles = new HashSet<File>();
+   private boolean isPendingScanScheduled = false;
+   private long timeOfLastFullScanInMillis = 0;
+
    private final Set<EventListener> eventListeners = new HashSet<EventListener>();
    private ExecutorService executorService = Executors.newCachedThreadPool(new DaemonThreadFactory(this.getClass().getSimpleName()));
 
@@ -169,7 +189,11 @@ public final class DirectoryPoller
             pollingTimer.cancel();
             pollingTimer = null;
             fileModificationTimeMap.clear();
+            pendingChangedFiles.clear();
+            isPendingScanScheduled = false;
+            timeOfLastFullScanInMillis = 0;
             }
+         closeDirectoryWatcher();
          }
       finally
          {
@@ -195,110 +219,322 @@ public final class DirectoryPoller
          }
       }
 
-   private class DirectoryPollingTimerTask extends TimerTask
+   /** Returns <code>true</code> if the <code>java.nio.file</code> {@link DirectoryWatcher} can be used in this JVM. */
+   private static boolean isWatchServiceAvailable()
       {
-      public void run()
+      try
          {
-         lock.lock();
-         try
+         Class.forName("java.nio.file.WatchService");
+         return true;
+         }
+      catch (ClassNotFoundException ignored)
+         {
+         LOG.info("DirectoryPoller.isWatchServiceAvailable(): WatchService not available, so directories will be polled instead of watched");
+         }
+      return false;
+      }
+
+   // MUST be called from within a lock block!
+   private void updateDirectoryWatcher(@NotNull final File directoryToPoll)
+      {
+      if (!IS_WATCH_SERVICE_AVAILABLE)
+         {
+         return;
+         }
+      if (directoryWatcher != null && directoryWatcher.getDirectory().equals(directoryToPoll))
+         {
+         if (directoryWatcher.isAlive())
             {
-            // make sure the directory to poll is not null
-            final File directoryToPoll = directoryProvider.getFile();
-            if (directoryToPoll != null)
+            return;
+            }
+         LOG.warn("DirectoryPoller.updateDirectoryWatcher(): the watcher for [" + directoryToPoll + "] has stopped, so it will be replaced (the directory is polled until then)");
+         }
+
+      closeDirectoryWatcher();
+      try
+         {
+         directoryWatcher = new DirectoryWatcher(directoryToPoll,
+                                                 new DirectoryWatcher.ChangeHandler()
+                                                 {
+                                                 public void handleChangedFiles(@NotNull final Set<File> files)
+                                                    {
+                                                    handleWatchedFileChanges(files);
+                                                    }
+
+                                                 public void handleOverflow()
+                                                    {
+                                                    handleWatcherOverflow();
+                                                    }
+                                                 });
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("DirectoryPoller.updateDirectoryWatcher(): Now watching directory [" + directoryToPoll + "]");
+            }
+         }
+      catch (Exception e)
+         {
+         LOG.debug("DirectoryPoller.updateDirectoryWatcher(): Exception while trying to watch [" + directoryToPoll + "], will fall back to polling", e);
+         }
+      catch (LinkageError e)
+         {
+         LOG.debug("DirectoryPoller.updateDirectoryWatcher(): LinkageError while trying to watch [" + directoryToPoll + "], will fall back to polling", e);
+         }
+      }
+
+   /** Returns <code>true</code> if the directory is currently being watched, rather than only polled. */
+   boolean isWatchingDirectory()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return directoryWatcher != null && directoryWatcher.isAlive();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   // MUST be called from within a lock block!
+   private void closeDirectoryWatcher()
+      {
+      if (directoryWatcher != null)
+         {
+         directoryWatcher.close();
+         directoryWatcher = null;
+         }
+      }
+
+   private void handleWatchedFileChanges(@NotNull final Set<File> files)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (pollingTimer != null)
+            {
+            // coalesce bursts of events (e.g. an editor saving a file in several writes) into a single scan
+            pendingChangedFiles.addAll(files);
+            if (!isPendingScanScheduled)
                {
-               final Set<File> newFiles = new HashSet<File>();
-               final Set<File> modifiedFiles = new HashSet<File>();
-               final Set<File> deletedFiles = new HashSet<File>();
-               final HashSet<File> checkedFiles = new HashSet<File>();
-
-               // scan the files and check for modification/addition
-               final File[] fileList = getFileList(directoryToPoll);
-               if (fileList != null)
+               isPendingScanScheduled = true;
+               pollingTimer.schedule(new PendingChangesTimerTask(), COALESCING_WINDOW_IN_MILLIS);
+               }
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   private void handleWatcherOverflow()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (pollingTimer != null)
+            {
+            // events may have been lost, so rescan the whole directory as soon as possible
+            timeOfLastFullScanInMillis = 0;
+            pollingTimer.schedule(new DirectoryPollingTimerTask(), 0);
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   // MUST be called from within a lock block!
+   private void scanDirectory(@NotNull final File directoryToPoll)
+      {
+      final Set<File> newFiles = new HashSet<File>();
+      final Set<File> modifiedFiles = new HashSet<File>();
+      final Set<File> deletedFiles = new HashSet<File>();
+      final HashSet<File> checkedFiles = new HashSet<File>();
+
+      // scan the files and check for modification/addition
+      final File[] fileList = getFileList(directoryToPoll);
+      if (fileList != null)
+         {
+         for (final File file : fileList)
+            {
+            checkedFiles.add(file);
+
+            final Long fileModificationTime = fileModificationTimeMap.get(file);
+            if (fileModificationTime == null)
+               {
+               // new file
+               fileModificationTimeMap.put(file, file.lastModified());
+               newFiles.add(file);
+               }
+            else if (fileModificationTime != file.lastModified())
+               {
+               // modified file
+               fileModificationTimeMap.put(file, file.lastModified());
+               modifiedFiles.add(file);
+               }
+            }
+         }
+
+      // now check for deleted files
+      final Set<File> files = new HashSet<File>(fileModificationTimeMap.keySet());
+      files.removeAll(checkedFiles);
+      for (final File file : files)
+         {
+         fileModificationTimeMap.remove(file);
+         deletedFiles.add(file);
+         }
+
+      notifyEventListeners(newFiles, modifiedFiles, deletedFiles);
+      }
+
+   // MUST be called from within a lock block!
+   private void scanFiles(@NotNull final File directoryToPoll, @NotNull final Set<File> candidateFiles)
+      {
+      final Set<File> newFiles = new HashSet<File>();
+      final Set<File> modifiedFiles = new HashSet<File>();
+      final Set<File> deletedFiles = new HashSet<File>();
+
+      for (final File file : candidateFiles)
+         {
+         // ignore stragglers from a directory we're no longer polling
+         if (!directoryToPoll.equals(file.getParentFile()))
+            {
+            continue;
+            }
+
+         final Long fileModificationTime = fileModificationTimeMap.get(file);
+         if (file.exists() && (fileFilter == null || fileFilter.accept(file)))
+            {
+            if (fileModificationTime == null)
+               {
+               // new file
+               fileModificationTimeMap.put(file, file.lastModified());
+               newFiles.add(file);
+               }
+            else if (fileModificationTime != file.lastModified())
+               {
+               // modified file
+               fileModificationTimeMap.put(file, file.lastModified());
+               modifiedFiles.add(file);
+               }
+            }
+         else if (fileModificationTime != null)
+            {
+            // deleted file
+            fileModificationTimeMap.remove(file);
+            deletedFiles.add(file);
+            }
+         }
+
+      notifyEventListeners(newFiles, modifiedFiles, deletedFiles);
+      }
+
+   // MUST be called from within a lock block!
+   private void notifyEventListeners(@NotNull final Set<File> newFiles,
+                                     @NotNull final Set<File> modifiedFiles,
+                                     @NotNull final Set<File> deletedFiles)
+      {
+      final boolean hasEventListeners = !eventListeners.isEmpty();
+      final boolean hasEventsToReport = !newFiles.isEmpty() || !modifiedFiles.isEmpty() || !deletedFiles.isEmpty();
+
+      // notify the handler of new/modified/removed files
+      if (hasEventListeners && hasEventsToReport)
+         {
+         executorService.execute(
+               new Runnable()
+               {
+               public void run()
                   {
-                  for (final File file : fileList)
+                  if (LOG.isTraceEnabled())
                      {
-                     checkedFiles.add(file);
+                     final StringBuilder s = new StringBuilder();
+                     s.append("New Files:");
+                     for (final File file : newFiles)
+                        {
+                        s.append(" ").append(file.getName());
+                        }
+                     s.append("\nModified Files:");
+                     for (final File file : modifiedFiles)
+                        {
+                        s.append(" ").append(file.getName());
+                        }
+                     s.append("\nDeleted Files:");
+                     for (final File file : deletedFiles)
+                        {
+                        s.append(" ").append(file.getName());
+                        }
+                     LOG.trace("DirectoryPoller.notifyEventListeners(): \n" + s);
+                     }
 
-                     final Long fileModificationTime = fileModificationTimeMap.get(file);
-                     if (fileModificationTime == null)
+                  if (!newFiles.isEmpty())
+                     {
+                     for (final EventListener listener : eventListeners)
                         {
-                        // new file
-                        fileModificationTimeMap.put(file, file.lastModified());
-                        newFiles.add(file);
+                        listener.handleNewFileEvent(newFiles);
                         }
-                     else if (fileModificationTime != file.lastModified())
+                     }
+                  if (!modifiedFiles.isEmpty())
+                     {
+                     for (final EventListener listener : eventListeners)
                         {
-                        // modified file
-                        fileModificationTimeMap.put(file, file.lastModified());
-                        modifiedFiles.add(file);
+                        listener.handleModifiedFileEvent(modifiedFiles);
+                        }
+                     }
+                  if (!deletedFiles.isEmpty())
+                     {
+                     for (final EventListener listener : eventListeners)
+                        {
+                        listener.handleDeletedFileEvent(deletedFiles);
                         }
                      }
                   }
+               });
+         }
+      }
 
-               // now check for deleted files
-               final Set<File> files = new HashSet<File>(fileModificationTimeMap.keySet());
-               files.removeAll(checkedFiles);
-               for (final File file : files)
-                  {
-                  fileModificationTimeMap.remove(file);
-                  deletedFiles.add(file);
-                  }
+   private File[] getFileList(@NotNull final File directoryToPoll)
+      {
+      if (fileFilter != null)
+         {
+         return directoryToPoll.listFiles(fileFilter);
+         }
+      return directoryToPoll.listFiles();
+      }
+
+   /**
+    * Rescans the whole directory.  When the directory is being watched, the rescan is only a safety net for missed
+    * events, so it's performed much less often than the polling interval.
+    */
+   private class DirectoryPollingTimerTask extends TimerTask
+      {
+      public void run()
+         {
+         // Ask for the directory before taking the lock, since the provider may have its own lock, which it may hold
+         // while stopping this poller (as the PathManager does).
+         final File directoryToPoll = directoryProvider.getFile();
 
-               final boolean hasEventListeners = !eventListeners.isEmpty();
-               final boolean hasEventsToReport = !newFiles.isEmpty() || !modifiedFiles.isEmpty() || !deletedFiles.isEmpty();
+         lock.lock();  // block until condition holds
+         try
+            {
+            // make sure the directory to poll is not null
+            if (directoryToPoll == null)
+               {
+               closeDirectoryWatcher();
+               }
+            else
+               {
+               // start watching before scanning so that no changes can slip between the two
+               updateDirectoryWatcher(directoryToPoll);
 
-               // notify the handler of new/modified/removed files
-               if (hasEventListeners && hasEventsToReport)
+               final long now = System.currentTimeMillis();
+               final boolean isFullScanDue = directoryWatcher == null || !directoryWatcher.isAlive() ||
+                                             now - timeOfLastFullScanInMillis >= timeUnit.toMillis(delay) * FALLBACK_RESCAN_DELAY_MULTIPLIER;
+               if (isFullScanDue)
                   {
-                  executorService.execute(
-                        new Runnable()
-                        {
-                        public void run()
-                           {
-                           if (LOG.isTraceEnabled())
-                              {
-                              final StringBuilder s = new StringBuilder();
-                              s.append("New Files:");
-                              for (final File file : newFiles)
-                                 {
-                                 s.append(" ").append(file.getName());
-                                 }
-                              s.append("\nModified Files:");
-                              for (final File file : modifiedFiles)
-                                 {
-                                 s.append(" ").append(file.getName());
-                                 }
-                              s.append("\nDeleted Files:");
-                              for (final File file : deletedFiles)
-                                 {
-                                 s.append(" ").append(file.getName());
-                                 }
-                              LOG.trace("DirectoryPoller$DirectoryPollingTimerTask.run(): \n" + s);
-                              }
-
-                           if (!newFiles.isEmpty())
-                              {
-                              for (final EventListener listener : eventListeners)
-                                 {
-                                 listener.handleNewFileEvent(newFiles);
-                                 }
-                              }
-                           if (!modifiedFiles.isEmpty())
-                              {
-                              for (final EventListener listener : eventListeners)
-                                 {
-                                 listener.handleModifiedFileEvent(modifiedFiles);
-                                 }
-                              }
-                           if (!deletedFiles.isEmpty())
-                              {
-                              for (final EventListener listener : eventListeners)
-                                 {
-                                 listener.handleDeletedFileEvent(deletedFiles);
-                                 }
-                              }
-                           }
-                        });
+                  timeOfLastFullScanInMillis = now;
+                  scanDirectory(directoryToPoll);
                   }
                }
             }
@@ -307,14 +543,32 @@ public final class DirectoryPoller
             lock.unlock();
             }
          }
+      }
 
-      private File[] getFileList(@NotNull final File directoryToPoll)
+   /** Scans only the files reported by the {@link DirectoryWatcher} since the last time this task ran. */
+   private class PendingChangesTimerTask extends TimerTask
+      {
+      public void run()
          {
-         if (fileFilter != null)
+         // ask for the directory before taking the lock, for the same reason as in DirectoryPollingTimerTask
+         final File directoryToPoll = directoryProvider.getFile();
+
+         lock.lock();  // block until condition holds
+         try
+            {
+            isPendingScanScheduled = false;
+            final Set<File> candidateFiles = new HashSet<File>(pendingChangedFiles);
+            pendingChangedFiles.clear();
+
+            if (directoryToPoll != null && !candidateFiles.isEmpty())
+               {
+               scanFiles(directoryToPoll, candidateFiles);
+               }
+            }
+         finally
             {
-            return directoryToPoll.listFiles(fileFilter);
+            lock.unlock();
             }
-         return directoryToPoll.listFiles();
          }
       }
    }
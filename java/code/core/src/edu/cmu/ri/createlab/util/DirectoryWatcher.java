@@ -0,0 +1,175 @@
+package edu.cmu.ri.createlab.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>DirectoryWatcher</code> uses a {@link WatchService} to report the files in a single directory which have been
+ * created, modified, or deleted.  It's used by the {@link DirectoryPoller} so that it needn't rescan the whole
+ * directory to find changes.
+ * </p>
+ * <p>
+ * This class requires Java 7 or later, so the {@link DirectoryPoller} only loads it after checking that the
+ * <code>java.nio.file</code> API is available.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class DirectoryWatcher
+   {
+   private static final Logger LOG = Logger.getLogger(DirectoryWatcher.class);
+
+   interface ChangeHandler
+      {
+      /** Called with the files (which may or may not still exist) which have changed. */
+      void handleChangedFiles(@NotNull final Set<File> files);
+
+      /** Called when events may have been lost, meaning that the whole directory must be rescanned. */
+      void handleOverflow();
+      }
+
+   @NotNull
+   private final File directory;
+
+   @NotNull
+   private final ChangeHandler changeHandler;
+
+   @NotNull
+   private final WatchService watchService;
+
+   private volatile boolean isAlive = true;
+
+   /**
+    * Starts watching the given directory.
+    *
+    * @throws IOException if the directory cannot be watched
+    */
+   DirectoryWatcher(@NotNull final File directory, @NotNull final ChangeHandler changeHandler) throws IOException
+      {
+      this.directory = directory;
+      this.changeHandler = changeHandler;
+
+      final Path path = directory.toPath();
+      watchService = path.getFileSystem().newWatchService();
+      try
+         {
+         path.register(watchService,
+                       StandardWatchEventKinds.ENTRY_CREATE,
+                       StandardWatchEventKinds.ENTRY_MODIFY,
+                       StandardWatchEventKinds.ENTRY_DELETE);
+         }
+      catch (IOException e)
+         {
+         watchService.close();
+         throw e;
+         }
+
+      final Thread watchThread = new DaemonThreadFactory(this.getClass().getSimpleName()).newThread(
+            new Runnable()
+            {
+            public void run()
+               {
+               watch();
+               }
+            });
+      watchThread.start();
+      }
+
+   @NotNull
+   File getDirectory()
+      {
+      return directory;
+      }
+
+   /**
+    * Returns <code>true</code> if the directory is still being watched, or <code>false</code> if watching has stopped,
+    * either because this watcher was {@link #close() closed} or because the directory is no longer accessible (e.g. it
+    * was deleted).  A dead watcher never comes back to life, so it should be replaced.
+    */
+   boolean isAlive()
+      {
+      return isAlive;
+      }
+
+   /** Stops watching the directory.  No events will be reported once this method returns. */
+   void close()
+      {
+      try
+         {
+         watchService.close();
+         }
+      catch (IOException e)
+         {
+         LOG.debug("DirectoryWatcher.close(): IOException while closing the WatchService", e);
+         }
+      }
+
+   private void watch()
+      {
+      try
+         {
+         while (true)
+            {
+            final WatchKey key = watchService.take();
+
+            boolean didOverflow = false;
+            final Set<File> changedFiles = new HashSet<File>();
+            for (final WatchEvent<?> event : key.pollEvents())
+               {
+               if (StandardWatchEventKinds.OVERFLOW.equals(event.kind()))
+                  {
+                  didOverflow = true;
+                  }
+               else if (event.context() instanceof Path)
+                  {
+                  changedFiles.add(new File(directory, event.context().toString()));
+                  }
+               }
+
+            if (didOverflow)
+               {
+               changeHandler.handleOverflow();
+               }
+            else if (!changedFiles.isEmpty())
+               {
+               changeHandler.handleChangedFiles(changedFiles);
+               }
+
+            if (!key.reset())
+               {
+               // the directory is no longer accessible (e.g. it was deleted), so mark ourselves dead before asking
+               // for a rescan, so that the poller will replace us
+               LOG.warn("DirectoryWatcher.watch(): watch key for [" + directory + "] is no longer valid, so watching has stopped");
+               isAlive = false;
+               close();
+               changeHandler.handleOverflow();
+               break;
+               }
+            }
+         }
+      catch (ClosedWatchServiceException ignored)
+         {
+         // we've been closed, so just quit
+         }
+      catch (InterruptedException ignored)
+         {
+         LOG.debug("DirectoryWatcher.watch(): interrupted while waiting for events, so watching has stopped");
+         }
+      finally
+         {
+         isAlive = false;
+         }
+      }
+   }
@@ -0,0 +1,131 @@
+package edu.cmu.ri.createlab.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>DurableFileWriter</code> writes files so that they survive a crash or power loss.  A file is replaced by
+ * writing a temp file next to it, forcing the temp file's contents to the disk, and only then renaming it over the
+ * original, so that the file is always either entirely old or entirely new.  Where the platform allows it, the
+ * directory is then forced to the disk too, so that the rename itself survives.  Appends are also forced to the disk
+ * before returning.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class DurableFileWriter
+   {
+   private static final Logger LOG = Logger.getLogger(DurableFileWriter.class);
+
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final String TEMP_FILE_SUFFIX = ".TEMP";
+
+   /**
+    * Replaces the contents of the given file with the given string, encoded as UTF-8, creating the file if necessary.
+    *
+    * @throws IOException if the file could not be written
+    */
+   public static void write(@NotNull final File file, @NotNull final String contents) throws IOException
+      {
+      write(file, contents.getBytes(UTF_8));
+      }
+
+   /**
+    * Replaces the contents of the given file with the given bytes, creating the file if necessary.
+    *
+    * @throws IOException if the file could not be written
+    */
+   public static void write(@NotNull final File file, @NotNull final byte[] contents) throws IOException
+      {
+      final File tempFile = new File(file.getParentFile(), file.getName() + TEMP_FILE_SUFFIX);
+      writeAndSync(tempFile, contents, false);
+
+      // renaming over an existing file is atomic on POSIX systems, but fails on Windows, so fall back to deleting first
+      if (!tempFile.renameTo(file))
+         {
+         if (file.exists() && !file.delete())
+            {
+            throw new IOException("Failed to delete [" + file + "] so that it could be replaced");
+            }
+         if (!tempFile.renameTo(file))
+            {
+            throw new IOException("Failed to rename [" + tempFile + "] to [" + file + "]");
+            }
+         }
+      syncDirectory(file.getAbsoluteFile().getParentFile());
+
+      if (LOG.isDebugEnabled())
+         {
+         LOG.debug("DurableFileWriter.write(): Wrote [" + file + "]");
+         }
+      }
+
+   /**
+    * Appends the given string, encoded as UTF-8, to the given file, creating the file if necessary.
+    *
+    * @throws IOException if the file could not be written
+    */
+   public static void append(@NotNull final File file, @NotNull final String contents) throws IOException
+      {
+      writeAndSync(file, contents.getBytes(UTF_8), true);
+      }
+
+   private static void writeAndSync(@NotNull final File file, @NotNull final byte[] contents, final boolean willAppend) throws IOException
+      {
+      final FileOutputStream outputStream = new FileOutputStream(file, willAppend);
+      try
+         {
+         outputStream.write(contents);
+         outputStream.flush();
+         outputStream.getFD().sync();
+         }
+      finally
+         {
+         outputStream.close();
+         }
+      }
+
+   /**
+    * Forces the given directory's entries to the disk, so that a rename within it survives a crash.  Not every
+    * platform allows a directory to be opened (Windows doesn't, for example), in which case this does nothing.
+    */
+   private static void syncDirectory(@Nullable final File directory)
+      {
+      if (directory == null)
+         {
+         return;
+         }
+      try
+         {
+         final FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+         try
+            {
+            channel.force(true);
+            }
+         finally
+            {
+            channel.close();
+            }
+         }
+      catch (IOException e)
+         {
+         if (LOG.isDebugEnabled())
+            {
+            LOG.debug("DurableFileWriter.syncDirectory(): Could not sync the directory [" + directory + "], the platform probably doesn't allow it: " + e);
+            }
+         }
+      }
+
+   private DurableFileWriter()
+      {
+      // private to prevent instantiation
+      }
+   }
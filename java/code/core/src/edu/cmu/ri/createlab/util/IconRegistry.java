@@ -0,0 +1,217 @@
+package edu.cmu.ri.createlab.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.ImageIcon;
+import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>IconRegistry</code> is a process-wide registry of {@link ImageIcon}s which decodes each image resource only
+ * once.  Views which are created over and over&mdash;list cells, program elements, per-device control panel
+ * icons&mdash;should get their icons here rather than from {@link ImageUtils#createImageIcon(String)}, so that a palette
+ * or sequence with thousands of elements shares a single copy of each icon.
+ * </p>
+ * <p>
+ * The registry can also {@link #getHorizontalStrip(List) composite} a row of icons into a single icon, so that a
+ * strip which would otherwise take one component per icon can be drawn with a single component.  Strips are cached
+ * too, keyed on the icons they're made of.
+ * </p>
+ * <p>
+ * The icons are shared, so callers must not modify them.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class IconRegistry
+   {
+   private static final IconRegistry INSTANCE = new IconRegistry();
+
+   public static IconRegistry getInstance()
+      {
+      return INSTANCE;
+      }
+
+   private final Lock lock = new ReentrantLock();
+
+   // icons which failed to load are stored as null, so that ImageUtils only reports them once
+   private final Map<String, ImageIcon> icons = new HashMap<String, ImageIcon>();
+   private final Map<List<ImageIcon>, ImageIcon> strips = new HashMap<List<ImageIcon>, ImageIcon>();
+   private long hitCount = 0;
+   private long missCount = 0;
+
+   private IconRegistry()
+      {
+      // private to prevent instantiation
+      }
+
+   /**
+    * Returns the shared icon for the image resource at the given path, decoding it the first time it's requested.
+    * Returns <code>null</code> if the resource couldn't be loaded.
+    */
+   @Nullable
+   public ImageIcon getImageIcon(@NotNull final String resourcePath)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (icons.containsKey(resourcePath))
+            {
+            hitCount++;
+            return icons.get(resourcePath);
+            }
+         missCount++;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      // decode outside the lock so that one slow image doesn't hold up the others (if two threads race to decode the
+      // same image, the first one to finish wins and the other copy is discarded)
+      final ImageIcon icon = ImageUtils.createImageIcon(resourcePath);
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (icons.containsKey(resourcePath))
+            {
+            return icons.get(resourcePath);
+            }
+         icons.put(resourcePath, icon);
+         return icon;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Returns a single icon made of the given icons laid side by side, left to right and aligned along their tops.
+    * Returns <code>null</code> if the list is empty or any of the icons is <code>null</code>.
+    */
+   @Nullable
+   public ImageIcon getHorizontalStrip(@NotNull final List<ImageIcon> stripIcons)
+      {
+      if (stripIcons.isEmpty() || stripIcons.contains(null))
+         {
+         return null;
+         }
+
+      // ImageIcon doesn't override equals(), so icons (and thus strips) are matched by identity, which is exactly what
+      // we want for the shared icons handed out by this registry
+      final List<ImageIcon> key = new ArrayList<ImageIcon>(stripIcons);
+      lock.lock();  // block until condition holds
+      try
+         {
+         final ImageIcon strip = strips.get(key);
+         if (strip != null)
+            {
+            hitCount++;
+            return strip;
+            }
+         missCount++;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      int width = 0;
+      int height = 0;
+      for (final ImageIcon icon : key)
+         {
+         width += icon.getIconWidth();
+         height = Math.max(height, icon.getIconHeight());
+         }
+      if (width <= 0 || height <= 0)
+         {
+         return null;
+         }
+
+      final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      final Graphics2D graphics = image.createGraphics();
+      try
+         {
+         int x = 0;
+         for (final ImageIcon icon : key)
+            {
+            graphics.drawImage(icon.getImage(), x, 0, null);
+            x += icon.getIconWidth();
+            }
+         }
+      finally
+         {
+         graphics.dispose();
+         }
+      final ImageIcon strip = new ImageIcon(image);
+
+      lock.lock();  // block until condition holds
+      try
+         {
+         final ImageIcon existingStrip = strips.get(key);
+         if (existingStrip != null)
+            {
+            return existingStrip;
+            }
+         strips.put(key, strip);
+         return strip;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of requests which were answered with an icon or strip which had already been created. */
+   public long getHitCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return hitCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of requests which had to decode an icon or composite a strip. */
+   public long getMissCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return missCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the fraction of requests which were hits, or 0 if there haven't been any requests yet. */
+   public double getHitRate()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         final long requestCount = hitCount + missCount;
+         return (requestCount == 0) ? 0 : (double)hitCount / requestCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+   }
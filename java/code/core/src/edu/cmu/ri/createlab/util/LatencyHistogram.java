@@ -0,0 +1,148 @@
+package edu.cmu.ri.createlab.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * <code>LatencyHistogram</code> is a lock-free histogram of non-negative <code>long</code> values (typically
+ * durations in nanoseconds) with logarithmically-sized buckets.  Each power of two is split into four buckets, so a
+ * percentile is reported with an error of at most 25%, no matter how large the values are, using a fixed 2 KB of
+ * memory.  Recording a value is a handful of atomic operations and never allocates, so it's cheap enough to do on
+ * every step of a running sequence.
+ * </p>
+ * <p>
+ * Negative values are recorded as zero.  Reads are not synchronized with writes, so a snapshot taken while values are
+ * being recorded may be off by the values recorded during the read.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class LatencyHistogram
+   {
+   private static final int SUB_BUCKET_BITS = 2;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+   private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+   private static final int BUCKET_COUNT = getBucketIndex(Long.MAX_VALUE) + 1;
+
+   /** Returns the index of the bucket holding the given non-negative value. */
+   static int getBucketIndex(final long value)
+      {
+      if (value < SUB_BUCKET_COUNT)
+         {
+         return (int)value;
+         }
+      final int exponent = 63 - Long.numberOfLeadingZeros(value);
+      final int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & SUB_BUCKET_MASK;
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+      }
+
+   /** Returns the smallest value held by the bucket with the given index. */
+   static long getBucketLowerBound(final int bucketIndex)
+      {
+      if (bucketIndex < SUB_BUCKET_COUNT)
+         {
+         return bucketIndex;
+         }
+      final int exponent = bucketIndex / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+      final long subBucket = bucketIndex % SUB_BUCKET_COUNT;
+      return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+      }
+
+   /** Returns the largest value held by the bucket with the given index. */
+   static long getBucketUpperBound(final int bucketIndex)
+      {
+      return (bucketIndex + 1 < BUCKET_COUNT) ? getBucketLowerBound(bucketIndex + 1) - 1 : Long.MAX_VALUE;
+      }
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+   private final AtomicLong count = new AtomicLong(0);
+   private final AtomicLong sum = new AtomicLong(0);
+   private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+   private final AtomicLong max = new AtomicLong(0);
+
+   /** Records the given value.  Negative values are recorded as zero. */
+   public void record(final long value)
+      {
+      final long cleanedValue = Math.max(0, value);
+      counts.incrementAndGet(getBucketIndex(cleanedValue));
+      count.incrementAndGet();
+      sum.addAndGet(cleanedValue);
+
+      long currentMin = min.get();
+      while (cleanedValue < currentMin && !min.compareAndSet(currentMin, cleanedValue))
+         {
+         currentMin = min.get();
+         }
+      long currentMax = max.get();
+      while (cleanedValue > currentMax && !max.compareAndSet(currentMax, cleanedValue))
+         {
+         currentMax = max.get();
+         }
+      }
+
+   /** Returns the number of values recorded. */
+   public long getCount()
+      {
+      return count.get();
+      }
+
+   /** Returns the smallest value recorded, or zero if no values have been recorded. */
+   public long getMin()
+      {
+      return (count.get() == 0) ? 0 : min.get();
+      }
+
+   /** Returns the largest value recorded, or zero if no values have been recorded. */
+   public long getMax()
+      {
+      return max.get();
+      }
+
+   /** Returns the exact mean of the values recorded, or zero if no values have been recorded. */
+   public double getMean()
+      {
+      final long n = count.get();
+      return (n == 0) ? 0 : sum.get() / (double)n;
+      }
+
+   /**
+    * Returns an upper bound for the given percentile (in the range <code>[0, 100]</code>) of the values recorded,
+    * which is never more than 25% above the true value, and never more than the {@link #getMax() maximum}.  Returns
+    * zero if no values have been recorded.
+    */
+   public long getValueAtPercentile(final double percentile)
+      {
+      final long n = count.get();
+      if (n == 0)
+         {
+         return 0;
+         }
+
+      final double fraction = Math.max(0, Math.min(100, percentile)) / 100;
+      final long rank = Math.max(1, (long)Math.ceil(fraction * n));
+      long cumulativeCount = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++)
+         {
+         cumulativeCount += counts.get(i);
+         if (cumulativeCount >= rank)
+            {
+            return Math.min(getBucketUpperBound(i), getMax());
+            }
+         }
+      return getMax();
+      }
+
+   /** Forgets all the values recorded. */
+   public void reset()
+      {
+      for (int i = 0; i < BUCKET_COUNT; i++)
+         {
+         counts.set(i, 0);
+         }
+      count.set(0);
+      sum.set(0);
+      min.set(Long.MAX_VALUE);
+      max.set(0);
+      }
+   }
@@ -8,6 +8,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
+import edu.cmu.ri.createlab.terk.expression.manager.XmlExpressionCache;
 import edu.cmu.ri.createlab.util.DirectoryPoller;
 import edu.cmu.ri.createlab.util.FileProvider;
 import edu.cmu.ri.createlab.xml.XmlFilenameFilter;
@@ -69,9 +70,12 @@ public final class PathManager
 
    private File visualProgrammerHomeDir = null;
    private File audioDirectory = null;
+   private File speechCacheDirectory = null;
    private File expressionsDirectory = null;
    private File sequencesDirectory = null;
    private File arduinoDirectory = null;
+   private File autosaveDirectory = null;
+   private File sequenceSummaryIndexFile = null;
    private DirectoryPoller expressionsDirectoryPoller = null;
    private DirectoryPoller sequencesDirectoryPoller = null;
    private final Set<DirectoryPoller.EventListener> expressionsDirectoryPollerEventListeners = new HashSet<DirectoryPoller.EventListener>();
@@ -113,6 +117,28 @@ public final class PathManager
          }
       }
 
+   /**
+    * Returns the directory in which synthesized speech is cached.  Speech doesn't depend on the device, so the
+    * directory is shared by all devices.  Returns <code>null</code> if the PathManager has not been initialized, or
+    * was de-initialized.
+    *
+    * @see #initialize(File, VisualProgrammerDevice)
+    * @see #deinitialize()
+    */
+   @Nullable
+   public File getSpeechCacheDirectory()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return speechCacheDirectory;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
    @NotNull
    public File getFormerAudioDirectory()
       {
@@ -174,6 +200,50 @@ public final class PathManager
          }
       }
 
+   /**
+    * Returns the directory in which unsaved expressions and sequences are autosaved for the current
+    * {@link VisualProgrammerDevice}.  Returns <code>null</code> if the PathManager has not been initialized, or was
+    * de-initialized.
+    *
+    * @see #initialize(File, VisualProgrammerDevice)
+    * @see #deinitialize()
+    */
+   @Nullable
+   public File getAutosaveDirectory()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return autosaveDirectory;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Returns the file, next to the sequences directory, in which summaries of the saved sequences are kept for the
+    * current {@link VisualProgrammerDevice}.  Returns <code>null</code> if the PathManager has not been initialized,
+    * or was de-initialized.
+    *
+    * @see #initialize(File, VisualProgrammerDevice)
+    * @see #deinitialize()
+    */
+   @Nullable
+   public File getSequenceSummaryIndexFile()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return sequenceSummaryIndexFile;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
    public void registerExpressionsDirectoryPollerEventListener(final DirectoryPoller.EventListener listener)
       {
       registerDirectoryPollerEventListener(expressionsDirectoryPoller, expressionsDirectoryPollerEventListeners, listener);
@@ -297,14 +367,19 @@ public final class PathManager
          final String visualProgramerDeviceName = visualProgrammerDevice.getDeviceName();
          this.visualProgrammerHomeDir = visualProgrammerHomeDir;
          audioDirectory = new File(visualProgrammerHomeDir, VisualProgrammerConstants.FilePaths.AUDIO_DIRECTORY_NAME);
+         speechCacheDirectory = new File(visualProgrammerHomeDir, VisualProgrammerConstants.FilePaths.SPEECH_CACHE_DIRECTORY_NAME);
          expressionsDirectory = new File(new File(this.visualProgrammerHomeDir, visualProgramerDeviceName), VisualProgrammerConstants.FilePaths.EXPRESSIONS_DIRECTORY_NAME);
          sequencesDirectory = new File(new File(this.visualProgrammerHomeDir, visualProgramerDeviceName), VisualProgrammerConstants.FilePaths.SEQUENCES_DIRECTORY_NAME);
          arduinoDirectory = new File(new File(this.visualProgrammerHomeDir, visualProgramerDeviceName), VisualProgrammerConstants.FilePaths.ARDUINO_DIRECTORY_NAME);
+         autosaveDirectory = new File(new File(this.visualProgrammerHomeDir, visualProgramerDeviceName), VisualProgrammerConstants.FilePaths.AUTOSAVE_DIRECTORY_NAME);
+         sequenceSummaryIndexFile = new File(new File(this.visualProgrammerHomeDir, visualProgramerDeviceName), VisualProgrammerConstants.FilePaths.SEQUENCE_SUMMARY_INDEX_FILENAME);
 
          audioDirectory.mkdirs();
+         speechCacheDirectory.mkdirs();
          expressionsDirectory.mkdirs();
          sequencesDirectory.mkdirs();
          arduinoDirectory.mkdirs();
+         autosaveDirectory.mkdirs();
 
          shutdownDirectoryPoller(expressionsDirectoryPoller);
          shutdownDirectoryPoller(sequencesDirectoryPoller);
@@ -321,6 +396,8 @@ public final class PathManager
             {
             LOG.debug("PathManager.setVisualProgrammerDevice(): adding [" + expressionsDirectoryPollerEventListeners.size() + "] listeners to the expressions DirectoryPoller");
             }
+         // keep the parsed expression cache in sync with the expression files
+         this.expressionsDirectoryPoller.addEventListener(XmlExpressionCache.getInstance());
          for (final DirectoryPoller.EventListener listener : expressionsDirectoryPollerEventListeners)
             {
             this.expressionsDirectoryPoller.addEventListener(listener);
@@ -362,9 +439,12 @@ public final class PathManager
 
          this.visualProgrammerHomeDir = null;
          this.audioDirectory = null;
+         this.speechCacheDirectory = null;
          this.expressionsDirectory = null;
          this.sequencesDirectory = null;
          this.arduinoDirectory = null;
+         this.autosaveDirectory = null;
+         this.sequenceSummaryIndexFile = null;
          }
       finally
          {
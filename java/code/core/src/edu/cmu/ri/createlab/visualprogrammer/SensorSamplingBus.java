@@ -0,0 +1,515 @@
+package edu.cmu.ri.createlab.visualprogrammer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerService;
+import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
+import edu.cmu.ri.createlab.terk.services.motor.PositionControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.obstacle.SimpleObstacleDetectorService;
+import edu.cmu.ri.createlab.terk.services.photoresistor.PhotoresistorService;
+import edu.cmu.ri.createlab.terk.services.thermistor.ThermistorService;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SensorSamplingBus</code> is a singleton which polls sensor services on behalf of any number of consumers.
+ * Each sensor service (and thus each connected device) has a single source which reads all of the service's ports
+ * once per tick and fans the {@link SensorSample sample} out to its subscribers.  Subscribers state the rate they
+ * need; the source ticks at the fastest rate requested, and each subscriber is only notified at (roughly) its own
+ * rate.  When the last subscriber for a service cancels, polling of that service stops.
+ * </p>
+ * <p>
+ * Each source polls on its own thread, so a device which is slow to answer (or stops answering altogether) only
+ * delays its own samples, never those of the other connected devices.  Samples are delivered on the source's polling
+ * thread, so {@link SampleListener}s must not block.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SensorSamplingBus
+   {
+   private static final Logger LOG = Logger.getLogger(SensorSamplingBus.class);
+
+   public static final int DEFAULT_PERIOD_IN_MILLIS = 500;
+   public static final int MIN_PERIOD_IN_MILLIS = 10;
+
+   public interface SampleListener
+      {
+      void handleSample(@NotNull final Service service, @NotNull final SensorSample sample);
+      }
+
+   /**
+    * An immutable, timestamped reading of every port of a sensor service.  The type of each port's value depends on
+    * the service, and matches what the service's per-port getter returns (e.g. {@link Integer} for
+    * {@link AnalogInputsService}, {@link Boolean} for {@link SimpleObstacleDetectorService}).
+    */
+   public static final class SensorSample
+      {
+      private final Object[] values;
+      private final long timestampInNanos;
+
+      private SensorSample(@NotNull final Object[] values, final long timestampInNanos)
+         {
+         this.values = values;
+         this.timestampInNanos = timestampInNanos;
+         }
+
+      public int getPortCount()
+         {
+         return values.length;
+         }
+
+      /** Returns the value for the given port, or <code>null</code> if the port is invalid or could not be read. */
+      @Nullable
+      public Object getValue(final int portNumber)
+         {
+         return (portNumber >= 0 && portNumber < values.length) ? values[portNumber] : null;
+         }
+
+      /** Returns the value of {@link System#nanoTime()} at the time the sample was taken. */
+      public long getTimestampInNanos()
+         {
+         return timestampInNanos;
+         }
+
+      public long getAgeInMillis()
+         {
+         return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timestampInNanos);
+         }
+
+      @Override
+      public String toString()
+         {
+         return "SensorSample{values=" + Arrays.toString(values) + ", timestampInNanos=" + timestampInNanos + "}";
+         }
+      }
+
+   /** A handle for a subscription created by {@link #subscribe(Service, int, SampleListener)}. */
+   public final class Subscription
+      {
+      private final Service service;
+      private final int periodInMillis;
+      private final SampleListener listener;
+      private long nextDueTimeInNanos = System.nanoTime();
+
+      private Subscription(@NotNull final Service service, final int periodInMillis, @NotNull final SampleListener listener)
+         {
+         this.service = service;
+         this.periodInMillis = periodInMillis;
+         this.listener = listener;
+         }
+
+      public int getPeriodInMillis()
+         {
+         return periodInMillis;
+         }
+
+      /** Cancels this subscription.  Does nothing if it has already been cancelled. */
+      public void cancel()
+         {
+         unsubscribe(this);
+         }
+      }
+
+   private static final SensorSamplingBus INSTANCE = new SensorSamplingBus();
+
+   public static SensorSamplingBus getInstance()
+      {
+      return INSTANCE;
+      }
+
+   /** Returns <code>true</code> if the bus knows how to sample the given service; <code>false</code> otherwise. */
+   public static boolean isSupported(@Nullable final Service service)
+      {
+      return service instanceof AnalogInputsService ||
+             service instanceof PhotoresistorService ||
+             service instanceof SimpleObstacleDetectorService ||
+             service instanceof ThermistorService ||
+             service instanceof AccelerometerService ||
+             service instanceof PositionControllableMotorService;
+      }
+
+   private final Lock lock = new ReentrantLock();
+   private final Map<Service, Source> sources = new HashMap<Service, Source>();
+
+   private SensorSamplingBus()
+      {
+      // private to prevent instantiation
+      }
+
+   /**
+    * Subscribes the given listener to samples of the given service, delivered roughly every
+    * <code>periodInMillis</code> milliseconds (but never more often than every {@link #MIN_PERIOD_IN_MILLIS}).
+    *
+    * @throws IllegalArgumentException if the service is not {@link #isSupported(Service) supported}
+    */
+   @NotNull
+   public Subscription subscribe(@NotNull final Service service, final int periodInMillis, @NotNull final SampleListener listener)
+      {
+      if (!isSupported(service))
+         {
+         throw new IllegalArgumentException("Sampling of the service [" + service.getTypeId() + "] is not supported");
+         }
+
+      final Subscription subscription = new Subscription(service, Math.max(MIN_PERIOD_IN_MILLIS, periodInMillis), listener);
+      lock.lock();  // block until condition holds
+      try
+         {
+         Source source = sources.get(service);
+         if (source == null)
+            {
+            source = new Source(service);
+            sources.put(service, source);
+            }
+         source.add(subscription);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      return subscription;
+      }
+
+   /** Returns the most recent sample of the given service, or <code>null</code> if the service isn't being sampled. */
+   @Nullable
+   public SensorSample getLatestSample(@Nullable final Service service)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         final Source source = sources.get(service);
+         return (source == null) ? null : source.latestSample;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of active subscriptions to the given service, which is zero if it isn't being sampled. */
+   public int getSubscriptionCount(@Nullable final Service service)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         final Source source = sources.get(service);
+         return (source == null) ? 0 : source.subscriptions.size();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Returns a sample of the given service which is no more than <code>maxAgeInMillis</code> milliseconds old.  If the
+    * service is being sampled and its most recent sample is fresh enough, that sample is returned without touching
+    * the device; otherwise the service is read right away, on the calling thread, and the new sample is shared with
+    * the service's source (if any).  Returns <code>null</code> if the service is not {@link #isSupported(Service)
+    * supported} or could not be read.
+    */
+   @Nullable
+   public SensorSample getSample(@NotNull final Service service, final int maxAgeInMillis)
+      {
+      final Source source;
+      lock.lock();  // block until condition holds
+      try
+         {
+         source = sources.get(service);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      if (source != null)
+         {
+         final SensorSample latestSample = source.latestSample;
+         if (latestSample != null && latestSample.getAgeInMillis() <= maxAgeInMillis)
+            {
+            return latestSample;
+            }
+         }
+
+      if (isSupported(service))
+         {
+         try
+            {
+            final Object[] values = sample(service);
+            if (values != null)
+               {
+               final SensorSample sample = new SensorSample(values, System.nanoTime());
+               if (source != null)
+                  {
+                  source.latestSample = sample;
+                  }
+               return sample;
+               }
+            }
+         catch (Exception e)
+            {
+            LOG.error("SensorSamplingBus.getSample(): Exception while trying to sample service [" + service.getTypeId() + "]", e);
+            }
+         }
+      return null;
+      }
+
+   /**
+    * Stops sampling every service belonging to the given {@link ServiceManager}, and drops all of their
+    * subscriptions.  Devices should call this when they disconnect.
+    */
+   public void removeSources(@NotNull final ServiceManager serviceManager)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         for (final Iterator<Map.Entry<Service, Source>> iterator = sources.entrySet().iterator(); iterator.hasNext(); )
+            {
+            final Map.Entry<Service, Source> entry = iterator.next();
+            final Service service = entry.getKey();
+            if (serviceManager.getServiceByTypeId(service.getTypeId()) == service)
+               {
+               entry.getValue().stop();
+               iterator.remove();
+               }
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   private void unsubscribe(@NotNull final Subscription subscription)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         final Source source = sources.get(subscription.service);
+         if (source != null && source.remove(subscription) && source.isEmpty())
+            {
+            source.stop();
+            sources.remove(subscription.service);
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Reads every port of the given service, returning <code>null</code> if the read failed entirely. */
+   @Nullable
+   static Object[] sample(@NotNull final Service service)
+      {
+      if (service instanceof AnalogInputsService)
+         {
+         return toObjectArray(((AnalogInputsService)service).getAnalogInputValues());
+         }
+      if (service instanceof PhotoresistorService)
+         {
+         return toObjectArray(((PhotoresistorService)service).getPhotoresistorValues());
+         }
+      if (service instanceof SimpleObstacleDetectorService)
+         {
+         final boolean[] values = ((SimpleObstacleDetectorService)service).areObstaclesDetected();
+         if (values == null)
+            {
+            return null;
+            }
+         final Object[] objects = new Object[values.length];
+         for (int i = 0; i < values.length; i++)
+            {
+            objects[i] = values[i];
+            }
+         return objects;
+         }
+      if (service instanceof PositionControllableMotorService)
+         {
+         return ((PositionControllableMotorService)service).getStates();
+         }
+
+      // these services have no bulk getter, so read each port individually
+      if (service instanceof ThermistorService)
+         {
+         final ThermistorService thermistorService = (ThermistorService)service;
+         final Object[] objects = new Object[thermistorService.getDeviceCount()];
+         for (int i = 0; i < objects.length; i++)
+            {
+            objects[i] = thermistorService.getThermistorValue(i);
+            }
+         return objects;
+         }
+      if (service instanceof AccelerometerService)
+         {
+         final AccelerometerService accelerometerService = (AccelerometerService)service;
+         final Object[] objects = new Object[accelerometerService.getDeviceCount()];
+         for (int i = 0; i < objects.length; i++)
+            {
+            objects[i] = accelerometerService.getAccelerometerState(i);
+            }
+         return objects;
+         }
+      return null;
+      }
+
+   @Nullable
+   private static Object[] toObjectArray(@Nullable final int[] values)
+      {
+      if (values == null)
+         {
+         return null;
+         }
+      final Object[] objects = new Object[values.length];
+      for (int i = 0; i < values.length; i++)
+         {
+         objects[i] = values[i];
+         }
+      return objects;
+      }
+
+   /**
+    * The polling state for a single service.  All fields are guarded by the bus's lock, except for latestSample and
+    * periodInMillis, which are also read by the polling thread and are therefore volatile.  The polling thread is
+    * created when polling starts, and shut down when it stops.
+    */
+   private final class Source implements Runnable
+      {
+      private final Service service;
+      private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+      private volatile Subscription[] subscriptionsArray = new Subscription[0];
+      private volatile SensorSample latestSample = null;
+      private ScheduledExecutorService pollingService = null;
+      private ScheduledFuture<?> future = null;
+      private volatile int periodInMillis = 0;
+
+      private Source(@NotNull final Service service)
+         {
+         this.service = service;
+         }
+
+      private void add(@NotNull final Subscription subscription)
+         {
+         subscriptions.add(subscription);
+         subscriptionsChanged();
+         }
+
+      private boolean remove(@NotNull final Subscription subscription)
+         {
+         if (subscriptions.remove(subscription))
+            {
+            subscriptionsChanged();
+            return true;
+            }
+         return false;
+         }
+
+      private boolean isEmpty()
+         {
+         return subscriptions.isEmpty();
+         }
+
+      // MUST be called from within a lock block!
+      private void subscriptionsChanged()
+         {
+         subscriptionsArray = subscriptions.toArray(new Subscription[subscriptions.size()]);
+
+         // poll at the fastest rate any subscriber wants
+         int fastestPeriodInMillis = Integer.MAX_VALUE;
+         for (final Subscription subscription : subscriptions)
+            {
+            fastestPeriodInMillis = Math.min(fastestPeriodInMillis, subscription.periodInMillis);
+            }
+         if (!subscriptions.isEmpty() && fastestPeriodInMillis != periodInMillis)
+            {
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("SensorSamplingBus$Source.subscriptionsChanged(): polling service [" + service.getTypeId() + "] every [" + fastestPeriodInMillis + "] millis for [" + subscriptions.size() + "] subscriber(s)");
+               }
+            cancelPolling();
+            if (pollingService == null)
+               {
+               pollingService = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(SensorSamplingBus.class.getSimpleName() + "." + service.getTypeId()));
+               }
+            periodInMillis = fastestPeriodInMillis;
+            future = pollingService.scheduleAtFixedRate(this, 0, periodInMillis, TimeUnit.MILLISECONDS);
+            }
+         }
+
+      // MUST be called from within a lock block!
+      private void cancelPolling()
+         {
+         if (future != null)
+            {
+            future.cancel(false);
+            future = null;
+            }
+         periodInMillis = 0;
+         }
+
+      // MUST be called from within a lock block!
+      private void stop()
+         {
+         cancelPolling();
+         if (pollingService != null)
+            {
+            // don't interrupt a read in progress, since the device may not cope; a hung read only holds up this thread
+            pollingService.shutdown();
+            pollingService = null;
+            }
+         }
+
+      @Override
+      public void run()
+         {
+         try
+            {
+            final Object[] values = sample(service);
+            if (values != null)
+               {
+               final long now = System.nanoTime();
+               final SensorSample sample = new SensorSample(values, now);
+               latestSample = sample;
+
+               // only notify the subscribers which are due, allowing half a tick of slack so that a subscriber whose
+               // period is a multiple of the source's period isn't pushed back a whole tick by jitter
+               final long slackInNanos = TimeUnit.MILLISECONDS.toNanos(periodInMillis) / 2;
+               for (final Subscription subscription : subscriptionsArray)
+                  {
+                  if (now - subscription.nextDueTimeInNanos >= 0)
+                     {
+                     subscription.nextDueTimeInNanos = now + TimeUnit.MILLISECONDS.toNanos(subscription.periodInMillis) - slackInNanos;
+                     try
+                        {
+                        subscription.listener.handleSample(service, sample);
+                        }
+                     catch (Exception e)
+                        {
+                        LOG.error("SensorSamplingBus$Source.run(): Exception while notifying a listener of a sample of service [" + service.getTypeId() + "]", e);
+                        }
+                     }
+                  }
+               }
+            }
+         catch (Exception e)
+            {
+            LOG.error("SensorSamplingBus$Source.run(): Exception while trying to sample service [" + service.getTypeId() + "]", e);
+            }
+         }
+      }
+   }
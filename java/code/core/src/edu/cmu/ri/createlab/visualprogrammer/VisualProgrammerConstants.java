@@ -24,6 +24,9 @@ public class VisualProgrammerConstants
       public static final String EXPRESSIONS_DIRECTORY_NAME = RESOURCES.getString("file-path.expressions-directory-name");
       public static final String SEQUENCES_DIRECTORY_NAME = RESOURCES.getString("file-path.sequences-directory-name");
       public static final String ARDUINO_DIRECTORY_NAME = RESOURCES.getString("file-path.arduino-directory-name");
+      public static final String AUTOSAVE_DIRECTORY_NAME = RESOURCES.getString("file-path.autosave-directory-name");
+      public static final String SEQUENCE_SUMMARY_INDEX_FILENAME = RESOURCES.getString("file-path.sequence-summary-index-filename");
+      public static final String SPEECH_CACHE_DIRECTORY_NAME = RESOURCES.getString("file-path.speech-cache-directory-name");
 
       private FilePaths()
          {
@@ -42,6 +45,41 @@ public class VisualProgrammerConstants
          }
       }
 
+   /**
+    * Tuning knobs for sequence playback.  Each can be overridden at launch with a system property of the same name,
+    * e.g. <code>-Dvisual-programmer.progress-interval-millis=100</code>.
+    */
+   public static class Tuning
+      {
+      public static final int PROGRESS_INTERVAL_IN_MILLIS = getIntProperty("visual-programmer.progress-interval-millis");
+
+      /**
+       * The maximum age of a sensor snapshot which conditionals may use, or a negative value to always read the device.
+       * Snapshots are disabled by default, since sampling adds device traffic; users opt in with e.g.
+       * <code>-Dvisual-programmer.sensor-snapshot-max-staleness-millis=20</code>.
+       */
+      public static final int SENSOR_SNAPSHOT_MAX_STALENESS_IN_MILLIS = getIntProperty("visual-programmer.sensor-snapshot-max-staleness-millis");
+
+      private static int getIntProperty(final String key)
+         {
+         final String defaultValue = RESOURCES.getString(key);
+         final String value = System.getProperty(key, defaultValue);
+         try
+            {
+            return Integer.parseInt(value.trim());
+            }
+         catch (NumberFormatException ignored)
+            {
+            return Integer.parseInt(defaultValue.trim());
+            }
+         }
+
+      private Tuning()
+         {
+         // private to prevent instantiation
+         }
+      }
+
    private VisualProgrammerConstants()
       {
       // private to prevent instantiation
@@ -0,0 +1,63 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SensorScript</code> holds the {@link Waveform} for each channel of each simulated sensor service, and
+ * evaluates them relative to the time the simulated device connected.  Channels without a waveform report zero.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class SensorScript
+   {
+   private static final double NANOS_PER_SECOND = 1000000000.0;
+
+   private final Map<String, Waveform> waveforms = new ConcurrentHashMap<String, Waveform>();
+   private volatile long startTimeInNanos = System.nanoTime();
+
+   private static String createKey(@NotNull final String serviceTypeId, final int channel)
+      {
+      return serviceTypeId + "|" + channel;
+      }
+
+   /** Sets the waveform for the given channel, or removes it if <code>waveform</code> is <code>null</code>. */
+   void setWaveform(@NotNull final String serviceTypeId, final int channel, @Nullable final Waveform waveform)
+      {
+      if (waveform == null)
+         {
+         waveforms.remove(createKey(serviceTypeId, channel));
+         }
+      else
+         {
+         waveforms.put(createKey(serviceTypeId, channel), waveform);
+         }
+      }
+
+   /** Restarts the clock against which the waveforms are evaluated. */
+   void restart()
+      {
+      startTimeInNanos = System.nanoTime();
+      }
+
+   double getValue(@NotNull final String serviceTypeId, final int channel)
+      {
+      final Waveform waveform = waveforms.get(createKey(serviceTypeId, channel));
+      if (waveform == null)
+         {
+         return 0;
+         }
+      return waveform.getValue((System.nanoTime() - startTimeInNanos) / NANOS_PER_SECOND);
+      }
+
+   /** Evaluates the given channel's waveform, rounded and clamped to the range <code>[min, max]</code>. */
+   int getValue(@NotNull final String serviceTypeId, final int channel, final int min, final int max)
+      {
+      final long value = Math.round(getValue(serviceTypeId, channel));
+      return (int)Math.max(min, Math.min(max, value));
+      }
+   }
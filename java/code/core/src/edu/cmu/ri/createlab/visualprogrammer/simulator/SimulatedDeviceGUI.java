@@ -0,0 +1,63 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.awt.GridBagConstraints;
+import java.awt.Insets;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import edu.cmu.ri.createlab.expressionbuilder.controlpanel.DeviceGUI;
+import edu.cmu.ri.createlab.expressionbuilder.controlpanel.ServiceControlPanel;
+
+/**
+ * <p>
+ * <code>SimulatedDeviceGUI</code> is the Expression Builder's {@link DeviceGUI} for a
+ * {@link SimulatedVisualProgrammerDevice}.  There's no picture of a simulated device to arrange the controls around, so
+ * each service simply gets a row, sorted by type ID, holding its device toggles and its control panel.  This works for
+ * either {@link SimulatedVisualProgrammerDevice.Profile profile}, since the rows come from whatever services the
+ * device has.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class SimulatedDeviceGUI extends DeviceGUI
+   {
+   @Override
+   public void createGUI(final JPanel mainPanel,
+                         final Map<String, ServiceControlPanel> serviceControlPanelMap,
+                         final Map<String, SortedMap<Integer, JCheckBox>> serviceDeviceToggleButtonMap)
+      {
+      final GridBagConstraints c = new GridBagConstraints();
+      c.anchor = GridBagConstraints.NORTHWEST;
+      c.insets = new Insets(2, 2, 2, 2);
+
+      int row = 0;
+      for (final String serviceTypeId : new TreeSet<String>(serviceControlPanelMap.keySet()))
+         {
+         final ServiceControlPanel serviceControlPanel = serviceControlPanelMap.get(serviceTypeId);
+         final SortedMap<Integer, JCheckBox> checkBoxMap = serviceDeviceToggleButtonMap.get(serviceTypeId);
+         c.gridy = row++;
+
+         c.gridx = 0;
+         c.weightx = 0.0;
+         c.fill = GridBagConstraints.NONE;
+         if (checkBoxMap != null && !checkBoxMap.isEmpty())
+            {
+            mainPanel.add(createHorizontalButtonPanel(serviceControlPanel, checkBoxMap, true), c);
+            }
+
+         c.gridx = 1;
+         c.weightx = 1.0;
+         c.fill = GridBagConstraints.HORIZONTAL;
+         mainPanel.add(serviceControlPanel.getComponent(), c);
+         }
+      }
+
+   @Override
+   public void setStageTitleField(final JTextField title)
+      {
+      // the simulated device has no block title to keep in sync with the stage title
+      }
+   }
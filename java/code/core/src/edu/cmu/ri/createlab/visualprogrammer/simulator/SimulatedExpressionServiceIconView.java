@@ -0,0 +1,109 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import edu.cmu.ri.createlab.sequencebuilder.BaseExpressionServiceIconView;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.audio.AudioService;
+import edu.cmu.ri.createlab.terk.services.buzzer.BuzzerService;
+import edu.cmu.ri.createlab.terk.services.led.FullColorLEDService;
+import edu.cmu.ri.createlab.terk.services.led.SimpleLEDService;
+import edu.cmu.ri.createlab.terk.services.motor.OpenLoopVelocityControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.motor.SpeedControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.motor.VelocityControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.servo.SimpleServoService;
+import edu.cmu.ri.createlab.terk.xml.XmlParameter;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.util.IconRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>SimulatedExpressionServiceIconView</code> is the Sequence Builder's {@link BaseExpressionServiceIconView} for
+ * a {@link SimulatedVisualProgrammerDevice}.  It uses the same icons and "off" values as the real Hummingbird and
+ * Finch, and stacks one row of icons per output service, in a fixed order, for whichever of those services the device
+ * has.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class SimulatedExpressionServiceIconView extends BaseExpressionServiceIconView
+   {
+   private static final String ICON_PATH = "/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/";
+
+   /** The output services which get a row of icons, in the order the rows are shown. */
+   private static final String[] SERVICE_TYPE_IDS = {SimpleLEDService.TYPE_ID,
+                                                     SimpleServoService.TYPE_ID,
+                                                     AudioService.TYPE_ID,
+                                                     BuzzerService.TYPE_ID,
+                                                     FullColorLEDService.TYPE_ID,
+                                                     VelocityControllableMotorService.TYPE_ID,
+                                                     OpenLoopVelocityControllableMotorService.TYPE_ID,
+                                                     SpeedControllableMotorService.TYPE_ID};
+
+   SimulatedExpressionServiceIconView()
+      {
+      registerIcons(AudioService.TYPE_ID, "aud", "Audio");
+      registerIcons(BuzzerService.TYPE_ID, "aud", "Buzzer");
+      registerIcons(FullColorLEDService.TYPE_ID, "TriLED", "Tri-Color LEDs",
+                    new XmlParameter("red", 0),
+                    new XmlParameter("green", 0),
+                    new XmlParameter("blue", 0));
+      registerIcons(SimpleLEDService.TYPE_ID, "LED", "LEDs",
+                    new XmlParameter(SimpleLEDService.PARAMETER_NAME_INTENSITY, 0));
+      registerIcons(SimpleServoService.TYPE_ID, "servo", "Servos");
+      registerIcons(VelocityControllableMotorService.TYPE_ID, "motor", "Motors",
+                    new XmlParameter(VelocityControllableMotorService.PARAMETER_NAME_VELOCITY, 0));
+      registerIcons(OpenLoopVelocityControllableMotorService.TYPE_ID, "motor", "Motors",
+                    new XmlParameter(OpenLoopVelocityControllableMotorService.PARAMETER_NAME_VELOCITY, 0));
+      registerIcons(SpeedControllableMotorService.TYPE_ID, "vib", "Vibration Motors",
+                    new XmlParameter(SpeedControllableMotorService.PARAMETER_NAME_SPEED, 0));
+      }
+
+   private void registerIcons(@NotNull final String serviceTypeId,
+                              @NotNull final String iconName,
+                              @NotNull final String toolTipText,
+                              @NotNull final XmlParameter... offValues)
+      {
+      getEnabledIconMap().put(serviceTypeId, new JLabel(IconRegistry.getInstance().getImageIcon(ICON_PATH + "YE_" + iconName + ".png")));
+      getOffIconMap().put(serviceTypeId, new JLabel(IconRegistry.getInstance().getImageIcon(ICON_PATH + "YD_" + iconName + ".png")));
+      getDisabledIconMap().put(serviceTypeId, new JLabel(IconRegistry.getInstance().getImageIcon(ICON_PATH + "YY_" + iconName + ".png")));
+      getToolTipTextMap().put(serviceTypeId, toolTipText);
+      if (offValues.length > 0)
+         {
+         final HashSet<XmlParameter> offValueSet = new HashSet<XmlParameter>();
+         for (final XmlParameter offValue : offValues)
+            {
+            offValueSet.add(offValue);
+            }
+         getOffValueMap().put(serviceTypeId, offValueSet);
+         }
+      }
+
+   @Override
+   public JPanel createBlockIcons(final Set<XmlService> expressionServices, final ServiceManager serviceManager)
+      {
+      final Map<String, XmlService> expressionServiceMap = new HashMap<String, XmlService>();
+      for (final XmlService xmlService : expressionServices)
+         {
+         expressionServiceMap.put(xmlService.getTypeId(), xmlService);
+         }
+
+      final JPanel iconGroup = new JPanel();
+      iconGroup.setLayout(new BoxLayout(iconGroup, BoxLayout.Y_AXIS));
+      for (final String serviceTypeId : SERVICE_TYPE_IDS)
+         {
+         if (serviceManager.isServiceSupported(serviceTypeId))
+            {
+            iconGroup.add(createServiceIconPanel(serviceTypeId, expressionServiceMap, serviceManager));
+            }
+         }
+      iconGroup.setName("iconGroup");
+      return iconGroup;
+      }
+   }
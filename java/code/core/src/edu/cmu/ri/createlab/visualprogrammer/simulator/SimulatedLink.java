@@ -0,0 +1,209 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * <code>SimulatedLink</code> models the connection between the computer and a simulated device.  Every service call
+ * made on a {@link SimulatedVisualProgrammerDevice} is one round trip over the link, and costs the configured latency,
+ * plus a uniformly-distributed random delay of up to the configured jitter, plus the time needed to move the call's
+ * bytes at the configured bandwidth.  As with the real devices, round trips are serialized, so concurrent callers queue
+ * up behind each other and the link's throughput is bounded no matter how many threads are using it.
+ * </p>
+ * <p>
+ * All settings default to zero, which means that calls return immediately.  Settings may be changed at any time, and
+ * take effect with the next call.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SimulatedLink
+   {
+   private static final Logger LOG = Logger.getLogger(SimulatedLink.class);
+
+   private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+   private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private final Lock lock = new ReentrantLock();
+   private final Random random;
+   private long latencyInNanos = 0;
+   private long jitterInNanos = 0;
+   private long bandwidthInBytesPerSecond = 0;
+   private long linkBusyUntilInNanos = 0;
+   private long roundTripCount = 0;
+   private long bytesTransferredCount = 0;
+   private long busyTimeInNanos = 0;
+
+   /** Creates a link whose jitter is seeded from the current time. */
+   public SimulatedLink()
+      {
+      this(System.currentTimeMillis());
+      }
+
+   /** Creates a link whose jitter is seeded with the given <code>seed</code>, so that runs are repeatable. */
+   public SimulatedLink(final long seed)
+      {
+      random = new Random(seed);
+      }
+
+   /** Sets the fixed cost, in milliseconds, of every round trip.  Negative values are treated as zero. */
+   public void setLatency(final double millis)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         latencyInNanos = toNanos(millis);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Sets the maximum random delay, in milliseconds, added to every round trip.  Negative values are treated as zero.
+    */
+   public void setJitter(final double millis)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         jitterInNanos = toNanos(millis);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Sets the link's bandwidth in bytes per second.  Zero (the default) or a negative value means that the bandwidth is
+    * unlimited.
+    */
+   public void setBandwidth(final long bytesPerSecond)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         bandwidthInBytesPerSecond = Math.max(0, bytesPerSecond);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of round trips made over the link so far. */
+   public long getRoundTripCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return roundTripCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /** Returns the number of bytes moved over the link so far. */
+   public long getBytesTransferredCount()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return bytesTransferredCount;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Returns the total time, in milliseconds, that the link has spent busy with round trips.  Comparing this to the
+    * wall-clock time of a run shows how close the run came to saturating the link.
+    */
+   public double getBusyTimeInMillis()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return busyTimeInNanos / (double)NANOS_PER_MILLI;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Makes one round trip over the link, moving the given number of bytes, and blocks until it completes.  If the
+    * calling thread is interrupted while waiting, this method returns early and leaves the thread's interrupted status
+    * set.
+    */
+   void roundTrip(final int numBytes)
+      {
+      final long completionTimeInNanos;
+      lock.lock();  // block until condition holds
+      try
+         {
+         long durationInNanos = latencyInNanos;
+         if (jitterInNanos > 0)
+            {
+            durationInNanos += (long)(random.nextDouble() * jitterInNanos);
+            }
+         if (bandwidthInBytesPerSecond > 0)
+            {
+            durationInNanos += numBytes * NANOS_PER_SECOND / bandwidthInBytesPerSecond;
+            }
+
+         // wait for any round trips already on the link to finish before this one can start
+         final long startTimeInNanos = Math.max(System.nanoTime(), linkBusyUntilInNanos);
+         completionTimeInNanos = startTimeInNanos + durationInNanos;
+         linkBusyUntilInNanos = completionTimeInNanos;
+
+         roundTripCount++;
+         bytesTransferredCount += numBytes;
+         busyTimeInNanos += durationInNanos;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      sleepUntil(completionTimeInNanos);
+      }
+
+   private static void sleepUntil(final long timeInNanos)
+      {
+      long remainingInNanos = timeInNanos - System.nanoTime();
+      while (remainingInNanos > 0)
+         {
+         try
+            {
+            TimeUnit.NANOSECONDS.sleep(remainingInNanos);
+            }
+         catch (InterruptedException ignored)
+            {
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("SimulatedLink.sleepUntil(): interrupted while waiting for a round trip to complete");
+               }
+            Thread.currentThread().interrupt();
+            return;
+            }
+         remainingInNanos = timeInNanos - System.nanoTime();
+         }
+      }
+
+   private static long toNanos(final double millis)
+      {
+      return (millis > 0) ? (long)(millis * NANOS_PER_MILLI) : 0;
+      }
+   }
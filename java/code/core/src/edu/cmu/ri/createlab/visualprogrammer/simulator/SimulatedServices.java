@@ -0,0 +1,630 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import edu.cmu.ri.createlab.terk.TerkConstants;
+import edu.cmu.ri.createlab.terk.properties.BasicPropertyManager;
+import edu.cmu.ri.createlab.terk.services.ExceptionHandler;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerService;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerState;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerUnitConversionStrategy;
+import edu.cmu.ri.createlab.terk.services.accelerometer.BaseAccelerometerServiceImpl;
+import edu.cmu.ri.createlab.terk.services.accelerometer.unitconversionstrategies.AccelerometerUnitConversionStrategyFreescaleMMA7660FC;
+import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
+import edu.cmu.ri.createlab.terk.services.analog.BaseAnalogInputsServiceImpl;
+import edu.cmu.ri.createlab.terk.services.audio.AudioService;
+import edu.cmu.ri.createlab.terk.services.audio.BaseAudioServiceImpl;
+import edu.cmu.ri.createlab.terk.services.buzzer.BaseBuzzerServiceImpl;
+import edu.cmu.ri.createlab.terk.services.buzzer.BuzzerService;
+import edu.cmu.ri.createlab.terk.services.led.BaseFullColorLEDServiceImpl;
+import edu.cmu.ri.createlab.terk.services.led.BaseSimpleLEDServiceImpl;
+import edu.cmu.ri.createlab.terk.services.led.FullColorLEDService;
+import edu.cmu.ri.createlab.terk.services.led.SimpleLEDService;
+import edu.cmu.ri.createlab.terk.services.motor.BaseOpenLoopVelocityControllableMotorServiceImpl;
+import edu.cmu.ri.createlab.terk.services.motor.BaseSpeedControllableMotorServiceImpl;
+import edu.cmu.ri.createlab.terk.services.motor.BaseVelocityControllableMotorServiceImpl;
+import edu.cmu.ri.createlab.terk.services.motor.OpenLoopVelocityControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.motor.SpeedControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.motor.VelocityControllableMotorService;
+import edu.cmu.ri.createlab.terk.services.obstacle.BaseSimpleObstacleDetectorServiceImpl;
+import edu.cmu.ri.createlab.terk.services.photoresistor.BasePhotoresistorServiceImpl;
+import edu.cmu.ri.createlab.terk.services.photoresistor.PhotoresistorService;
+import edu.cmu.ri.createlab.terk.services.servo.BaseSimpleServoServiceImpl;
+import edu.cmu.ri.createlab.terk.services.servo.SimpleServoService;
+import edu.cmu.ri.createlab.terk.services.thermistor.BaseThermistorServiceImpl;
+import edu.cmu.ri.createlab.terk.services.thermistor.ThermistorService;
+import edu.cmu.ri.createlab.terk.services.thermistor.unitconversionstrategies.ThermistorUnitConversionStrategyMF52A103F3380;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SimulatedServices</code> creates the terk services exposed by a {@link SimulatedVisualProgrammerDevice}.  The
+ * device counts and value ranges match those of the real Hummingbird and Finch.  Every call which would talk to the
+ * real device makes one round trip over the {@link SimulatedLink}.  Sensor values come from the {@link SensorScript},
+ * and actuator commands are simply accepted.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class SimulatedServices
+   {
+   private static final Logger LOG = Logger.getLogger(SimulatedServices.class);
+
+   private static final int HUMMINGBIRD_ANALOG_INPUT_DEVICE_COUNT = 4;
+   private static final int HUMMINGBIRD_FULL_COLOR_LED_DEVICE_COUNT = 2;
+   private static final int HUMMINGBIRD_SIMPLE_LED_DEVICE_COUNT = 4;
+   private static final int HUMMINGBIRD_SIMPLE_SERVO_DEVICE_COUNT = 4;
+   private static final int HUMMINGBIRD_MOTOR_DEVICE_COUNT = 2;
+   private static final int HUMMINGBIRD_VIBRATION_MOTOR_DEVICE_COUNT = 2;
+
+   private static final int FINCH_ACCELEROMETER_DEVICE_COUNT = 1;
+   private static final int FINCH_BUZZER_DEVICE_COUNT = 1;
+   private static final int FINCH_FULL_COLOR_LED_DEVICE_COUNT = 1;
+   private static final int FINCH_MOTOR_DEVICE_COUNT = 2;
+   private static final int FINCH_PHOTORESISTOR_DEVICE_COUNT = 2;
+   private static final int FINCH_SIMPLE_OBSTACLE_SENSOR_DEVICE_COUNT = 2;
+   private static final int FINCH_THERMISTOR_DEVICE_COUNT = 1;
+
+   private static final int SENSOR_MIN_VALUE = 0;
+   private static final int SENSOR_MAX_VALUE = 255;
+
+   @NotNull
+   static Map<String, Service> createHummingbirdServices(@NotNull final SimulatedLink link,
+                                                         @NotNull final SensorScript script,
+                                                         final int bytesPerRoundTrip,
+                                                         @Nullable final File audioDirectory)
+      {
+      final Map<String, Service> services = new LinkedHashMap<String, Service>();
+      put(services, SimulatedAnalogInputsService.create(link, script, bytesPerRoundTrip, HUMMINGBIRD_ANALOG_INPUT_DEVICE_COUNT));
+      put(services, SimulatedAudioService.create(audioDirectory));
+      put(services, SimulatedFullColorLEDService.create(link, bytesPerRoundTrip, HUMMINGBIRD_FULL_COLOR_LED_DEVICE_COUNT));
+      put(services, SimulatedSimpleLEDService.create(link, bytesPerRoundTrip, HUMMINGBIRD_SIMPLE_LED_DEVICE_COUNT));
+      put(services, SimulatedSimpleServoService.create(link, bytesPerRoundTrip, HUMMINGBIRD_SIMPLE_SERVO_DEVICE_COUNT));
+      put(services, SimulatedSpeedControllableMotorService.create(link, bytesPerRoundTrip, HUMMINGBIRD_VIBRATION_MOTOR_DEVICE_COUNT));
+      put(services, SimulatedVelocityControllableMotorService.create(link, bytesPerRoundTrip, HUMMINGBIRD_MOTOR_DEVICE_COUNT));
+      return services;
+      }
+
+   @NotNull
+   static Map<String, Service> createFinchServices(@NotNull final SimulatedLink link,
+                                                   @NotNull final SensorScript script,
+                                                   final int bytesPerRoundTrip,
+                                                   @Nullable final File audioDirectory)
+      {
+      final Map<String, Service> services = new LinkedHashMap<String, Service>();
+      put(services, SimulatedAccelerometerService.create(link, script, bytesPerRoundTrip, FINCH_ACCELEROMETER_DEVICE_COUNT));
+      put(services, SimulatedAudioService.create(audioDirectory));
+      put(services, SimulatedBuzzerService.create(link, bytesPerRoundTrip, FINCH_BUZZER_DEVICE_COUNT));
+      put(services, SimulatedFullColorLEDService.create(link, bytesPerRoundTrip, FINCH_FULL_COLOR_LED_DEVICE_COUNT));
+      put(services, SimulatedOpenLoopVelocityControllableMotorService.create(link, bytesPerRoundTrip, FINCH_MOTOR_DEVICE_COUNT));
+      put(services, SimulatedPhotoresistorService.create(link, script, bytesPerRoundTrip, FINCH_PHOTORESISTOR_DEVICE_COUNT));
+      put(services, SimulatedSimpleObstacleDetectorService.create(link, script, bytesPerRoundTrip, FINCH_SIMPLE_OBSTACLE_SENSOR_DEVICE_COUNT));
+      put(services, SimulatedThermistorService.create(link, script, bytesPerRoundTrip, FINCH_THERMISTOR_DEVICE_COUNT));
+      return services;
+      }
+
+   private static void put(@NotNull final Map<String, Service> services, @NotNull final Service service)
+      {
+      services.put(service.getTypeId(), service);
+      }
+
+   private static BasicPropertyManager createPropertyManager(final int deviceCount)
+      {
+      final BasicPropertyManager basicPropertyManager = new BasicPropertyManager();
+      basicPropertyManager.setReadOnlyProperty(TerkConstants.PropertyKeys.DEVICE_COUNT, deviceCount);
+      return basicPropertyManager;
+      }
+
+   private static final class SimulatedAnalogInputsService extends BaseAnalogInputsServiceImpl
+      {
+      private static SimulatedAnalogInputsService create(final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(AnalogInputsService.PROPERTY_NAME_MIN_VALUE, SENSOR_MIN_VALUE);
+         basicPropertyManager.setReadOnlyProperty(AnalogInputsService.PROPERTY_NAME_MAX_VALUE, SENSOR_MAX_VALUE);
+
+         return new SimulatedAnalogInputsService(basicPropertyManager, deviceCount, link, script, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final SensorScript script;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedAnalogInputsService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.script = script;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      public Integer getAnalogInputValue(final int analogInputPortId)
+         {
+         final int[] values = getAnalogInputValues();
+         if (analogInputPortId >= 0 && analogInputPortId < values.length)
+            {
+            return values[analogInputPortId];
+            }
+         return null;
+         }
+
+      @Override
+      public int[] getAnalogInputValues()
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         final int[] values = new int[getDeviceCount()];
+         for (int i = 0; i < values.length; i++)
+            {
+            values[i] = script.getValue(TYPE_ID, i, SENSOR_MIN_VALUE, SENSOR_MAX_VALUE);
+            }
+         return values;
+         }
+      }
+
+   private static final class SimulatedPhotoresistorService extends BasePhotoresistorServiceImpl
+      {
+      private static SimulatedPhotoresistorService create(final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(PhotoresistorService.PROPERTY_NAME_MIN_VALUE, SENSOR_MIN_VALUE);
+         basicPropertyManager.setReadOnlyProperty(PhotoresistorService.PROPERTY_NAME_MAX_VALUE, SENSOR_MAX_VALUE);
+
+         return new SimulatedPhotoresistorService(basicPropertyManager, deviceCount, link, script, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final SensorScript script;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedPhotoresistorService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.script = script;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      public Integer getPhotoresistorValue(final int id)
+         {
+         final int[] values = getPhotoresistorValues();
+         if (id >= 0 && id < values.length)
+            {
+            return values[id];
+            }
+         return null;
+         }
+
+      @Override
+      public int[] getPhotoresistorValues()
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         final int[] values = new int[getDeviceCount()];
+         for (int i = 0; i < values.length; i++)
+            {
+            values[i] = script.getValue(TYPE_ID, i, SENSOR_MIN_VALUE, SENSOR_MAX_VALUE);
+            }
+         return values;
+         }
+      }
+
+   private static final class SimulatedThermistorService extends BaseThermistorServiceImpl
+      {
+      private static SimulatedThermistorService create(final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(ThermistorService.PROPERTY_NAME_THERMISTOR_DEVICE_ID, ThermistorUnitConversionStrategyMF52A103F3380.DEVICE_ID);
+         basicPropertyManager.setReadOnlyProperty(ThermistorService.PROPERTY_NAME_MIN_VALUE, SENSOR_MIN_VALUE);
+         basicPropertyManager.setReadOnlyProperty(ThermistorService.PROPERTY_NAME_MAX_VALUE, SENSOR_MAX_VALUE);
+
+         return new SimulatedThermistorService(basicPropertyManager, deviceCount, link, script, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final SensorScript script;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedThermistorService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.script = script;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      public Integer getThermistorValue(final int id)
+         {
+         if (id >= 0 && id < getDeviceCount())
+            {
+            link.roundTrip(bytesPerRoundTrip);
+            return script.getValue(TYPE_ID, id, SENSOR_MIN_VALUE, SENSOR_MAX_VALUE);
+            }
+         return null;
+         }
+      }
+
+   private static final class SimulatedSimpleObstacleDetectorService extends BaseSimpleObstacleDetectorServiceImpl
+      {
+      private static SimulatedSimpleObstacleDetectorService create(final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         return new SimulatedSimpleObstacleDetectorService(createPropertyManager(deviceCount), deviceCount, link, script, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final SensorScript script;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedSimpleObstacleDetectorService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.script = script;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      public Boolean isObstacleDetected(final int id)
+         {
+         final boolean[] values = areObstaclesDetected();
+         if (id >= 0 && id < values.length)
+            {
+            return values[id];
+            }
+         return null;
+         }
+
+      /** Reports an obstacle for each channel whose waveform is above 0.5. */
+      @Override
+      public boolean[] areObstaclesDetected()
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         final boolean[] values = new boolean[getDeviceCount()];
+         for (int i = 0; i < values.length; i++)
+            {
+            values[i] = script.getValue(TYPE_ID, i) > 0.5;
+            }
+         return values;
+         }
+      }
+
+   /**
+    * The accelerometer's x, y and z axes are scripted (in g's) as channels 0, 1 and 2, respectively, and converted to
+    * native units before being returned, just as the real device would report them.
+    */
+   private static final class SimulatedAccelerometerService extends BaseAccelerometerServiceImpl
+      {
+      private static SimulatedAccelerometerService create(final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(AccelerometerService.PROPERTY_NAME_ACCELEROMETER_DEVICE_ID, AccelerometerUnitConversionStrategyFreescaleMMA7660FC.DEVICE_ID);
+
+         return new SimulatedAccelerometerService(basicPropertyManager, deviceCount, link, script, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final SensorScript script;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedAccelerometerService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final SensorScript script, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.script = script;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      public AccelerometerState getAccelerometerState(final int id)
+         {
+         if (id >= 0 && id < getDeviceCount())
+            {
+            link.roundTrip(bytesPerRoundTrip);
+            final AccelerometerUnitConversionStrategy strategy = getAccelerometerUnitConversionStrategy();
+            return new AccelerometerState(strategy.convertToNative(clampGs(strategy, script.getValue(TYPE_ID, 0))),
+                                          strategy.convertToNative(clampGs(strategy, script.getValue(TYPE_ID, 1))),
+                                          strategy.convertToNative(clampGs(strategy, script.getValue(TYPE_ID, 2))));
+            }
+         return null;
+         }
+
+      private static double clampGs(final AccelerometerUnitConversionStrategy strategy, final double gs)
+         {
+         return Math.max(strategy.getMinGs(), Math.min(strategy.getMaxGs(), gs));
+         }
+      }
+
+   private static final class SimulatedFullColorLEDService extends BaseFullColorLEDServiceImpl
+      {
+      private static SimulatedFullColorLEDService create(final SimulatedLink link, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(FullColorLEDService.PROPERTY_NAME_MIN_INTENSITY, 0);
+         basicPropertyManager.setReadOnlyProperty(FullColorLEDService.PROPERTY_NAME_MAX_INTENSITY, 255);
+
+         return new SimulatedFullColorLEDService(basicPropertyManager, deviceCount, link, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedFullColorLEDService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      public Color[] set(final boolean[] mask, final Color[] colors)
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         return colors;
+         }
+      }
+
+   private static final class SimulatedSimpleLEDService extends BaseSimpleLEDServiceImpl
+      {
+      private static SimulatedSimpleLEDService create(final SimulatedLink link, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(SimpleLEDService.PROPERTY_NAME_MIN_INTENSITY, 0);
+         basicPropertyManager.setReadOnlyProperty(SimpleLEDService.PROPERTY_NAME_MAX_INTENSITY, 255);
+
+         return new SimulatedSimpleLEDService(basicPropertyManager, deviceCount, link, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedSimpleLEDService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      protected int[] execute(final boolean[] mask, final int[] intensities)
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         return intensities;
+         }
+      }
+
+   private static final class SimulatedSimpleServoService extends BaseSimpleServoServiceImpl
+      {
+      private static SimulatedSimpleServoService create(final SimulatedLink link, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(SimpleServoService.PROPERTY_NAME_MIN_POSITION, 0);
+         basicPropertyManager.setReadOnlyProperty(SimpleServoService.PROPERTY_NAME_MAX_POSITION, 255);
+         basicPropertyManager.setReadOnlyProperty(SimpleServoService.PROPERTY_NAME_MIN_SAFE_POSITION, 0);
+         basicPropertyManager.setReadOnlyProperty(SimpleServoService.PROPERTY_NAME_MAX_SAFE_POSITION, 219);
+
+         return new SimulatedSimpleServoService(basicPropertyManager, deviceCount, link, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedSimpleServoService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      protected int[] execute(final boolean[] mask, final int[] positions)
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         return positions;
+         }
+      }
+
+   private static final class SimulatedSpeedControllableMotorService extends BaseSpeedControllableMotorServiceImpl
+      {
+      private static SimulatedSpeedControllableMotorService create(final SimulatedLink link, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(SpeedControllableMotorService.PROPERTY_NAME_MIN_SPEED, 0);
+         basicPropertyManager.setReadOnlyProperty(SpeedControllableMotorService.PROPERTY_NAME_MAX_SPEED, 255);
+         basicPropertyManager.setReadOnlyProperty(SpeedControllableMotorService.PROPERTY_NAME_MAX_SAFE_SPEED, 127);
+
+         return new SimulatedSpeedControllableMotorService(basicPropertyManager, deviceCount, link, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedSpeedControllableMotorService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      protected int[] execute(final boolean[] mask, final int[] speeds)
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         return speeds;
+         }
+      }
+
+   private static final class SimulatedVelocityControllableMotorService extends BaseVelocityControllableMotorServiceImpl
+      {
+      private static SimulatedVelocityControllableMotorService create(final SimulatedLink link, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(VelocityControllableMotorService.PROPERTY_NAME_MIN_VELOCITY, -255);
+         basicPropertyManager.setReadOnlyProperty(VelocityControllableMotorService.PROPERTY_NAME_MAX_VELOCITY, 255);
+
+         return new SimulatedVelocityControllableMotorService(basicPropertyManager, deviceCount, link, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedVelocityControllableMotorService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      protected int[] execute(final boolean[] mask, final int[] velocities)
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         return velocities;
+         }
+      }
+
+   private static final class SimulatedOpenLoopVelocityControllableMotorService extends BaseOpenLoopVelocityControllableMotorServiceImpl
+      {
+      private static SimulatedOpenLoopVelocityControllableMotorService create(final SimulatedLink link, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(OpenLoopVelocityControllableMotorService.PROPERTY_NAME_MIN_VELOCITY, -255);
+         basicPropertyManager.setReadOnlyProperty(OpenLoopVelocityControllableMotorService.PROPERTY_NAME_MAX_VELOCITY, 255);
+
+         return new SimulatedOpenLoopVelocityControllableMotorService(basicPropertyManager, deviceCount, link, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedOpenLoopVelocityControllableMotorService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      @Override
+      protected boolean execute(final boolean[] mask, final int[] velocities)
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         return true;
+         }
+      }
+
+   private static final class SimulatedBuzzerService extends BaseBuzzerServiceImpl
+      {
+      private static SimulatedBuzzerService create(final SimulatedLink link, final int bytesPerRoundTrip, final int deviceCount)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(deviceCount);
+         basicPropertyManager.setReadOnlyProperty(BuzzerService.PROPERTY_NAME_MIN_DURATION, 0);
+         basicPropertyManager.setReadOnlyProperty(BuzzerService.PROPERTY_NAME_MAX_DURATION, 65535);
+         basicPropertyManager.setReadOnlyProperty(BuzzerService.PROPERTY_NAME_MIN_FREQUENCY, 0);
+         basicPropertyManager.setReadOnlyProperty(BuzzerService.PROPERTY_NAME_MAX_FREQUENCY, 65535);
+
+         return new SimulatedBuzzerService(basicPropertyManager, deviceCount, link, bytesPerRoundTrip);
+         }
+
+      private final SimulatedLink link;
+      private final int bytesPerRoundTrip;
+
+      private SimulatedBuzzerService(final BasicPropertyManager basicPropertyManager, final int deviceCount, final SimulatedLink link, final int bytesPerRoundTrip)
+         {
+         super(basicPropertyManager, deviceCount);
+         this.link = link;
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      /** The real buzzer plays the tone on its own, so this only costs a round trip, not the tone's duration. */
+      @Override
+      public void playTone(final int id, final int frequency, final int durationInMilliseconds)
+         {
+         link.roundTrip(bytesPerRoundTrip);
+         }
+      }
+
+   /**
+    * Audio is played by the computer rather than the device, so this service doesn't use the link.  Tones take as long
+    * as their duration, sounds and speech return immediately, and nothing is actually played.
+    */
+   private static final class SimulatedAudioService extends BaseAudioServiceImpl
+      {
+      private static SimulatedAudioService create(final File audioDirectory)
+         {
+         final BasicPropertyManager basicPropertyManager = createPropertyManager(1);
+         basicPropertyManager.setReadOnlyProperty(AudioService.PROPERTY_NAME_MIN_AMPLITUDE, 0);
+         basicPropertyManager.setReadOnlyProperty(AudioService.PROPERTY_NAME_MAX_AMPLITUDE, 10);
+         basicPropertyManager.setReadOnlyProperty(AudioService.PROPERTY_NAME_MIN_DURATION, 0);
+         basicPropertyManager.setReadOnlyProperty(AudioService.PROPERTY_NAME_MAX_DURATION, Integer.MAX_VALUE);
+         basicPropertyManager.setReadOnlyProperty(AudioService.PROPERTY_NAME_MIN_FREQUENCY, 0);
+         basicPropertyManager.setReadOnlyProperty(AudioService.PROPERTY_NAME_MAX_FREQUENCY, Integer.MAX_VALUE);
+
+         return new SimulatedAudioService(basicPropertyManager, audioDirectory);
+         }
+
+      private SimulatedAudioService(final BasicPropertyManager basicPropertyManager, final File audioDirectory)
+         {
+         super(basicPropertyManager, audioDirectory);
+         }
+
+      @Override
+      public void playTone(final int frequency, final int amplitude, final int duration)
+         {
+         try
+            {
+            TimeUnit.MILLISECONDS.sleep(Math.max(0, duration));
+            }
+         catch (InterruptedException ignored)
+            {
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("SimulatedServices$SimulatedAudioService.playTone(): interrupted while playing tone");
+               }
+            Thread.currentThread().interrupt();
+            }
+         }
+
+      @Override
+      public void playSound(final byte[] sound)
+         {
+         }
+
+      @Override
+      public void playToneAsynchronously(final int frequency, final int amplitude, final int duration, final ExceptionHandler callback)
+         {
+         }
+
+      @Override
+      public void playSoundAsynchronously(final byte[] sound, final ExceptionHandler callback)
+         {
+         }
+
+      @Override
+      public byte[] getSpeech(final String whatToSay)
+         {
+         return null;
+         }
+
+      @Override
+      public void speak(final String whatToSay)
+         {
+         }
+
+      @Override
+      public boolean isSpeechSupported()
+         {
+         return false;
+         }
+      }
+
+   private SimulatedServices()
+      {
+      // private to prevent instantiation
+      }
+   }
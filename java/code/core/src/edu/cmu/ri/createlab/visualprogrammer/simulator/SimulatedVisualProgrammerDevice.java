@@ -0,0 +1,722 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PropertyResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.ImageIcon;
+import edu.cmu.ri.createlab.device.CreateLabDevicePingFailureEventListener;
+import edu.cmu.ri.createlab.device.CreateLabDeviceProxy;
+import edu.cmu.ri.createlab.expressionbuilder.ExpressionBuilderDevice;
+import edu.cmu.ri.createlab.expressionbuilder.controlpanel.DeviceGUI;
+import edu.cmu.ri.createlab.sequencebuilder.ExpressionServiceIconView;
+import edu.cmu.ri.createlab.sequencebuilder.SequenceBuilderDevice;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerGs;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerService;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerState;
+import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
+import edu.cmu.ri.createlab.terk.services.obstacle.SimpleObstacleDetectorService;
+import edu.cmu.ri.createlab.terk.services.photoresistor.PhotoresistorService;
+import edu.cmu.ri.createlab.terk.services.thermistor.ThermistorService;
+import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import edu.cmu.ri.createlab.visualprogrammer.BaseVisualProgrammerDevice;
+import edu.cmu.ri.createlab.visualprogrammer.BooleanValueSensor;
+import edu.cmu.ri.createlab.visualprogrammer.DoubleValueSensor;
+import edu.cmu.ri.createlab.visualprogrammer.IntegralValueSensor;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.visualprogrammer.Sensor;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerDevice;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>SimulatedVisualProgrammerDevice</code> is a {@link VisualProgrammerDevice} which needs no hardware.  It
+ * exposes the same terk services and sensors as either the real Hummingbird or the real Finch (see {@link Profile}),
+ * and has the same device name, so sequences and expressions saved with the real device can be run against it.  It's
+ * meant for load-testing the sequence executor, the sensor polling, and the control panels off real hardware.
+ * </p>
+ * <p>
+ * Every service call which would talk to the real device makes a round trip over a {@link SimulatedLink}, whose
+ * latency, jitter and bandwidth can be configured (and changed while running).  Sensor values are scripted per channel
+ * with {@link Waveform}s.  Channels are numbered from zero and correspond to the service's ports, except for the
+ * accelerometer, whose x, y and z axes are channels 0, 1 and 2 and are scripted in g's.  Every sensor channel starts
+ * with a default waveform, and all waveforms are evaluated relative to the time the device connected.
+ * </p>
+ * <p>
+ * The simulated device can also be driven from the Expression Builder and the Sequence Builder.  Since there's no
+ * picture of it to draw, its control panels and expression block icons are simply laid out one row per service (see
+ * {@link SimulatedDeviceGUI} and {@link SimulatedExpressionServiceIconView}).
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SimulatedVisualProgrammerDevice extends BaseVisualProgrammerDevice
+   {
+   private static final Logger LOG = Logger.getLogger(SimulatedVisualProgrammerDevice.class);
+
+   private static final String PORT_NAME = "simulated";
+
+   private static final String[] SENSOR_SERVICE_TYPE_IDS = {AnalogInputsService.TYPE_ID,
+                                                            ThermistorService.TYPE_ID,
+                                                            PhotoresistorService.TYPE_ID,
+                                                            SimpleObstacleDetectorService.TYPE_ID,
+                                                            AccelerometerService.TYPE_ID};
+
+   public enum Profile
+      {
+         /** Simulates a Hummingbird, which sends 8-byte HID reports in each direction. */
+         HUMMINGBIRD("SimulatedHummingbird", 16),
+
+         /** Simulates a Finch, which sends 9-byte HID reports in each direction. */
+         FINCH("SimulatedFinch", 18);
+
+      private final PropertyResourceBundle resources;
+      private final int bytesPerRoundTrip;
+
+      private Profile(final String resourceBundleName, final int bytesPerRoundTrip)
+         {
+         this.resources = (PropertyResourceBundle)PropertyResourceBundle.getBundle(Profile.class.getPackage().getName() + "." + resourceBundleName);
+         this.bytesPerRoundTrip = bytesPerRoundTrip;
+         }
+
+      /** Returns the number of bytes moved over the link by each service call. */
+      public int getBytesPerRoundTrip()
+         {
+         return bytesPerRoundTrip;
+         }
+      }
+
+   private final Profile profile;
+   private final PropertyResourceBundle resources;
+   private final SimulatedLink link;
+   private final SensorScript sensorScript = new SensorScript();
+
+   private final Lock lock = new ReentrantLock();
+   private ServiceManager serviceManager = null;
+
+   private final ExpressionBuilderDevice expressionBuilderDevice =
+         new ExpressionBuilderDevice()
+         {
+         private final DeviceGUI deviceGUI = new SimulatedDeviceGUI();
+
+         @Override
+         public DeviceGUI getDeviceGUI()
+            {
+            return deviceGUI;
+            }
+         };
+
+   private final SequenceBuilderDevice sequenceBuilderDevice =
+         new SequenceBuilderDevice()
+         {
+         private final ExpressionServiceIconView expressionServiceIconView = new SimulatedExpressionServiceIconView();
+
+         @Override
+         @NotNull
+         public ExpressionServiceIconView getExpressionServiceIconView()
+            {
+            return expressionServiceIconView;
+            }
+         };
+
+   private final CreateLabDeviceProxy deviceProxy =
+         new CreateLabDeviceProxy()
+         {
+         @Override
+         public String getPortName()
+            {
+            return PORT_NAME;
+            }
+
+         @Override
+         public void disconnect()
+            {
+            SimulatedVisualProgrammerDevice.this.disconnect();
+            }
+
+         @Override
+         public void addCreateLabDevicePingFailureEventListener(final CreateLabDevicePingFailureEventListener listener)
+            {
+            // the simulated device never fails a ping
+            }
+
+         @Override
+         public void removeCreateLabDevicePingFailureEventListener(final CreateLabDevicePingFailureEventListener listener)
+            {
+            // the simulated device never fails a ping
+            }
+         };
+
+   private final Set<SensorListener> sensorListeners = new HashSet<SensorListener>();
+   private final List<SensorSamplingBus.Subscription> sensorSubscriptions = new ArrayList<SensorSamplingBus.Subscription>();
+   private final ExecutorService sensorListenerNotificationService = Executors.newCachedThreadPool(new DaemonThreadFactory(this.getClass().getSimpleName() + "_sensorListenerNotificationService"));
+   private final SensorSamplingBus.SampleListener sensorSampleListener =
+         new SensorSamplingBus.SampleListener()
+         {
+         @Override
+         public void handleSample(@NotNull final Service service, @NotNull final SensorSamplingBus.SensorSample sample)
+            {
+            if (!sensorListeners.isEmpty())
+               {
+               sensorListenerNotificationService.submit(
+                     new Runnable()
+                     {
+                     @Override
+                     public void run()
+                        {
+                        final String serviceTypeId = service.getTypeId();
+                        for (int portNumber = 0; portNumber < sample.getPortCount(); portNumber++)
+                           {
+                           Object rawValue = sample.getValue(portNumber);
+
+                           // the bus samples the raw accelerometer state, but our sensors work in Gs
+                           if (rawValue instanceof AccelerometerState)
+                              {
+                              rawValue = ((AccelerometerService)service).convertToGs((AccelerometerState)rawValue);
+                              }
+
+                           if (rawValue != null)
+                              {
+                              for (final SensorListener listener : sensorListeners)
+                                 {
+                                 listener.processSensorRawValue(serviceTypeId, portNumber, rawValue);
+                                 }
+                              }
+                           }
+                        }
+                     });
+               }
+            }
+         };
+
+   /** Creates a simulated Hummingbird with an ideal link.  This constructor is used when loading devices by name. */
+   public SimulatedVisualProgrammerDevice()
+      {
+      this(Profile.HUMMINGBIRD);
+      }
+
+   /** Creates a simulated device with the given profile and an ideal link. */
+   public SimulatedVisualProgrammerDevice(@NotNull final Profile profile)
+      {
+      this(profile, new SimulatedLink());
+      }
+
+   /** Creates a simulated device with the given profile which makes its round trips over the given link. */
+   public SimulatedVisualProgrammerDevice(@NotNull final Profile profile, @NotNull final SimulatedLink link)
+      {
+      super(profile.resources);
+      this.profile = profile;
+      this.resources = profile.resources;
+      this.link = link;
+
+      if (Profile.FINCH.equals(profile))
+         {
+         // lights come and go, the room is warm, obstacles appear now and then, and the Finch is sitting level
+         sensorScript.setWaveform(PhotoresistorService.TYPE_ID, 0, Waveforms.sine(0, 255, 6));
+         sensorScript.setWaveform(PhotoresistorService.TYPE_ID, 1, Waveforms.sine(0, 255, 8));
+         sensorScript.setWaveform(ThermistorService.TYPE_ID, 0, Waveforms.constant(120));
+         sensorScript.setWaveform(SimpleObstacleDetectorService.TYPE_ID, 0, Waveforms.square(0, 1, 10));
+         sensorScript.setWaveform(SimpleObstacleDetectorService.TYPE_ID, 1, Waveforms.square(0, 1, 14));
+         sensorScript.setWaveform(AccelerometerService.TYPE_ID, 0, Waveforms.constant(0));
+         sensorScript.setWaveform(AccelerometerService.TYPE_ID, 1, Waveforms.constant(0));
+         sensorScript.setWaveform(AccelerometerService.TYPE_ID, 2, Waveforms.constant(1));
+         }
+      else
+         {
+         // each port swings through its full range, at slightly different rates
+         for (int port = 0; port < 4; port++)
+            {
+            sensorScript.setWaveform(AnalogInputsService.TYPE_ID, port, Waveforms.sine(0, 255, 4 + 2 * port));
+            }
+         }
+      }
+
+   @NotNull
+   public Profile getProfile()
+      {
+      return profile;
+      }
+
+   /** Returns the link over which this device's round trips are made, so that it can be configured or inspected. */
+   @NotNull
+   public SimulatedLink getLink()
+      {
+      return link;
+      }
+
+   /**
+    * Scripts the given channel of the sensor service with the given type ID with the given waveform, replacing its
+    * current waveform.  A <code>null</code> waveform makes the channel report zero.
+    */
+   public void setSensorWaveform(@NotNull final String serviceTypeId, final int channel, @Nullable final Waveform waveform)
+      {
+      sensorScript.setWaveform(serviceTypeId, channel, waveform);
+      }
+
+   @Nullable
+   @Override
+   public String getDeviceVersion()
+      {
+      return "Simulated";
+      }
+
+   @Override
+   public ImageIcon getConnectingImage()
+      {
+      return ImageUtils.createImageIcon(resources.getString("image.connecting"));
+      }
+
+   @Override
+   public ImageIcon getConnectionTipsImage()
+      {
+      return ImageUtils.createImageIcon(resources.getString("image.connection-tips"));
+      }
+
+   @Override
+   public void connect()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (serviceManager == null)
+            {
+            final Map<String, Service> services;
+            if (Profile.FINCH.equals(profile))
+               {
+               services = SimulatedServices.createFinchServices(link, sensorScript, profile.getBytesPerRoundTrip(), PathManager.getInstance().getAudioDirectory());
+               }
+            else
+               {
+               services = SimulatedServices.createHummingbirdServices(link, sensorScript, profile.getBytesPerRoundTrip(), PathManager.getInstance().getAudioDirectory());
+               }
+            serviceManager = new SimulatedServiceManager(services);
+            sensorScript.restart();
+
+            unregisterAllSensors();
+            if (Profile.FINCH.equals(profile))
+               {
+               registerFinchSensors();
+               }
+            else
+               {
+               registerHummingbirdSensors();
+               }
+
+            // start sampling the sensors, if anyone is listening
+            updateSensorSubscriptions();
+
+            if (LOG.isDebugEnabled())
+               {
+               LOG.debug("SimulatedVisualProgrammerDevice.connect(): connected to simulated " + getDeviceName() + " with services " + services.keySet());
+               }
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   // MUST be called from within a lock block!
+   private void registerHummingbirdSensors()
+      {
+      final AnalogInputsService analogInputsService = (AnalogInputsService)serviceManager.getServiceByTypeId(AnalogInputsService.TYPE_ID);
+      final int numPorts = analogInputsService.getDeviceCount();
+      final int defaultMinValue = analogInputsService.getPropertyAsInteger(AnalogInputsService.PROPERTY_NAME_MIN_VALUE);
+      final int defaultMaxValue = analogInputsService.getPropertyAsInteger(AnalogInputsService.PROPERTY_NAME_MAX_VALUE);
+
+      for (final String sensorKey : resources.getString("sensors").split(","))
+         {
+         final String prefix = "sensor." + sensorKey.trim();
+         registerSensor(new IntegralValueSensor(resources.getString(prefix + ".name"),
+                                                resources.getString(prefix + ".display-name"),
+                                                AnalogInputsService.TYPE_ID,
+                                                AnalogInputsService.OPERATION_NAME_GET_ANALOG_INPUT_VALUE,
+                                                resources.getString(prefix + ".if-branch.label"),
+                                                resources.getString(prefix + ".else-branch.label"),
+                                                numPorts,
+                                                readConfigValueAsInt(prefix + ".min-value", defaultMinValue),
+                                                readConfigValueAsInt(prefix + ".max-value", defaultMaxValue)));
+         }
+      }
+
+   // MUST be called from within a lock block!
+   private void registerFinchSensors()
+      {
+      final ThermistorService thermistorService = (ThermistorService)serviceManager.getServiceByTypeId(ThermistorService.TYPE_ID);
+      registerSensor(new IntegralValueSensor(resources.getString("sensor.temperature.name"),
+                                             ThermistorService.TYPE_ID,
+                                             ThermistorService.OPERATION_NAME_GET_THERMISTOR_VALUE,
+                                             resources.getString("sensor.temperature.if-branch.label"),
+                                             resources.getString("sensor.temperature.else-branch.label"),
+                                             thermistorService.getDeviceCount(),
+                                             readConfigValueAsInt("sensor.temperature.min-value", thermistorService.getPropertyAsInteger(ThermistorService.PROPERTY_NAME_MIN_VALUE)),
+                                             readConfigValueAsInt("sensor.temperature.max-value", thermistorService.getPropertyAsInteger(ThermistorService.PROPERTY_NAME_MAX_VALUE))));
+
+      final PhotoresistorService photoresistorService = (PhotoresistorService)serviceManager.getServiceByTypeId(PhotoresistorService.TYPE_ID);
+      registerSensor(new IntegralValueSensor(resources.getString("sensor.light.name"),
+                                             PhotoresistorService.TYPE_ID,
+                                             PhotoresistorService.OPERATION_NAME_GET_PHOTORESISTOR_VALUE,
+                                             resources.getString("sensor.light.if-branch.label"),
+                                             resources.getString("sensor.light.else-branch.label"),
+                                             photoresistorService.getDeviceCount(),
+                                             readConfigValueAsInt("sensor.light.min-value", photoresistorService.getPropertyAsInteger(PhotoresistorService.PROPERTY_NAME_MIN_VALUE)),
+                                             readConfigValueAsInt("sensor.light.max-value", photoresistorService.getPropertyAsInteger(PhotoresistorService.PROPERTY_NAME_MAX_VALUE))));
+
+      registerSensor(new BooleanValueSensor(resources.getString("sensor.obstactle.name"),
+                                            SimpleObstacleDetectorService.TYPE_ID,
+                                            SimpleObstacleDetectorService.OPERATION_NAME_IS_OBSTACLE_DETECTED,
+                                            resources.getString("sensor.obstactle.if-branch.label"),
+                                            resources.getString("sensor.obstactle.else-branch.label"),
+                                            ((SimpleObstacleDetectorService)serviceManager.getServiceByTypeId(SimpleObstacleDetectorService.TYPE_ID)).getDeviceCount()));
+
+      // Orientations are boxes in g-space, given as {minX, maxX, minY, maxY, minZ, maxZ}, using the same thresholds as
+      // the real Finch
+      final int numAccelerometers = ((AccelerometerService)serviceManager.getServiceByTypeId(AccelerometerService.TYPE_ID)).getDeviceCount();
+      registerOrientationSensor("sensor.accelerometer-orientation-is-beak-up.name", numAccelerometers, -1.5, -0.8, -0.3, 0.3, -0.3, 0.3);
+      registerOrientationSensor("sensor.accelerometer-orientation-is-beak-down.name", numAccelerometers, 0.8, 1.5, -0.3, 0.3, -0.3, 0.3);
+      registerOrientationSensor("sensor.accelerometer-orientation-is-level.name", numAccelerometers, -0.5, 0.5, -0.5, 0.5, 0.65, 1.5);
+      registerOrientationSensor("sensor.accelerometer-orientation-is-upside-down.name", numAccelerometers, -0.5, 0.5, -0.5, 0.5, -1.5, -0.65);
+      registerOrientationSensor("sensor.accelerometer-orientation-is-left-wing-up.name", numAccelerometers, -0.5, 0.5, -1.5, -0.7, -0.5, 0.5);
+      registerOrientationSensor("sensor.accelerometer-orientation-is-right-wing-up.name", numAccelerometers, -0.5, 0.5, 0.7, 1.5, -0.5, 0.5);
+
+      registerSensor(
+            new AccelerometerAngleSensor(resources.getString("sensor.accelerometer-roll.name"),
+                                         numAccelerometers,
+                                         readConfigValueAsInt("sensor.accelerometer-roll.min-value", 90),
+                                         readConfigValueAsInt("sensor.accelerometer-roll.max-value", -90),
+                                         resources.getString("sensor.accelerometer-roll.if-branch.label"),
+                                         resources.getString("sensor.accelerometer-roll.else-branch.label"))
+            {
+            @Override
+            protected double getAngleInRadians(final double x, final double y, final double z)
+               {
+               return Math.atan(y / Math.sqrt(x * x + z * z));
+               }
+            });
+      registerSensor(
+            new AccelerometerAngleSensor(resources.getString("sensor.accelerometer-pitch.name"),
+                                         numAccelerometers,
+                                         readConfigValueAsInt("sensor.accelerometer-pitch.min-value", 90),
+                                         readConfigValueAsInt("sensor.accelerometer-pitch.max-value", -90),
+                                         resources.getString("sensor.accelerometer-pitch.if-branch.label"),
+                                         resources.getString("sensor.accelerometer-pitch.else-branch.label"))
+            {
+            @Override
+            protected double getAngleInRadians(final double x, final double y, final double z)
+               {
+               return Math.atan(x / Math.sqrt(y * y + z * z));
+               }
+            });
+      registerSensor(
+            new AccelerometerAngleSensor(resources.getString("sensor.accelerometer-level.name"),
+                                         numAccelerometers,
+                                         readConfigValueAsInt("sensor.accelerometer-level.min-value", -90),
+                                         readConfigValueAsInt("sensor.accelerometer-level.max-value", 90),
+                                         resources.getString("sensor.accelerometer-level.if-branch.label"),
+                                         resources.getString("sensor.accelerometer-level.else-branch.label"))
+            {
+            @Override
+            protected double getAngleInRadians(final double x, final double y, final double z)
+               {
+               return Math.atan(z / Math.sqrt(x * x + y * y));
+               }
+            });
+      }
+
+   // MUST be called from within a lock block!
+   private void registerOrientationSensor(@NotNull final String nameKey, final int numPorts, final double... bounds)
+      {
+      registerSensor(new AccelerometerOrientationSensor(resources.getString(nameKey),
+                                                        numPorts,
+                                                        resources.getString("sensor.accelerometer-orientation.if-branch.label"),
+                                                        resources.getString("sensor.accelerometer-orientation.else-branch.label"),
+                                                        bounds));
+      }
+
+   @Override
+   public boolean isConnected()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return serviceManager != null;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   @Nullable
+   public CreateLabDeviceProxy getDeviceProxy()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return (serviceManager == null) ? null : deviceProxy;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   @Nullable
+   public ServiceManager getServiceManager()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return serviceManager;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   @NotNull
+   public ExpressionBuilderDevice getExpressionBuilderDevice()
+      {
+      return expressionBuilderDevice;
+      }
+
+   @Override
+   @NotNull
+   public SequenceBuilderDevice getSequenceBuilderDevice()
+      {
+      return sequenceBuilderDevice;
+      }
+
+   @Override
+   @NotNull
+   public Collection<Sensor> getSensors()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return getSensorsAsList();
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   @Nullable
+   public Sensor findSensor(@Nullable final String sensorName, @Nullable final String serviceTypeId)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         return getRegisteredSensor(sensorName, serviceTypeId);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   @Override
+   public void addSensorListener(@Nullable final SensorListener listener)
+      {
+      if (listener != null)
+         {
+         lock.lock();  // block until condition holds
+         try
+            {
+            sensorListeners.add(listener);
+            updateSensorSubscriptions();
+            }
+         finally
+            {
+            lock.unlock();
+            }
+         }
+      }
+
+   @Override
+   public void removeSensorListener(@Nullable final SensorListener listener)
+      {
+      if (listener != null)
+         {
+         lock.lock();  // block until condition holds
+         try
+            {
+            sensorListeners.remove(listener);
+            updateSensorSubscriptions();
+            }
+         finally
+            {
+            lock.unlock();
+            }
+         }
+      }
+
+   @Override
+   public void disconnect()
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         if (serviceManager != null)
+            {
+            SensorSamplingBus.getInstance().removeSources(serviceManager);
+            }
+         sensorSubscriptions.clear();
+         serviceManager = null;
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Subscribes to the {@link SensorSamplingBus} if we're connected and have {@link SensorListener}s, and cancels the
+    * subscriptions otherwise, so that the sensors are only polled while someone is listening.
+    */
+   // MUST be called from within a lock block!
+   private void updateSensorSubscriptions()
+      {
+      final boolean shouldBeSubscribed = serviceManager != null && !sensorListeners.isEmpty();
+      if (shouldBeSubscribed && sensorSubscriptions.isEmpty())
+         {
+         for (final String serviceTypeId : SENSOR_SERVICE_TYPE_IDS)
+            {
+            final Service service = serviceManager.getServiceByTypeId(serviceTypeId);
+            if (service != null)
+               {
+               sensorSubscriptions.add(SensorSamplingBus.getInstance().subscribe(service, SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS, sensorSampleListener));
+               }
+            }
+         }
+      else if (!shouldBeSubscribed && !sensorSubscriptions.isEmpty())
+         {
+         for (final SensorSamplingBus.Subscription subscription : sensorSubscriptions)
+            {
+            subscription.cancel();
+            }
+         sensorSubscriptions.clear();
+         }
+      }
+
+   private static final class SimulatedServiceManager implements ServiceManager
+      {
+      private final Map<String, Service> services;
+      private final Set<String> typeIds;
+
+      private SimulatedServiceManager(@NotNull final Map<String, Service> services)
+         {
+         this.services = services;
+         this.typeIds = Collections.unmodifiableSet(services.keySet());
+         }
+
+      @Override
+      public boolean isServiceSupported(final String typeId)
+         {
+         return services.containsKey(typeId);
+         }
+
+      @Override
+      public Service getServiceByTypeId(final String typeId)
+         {
+         return services.get(typeId);
+         }
+
+      @Override
+      public Set<String> getTypeIdsOfSupportedServices()
+         {
+         return typeIds;
+         }
+      }
+
+   private static final class AccelerometerOrientationSensor extends BooleanValueSensor
+      {
+      private final double[] bounds;
+
+      private AccelerometerOrientationSensor(@NotNull final String name,
+                                             final int numPorts,
+                                             @NotNull final String ifBranchValueLabel,
+                                             @NotNull final String elseBranchValueLabel,
+                                             @NotNull final double[] bounds)
+         {
+         super(name,
+               AccelerometerService.TYPE_ID,
+               AccelerometerService.OPERATION_NAME_GET_ACCELEROMETER_GS,
+               ifBranchValueLabel, elseBranchValueLabel, numPorts
+         );
+         this.bounds = bounds.clone();
+         }
+
+      @Override
+      protected Boolean convertRawValueToBoolean(@NotNull final Object rawValue)
+         {
+         if (rawValue instanceof AccelerometerGs)
+            {
+            final AccelerometerGs gs = (AccelerometerGs)rawValue;
+            return isWithin(gs.getX(), bounds[0], bounds[1]) &&
+                   isWithin(gs.getY(), bounds[2], bounds[3]) &&
+                   isWithin(gs.getZ(), bounds[4], bounds[5]);
+            }
+         return null;
+         }
+
+      private static boolean isWithin(final double value, final double min, final double max)
+         {
+         return value > min && value < max;
+         }
+      }
+
+   private abstract static class AccelerometerAngleSensor extends DoubleValueSensor
+      {
+      protected AccelerometerAngleSensor(@NotNull final String name,
+                                         final int numPorts,
+                                         final int minValue,
+                                         final int maxValue,
+                                         @NotNull final String ifBranchValueLabel,
+                                         @NotNull final String elseBranchValueLabel)
+         {
+         super(name,
+               AccelerometerService.TYPE_ID,
+               AccelerometerService.OPERATION_NAME_GET_ACCELEROMETER_GS,
+               ifBranchValueLabel, elseBranchValueLabel, numPorts,
+               minValue,
+               maxValue
+         );
+         }
+
+      @Override
+      @Nullable
+      protected final Double convertRawValueToDouble(@NotNull final Object rawValue)
+         {
+         if (rawValue instanceof AccelerometerGs)
+            {
+            final AccelerometerGs gs = (AccelerometerGs)rawValue;
+            return Math.toDegrees(getAngleInRadians(gs.getX(), gs.getY(), gs.getZ()));
+            }
+         return null;
+         }
+
+      protected abstract double getAngleInRadians(final double x, final double y, final double z);
+      }
+   }
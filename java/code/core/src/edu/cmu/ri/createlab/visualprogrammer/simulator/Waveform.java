@@ -0,0 +1,18 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+/**
+ * <p>
+ * <code>Waveform</code> scripts the value reported by one channel of a simulated sensor over time.  See
+ * {@link Waveforms} for the common shapes.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public interface Waveform
+   {
+   /**
+    * Returns the value of the waveform the given number of seconds after the simulated device connected.  Values are
+    * in the native units of the service being simulated, and are clamped to the service's range by the caller.
+    */
+   double getValue(final double elapsedSeconds);
+   }
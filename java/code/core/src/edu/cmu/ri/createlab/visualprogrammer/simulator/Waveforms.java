@@ -0,0 +1,149 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.util.Random;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>Waveforms</code> creates the common {@link Waveform} shapes used to script simulated sensors.  Periods are in
+ * seconds, and every periodic waveform starts at its low value.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class Waveforms
+   {
+   /** Returns a {@link Waveform} which always reports the given <code>value</code>. */
+   @NotNull
+   public static Waveform constant(final double value)
+      {
+      return new Waveform()
+      {
+      @Override
+      public double getValue(final double elapsedSeconds)
+         {
+         return value;
+         }
+      };
+      }
+
+   /** Returns a {@link Waveform} which swings smoothly between <code>low</code> and <code>high</code>. */
+   @NotNull
+   public static Waveform sine(final double low, final double high, final double periodInSeconds)
+      {
+      final double period = sanitizePeriod(periodInSeconds);
+      return new Waveform()
+      {
+      @Override
+      public double getValue(final double elapsedSeconds)
+         {
+         final double phase = 2 * Math.PI * elapsedSeconds / period;
+         return low + (high - low) * (1 - Math.cos(phase)) / 2;
+         }
+      };
+      }
+
+   /**
+    * Returns a {@link Waveform} which spends the first half of each period at <code>low</code> and the second half at
+    * <code>high</code>.
+    */
+   @NotNull
+   public static Waveform square(final double low, final double high, final double periodInSeconds)
+      {
+      final double period = sanitizePeriod(periodInSeconds);
+      return new Waveform()
+      {
+      @Override
+      public double getValue(final double elapsedSeconds)
+         {
+         return (fractionOfPeriod(elapsedSeconds, period) < 0.5) ? low : high;
+         }
+      };
+      }
+
+   /**
+    * Returns a {@link Waveform} which climbs linearly from <code>low</code> to <code>high</code> over each period, and
+    * then jumps back to <code>low</code>.
+    */
+   @NotNull
+   public static Waveform ramp(final double low, final double high, final double periodInSeconds)
+      {
+      final double period = sanitizePeriod(periodInSeconds);
+      return new Waveform()
+      {
+      @Override
+      public double getValue(final double elapsedSeconds)
+         {
+         return low + (high - low) * fractionOfPeriod(elapsedSeconds, period);
+         }
+      };
+      }
+
+   /**
+    * Returns a {@link Waveform} which reports uniformly-distributed random values between <code>low</code> and
+    * <code>high</code>.  The same <code>seed</code> always produces the same sequence of values.
+    */
+   @NotNull
+   public static Waveform random(final double low, final double high, final long seed)
+      {
+      return new Waveform()
+      {
+      private final Random random = new Random(seed);
+      private final Lock lock = new ReentrantLock();
+
+      @Override
+      public double getValue(final double elapsedSeconds)
+         {
+         lock.lock();  // block until condition holds
+         try
+            {
+            return low + (high - low) * random.nextDouble();
+            }
+         finally
+            {
+            lock.unlock();
+            }
+         }
+      };
+      }
+
+   /**
+    * Returns a {@link Waveform} which adds uniformly-distributed noise of up to <code>amplitude</code> in either
+    * direction to the given <code>waveform</code>.
+    */
+   @NotNull
+   public static Waveform withNoise(@NotNull final Waveform waveform, final double amplitude, final long seed)
+      {
+      final Waveform noise = random(-amplitude, amplitude, seed);
+      return new Waveform()
+      {
+      @Override
+      public double getValue(final double elapsedSeconds)
+         {
+         return waveform.getValue(elapsedSeconds) + noise.getValue(elapsedSeconds);
+         }
+      };
+      }
+
+   private static double sanitizePeriod(final double periodInSeconds)
+      {
+      if (periodInSeconds <= 0)
+         {
+         throw new IllegalArgumentException("The period must be positive");
+         }
+      return periodInSeconds;
+      }
+
+   private static double fractionOfPeriod(final double elapsedSeconds, final double period)
+      {
+      final double fraction = (elapsedSeconds % period) / period;
+      return (fraction < 0) ? fraction + 1 : fraction;
+      }
+
+   private Waveforms()
+      {
+      // private to prevent instantiation
+      }
+   }
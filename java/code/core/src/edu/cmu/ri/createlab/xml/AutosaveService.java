@@ -0,0 +1,519 @@
+package edu.cmu.ri.createlab.xml;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.SwingUtilities;
+import edu.cmu.ri.createlab.util.DurableFileWriter;
+import edu.cmu.ri.createlab.util.thread.DaemonThreadFactory;
+import org.apache.log4j.Logger;
+import org.jdom.Document;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>AutosaveService</code> periodically saves snapshots of documents being edited (e.g. the sequence on the stage,
+ * or the expression in the expression builder) to a directory, so that unsaved work can be recovered after a crash.
+ * </p>
+ * <p>
+ * Editors call {@link #markChanged(Source)} whenever their document changes.  Rapid changes are coalesced: a snapshot
+ * is only taken once the document has been left alone for a {@link #DEFAULT_QUIET_PERIOD_IN_MILLIS quiet period}, or
+ * once it has been changing continuously for a {@link #DEFAULT_MAX_DELAY_IN_MILLIS maximum delay}.  Snapshots are taken
+ * on the Swing event dispatch thread, since that's where the documents are edited, but everything else (serializing
+ * the snapshot, comparing it to the last one written, and writing it) happens on the service's own thread, so a slow
+ * disk never blocks the UI.  {@link #register(Source) Registered} sources are also checked every
+ * {@link #DEFAULT_CHECK_INTERVAL_IN_MILLIS check interval}, in case a change was missed; unchanged snapshots aren't
+ * rewritten.
+ * </p>
+ * <p>
+ * Each snapshot is written with {@link DurableFileWriter}, so it's never partially written, and every write and clear
+ * is recorded in a small append-only journal, which is compacted as it grows.  After a crash, the journal says which
+ * snapshots hold {@link #getRecovery(String) recoverable} work.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class AutosaveService
+   {
+   private static final Logger LOG = Logger.getLogger(AutosaveService.class);
+
+   public static final long DEFAULT_QUIET_PERIOD_IN_MILLIS = 2000;
+   public static final long DEFAULT_MAX_DELAY_IN_MILLIS = 10000;
+   public static final long DEFAULT_CHECK_INTERVAL_IN_MILLIS = 30000;
+
+   private static final String JOURNAL_FILENAME = "autosave.journal";
+   private static final String SNAPSHOT_FILE_EXTENSION = ".xml";
+   private static final int MAX_JOURNAL_RECORD_COUNT = 64;
+   private static final String JOURNAL_FIELD_SEPARATOR = "\t";
+   private static final String RECORD_TYPE_SAVED = "SAVED";
+   private static final String RECORD_TYPE_CLEARED = "CLEARED";
+
+   /** A document which can be autosaved. */
+   public interface Source
+      {
+      /**
+       * Returns the name under which this source's snapshots are saved.  Must be unique within the service, and usable
+       * as a filename.
+       */
+      @NotNull
+      String getName();
+
+      /** Returns a title for the document (e.g. the name of the file it was opened from), or <code>null</code>. */
+      @Nullable
+      String getTitle();
+
+      /**
+       * Returns a snapshot of the document which is independent of the document, so that it can be serialized on
+       * another thread, or <code>null</code> if there's nothing worth saving (e.g. the document is empty).  Always
+       * called on the Swing event dispatch thread.
+       */
+      @Nullable
+      Document createSnapshot();
+      }
+
+   /** Describes a snapshot left behind by a previous session. */
+   public static final class Recovery
+      {
+      private final File file;
+      private final String title;
+      private final long timestamp;
+
+      private Recovery(@NotNull final File file, @Nullable final String title, final long timestamp)
+         {
+         this.file = file;
+         this.title = title;
+         this.timestamp = timestamp;
+         }
+
+      /** Returns the snapshot file. */
+      @NotNull
+      public File getFile()
+         {
+         return file;
+         }
+
+      /** Returns the title of the document at the time the snapshot was taken, or <code>null</code>. */
+      @Nullable
+      public String getTitle()
+         {
+         return title;
+         }
+
+      /** Returns the time (in milliseconds since the epoch) at which the snapshot was written. */
+      public long getTimestamp()
+         {
+         return timestamp;
+         }
+      }
+
+   private final File directory;
+   private final File journalFile;
+   private final long quietPeriodInMillis;
+   private final long maxDelayInMillis;
+   private final long checkIntervalInMillis;
+   private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(this.getClass().getSimpleName()));
+
+   private final Lock lock = new ReentrantLock();
+   private final Map<String, PendingSave> pendingSaves = new HashMap<String, PendingSave>();
+
+   // only touched by the service's thread
+   private final Map<String, String> lastWrittenContents = new HashMap<String, String>();
+   private Map<String, JournalRecord> journalRecords = null;
+   private int journalRecordCount = 0;
+
+   /** Creates an <code>AutosaveService</code> which saves snapshots to the given directory, creating it if necessary. */
+   public AutosaveService(@NotNull final File directory)
+      {
+      this(directory, DEFAULT_QUIET_PERIOD_IN_MILLIS, DEFAULT_MAX_DELAY_IN_MILLIS, DEFAULT_CHECK_INTERVAL_IN_MILLIS);
+      }
+
+   /** Creates an <code>AutosaveService</code> with the given timings, which tests may shorten. */
+   AutosaveService(@NotNull final File directory,
+                   final long quietPeriodInMillis,
+                   final long maxDelayInMillis,
+                   final long checkIntervalInMillis)
+      {
+      this.directory = directory;
+      this.journalFile = new File(directory, JOURNAL_FILENAME);
+      this.quietPeriodInMillis = quietPeriodInMillis;
+      this.maxDelayInMillis = maxDelayInMillis;
+      this.checkIntervalInMillis = checkIntervalInMillis;
+      }
+
+   /**
+    * Returns the snapshot saved under the given name by a previous session, if it wasn't cleared, or
+    * <code>null</code> otherwise.  Reads the journal, so should be called once, at startup.
+    */
+   @Nullable
+   public Recovery getRecovery(@NotNull final String name)
+      {
+      final JournalRecord record = readJournal().get(name);
+      if (record != null && RECORD_TYPE_SAVED.equals(record.type))
+         {
+         final File snapshotFile = getSnapshotFile(name);
+         if (snapshotFile.isFile())
+            {
+            return new Recovery(snapshotFile, record.title, record.timestamp);
+            }
+         }
+      return null;
+      }
+
+   /** Checks the given source for changes every {@link #DEFAULT_CHECK_INTERVAL_IN_MILLIS check interval}. */
+   public void register(@NotNull final Source source)
+      {
+      executorService.scheduleWithFixedDelay(
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
+               markChanged(source);
+               }
+            },
+            checkIntervalInMillis,
+            checkIntervalInMillis,
+            TimeUnit.MILLISECONDS);
+      }
+
+   /**
+    * Notes that the given source's document has changed, so that a snapshot will be saved once the changes settle.
+    * Cheap enough to call on every edit, from any thread.
+    */
+   public void markChanged(@NotNull final Source source)
+      {
+      final long now = System.currentTimeMillis();
+      lock.lock();  // block until condition holds
+      try
+         {
+         final PendingSave pendingSave = pendingSaves.get(source.getName());
+         if (pendingSave == null)
+            {
+            pendingSaves.put(source.getName(), new PendingSave(source, now));
+            schedule(source.getName(), quietPeriodInMillis);
+            }
+         else
+            {
+            pendingSave.lastChangeTime = now;
+            }
+         }
+      finally
+         {
+         lock.unlock();
+         }
+      }
+
+   /**
+    * Discards the given source's snapshot, e.g. because its document was just saved by the user, and cancels any
+    * pending save.  Returns immediately; the snapshot is deleted on the service's thread.
+    */
+   public void clear(@NotNull final Source source)
+      {
+      lock.lock();  // block until condition holds
+      try
+         {
+         pendingSaves.remove(source.getName());
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      executorService.execute(
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
+               clearSnapshot(source);
+               }
+            });
+      }
+
+   /** Stops the service.  Pending saves are abandoned, but snapshots already written are kept for recovery. */
+   public void shutdown()
+      {
+      executorService.shutdownNow();
+      }
+
+   private void schedule(@NotNull final String name, final long delayInMillis)
+      {
+      executorService.schedule(
+            new Runnable()
+            {
+            @Override
+            public void run()
+               {
+               handleScheduledSave(name);
+               }
+            },
+            delayInMillis,
+            TimeUnit.MILLISECONDS);
+      }
+
+   private void handleScheduledSave(@NotNull final String name)
+      {
+      final PendingSave pendingSave;
+      lock.lock();  // block until condition holds
+      try
+         {
+         pendingSave = pendingSaves.get(name);
+         if (pendingSave == null)
+            {
+            // cleared since it was scheduled
+            return;
+            }
+
+         // wait for the changes to settle, but not forever
+         final long dueTime = Math.min(pendingSave.lastChangeTime + quietPeriodInMillis,
+                                       pendingSave.firstChangeTime + maxDelayInMillis);
+         final long now = System.currentTimeMillis();
+         if (now < dueTime)
+            {
+            schedule(name, dueTime - now);
+            return;
+            }
+         pendingSaves.remove(name);
+         }
+      finally
+         {
+         lock.unlock();
+         }
+
+      saveSnapshot(pendingSave.source);
+      }
+
+   private void saveSnapshot(@NotNull final Source source)
+      {
+      final Document snapshot = createSnapshot(source);
+      if (snapshot == null)
+         {
+         clearSnapshot(source);
+         return;
+         }
+
+      final String contents = XmlHelper.writeDocumentToStringFormatted(snapshot);
+      if (contents.equals(lastWrittenContents.get(source.getName())))
+         {
+         return;
+         }
+
+      try
+         {
+         // make sure the directory exists, just in case
+         // noinspection ResultOfMethodCallIgnored
+         directory.mkdirs();
+         DurableFileWriter.write(getSnapshotFile(source.getName()), contents);
+         lastWrittenContents.put(source.getName(), contents);
+         appendToJournal(new JournalRecord(System.currentTimeMillis(), RECORD_TYPE_SAVED, source.getName(), source.getTitle()));
+         }
+      catch (IOException e)
+         {
+         LOG.error("AutosaveService.saveSnapshot(): IOException while saving a snapshot of [" + source.getName() + "]", e);
+         }
+      }
+
+   private void clearSnapshot(@NotNull final Source source)
+      {
+      // Remember what the document looks like now, so that the periodic check doesn't save an identical snapshot of,
+      // say, a document which was just saved.
+      final Document snapshot = createSnapshot(source);
+      if (snapshot == null)
+         {
+         lastWrittenContents.remove(source.getName());
+         }
+      else
+         {
+         lastWrittenContents.put(source.getName(), XmlHelper.writeDocumentToStringFormatted(snapshot));
+         }
+
+      final File snapshotFile = getSnapshotFile(source.getName());
+      if (snapshotFile.exists())
+         {
+         try
+            {
+            appendToJournal(new JournalRecord(System.currentTimeMillis(), RECORD_TYPE_CLEARED, source.getName(), source.getTitle()));
+            if (!snapshotFile.delete())
+               {
+               LOG.error("AutosaveService.clearSnapshot(): failed to delete [" + snapshotFile + "]");
+               }
+            }
+         catch (IOException e)
+            {
+            LOG.error("AutosaveService.clearSnapshot(): IOException while clearing the snapshot of [" + source.getName() + "]", e);
+            }
+         }
+      }
+
+   /** Asks the given source for a snapshot on the Swing event dispatch thread, and waits for it. */
+   @Nullable
+   private Document createSnapshot(@NotNull final Source source)
+      {
+      if (SwingUtilities.isEventDispatchThread())
+         {
+         return source.createSnapshot();
+         }
+
+      final AtomicReference<Document> snapshot = new AtomicReference<Document>();
+      try
+         {
+         SwingUtilities.invokeAndWait(
+               new Runnable()
+               {
+               @Override
+               public void run()
+                  {
+                  snapshot.set(source.createSnapshot());
+                  }
+               });
+         }
+      catch (InterruptedException e)
+         {
+         LOG.debug("AutosaveService.createSnapshot(): interrupted while waiting for a snapshot of [" + source.getName() + "]");
+         Thread.currentThread().interrupt();
+         }
+      catch (InvocationTargetException e)
+         {
+         LOG.error("AutosaveService.createSnapshot(): Exception while creating a snapshot of [" + source.getName() + "]", e);
+         }
+      return snapshot.get();
+      }
+
+   @NotNull
+   private File getSnapshotFile(@NotNull final String name)
+      {
+      return new File(directory, name + SNAPSHOT_FILE_EXTENSION);
+      }
+
+   /** Appends the given record to the journal, compacting the journal first if it has grown too long. */
+   private void appendToJournal(@NotNull final JournalRecord record) throws IOException
+      {
+      if (journalRecords == null)
+         {
+         journalRecords = readJournal();
+         journalRecordCount = journalRecords.size();
+         }
+      journalRecords.put(record.name, record);
+
+      if (journalRecordCount >= MAX_JOURNAL_RECORD_COUNT)
+         {
+         // only the latest record for each name matters
+         final StringBuilder sb = new StringBuilder();
+         for (final JournalRecord latestRecord : journalRecords.values())
+            {
+            sb.append(latestRecord.toJournalLine());
+            }
+         DurableFileWriter.write(journalFile, sb.toString());
+         journalRecordCount = journalRecords.size();
+         }
+      else
+         {
+         DurableFileWriter.append(journalFile, record.toJournalLine());
+         journalRecordCount++;
+         }
+      }
+
+   /** Returns the latest journal record for each name.  Malformed lines (e.g. from a crash mid-append) are skipped. */
+   @NotNull
+   private Map<String, JournalRecord> readJournal()
+      {
+      final Map<String, JournalRecord> records = new LinkedHashMap<String, JournalRecord>();
+      if (journalFile.isFile())
+         {
+         try
+            {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+            try
+               {
+               String line;
+               while ((line = reader.readLine()) != null)
+                  {
+                  final JournalRecord record = JournalRecord.parse(line);
+                  if (record != null)
+                     {
+                     records.put(record.name, record);
+                     }
+                  }
+               }
+            finally
+               {
+               reader.close();
+               }
+            }
+         catch (IOException e)
+            {
+            LOG.error("AutosaveService.readJournal(): IOException while reading the journal [" + journalFile + "]", e);
+            }
+         }
+      return records;
+      }
+
+   private static final class PendingSave
+      {
+      private final Source source;
+      private final long firstChangeTime;
+      private long lastChangeTime;
+
+      private PendingSave(@NotNull final Source source, final long changeTime)
+         {
+         this.source = source;
+         this.firstChangeTime = changeTime;
+         this.lastChangeTime = changeTime;
+         }
+      }
+
+   private static final class JournalRecord
+      {
+      @Nullable
+      private static JournalRecord parse(@NotNull final String line)
+         {
+         final String[] fields = line.split(JOURNAL_FIELD_SEPARATOR, 4);
+         if (fields.length == 4 && (RECORD_TYPE_SAVED.equals(fields[1]) || RECORD_TYPE_CLEARED.equals(fields[1])))
+            {
+            try
+               {
+               return new JournalRecord(Long.parseLong(fields[0]), fields[1], fields[2], fields[3].length() == 0 ? null : fields[3]);
+               }
+            catch (NumberFormatException ignored)
+               {
+               // fall through and skip the line
+               }
+            }
+         return null;
+         }
+
+      private final long timestamp;
+      private final String type;
+      private final String name;
+      private final String title;
+
+      private JournalRecord(final long timestamp, @NotNull final String type, @NotNull final String name, @Nullable final String title)
+         {
+         this.timestamp = timestamp;
+         this.type = type;
+         this.name = name;
+         this.title = title;
+         }
+
+      @NotNull
+      private String toJournalLine()
+         {
+         // the title is free text, so keep it from breaking the line's format
+         final String cleanedTitle = (title == null) ? "" : title.replaceAll("[\\t\\r\\n]", " ");
+         return timestamp + JOURNAL_FIELD_SEPARATOR + type + JOURNAL_FIELD_SEPARATOR + name + JOURNAL_FIELD_SEPARATOR + cleanedTitle + "\n";
+         }
+      }
+   }
@@ -9,8 +9,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.swing.JOptionPane;
 import edu.cmu.ri.createlab.userinterface.util.DialogHelper;
+import edu.cmu.ri.createlab.util.DurableFileWriter;
 import edu.cmu.ri.createlab.util.FileProvider;
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.jdom.Document;
 import org.jetbrains.annotations.NotNull;
@@ -271,25 +271,9 @@ public abstract class SaveXmlDocumentDialogRunnable implements Runnable
       {
       try
          {
-         // to save a file, we first write to a temp file and then rename, hoping that Windows is smart enough to do atomic renames
-         final File fileToSaveTemp = new File(fileToSave.getParentFile(), fileToSave.getName() + ".TEMP");
-         FileUtils.writeStringToFile(fileToSaveTemp, xmlDocumentString, false);
-         if (LOG.isDebugEnabled())
-            {
-            LOG.debug("SaveXmlDocumentDialogRunnable.saveFile(): Wrote file [" + fileToSaveTemp + "]");
-            }
-
-         if (fileToSave.exists())
-            {
-            //noinspection ResultOfMethodCallIgnored
-            fileToSave.delete();
-            }
-         FileUtils.moveFile(fileToSaveTemp, fileToSave);
-
-         if (LOG.isDebugEnabled())
-            {
-            LOG.debug("SaveXmlDocumentDialogRunnable.saveFile(): Renamed file [" + fileToSaveTemp + "] to [" + fileToSave + "]");
-            }
+         // write to a temp file, force it to the disk, and then rename it over the file, so that a crash can't leave a
+         // partially-written document behind
+         DurableFileWriter.write(fileToSave, xmlDocumentString);
 
          final int extensionPosition = fileToSave.getName().lastIndexOf(XML_FILE_EXTENSION);
          final String filenameWithoutExtension;
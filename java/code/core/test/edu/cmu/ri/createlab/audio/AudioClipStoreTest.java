@@ -0,0 +1,139 @@
+package edu.cmu.ri.createlab.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>AudioClipStoreTest</code> tests the {@link AudioClipStore} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class AudioClipStoreTest extends TestCase
+   {
+   private static final int THREAD_COUNT = 8;
+
+   private final AudioClipStore store = AudioClipStore.getInstance();
+   private File directory;
+
+   public AudioClipStoreTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      directory = File.createTempFile("AudioClipStoreTest", "");
+      assertTrue(directory.delete());
+      assertTrue(directory.mkdirs());
+      store.clear();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      store.clear();
+      FileUtils.deleteDirectory(directory);
+      }
+
+   public void testClipIsLoadedOnceAndThenStored() throws Exception
+      {
+      final File file = writeClip("clip.wav", 4000);
+      final long missCount = store.getMissCount();
+      final long hitCount = store.getHitCount();
+
+      final byte[] data = store.getClip(file);
+      assertNotNull(data);
+      assertTrue(Arrays.equals(FileUtils.readFileToByteArray(file), data));
+      assertSame("Expected the stored clip to be returned", data, store.getClip(file));
+      assertEquals(missCount + 1, store.getMissCount());
+      assertEquals(hitCount + 1, store.getHitCount());
+      }
+
+   public void testConcurrentMissesShareOneLoad() throws Exception
+      {
+      final File file = writeClip("clip.wav", 400000);
+      final long missCount = store.getMissCount();
+
+      final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+      try
+         {
+         final Callable<byte[]> getClip =
+               new Callable<byte[]>()
+               {
+               public byte[] call()
+                  {
+                  return store.getClip(file);
+                  }
+               };
+         final Future<?>[] futures = new Future<?>[THREAD_COUNT];
+         for (int i = 0; i < THREAD_COUNT; i++)
+            {
+            futures[i] = executor.submit(getClip);
+            }
+         final Object data = futures[0].get();
+         assertNotNull(data);
+         for (final Future<?> future : futures)
+            {
+            assertSame("Expected every caller to get the same clip", data, future.get());
+            }
+         }
+      finally
+         {
+         executor.shutdownNow();
+         }
+      assertEquals("Expected the clip to be loaded only once", missCount + 1, store.getMissCount());
+      }
+
+   public void testChangedClipIsLoadedAgain() throws Exception
+      {
+      final File file = writeClip("clip.wav", 4000);
+      final byte[] data = store.getClip(file);
+      assertNotNull(data);
+
+      writeClip("clip.wav", 8000);
+      final long missCount = store.getMissCount();
+      final byte[] changedData = store.getClip(file);
+      assertNotNull(changedData);
+      assertTrue(changedData.length > data.length);
+      assertEquals(missCount + 1, store.getMissCount());
+      }
+
+   public void testUnplayableClipIsRememberedAsMissing() throws Exception
+      {
+      final File file = new File(directory, "bogus.wav");
+      FileUtils.writeStringToFile(file, "not a clip", "UTF-8");
+      final long missCount = store.getMissCount();
+
+      assertNull(store.getClip(file));
+      assertNull(store.getClip(file));
+      assertEquals("Expected the bad clip to be read only once", missCount + 1, store.getMissCount());
+      assertNull(store.getClip(new File(directory, "missing.wav")));
+      }
+
+   /** Writes a silent, 8 kHz, 8-bit mono WAV file having the given number of samples. */
+   @NotNull
+   private File writeClip(@NotNull final String filename, final int sampleCount) throws Exception
+      {
+      final File file = new File(directory, filename);
+      final AudioFormat format = new AudioFormat(8000, 8, 1, true, false);
+      final AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(new byte[sampleCount]), format, sampleCount);
+      AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+
+      // make sure a rewrite within the file system's timestamp resolution is still seen as a change
+      file.setLastModified(System.currentTimeMillis() + sampleCount);
+      return file;
+      }
+   }
@@ -0,0 +1,200 @@
+package edu.cmu.ri.createlab.expressionbuilder.controlpanel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>DeviceCommandDispatcherTest</code> tests the {@link DeviceCommandDispatcher} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class DeviceCommandDispatcherTest extends TestCase
+   {
+   private static final long TIMEOUT_IN_MILLIS = 5000;
+   private static final int NUM_COMMANDS = 10;
+
+   private final DeviceCommandDispatcher dispatcher = DeviceCommandDispatcher.getInstance();
+   private final List<Integer> executedCommands = Collections.synchronizedList(new ArrayList<Integer>());
+
+   public DeviceCommandDispatcherTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void tearDown() throws Exception
+      {
+      dispatcher.setMinimumIntervalBetweenCommands(0);
+      }
+
+   public void testLatestCommandWins() throws Exception
+      {
+      final Object channelOwner = new Object();
+      final CountDownLatch releaseLatch = submitBlockingCommand(channelOwner, 0);
+
+      // all of these are submitted while the first command is still running, so only the last one should survive
+      for (int i = 1; i <= NUM_COMMANDS; i++)
+         {
+         dispatcher.submit(channelOwner, 0, new RecordingCommand(i));
+         }
+      releaseLatch.countDown();
+
+      assertTrue("Expected the latest command to run", awaitCommand(NUM_COMMANDS));
+      Thread.sleep(50);
+      assertEquals("Expected the superseded commands to be dropped", createList(0, NUM_COMMANDS), getExecutedCommands());
+      }
+
+   public void testCommandsSubmittedInOrderAreNeverDropped() throws Exception
+      {
+      final Object channelOwner = new Object();
+      final CountDownLatch releaseLatch = submitBlockingCommand(channelOwner, 0);
+
+      final List<Integer> expectedCommands = createList(0);
+      for (int i = 1; i <= NUM_COMMANDS; i++)
+         {
+         dispatcher.submitInOrder(channelOwner, 0, new RecordingCommand(i));
+         expectedCommands.add(i);
+         }
+      releaseLatch.countDown();
+
+      assertTrue("Expected the last command to run", awaitCommand(NUM_COMMANDS));
+      assertEquals("Expected every command to run, in order", expectedCommands, getExecutedCommands());
+      }
+
+   public void testLatestCommandReplacesQueuedCommands() throws Exception
+      {
+      final Object channelOwner = new Object();
+      final CountDownLatch releaseLatch = submitBlockingCommand(channelOwner, 0);
+
+      dispatcher.submitInOrder(channelOwner, 0, new RecordingCommand(1));
+      dispatcher.submitInOrder(channelOwner, 0, new RecordingCommand(2));
+      dispatcher.submit(channelOwner, 0, new RecordingCommand(3));
+      releaseLatch.countDown();
+
+      assertTrue("Expected the latest command to run", awaitCommand(3));
+      Thread.sleep(50);
+      assertEquals(createList(0, 3), getExecutedCommands());
+      }
+
+   public void testBusyChannelDoesNotBlockOtherChannels() throws Exception
+      {
+      final Object channelOwner = new Object();
+      final CountDownLatch releaseLatch = submitBlockingCommand(channelOwner, 0);
+      try
+         {
+         dispatcher.submit(channelOwner, 1, new RecordingCommand(1));
+         assertTrue("Expected another device's command to run while the first device is busy", awaitCommand(1));
+         }
+      finally
+         {
+         releaseLatch.countDown();
+         }
+      }
+
+   public void testMinimumIntervalBetweenCommands() throws Exception
+      {
+      final long minimumIntervalInMillis = 50;
+      dispatcher.setMinimumIntervalBetweenCommands(minimumIntervalInMillis);
+
+      final Object channelOwner = new Object();
+      final List<Long> startTimesInNanos = Collections.synchronizedList(new ArrayList<Long>());
+      for (int i = 1; i <= 3; i++)
+         {
+         final int commandId = i;
+         dispatcher.submitInOrder(channelOwner,
+                                  0,
+                                  new Runnable()
+                                  {
+                                  public void run()
+                                     {
+                                     startTimesInNanos.add(System.nanoTime());
+                                     executedCommands.add(commandId);
+                                     }
+                                  });
+         }
+
+      assertTrue("Expected every command to run", awaitCommand(3));
+      for (int i = 1; i < startTimesInNanos.size(); i++)
+         {
+         final long intervalInMillis = TimeUnit.NANOSECONDS.toMillis(startTimesInNanos.get(i) - startTimesInNanos.get(i - 1));
+         assertTrue("Expected commands to be at least " + minimumIntervalInMillis + " ms apart, but were " + intervalInMillis + " ms apart",
+                    intervalInMillis >= minimumIntervalInMillis - 5);
+         }
+      }
+
+   /** Submits a command which records the id 0 and then blocks until the returned latch is released. */
+   @NotNull
+   private CountDownLatch submitBlockingCommand(@NotNull final Object channelOwner, final int deviceIndex) throws InterruptedException
+      {
+      final CountDownLatch startedLatch = new CountDownLatch(1);
+      final CountDownLatch releaseLatch = new CountDownLatch(1);
+      dispatcher.submit(channelOwner,
+                        deviceIndex,
+                        new Runnable()
+                        {
+                        public void run()
+                           {
+                           executedCommands.add(0);
+                           startedLatch.countDown();
+                           try
+                              {
+                              releaseLatch.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+                              }
+                           catch (InterruptedException ignored)
+                              {
+                              Thread.currentThread().interrupt();
+                              }
+                           }
+                        });
+      assertTrue("Expected the blocking command to start", startedLatch.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+      return releaseLatch;
+      }
+
+   private boolean awaitCommand(final int commandId) throws InterruptedException
+      {
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (!executedCommands.contains(commandId) && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      return executedCommands.contains(commandId);
+      }
+
+   @NotNull
+   private List<Integer> getExecutedCommands()
+      {
+      synchronized (executedCommands)
+         {
+         return new ArrayList<Integer>(executedCommands);
+         }
+      }
+
+   @NotNull
+   private static List<Integer> createList(final Integer... values)
+      {
+      final List<Integer> list = new ArrayList<Integer>();
+      Collections.addAll(list, values);
+      return list;
+      }
+
+   private final class RecordingCommand implements Runnable
+      {
+      private final int commandId;
+
+      private RecordingCommand(final int commandId)
+         {
+         this.commandId = commandId;
+         }
+
+      public void run()
+         {
+         executedCommands.add(commandId);
+         }
+      }
+   }
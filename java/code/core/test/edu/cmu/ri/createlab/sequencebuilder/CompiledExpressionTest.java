@@ -0,0 +1,123 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import edu.cmu.ri.createlab.terk.xml.XmlDevice;
+import edu.cmu.ri.createlab.terk.xml.XmlOperation;
+import edu.cmu.ri.createlab.terk.xml.XmlParameter;
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * <code>CompiledExpressionTest</code> tests the {@link CompiledExpression} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class CompiledExpressionTest extends TestCase
+   {
+   public CompiledExpressionTest(final String test)
+      {
+      super(test);
+      }
+
+   public void testCoalesceOperations()
+      {
+      assertTrue("Expected coalescing null to return an empty list", CompiledExpression.coalesceOperations(null).isEmpty());
+
+      final List<XmlOperation> operations = new ArrayList<XmlOperation>();
+      operations.add(new XmlOperation("setPosition", createDevice(0, 10)));
+      operations.add(new XmlOperation("setPosition", createDevice(1, 15)));
+      operations.add(new XmlOperation("setIntensity", createDevice(0, 20)));
+      operations.add(new XmlOperation("setPosition", createDevice(1, 30)));
+      operations.add(new XmlOperation("setPosition", createDevice(0, 40)));
+
+      // only adjacent operations with the same name are merged, so the setIntensity still happens between the two
+      // groups of setPositions, and the first value for each device still reaches the device before it
+      final List<XmlOperation> coalescedOperations = CompiledExpression.coalesceOperations(operations);
+      assertEquals("Expected adjacent operations with the same name to be merged", 3, coalescedOperations.size());
+      assertEquals("Expected the operations to keep their original order", "setPosition", coalescedOperations.get(0).getName());
+      assertEquals("Expected the operations to keep their original order", "setIntensity", coalescedOperations.get(1).getName());
+      assertEquals("Expected the operations to keep their original order", "setPosition", coalescedOperations.get(2).getName());
+
+      assertDeviceValues(coalescedOperations.get(0), 10, 15);
+      assertDeviceValues(coalescedOperations.get(1), 20, null);
+      assertDeviceValues(coalescedOperations.get(2), 40, 30);
+      }
+
+   public void testCoalesceOperationsDropsOnlyAdjacentOverwrites()
+      {
+      final List<XmlOperation> operations = new ArrayList<XmlOperation>();
+      operations.add(new XmlOperation("setPosition", createDevice(0, 10)));
+      operations.add(new XmlOperation("setPosition", createDevice(0, 20)));
+      operations.add(new XmlOperation("setPosition", createDevice(0, 30)));
+
+      final List<XmlOperation> coalescedOperations = CompiledExpression.coalesceOperations(operations);
+      assertEquals("Expected back-to-back writes to the same device to collapse into one", 1, coalescedOperations.size());
+      assertDeviceValues(coalescedOperations.get(0), 30, null);
+      }
+
+   public void testCoalesceOperationsOnlyMergesOperationsWhichOverwriteEachOther()
+      {
+      final List<XmlOperation> operations = new ArrayList<XmlOperation>();
+      operations.add(new XmlOperation("setColor", createDevice(0, "red", 255)));
+      operations.add(new XmlOperation("setColor", createDevice(0, "green", 128)));
+      operations.add(new XmlOperation("setColor", createDevice(1, "red", 10)));
+      operations.add(new XmlOperation("setColor", createDevice(0, "green", 64)));
+
+      // the green-only operation can't overwrite the red-only one, so it starts a new operation which later
+      // operations are merged into (the red-only operation for device 1 doesn't conflict with anything in it)
+      final List<XmlOperation> coalescedOperations = CompiledExpression.coalesceOperations(operations);
+      assertEquals("Expected the operation which only partially overwrites the first one to survive", 2, coalescedOperations.size());
+
+      final XmlOperation first = coalescedOperations.get(0);
+      assertEquals("Expected the first operation to be unchanged", 1, first.getDevices().size());
+      assertEquals((Integer)255, first.getDevices().iterator().next().getParameter("red").getValueAsInteger());
+
+      final XmlOperation second = coalescedOperations.get(1);
+      assertEquals("Expected the later operations to be merged into the second one", 2, second.getDevices().size());
+      for (final XmlDevice device : second.getDevices())
+         {
+         if (device.getId() == 0)
+            {
+            assertEquals("Expected the last green value for device 0 to win", (Integer)64, device.getParameter("green").getValueAsInteger());
+            }
+         else
+            {
+            assertEquals("Expected device 1 to be merged into the second operation", (Integer)10, device.getParameter("red").getValueAsInteger());
+            }
+         }
+      }
+
+   /** Asserts that the given operation sets devices 0 and 1 to the given values (<code>null</code> meaning not set). */
+   private static void assertDeviceValues(final XmlOperation operation, final Integer device0Value, final Integer device1Value)
+      {
+      final Map<Integer, Integer> expectedValues = new HashMap<Integer, Integer>();
+      final Map<Integer, Integer> actualValues = new HashMap<Integer, Integer>();
+      if (device0Value != null)
+         {
+         expectedValues.put(0, device0Value);
+         }
+      if (device1Value != null)
+         {
+         expectedValues.put(1, device1Value);
+         }
+      for (final XmlDevice device : operation.getDevices())
+         {
+         actualValues.put(device.getId(), device.getParameter("value").getValueAsInteger());
+         }
+      assertEquals("Unexpected device values for " + operation.getName(), expectedValues, actualValues);
+      }
+
+   private static XmlDevice createDevice(final int id, final String parameterName, final int value)
+      {
+      return new XmlDevice(id, new XmlParameter(parameterName, value));
+      }
+
+   private static XmlDevice createDevice(final int id, final int value)
+      {
+      return createDevice(id, "value", value);
+      }
+   }
@@ -0,0 +1,165 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>CompiledSavedSequenceCacheTest</code> tests the {@link CompiledSavedSequenceCache} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class CompiledSavedSequenceCacheTest extends TestCase
+   {
+   private static final Set<File> NO_ENCLOSING_FILES = Collections.emptySet();
+
+   private final CompiledSavedSequenceCache cache = CompiledSavedSequenceCache.getInstance();
+   private SequenceTestFixture fixture;
+   private File expressionFile;
+
+   public CompiledSavedSequenceCacheTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      fixture = new SequenceTestFixture();
+
+      // the expression is written only once, since modifying an expression file drops every compiled plan
+      expressionFile = fixture.writeExpression("expression", 100);
+      cache.clear();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      fixture.tearDown();
+      }
+
+   public void testRepeatedLookupsCompileOnce() throws Exception
+      {
+      final CompiledSavedSequenceCache.Key key = createKey(writeSavedSequence("sequence"), NO_ENCLOSING_FILES);
+      final long hitCount = cache.getHitCount();
+      final long missCount = cache.getMissCount();
+
+      final ExecutionPlan plan = cache.get(key);
+      assertNotNull("Expected the saved sequence to compile", plan);
+      for (int i = 1; i < 50; i++)
+         {
+         assertSame("Expected the compiled plan to be shared", plan, cache.get(key));
+         }
+      assertEquals("Expected the saved sequence to be compiled once", missCount + 1, cache.getMissCount());
+      assertEquals("Expected every other lookup to be a hit", hitCount + 49, cache.getHitCount());
+      assertEquals(1, cache.getSize());
+      }
+
+   public void testEnclosingSequencesArePartOfTheKey() throws Exception
+      {
+      final File file = writeSavedSequence("sequence");
+      final File enclosingFile = fixture.getSavedSequenceFile("enclosing");
+
+      final ExecutionPlan plan = cache.get(createKey(file, NO_ENCLOSING_FILES));
+      final ExecutionPlan enclosedPlan = cache.get(createKey(file, Collections.singleton(enclosingFile)));
+      assertNotNull(plan);
+      assertNotNull(enclosedPlan);
+      assertNotSame("Expected a differently enclosed saved sequence to be compiled separately", plan, enclosedPlan);
+      assertEquals(2, cache.getSize());
+      }
+
+   public void testModifiedAndDeletedFileEventsInvalidateEntries() throws Exception
+      {
+      final File modifiedFile = writeSavedSequence("modified");
+      final File deletedFile = writeSavedSequence("deleted");
+      final File untouchedFile = writeSavedSequence("untouched");
+      final ExecutionPlan modifiedPlan = cache.get(createKey(modifiedFile, NO_ENCLOSING_FILES));
+      cache.get(createKey(deletedFile, NO_ENCLOSING_FILES));
+      cache.get(createKey(untouchedFile, Collections.singleton(modifiedFile)));
+      assertEquals(3, cache.getSize());
+
+      cache.handleModifiedFileEvent(Collections.singleton(modifiedFile));
+      cache.handleDeletedFileEvent(Collections.singleton(deletedFile));
+      assertEquals("Expected only the untouched saved sequence to still be cached", 1, cache.getSize());
+
+      final long missCount = cache.getMissCount();
+      assertNotSame("Expected the modified saved sequence to be recompiled", modifiedPlan, cache.get(createKey(modifiedFile, NO_ENCLOSING_FILES)));
+      assertEquals(missCount + 1, cache.getMissCount());
+      }
+
+   public void testMissingFileIsNotCached() throws Exception
+      {
+      final CompiledSavedSequenceCache.Key key = createKey(fixture.getSavedSequenceFile("missing"), NO_ENCLOSING_FILES);
+      final long missCount = cache.getMissCount();
+
+      assertNull("Expected a missing saved sequence not to compile", cache.get(key));
+      assertEquals("Expected nothing to be cached for a missing saved sequence", 0, cache.getSize());
+      assertNull(cache.get(key));
+      assertEquals("Expected a missing saved sequence to be tried again each time", missCount + 2, cache.getMissCount());
+      }
+
+   public void testSequenceWhichIncludesItself() throws Exception
+      {
+      // the saved sequence executes its expression and then itself
+      final ContainerModel contents = new ContainerModel();
+      contents.add(new ExpressionModel(fixture.getDevice(), expressionFile, null, false, 0));
+      contents.add(new SavedSequenceModel(fixture.getDevice(), fixture.getSavedSequenceFile("recursive")));
+      final File file = fixture.writeSavedSequence("recursive", contents);
+
+      final ExecutionPlan plan = cache.get(createKey(file, NO_ENCLOSING_FILES));
+      assertNotNull("Expected a saved sequence which includes itself to compile", plan);
+      assertSame(plan, cache.get(createKey(file, NO_ENCLOSING_FILES)));
+      }
+
+   public void testPrefetchedPlanIsAHit() throws Exception
+      {
+      final CompiledSavedSequenceCache.Key key = createKey(writeSavedSequence("sequence"), NO_ENCLOSING_FILES);
+      final long hitCount = cache.getHitCount();
+      final long missCount = cache.getMissCount();
+
+      cache.prefetch(key);
+      assertEquals("Expected the prefetched saved sequence to be cached", 1, cache.getSize());
+      assertNotNull(cache.get(key));
+      assertEquals("Expected prefetching not to count as a miss", missCount, cache.getMissCount());
+      assertEquals("Expected the lookup after prefetching to be a hit", hitCount + 1, cache.getHitCount());
+      }
+
+   public void testLeastRecentlyUsedEntryIsEvicted() throws Exception
+      {
+      final CompiledSavedSequenceCache.Key firstKey = createKey(writeSavedSequence("first"), NO_ENCLOSING_FILES);
+      final CompiledSavedSequenceCache.Key secondKey = createKey(writeSavedSequence("second"), NO_ENCLOSING_FILES);
+      final ExecutionPlan firstPlan = cache.get(firstKey);
+      final ExecutionPlan secondPlan = cache.get(secondKey);
+      for (int i = 2; i < CompiledSavedSequenceCache.DEFAULT_MAX_ENTRIES; i++)
+         {
+         cache.get(createKey(writeSavedSequence("sequence" + i), NO_ENCLOSING_FILES));
+         }
+      assertEquals(CompiledSavedSequenceCache.DEFAULT_MAX_ENTRIES, cache.getSize());
+
+      // using the first saved sequence makes the second one the least recently used
+      cache.get(firstKey);
+      cache.get(createKey(writeSavedSequence("one-too-many"), NO_ENCLOSING_FILES));
+      assertEquals("Expected the cache size to be bounded", CompiledSavedSequenceCache.DEFAULT_MAX_ENTRIES, cache.getSize());
+      assertSame("Expected the recently used saved sequence to still be cached", firstPlan, cache.get(firstKey));
+      assertNotSame("Expected the least recently used saved sequence to be evicted", secondPlan, cache.get(secondKey));
+      }
+
+   /** Writes a saved sequence with the given name which executes the test's expression, and returns its file. */
+   @NotNull
+   private File writeSavedSequence(@NotNull final String name) throws Exception
+      {
+      final ContainerModel contents = new ContainerModel();
+      contents.add(new ExpressionModel(fixture.getDevice(), expressionFile, null, false, 0));
+      return fixture.writeSavedSequence(name, contents);
+      }
+
+   @NotNull
+   private CompiledSavedSequenceCache.Key createKey(@NotNull final File savedSequenceFile, @NotNull final Set<File> enclosingSavedSequenceFiles)
+      {
+      return new CompiledSavedSequenceCache.Key(fixture.getDevice(), savedSequenceFile, enclosingSavedSequenceFiles);
+      }
+   }
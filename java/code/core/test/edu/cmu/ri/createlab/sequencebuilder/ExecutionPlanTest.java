@@ -0,0 +1,401 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.util.LatencyHistogram;
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * <code>ExecutionPlanTest</code> tests executing {@link ExecutionPlan}s with the {@link SequenceExecutor}, against a
+ * simulated device.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class ExecutionPlanTest extends TestCase
+   {
+   private SequenceTestFixture fixture;
+
+   public ExecutionPlanTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      fixture = new SequenceTestFixture();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      ExecutionTracer.getInstance().setEnabled(false);
+      ExecutionTracer.getInstance().clear();
+      fixture.tearDown();
+      }
+
+   public void testStraightLineSequence() throws Exception
+      {
+      final List<String> executedExpressions = Collections.synchronizedList(new ArrayList<String>());
+      final ContainerModel containerModel = new ContainerModel();
+      for (final String name : Arrays.asList("first", "second", "third"))
+         {
+         final ExpressionModel expressionModel = createExpressionModel(name, 0);
+         expressionModel.addExecutionEventListener(new RecordingExpressionListener(name, executedExpressions));
+         containerModel.add(expressionModel);
+         }
+
+      assertTrue("Expected the run to complete", fixture.run(containerModel));
+      assertEquals("Expected each expression to execute once, in order", Arrays.asList("first", "second", "third"), executedExpressions);
+      assertEquals("Expected the executor to be idle after the run", SequenceExecutor.State.IDLE, SequenceExecutor.getInstance().getState());
+      }
+
+   public void testCounterLoop() throws Exception
+      {
+      final List<String> executedExpressions = Collections.synchronizedList(new ArrayList<String>());
+      final ExpressionModel expressionModel = createExpressionModel("body", 0);
+      expressionModel.addExecutionEventListener(new RecordingExpressionListener("body", executedExpressions));
+      final ContainerModel loopBody = new ContainerModel();
+      loopBody.add(expressionModel);
+      final CounterLoopModel loop = new CounterLoopModel(fixture.getDevice(), null, false, 3, loopBody);
+
+      final List<Integer> elapsedIterations = Collections.synchronizedList(new ArrayList<Integer>());
+      final AtomicInteger startCount = new AtomicInteger(0);
+      final AtomicInteger endCount = new AtomicInteger(0);
+      loop.addExecutionEventListener(
+            new CounterLoopModel.ExecutionEventListener()
+            {
+            public void handleExecutionStart()
+               {
+               startCount.incrementAndGet();
+               }
+
+            public void handleElapsedIterations(final int iterations)
+               {
+               elapsedIterations.add(iterations);
+               }
+
+            public void handleExecutionEnd()
+               {
+               endCount.incrementAndGet();
+               }
+
+            public void handleHighlight()
+               {
+               }
+            });
+
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.add(loop);
+
+      assertTrue("Expected the run to complete", fixture.run(containerModel));
+      assertEquals("Expected the body to execute once per iteration", 3, executedExpressions.size());
+      assertEquals("Expected the loop to count its iterations", Arrays.asList(1, 2, 3), elapsedIterations);
+      assertEquals("Expected the loop to start once", 1, startCount.get());
+      assertEquals("Expected the loop to end once", 1, endCount.get());
+      }
+
+   public void testNestedCounterLoops() throws Exception
+      {
+      final List<String> executedExpressions = Collections.synchronizedList(new ArrayList<String>());
+      final ExpressionModel innerExpressionModel = createExpressionModel("inner", 0);
+      innerExpressionModel.addExecutionEventListener(new RecordingExpressionListener("inner", executedExpressions));
+      final ContainerModel innerLoopBody = new ContainerModel();
+      innerLoopBody.add(innerExpressionModel);
+
+      final ExpressionModel outerExpressionModel = createExpressionModel("outer", 0);
+      outerExpressionModel.addExecutionEventListener(new RecordingExpressionListener("outer", executedExpressions));
+      final ContainerModel outerLoopBody = new ContainerModel();
+      outerLoopBody.add(outerExpressionModel);
+      outerLoopBody.add(new CounterLoopModel(fixture.getDevice(), null, false, 3, innerLoopBody));
+
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.add(new CounterLoopModel(fixture.getDevice(), null, false, 2, outerLoopBody));
+
+      assertTrue("Expected the run to complete", fixture.run(containerModel));
+      assertEquals("Expected the inner loop to restart its count on each outer iteration",
+                   Arrays.asList("outer", "inner", "inner", "inner", "outer", "inner", "inner", "inner"),
+                   executedExpressions);
+      }
+
+   public void testNestedSavedSequences() throws Exception
+      {
+      // the inner saved sequence loops over one expression, and the outer one executes another expression and then the inner one
+      final ContainerModel innerLoopBody = new ContainerModel();
+      innerLoopBody.add(createExpressionModel("inner", 0));
+      final ContainerModel innerContents = new ContainerModel();
+      innerContents.add(new CounterLoopModel(fixture.getDevice(), null, false, 2, innerLoopBody));
+      final File innerFile = fixture.writeSavedSequence("inner-sequence", innerContents);
+
+      final ContainerModel outerContents = new ContainerModel();
+      outerContents.add(createExpressionModel("outer", 0));
+      outerContents.add(new SavedSequenceModel(fixture.getDevice(), innerFile));
+      final File outerFile = fixture.writeSavedSequence("outer-sequence", outerContents);
+
+      final SavedSequenceModel savedSequenceModel = new SavedSequenceModel(fixture.getDevice(), outerFile);
+      final AtomicInteger visualCount = new AtomicInteger(0);
+      final AtomicInteger endCount = new AtomicInteger(0);
+      savedSequenceModel.addExecutionEventListener(
+            new SavedSequenceModel.ExecutionEventListener()
+            {
+            public void handleExecutionStart()
+               {
+               }
+
+            public void handleExecutionEnd()
+               {
+               endCount.incrementAndGet();
+               }
+
+            public void handleExecutionVisual()
+               {
+               visualCount.incrementAndGet();
+               }
+            });
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.add(savedSequenceModel);
+
+      // the saved sequences' models are loaded from their files, so count their expressions with the tracer
+      ExecutionTracer.getInstance().clear();
+      ExecutionTracer.getInstance().setEnabled(true);
+      assertTrue("Expected the run to complete", fixture.run(containerModel));
+      assertEquals("Expected the outer saved sequence's expression to execute once", 1, getExecutionCount("outer"));
+      assertEquals("Expected the inner saved sequence's expression to execute once per iteration", 2, getExecutionCount("inner"));
+      assertEquals("Expected the saved sequence's contents to be shown once", 1, visualCount.get());
+      assertEquals("Expected the saved sequence to end once", 1, endCount.get());
+
+      // running again should reuse the compiled saved sequences
+      final long missCount = CompiledSavedSequenceCache.getInstance().getMissCount();
+      assertTrue("Expected the second run to complete", fixture.run(containerModel));
+      assertEquals("Expected the compiled saved sequences to be reused", missCount, CompiledSavedSequenceCache.getInstance().getMissCount());
+      assertEquals("Expected the inner saved sequence's expression to execute again", 4, getExecutionCount("inner"));
+      }
+
+   public void testStopMidPlan() throws Exception
+      {
+      final int numIterations = 1000;
+      final CountDownLatch threeExecutionsLatch = new CountDownLatch(3);
+      final AtomicInteger executionCount = new AtomicInteger(0);
+      final ExpressionModel expressionModel = createExpressionModel("body", 20);
+      expressionModel.addExecutionEventListener(
+            new ExpressionModel.ExecutionEventListener()
+            {
+            public void handleExecutionStart()
+               {
+               executionCount.incrementAndGet();
+               threeExecutionsLatch.countDown();
+               }
+
+            public void handleElapsedTimeInMillis(final int millis)
+               {
+               }
+
+            public void handleExecutionEnd()
+               {
+               }
+            });
+      final ContainerModel loopBody = new ContainerModel();
+      loopBody.add(expressionModel);
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.add(new CounterLoopModel(fixture.getDevice(), null, false, numIterations, loopBody));
+
+      final SequenceTestFixture.Run run = fixture.start(containerModel);
+      assertNotNull("Expected the run to start", run);
+      assertTrue("Expected the loop to start executing", threeExecutionsLatch.await(SequenceTestFixture.RUN_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+
+      SequenceExecutor.getInstance().stop();
+      assertFalse("Expected the stopped run not to complete", run.await());
+      assertTrue("Expected the run to stop before the loop finished", executionCount.get() < numIterations);
+      assertEquals("Expected the executor to be idle after stopping", SequenceExecutor.State.IDLE, SequenceExecutor.getInstance().getState());
+
+      // the executor must be usable again once it's idle
+      final ContainerModel nextContainerModel = new ContainerModel();
+      nextContainerModel.add(createExpressionModel("next", 0));
+      assertTrue("Expected a run after a stopped one to complete", fixture.run(nextContainerModel));
+      }
+
+   public void testStopInsideSavedSequenceStillEndsIt() throws Exception
+      {
+      final ContainerModel loopBody = new ContainerModel();
+      loopBody.add(createExpressionModel("body", 20));
+      final ContainerModel contents = new ContainerModel();
+      contents.add(new CounterLoopModel(fixture.getDevice(), null, false, 1000, loopBody));
+      final SavedSequenceModel savedSequenceModel = new SavedSequenceModel(fixture.getDevice(), fixture.writeSavedSequence("long-sequence", contents));
+
+      final CountDownLatch visualLatch = new CountDownLatch(1);
+      final AtomicInteger endCount = new AtomicInteger(0);
+      savedSequenceModel.addExecutionEventListener(
+            new SavedSequenceModel.ExecutionEventListener()
+            {
+            public void handleExecutionStart()
+               {
+               }
+
+            public void handleExecutionEnd()
+               {
+               endCount.incrementAndGet();
+               }
+
+            public void handleExecutionVisual()
+               {
+               visualLatch.countDown();
+               }
+            });
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.add(savedSequenceModel);
+
+      final SequenceTestFixture.Run run = fixture.start(containerModel);
+      assertNotNull("Expected the run to start", run);
+      assertTrue("Expected the saved sequence to start executing", visualLatch.await(SequenceTestFixture.RUN_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+      Thread.sleep(50);
+
+      SequenceExecutor.getInstance().stop();
+      assertFalse("Expected the stopped run not to complete", run.await());
+      assertEquals("Expected the stopped saved sequence to end, so that it isn't left highlighted", 1, endCount.get());
+      }
+
+   public void testStartWhileStoppingRunsOnceStopped() throws Exception
+      {
+      final CountDownLatch startedLatch = new CountDownLatch(1);
+      final CountDownLatch releaseLatch = new CountDownLatch(1);
+      final SequenceTestFixture.Run stoppedRun = fixture.start(createBlockingContainerModel(startedLatch, releaseLatch));
+      assertNotNull("Expected the run to start", stoppedRun);
+      assertTrue("Expected the run to start executing", startedLatch.await(SequenceTestFixture.RUN_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+
+      // the blocked expression keeps the executor stopping until it's released
+      SequenceExecutor.getInstance().stop();
+      assertEquals(SequenceExecutor.State.STOPPING, SequenceExecutor.getInstance().getState());
+
+      final List<String> executedExpressions = Collections.synchronizedList(new ArrayList<String>());
+      final ExpressionModel expressionModel = createExpressionModel("next", 0);
+      expressionModel.addExecutionEventListener(new RecordingExpressionListener("next", executedExpressions));
+      final ContainerModel nextContainerModel = new ContainerModel();
+      nextContainerModel.add(expressionModel);
+      final SequenceTestFixture.Run nextRun = fixture.start(nextContainerModel);
+      assertNotNull("Expected a run requested while stopping to be accepted", nextRun);
+      assertTrue("Expected the requested run to wait for the stopping one", executedExpressions.isEmpty());
+
+      releaseLatch.countDown();
+      assertFalse("Expected the stopped run not to complete", stoppedRun.await());
+      assertTrue("Expected the requested run to complete once the stopped one had ended", nextRun.await());
+      assertEquals(Arrays.asList("next"), executedExpressions);
+      }
+
+   public void testStopAbandonsRunRequestedWhileStopping() throws Exception
+      {
+      final CountDownLatch startedLatch = new CountDownLatch(1);
+      final CountDownLatch releaseLatch = new CountDownLatch(1);
+      final SequenceTestFixture.Run stoppedRun = fixture.start(createBlockingContainerModel(startedLatch, releaseLatch));
+      assertNotNull("Expected the run to start", stoppedRun);
+      assertTrue("Expected the run to start executing", startedLatch.await(SequenceTestFixture.RUN_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+      SequenceExecutor.getInstance().stop();
+
+      final List<String> executedExpressions = Collections.synchronizedList(new ArrayList<String>());
+      final ExpressionModel expressionModel = createExpressionModel("next", 0);
+      expressionModel.addExecutionEventListener(new RecordingExpressionListener("next", executedExpressions));
+      final ContainerModel nextContainerModel = new ContainerModel();
+      nextContainerModel.add(expressionModel);
+      final SequenceTestFixture.Run abandonedRun = fixture.start(nextContainerModel);
+      assertNotNull("Expected a run requested while stopping to be accepted", abandonedRun);
+
+      SequenceExecutor.getInstance().stop();
+      assertFalse("Expected stopping again to abandon the requested run", abandonedRun.await());
+
+      releaseLatch.countDown();
+      assertFalse("Expected the stopped run not to complete", stoppedRun.await());
+      assertTrue("Expected the abandoned run never to execute", executedExpressions.isEmpty());
+      assertEquals(SequenceExecutor.State.IDLE, SequenceExecutor.getInstance().getState());
+      }
+
+   /**
+    * Creates a {@link ContainerModel} whose first expression counts down the given <code>startedLatch</code> when it
+    * starts and then blocks, even if interrupted, until the given <code>releaseLatch</code> is released (or the run
+    * times out).  A second expression follows it, so that a run stopped while blocked doesn't complete.
+    */
+   private ContainerModel createBlockingContainerModel(final CountDownLatch startedLatch, final CountDownLatch releaseLatch) throws Exception
+      {
+      final ExpressionModel expressionModel = createExpressionModel("blocking", 0);
+      expressionModel.addExecutionEventListener(
+            new ExpressionModel.ExecutionEventListener()
+            {
+            public void handleExecutionStart()
+               {
+               startedLatch.countDown();
+               final long deadline = System.currentTimeMillis() + SequenceTestFixture.RUN_TIMEOUT_IN_MILLIS;
+               boolean wasInterrupted = false;
+               while (releaseLatch.getCount() > 0 && System.currentTimeMillis() < deadline)
+                  {
+                  try
+                     {
+                     releaseLatch.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                     }
+                  catch (InterruptedException ignored)
+                     {
+                     wasInterrupted = true;
+                     }
+                  }
+               if (wasInterrupted)
+                  {
+                  Thread.currentThread().interrupt();
+                  }
+               }
+
+            public void handleElapsedTimeInMillis(final int millis)
+               {
+               }
+
+            public void handleExecutionEnd()
+               {
+               }
+            });
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.add(expressionModel);
+      containerModel.add(createExpressionModel("after-blocking", 0));
+      return containerModel;
+      }
+
+   private ExpressionModel createExpressionModel(final String name, final int delayInMillis) throws Exception
+      {
+      return new ExpressionModel(fixture.getDevice(), fixture.writeExpression(name, 100), null, false, delayInMillis);
+      }
+
+   private static long getExecutionCount(final String expressionName)
+      {
+      final LatencyHistogram histogram = ExecutionTracer.getInstance().getHistogramsByName(ExecutionTracer.Metric.OVERRUN).get(expressionName);
+      return (histogram == null) ? 0 : histogram.getCount();
+      }
+
+   private static final class RecordingExpressionListener implements ExpressionModel.ExecutionEventListener
+      {
+      private final String name;
+      private final List<String> executedExpressions;
+
+      private RecordingExpressionListener(final String name, final List<String> executedExpressions)
+         {
+         this.name = name;
+         this.executedExpressions = executedExpressions;
+         }
+
+      public void handleExecutionStart()
+         {
+         executedExpressions.add(name);
+         }
+
+      public void handleElapsedTimeInMillis(final int millis)
+         {
+         }
+
+      public void handleExecutionEnd()
+         {
+         }
+      }
+   }
@@ -0,0 +1,298 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import edu.cmu.ri.createlab.terk.expression.ExpressionOperationExecutor;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.xml.XmlDevice;
+import edu.cmu.ri.createlab.terk.xml.XmlOperation;
+import edu.cmu.ri.createlab.terk.xml.XmlParameter;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * <code>ExpressionExecutorTest</code> tests the {@link ExpressionExecutor} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class ExpressionExecutorTest extends TestCase
+   {
+   private static final long TIMEOUT_IN_MILLIS = 5000;
+   private static final String SLOW_SERVICE_TYPE_ID = "::Test::SlowService";
+   private static final String FAST_SERVICE_TYPE_ID = "::Test::FastService";
+
+   public ExpressionExecutorTest(final String test)
+      {
+      super(test);
+      }
+
+   public void testSlowServiceDoesNotDelayOtherServices() throws Exception
+      {
+      final RecordingService slowService = new RecordingService(SLOW_SERVICE_TYPE_ID, 1);
+      final RecordingService fastService = new RecordingService(FAST_SERVICE_TYPE_ID, 0);
+      final ServiceManager serviceManager = new TestServiceManager(slowService, fastService);
+
+      try
+         {
+         // an expression with both services, followed by one with only the fast service
+         final Set<XmlService> services = new HashSet<XmlService>();
+         services.add(createService(SLOW_SERVICE_TYPE_ID, 1));
+         services.add(createService(FAST_SERVICE_TYPE_ID, 2));
+         ExpressionExecutor.getInstance().executeAsynchronously(CompiledExpression.compile(serviceManager, XmlExpression.create(services)));
+         ExpressionExecutor.getInstance().executeAsynchronously(CompiledExpression.compile(serviceManager, XmlExpression.create(createService(FAST_SERVICE_TYPE_ID, 3))));
+
+         assertTrue("Expected the fast service's operations to execute while the slow service is blocked", fastService.awaitValues(2));
+         assertEquals("Expected the fast service's operations to execute in order", createList(2, 3), fastService.getValues());
+         assertTrue("Expected the slow service to still be blocked", slowService.getValues().isEmpty());
+         }
+      finally
+         {
+         slowService.release();
+         }
+
+      assertTrue("Expected the slow service's operation to execute once released", slowService.awaitValues(1));
+      assertEquals(createList(1), slowService.getValues());
+      }
+
+   public void testOperationsForAServiceExecuteInOrder() throws Exception
+      {
+      final RecordingService service = new RecordingService(FAST_SERVICE_TYPE_ID, 0);
+      final ServiceManager serviceManager = new TestServiceManager(service);
+
+      final int numBatches = 50;
+      for (int i = 0; i < numBatches; i++)
+         {
+         executeAsynchronously(serviceManager, FAST_SERVICE_TYPE_ID, i);
+         }
+
+      // batches may be dropped if the service falls behind, but the ones which execute must do so in order
+      assertTrue("Expected the last operation to execute", service.awaitValue(numBatches - 1));
+      final List<Integer> values = service.getValues();
+      for (int i = 1; i < values.size(); i++)
+         {
+         assertTrue("Expected the operations to execute in the order they were submitted: " + values, values.get(i - 1) < values.get(i));
+         }
+      }
+
+   public void testPendingBatchesAreBounded() throws Exception
+      {
+      final RecordingService service = new RecordingService(SLOW_SERVICE_TYPE_ID, 1);
+      final ServiceManager serviceManager = new TestServiceManager(service);
+
+      final int numBatches = ExpressionExecutor.MAX_PENDING_BATCHES_PER_SERVICE * 3;
+      final List<Integer> expectedValues = new ArrayList<Integer>();
+      try
+         {
+         executeAsynchronously(serviceManager, SLOW_SERVICE_TYPE_ID, 0);
+         expectedValues.add(0);
+         assertTrue("Expected the first batch to start executing", service.awaitEntered(1));
+         for (int i = 1; i < numBatches; i++)
+            {
+            executeAsynchronously(serviceManager, SLOW_SERVICE_TYPE_ID, i);
+            if (i >= numBatches - ExpressionExecutor.MAX_PENDING_BATCHES_PER_SERVICE)
+               {
+               expectedValues.add(i);
+               }
+            }
+         }
+      finally
+         {
+         service.release();
+         }
+
+      assertTrue("Expected the last operation to execute", service.awaitValue(numBatches - 1));
+      assertEquals("Expected only the newest pending batches to survive", expectedValues, service.getValues());
+      }
+
+   public void testCancelPendingDropsWaitingBatches() throws Exception
+      {
+      final RecordingService service = new RecordingService(SLOW_SERVICE_TYPE_ID, 1);
+      final ServiceManager serviceManager = new TestServiceManager(service);
+
+      try
+         {
+         executeAsynchronously(serviceManager, SLOW_SERVICE_TYPE_ID, 0);
+         assertTrue("Expected the first batch to start executing", service.awaitEntered(1));
+         for (int i = 1; i <= 5; i++)
+            {
+            executeAsynchronously(serviceManager, SLOW_SERVICE_TYPE_ID, i);
+            }
+         ExpressionExecutor.getInstance().cancelPending();
+         }
+      finally
+         {
+         service.release();
+         }
+
+      // batches submitted after the cancel must still execute
+      executeAsynchronously(serviceManager, SLOW_SERVICE_TYPE_ID, 100);
+      assertTrue("Expected a batch submitted after the cancel to execute", service.awaitValue(100));
+      assertEquals("Expected the waiting batches to be dropped", createList(0, 100), service.getValues());
+      }
+
+   private static void executeAsynchronously(final ServiceManager serviceManager, final String typeId, final int value)
+      {
+      ExpressionExecutor.getInstance().executeAsynchronously(CompiledExpression.compile(serviceManager, XmlExpression.create(createService(typeId, value))));
+      }
+
+   private static XmlService createService(final String typeId, final int value)
+      {
+      return new XmlService(typeId, new XmlOperation("setValue", new XmlDevice(0, new XmlParameter("value", value))));
+      }
+
+   private static List<Integer> createList(final Integer... values)
+      {
+      final List<Integer> list = new ArrayList<Integer>();
+      Collections.addAll(list, values);
+      return list;
+      }
+
+   /** A service which records the values it's given, optionally blocking until it's released. */
+   private static final class RecordingService implements Service, ExpressionOperationExecutor<Object>
+      {
+      private final String typeId;
+      private final CountDownLatch releaseLatch;
+      private final AtomicInteger enteredCount = new AtomicInteger(0);
+      private final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+
+      private RecordingService(final String typeId, final int releaseCount)
+         {
+         this.typeId = typeId;
+         this.releaseLatch = new CountDownLatch(releaseCount);
+         }
+
+      public Object executeExpressionOperation(final XmlOperation operation)
+         {
+         enteredCount.incrementAndGet();
+         try
+            {
+            releaseLatch.await();
+            }
+         catch (InterruptedException ignored)
+            {
+            Thread.currentThread().interrupt();
+            }
+         for (final XmlDevice device : operation.getDevices())
+            {
+            values.add(device.getParameter("value").getValueAsInteger());
+            }
+         return null;
+         }
+
+      private void release()
+         {
+         releaseLatch.countDown();
+         }
+
+      private boolean awaitValues(final int count) throws InterruptedException
+         {
+         final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+         while (values.size() < count && System.currentTimeMillis() < deadline)
+            {
+            Thread.sleep(10);
+            }
+         return values.size() >= count;
+         }
+
+      private boolean awaitValue(final int value) throws InterruptedException
+         {
+         final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+         while (!values.contains(value) && System.currentTimeMillis() < deadline)
+            {
+            Thread.sleep(10);
+            }
+         return values.contains(value);
+         }
+
+      private boolean awaitEntered(final int count) throws InterruptedException
+         {
+         final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+         while (enteredCount.get() < count && System.currentTimeMillis() < deadline)
+            {
+            Thread.sleep(10);
+            }
+         return enteredCount.get() >= count;
+         }
+
+      private List<Integer> getValues()
+         {
+         synchronized (values)
+            {
+            return new ArrayList<Integer>(values);
+            }
+         }
+
+      public String getTypeId()
+         {
+         return typeId;
+         }
+
+      public String getProperty(final String key)
+         {
+         return null;
+         }
+
+      public Integer getPropertyAsInteger(final String key)
+         {
+         return null;
+         }
+
+      public Map<String, String> getProperties()
+         {
+         return Collections.emptyMap();
+         }
+
+      public Set<String> getPropertyKeys()
+         {
+         return Collections.emptySet();
+         }
+
+      public void setProperty(final String key, final String value)
+         {
+         }
+
+      public void setProperty(final String key, final int value)
+         {
+         }
+      }
+
+   private static final class TestServiceManager implements ServiceManager
+      {
+      private final Map<String, Service> services = new HashMap<String, Service>();
+
+      private TestServiceManager(final Service... services)
+         {
+         for (final Service service : services)
+            {
+            this.services.put(service.getTypeId(), service);
+            }
+         }
+
+      public boolean isServiceSupported(final String typeId)
+         {
+         return services.containsKey(typeId);
+         }
+
+      public Service getServiceByTypeId(final String typeId)
+         {
+         return services.get(typeId);
+         }
+
+      public Set<String> getTypeIdsOfSupportedServices()
+         {
+         return Collections.unmodifiableSet(services.keySet());
+         }
+      }
+   }
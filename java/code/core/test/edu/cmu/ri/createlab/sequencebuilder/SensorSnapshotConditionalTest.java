@@ -0,0 +1,189 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
+import edu.cmu.ri.createlab.visualprogrammer.Sensor;
+import edu.cmu.ri.createlab.visualprogrammer.VisualProgrammerConstants;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.Waveform;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>SensorSnapshotConditionalTest</code> tests that conditionals answer from the {@link SensorSamplingBus}'s
+ * snapshot while it's fresh enough, read the device once it's stale, and only keep their sensor sampled while they
+ * execute.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SensorSnapshotConditionalTest extends TestCase
+   {
+   private static final int LOW_VALUE = 0;
+   private static final int HIGH_VALUE = 255;
+   private static final int LONG_PERIOD_IN_MILLIS = 60000;
+   private static final int SHORT_STALENESS_IN_MILLIS = 20;
+
+   private SequenceTestFixture fixture;
+   private SensorSamplingBus.Subscription subscription;
+   private final AtomicInteger sensorValue = new AtomicInteger(LOW_VALUE);
+   private final AtomicInteger branchSubscriptionCount = new AtomicInteger(-1);
+   private final AtomicInteger endSubscriptionCount = new AtomicInteger(-1);
+
+   public SensorSnapshotConditionalTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      fixture = new SequenceTestFixture();
+      fixture.getDevice().setSensorWaveform(AnalogInputsService.TYPE_ID,
+                                            0,
+                                            new Waveform()
+                                            {
+                                            public double getValue(final double elapsedSeconds)
+                                               {
+                                               return sensorValue.get();
+                                               }
+                                            });
+      }
+
+   protected void tearDown() throws Exception
+      {
+      if (subscription != null)
+         {
+         subscription.cancel();
+         }
+      SequenceExecutor.getInstance().setSensorSnapshotMaxStalenessInMillis(VisualProgrammerConstants.Tuning.SENSOR_SNAPSHOT_MAX_STALENESS_IN_MILLIS);
+      fixture.tearDown();
+      }
+
+   public void testConditionalUsesFreshSnapshotAndReadsDeviceOnceStale() throws Exception
+      {
+      final Sensor sensor = findAnalogInputSensor();
+      final Service service = fixture.getDevice().getServiceManager().getServiceByTypeId(AnalogInputsService.TYPE_ID);
+
+      // take a snapshot of the low value, which then won't be refreshed for a long time
+      final CountDownLatch sampleLatch = new CountDownLatch(1);
+      subscription = SensorSamplingBus.getInstance().subscribe(
+            service,
+            LONG_PERIOD_IN_MILLIS,
+            new SensorSamplingBus.SampleListener()
+            {
+            public void handleSample(@NotNull final Service sampledService, @NotNull final SensorSamplingBus.SensorSample sample)
+               {
+               sampleLatch.countDown();
+               }
+            });
+      assertTrue("Expected the bus to take a snapshot", sampleLatch.await(SequenceTestFixture.RUN_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+      sensorValue.set(HIGH_VALUE);
+
+      // while the snapshot is fresh enough, the conditional should see the old value without reading the device
+      SequenceExecutor.getInstance().setSensorSnapshotMaxStalenessInMillis(LONG_PERIOD_IN_MILLIS);
+      final long roundTripCount = fixture.getDevice().getLink().getRoundTripCount();
+      assertEquals("Expected the conditional to use the snapshot",
+                   sensor.convertRawValueToPercentage(LOW_VALUE),
+                   runConditional(sensor));
+      assertEquals("Expected the conditional not to read the device", roundTripCount, fixture.getDevice().getLink().getRoundTripCount());
+
+      // once the snapshot is stale, the conditional should get the current value from the device
+      SequenceExecutor.getInstance().setSensorSnapshotMaxStalenessInMillis(SHORT_STALENESS_IN_MILLIS);
+      Thread.sleep(SHORT_STALENESS_IN_MILLIS * 5);
+      assertEquals("Expected the conditional to read the device",
+                   sensor.convertRawValueToPercentage(HIGH_VALUE),
+                   runConditional(sensor));
+      assertTrue("Expected the device to be read", fixture.getDevice().getLink().getRoundTripCount() > roundTripCount);
+      }
+
+   public void testSensorIsSampledOnlyWhileConditionalExecutes() throws Exception
+      {
+      final Sensor sensor = findAnalogInputSensor();
+      final Service service = fixture.getDevice().getServiceManager().getServiceByTypeId(AnalogInputsService.TYPE_ID);
+
+      SequenceExecutor.getInstance().setSensorSnapshotMaxStalenessInMillis(LONG_PERIOD_IN_MILLIS);
+      assertEquals(0, SensorSamplingBus.getInstance().getSubscriptionCount(service));
+      runConditional(sensor);
+      assertEquals("Expected the sensor to be sampled while the conditional executes", 1, branchSubscriptionCount.get());
+      assertEquals("Expected sampling to stop when the conditional ends", 0, endSubscriptionCount.get());
+      assertEquals(0, SensorSamplingBus.getInstance().getSubscriptionCount(service));
+      }
+
+   public void testSensorIsNotSampledWhenSnapshotsAreDisabled() throws Exception
+      {
+      final Sensor sensor = findAnalogInputSensor();
+
+      SequenceExecutor.getInstance().setSensorSnapshotMaxStalenessInMillis(SequenceExecutor.SENSOR_SNAPSHOTS_DISABLED);
+      runConditional(sensor);
+      assertEquals("Expected the sensor not to be sampled", 0, branchSubscriptionCount.get());
+      }
+
+   /**
+    * Runs a conditional on the given sensor, and returns the percentage it saw.  The number of subscriptions to the
+    * sensor's service when the branch is chosen and when the conditional ends are recorded too.
+    */
+   private Integer runConditional(@NotNull final Sensor sensor) throws InterruptedException
+      {
+      final LoopableConditionalModel conditionalModel = new LoopableConditionalModel(fixture.getDevice(),
+                                                                                     null,
+                                                                                     false,
+                                                                                     new LoopableConditionalModel.SelectedSensor(sensor, 0, 50),
+                                                                                     false,
+                                                                                     false,
+                                                                                     new ContainerModel(),
+                                                                                     new ContainerModel());
+      final Service service = fixture.getDevice().getServiceManager().getServiceByTypeId(sensor.getServiceTypeId());
+      final AtomicInteger percentage = new AtomicInteger(-1);
+      conditionalModel.addExecutionEventListener(
+            new LoopableConditionalModel.ExecutionEventListener()
+            {
+            public void handleExecutionStart()
+               {
+               }
+
+            public void handleExecutionEnd()
+               {
+               endSubscriptionCount.set(SensorSamplingBus.getInstance().getSubscriptionCount(service));
+               }
+
+            public void handleIfBranchHighlight(@NotNull final Sensor sensor, @NotNull final Integer valuePercentage)
+               {
+               percentage.set(valuePercentage);
+               branchSubscriptionCount.set(SensorSamplingBus.getInstance().getSubscriptionCount(service));
+               }
+
+            public void handleElseBranchHighlight(@NotNull final Sensor sensor, @NotNull final Integer valuePercentage)
+               {
+               percentage.set(valuePercentage);
+               branchSubscriptionCount.set(SensorSamplingBus.getInstance().getSubscriptionCount(service));
+               }
+
+            public void handleResetBranchHightlight()
+               {
+               }
+            });
+      final ContainerModel containerModel = new ContainerModel();
+      containerModel.add(conditionalModel);
+
+      assertTrue("Expected the run to complete", fixture.run(containerModel));
+      return percentage.get();
+      }
+
+   @NotNull
+   private Sensor findAnalogInputSensor()
+      {
+      for (final Sensor sensor : fixture.getDevice().getSensors())
+         {
+         if (AnalogInputsService.TYPE_ID.equals(sensor.getServiceTypeId()))
+            {
+            return sensor;
+            }
+         }
+      throw new IllegalStateException("The simulated device has no analog input sensors");
+      }
+   }
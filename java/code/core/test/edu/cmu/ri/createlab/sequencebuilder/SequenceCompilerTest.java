@@ -0,0 +1,114 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * <code>SequenceCompilerTest</code> tests the shape of the {@link ExecutionPlan}s produced by the
+ * {@link SequenceCompiler}.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SequenceCompilerTest extends TestCase
+   {
+   private SequenceTestFixture fixture;
+
+   public SequenceCompilerTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      fixture = new SequenceTestFixture();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      fixture.tearDown();
+      }
+
+   public void testEmptySequence()
+      {
+      final ExecutionPlan plan = SequenceCompiler.compile(Collections.<ProgramElementModel>emptyList());
+      assertTrue("Expected an empty sequence to compile to an empty plan", plan.isEmpty());
+      }
+
+   public void testStraightLineSequence() throws Exception
+      {
+      final ContainerModel containerModel = new ContainerModel();
+      for (int i = 0; i < 3; i++)
+         {
+         containerModel.add(createExpressionModel("expression" + i));
+         }
+
+      final ExecutionPlan plan = SequenceCompiler.compile(containerModel.getAsList());
+      assertEquals("Expected one instruction per expression", 3, plan.size());
+      }
+
+   public void testCounterLoops() throws Exception
+      {
+      final ContainerModel innerLoopBody = new ContainerModel();
+      innerLoopBody.add(createExpressionModel("inner"));
+      final CounterLoopModel innerLoop = new CounterLoopModel(fixture.getDevice(), null, false, 3, innerLoopBody);
+
+      final ContainerModel outerLoopBody = new ContainerModel();
+      outerLoopBody.add(createExpressionModel("outer"));
+      outerLoopBody.add(innerLoop);
+      final CounterLoopModel outerLoop = new CounterLoopModel(fixture.getDevice(), null, false, 2, outerLoopBody);
+
+      // each loop compiles to begin, test, body, next and end instructions
+      assertEquals("Unexpected size for a single loop", 5, SequenceCompiler.compile(Collections.<ProgramElementModel>singletonList(innerLoop)).size());
+      assertEquals("Unexpected size for nested loops", 4 + 1 + 5, SequenceCompiler.compile(Collections.<ProgramElementModel>singletonList(outerLoop)).size());
+      }
+
+   public void testSavedSequenceIsCompiledLazily() throws Exception
+      {
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpressionModel("first"));
+      contents.add(createExpressionModel("second"));
+      final File savedSequenceFile = fixture.writeSavedSequence("saved", contents);
+
+      final SavedSequenceModel savedSequenceModel = new SavedSequenceModel(fixture.getDevice(), savedSequenceFile);
+      final ExecutionPlan plan = SequenceCompiler.compile(Collections.<ProgramElementModel>singletonList(savedSequenceModel));
+      assertEquals("Expected a saved sequence to compile to a single instruction", 1, plan.size());
+      assertEquals("Expected the saved sequence not to be loaded until it's reached", 0, CompiledSavedSequenceCache.getInstance().getSize());
+
+      final ExecutionPlan contentsPlan = SequenceCompiler.compileSavedSequenceContents(fixture.getDevice(), savedSequenceFile, new HashSet<File>());
+      assertNotNull("Expected the saved sequence's contents to compile", contentsPlan);
+      assertEquals("Expected one instruction per expression in the saved sequence", 2, contentsPlan.size());
+      }
+
+   public void testSavedSequenceWhichIncludesItself() throws Exception
+      {
+      final File savedSequenceFile = fixture.getSavedSequenceFile("recursive");
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpressionModel("expression"));
+      contents.add(new SavedSequenceModel(fixture.getDevice(), savedSequenceFile));
+      fixture.writeSavedSequence("recursive", contents);
+
+      final ExecutionPlan contentsPlan = SequenceCompiler.compileSavedSequenceContents(fixture.getDevice(), savedSequenceFile, Collections.singleton(savedSequenceFile));
+      assertNotNull("Expected the saved sequence's contents to compile", contentsPlan);
+      assertEquals("Expected the saved sequence's reference to itself to be skipped", 1, contentsPlan.size());
+      }
+
+   public void testMissingSavedSequence()
+      {
+      final File missingFile = new File("does-not-exist.xml");
+      assertNull("Expected a missing saved sequence not to compile",
+                 SequenceCompiler.compileSavedSequenceContents(fixture.getDevice(), missingFile, new HashSet<File>()));
+      }
+
+   private ExpressionModel createExpressionModel(final String name) throws Exception
+      {
+      return new ExpressionModel(fixture.getDevice(), fixture.writeExpression(name, 100), null, false, 0);
+      }
+   }
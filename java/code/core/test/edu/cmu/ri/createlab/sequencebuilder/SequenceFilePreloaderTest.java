@@ -0,0 +1,157 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.terk.expression.manager.XmlExpressionCache;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import junit.framework.TestCase;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>SequenceFilePreloaderTest</code> tests the {@link SequenceFilePreloader} class, and that a
+ * {@link ContainerModel} loaded with its help is still assembled in document order.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SequenceFilePreloaderTest extends TestCase
+   {
+   private final XmlExpressionCache expressionCache = XmlExpressionCache.getInstance();
+   private SequenceTestFixture fixture;
+
+   public SequenceFilePreloaderTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      fixture = new SequenceTestFixture();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      expressionCache.clear();
+      fixture.tearDown();
+      }
+
+   public void testEachReferencedExpressionIsReadOnce() throws Exception
+      {
+      final File a = fixture.writeExpression("a", 10);
+      final File b = fixture.writeExpression("b", 20);
+      final File c = fixture.writeExpression("c", 30);
+
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpression(a));
+      contents.add(createExpression(a));
+      contents.add(createLoop(createExpression(b), createExpression(a)));
+      contents.add(createConditional(createContainer(createExpression(c)), createContainer(createExpression(b), createExpression(c))));
+      final Element containerElement = contents.toElement();
+
+      expressionCache.clear();
+      final long missCount = expressionCache.getMissCount();
+      SequenceFilePreloader.getInstance().preload(containerElement);
+      assertEquals("Expected each distinct expression to be read once", missCount + 3, expressionCache.getMissCount());
+      assertTrue(expressionCache.isCached(a));
+      assertTrue(expressionCache.isCached(b));
+      assertTrue(expressionCache.isCached(c));
+      }
+
+   public void testSavedSequencesAreScannedInTheBackground() throws Exception
+      {
+      final File a = fixture.writeExpression("a", 10);
+      final File b = fixture.writeExpression("b", 20);
+      final File d = fixture.writeExpression("d", 40);
+
+      final ContainerModel nestedContents = new ContainerModel();
+      nestedContents.add(createExpression(d));
+      nestedContents.add(createExpression(a));
+      final File nestedFile = fixture.writeSavedSequence("nested", nestedContents);
+
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpression(a));
+      contents.add(createExpression(b));
+      contents.add(new SavedSequenceModel(fixture.getDevice(), nestedFile));
+      final Element containerElement = contents.toElement();
+
+      expressionCache.clear();
+      final long missCount = expressionCache.getMissCount();
+      SequenceFilePreloader.getInstance().preload(containerElement);
+      assertTrue(expressionCache.isCached(a));
+      assertTrue(expressionCache.isCached(b));
+
+      final long deadline = System.currentTimeMillis() + SequenceTestFixture.RUN_TIMEOUT_IN_MILLIS;
+      while (!expressionCache.isCached(d) && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      assertTrue("Expected the saved sequence's expression to be read in the background", expressionCache.isCached(d));
+      assertEquals("Expected the expression shared with the saved sequence not to be read again", missCount + 3, expressionCache.getMissCount());
+      }
+
+   public void testModelTreeIsBuiltInDocumentOrder() throws Exception
+      {
+      final ExpressionModel[] expressions = new ExpressionModel[12];
+      for (int i = 0; i < expressions.length; i++)
+         {
+         expressions[i] = createExpression(fixture.writeExpression("expression" + i, i * 10));
+         }
+      final ContainerModel nestedContents = new ContainerModel();
+      nestedContents.add(createExpression(fixture.writeExpression("nested", 0)));
+
+      final ContainerModel contents = new ContainerModel();
+      contents.add(expressions[0]);
+      contents.add(expressions[1]);
+      contents.add(createLoop(expressions[2],
+                              createConditional(createContainer(expressions[3], expressions[4]),
+                                                createContainer(expressions[5])),
+                              expressions[6]));
+      contents.add(new SavedSequenceModel(fixture.getDevice(), fixture.writeSavedSequence("nested", nestedContents)));
+      contents.add(expressions[7]);
+      contents.add(createLoop(expressions[8], expressions[9], expressions[10]));
+      contents.add(expressions[11]);
+      final File file = fixture.writeSavedSequence("sequence", contents);
+
+      expressionCache.clear();
+      final ContainerModel loadedContents = new ContainerModel();
+      loadedContents.load(fixture.getDevice(), XmlHelper.createDocument(file));
+      assertEquals("Expected the loaded models to be in the same order, and nested the same way, as in the file",
+                   XmlHelper.writeElementToStringFormatted(contents.toElement()),
+                   XmlHelper.writeElementToStringFormatted(loadedContents.toElement()));
+      }
+
+   @NotNull
+   private ExpressionModel createExpression(@NotNull final File file)
+      {
+      return new ExpressionModel(fixture.getDevice(), file, null, false, 0);
+      }
+
+   @NotNull
+   private static ContainerModel createContainer(@NotNull final ProgramElementModel... elements)
+      {
+      final ContainerModel containerModel = new ContainerModel();
+      for (final ProgramElementModel element : elements)
+         {
+         containerModel.add(element);
+         }
+      return containerModel;
+      }
+
+   @NotNull
+   private CounterLoopModel createLoop(@NotNull final ProgramElementModel... elements)
+      {
+      return new CounterLoopModel(fixture.getDevice(), null, false, 2, createContainer(elements));
+      }
+
+   @NotNull
+   private LoopableConditionalModel createConditional(@NotNull final ContainerModel ifBranch, @NotNull final ContainerModel elseBranch)
+      {
+      return new LoopableConditionalModel(fixture.getDevice(), null, false, null, false, false, ifBranch, elseBranch);
+      }
+   }
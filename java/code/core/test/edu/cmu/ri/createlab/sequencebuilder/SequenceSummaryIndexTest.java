@@ -0,0 +1,217 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.CounterLoopModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ExpressionModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.LoopableConditionalModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.ProgramElementModel;
+import edu.cmu.ri.createlab.sequencebuilder.programelement.model.SavedSequenceModel;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>SequenceSummaryIndexTest</code> tests the {@link SequenceSummaryIndex} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SequenceSummaryIndexTest extends TestCase
+   {
+   /** The index is written a couple of seconds after a summary changes. */
+   private static final long SAVE_TIMEOUT_IN_MILLIS = 10000;
+
+   private final SequenceSummaryIndex index = SequenceSummaryIndex.getInstance();
+   private SequenceTestFixture fixture;
+   private File expressionFile;
+
+   public SequenceSummaryIndexTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      fixture = new SequenceTestFixture();
+      expressionFile = fixture.writeExpression("expression", 100);
+      index.clear();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      index.clear();
+      fixture.tearDown();
+      }
+
+   public void testTopLevelCounts() throws Exception
+      {
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpression(100));
+      contents.add(createExpression(100));
+      contents.add(createSavedSequence("first"));
+      contents.add(createLoop(2, createExpression(100), createSavedSequence("second")));
+      contents.add(createConditional(new ContainerModel(), new ContainerModel()));
+
+      final SequenceSummaryIndex.Summary summary = index.getSummary(fixture.writeSavedSequence("sequence", contents));
+      assertNotNull(summary);
+      assertEquals(1, summary.getTopLevelCounterLoopCount());
+      assertEquals(1, summary.getTopLevelLoopableConditionalCount());
+      assertEquals(Collections.singletonMap(expressionFile.getName(), 2), summary.getTopLevelExpressionReferences());
+      assertEquals("Expected only the top level saved sequence to be a top level reference",
+                   Collections.singletonMap("first.xml", 1),
+                   summary.getTopLevelSavedSequenceReferences());
+      assertEquals(Collections.singleton(expressionFile.getName()), summary.getReferencedExpressionFilenames());
+      assertEquals(new HashSet<String>(Arrays.asList("first.xml", "second.xml")), summary.getReferencedSavedSequenceFilenames());
+      assertEquals(400, summary.getOwnDurationInMillis());
+      }
+
+   public void testLoopsMultiplyDurationsAndPlayCounts() throws Exception
+      {
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createLoop(3,
+                              createExpression(100),
+                              createSavedSequence("nested"),
+                              createLoop(2, createSavedSequence("nested"), createExpression(50))));
+
+      final SequenceSummaryIndex.Summary summary = index.getSummary(fixture.writeSavedSequence("sequence", contents));
+      assertNotNull(summary);
+      assertEquals(3 * (100 + 2 * 50), summary.getOwnDurationInMillis());
+      assertEquals(Collections.singletonMap("nested.xml", 3L + 3 * 2), summary.getSavedSequencePlayCounts());
+      }
+
+   public void testOnlyTheLongerBranchIsPlayed() throws Exception
+      {
+      final ContainerModel ifBranch = new ContainerModel();
+      ifBranch.add(createExpression(100));
+      ifBranch.add(createSavedSequence("short"));
+      final ContainerModel elseBranch = new ContainerModel();
+      elseBranch.add(createExpression(300));
+      elseBranch.add(createSavedSequence("long"));
+      elseBranch.add(createSavedSequence("long"));
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createLoop(2, createConditional(ifBranch, elseBranch)));
+      final File file = fixture.writeSavedSequence("sequence", contents);
+
+      final SequenceSummaryIndex.Summary summary = index.getSummary(file);
+      assertNotNull(summary);
+      assertEquals(2 * 300, summary.getOwnDurationInMillis());
+      final Map<String, Long> expectedPlayCounts = new HashMap<String, Long>();
+      expectedPlayCounts.put("short.xml", 0L);
+      expectedPlayCounts.put("long.xml", 2L * 2);
+      assertEquals("Expected the shorter branch's saved sequence to be referred to but not played", expectedPlayCounts, summary.getSavedSequencePlayCounts());
+
+      writeSequenceOfOneExpression("short", 1000);
+      writeSequenceOfOneExpression("long", 10);
+      assertEquals(2 * 300 + 4 * 10, index.getEstimatedDurationInMillis(file));
+      }
+
+   public void testIndexIsSavedAndLoaded() throws Exception
+      {
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpression(100));
+      contents.add(createLoop(2, createSavedSequence("nested")));
+      final File file = fixture.writeSavedSequence("sequence", contents);
+      final SequenceSummaryIndex.Summary summary = index.getSummary(file);
+      assertNotNull(summary);
+
+      final File indexFile = PathManager.getInstance().getSequenceSummaryIndexFile();
+      final String indexLine = awaitIndexLine(indexFile, file.getName());
+
+      // a fresh load of the index gives back the same summary
+      index.clear();
+      final SequenceSummaryIndex.Summary loadedSummary = index.getSummary(file);
+      assertNotNull(loadedSummary);
+      assertEquals(summary.getTopLevelCounterLoopCount(), loadedSummary.getTopLevelCounterLoopCount());
+      assertEquals(summary.getTopLevelLoopableConditionalCount(), loadedSummary.getTopLevelLoopableConditionalCount());
+      assertEquals(summary.getTopLevelExpressionReferences(), loadedSummary.getTopLevelExpressionReferences());
+      assertEquals(summary.getTopLevelSavedSequenceReferences(), loadedSummary.getTopLevelSavedSequenceReferences());
+      assertEquals(summary.getReferencedExpressionFilenames(), loadedSummary.getReferencedExpressionFilenames());
+      assertEquals(summary.getSavedSequencePlayCounts(), loadedSummary.getSavedSequencePlayCounts());
+      assertEquals(summary.getOwnDurationInMillis(), loadedSummary.getOwnDurationInMillis());
+
+      // make sure that summary really came from the index, rather than from scanning the file again
+      final String indexContents = FileUtils.readFileToString(indexFile, "UTF-8");
+      final String editedLine = indexLine.substring(0, indexLine.lastIndexOf('\t') + 1) + "12345";
+      FileUtils.writeStringToFile(indexFile, indexContents.replace(indexLine, editedLine), "UTF-8");
+      index.clear();
+      assertEquals(12345, index.getSummary(file).getOwnDurationInMillis());
+      }
+
+   public void testChangedFileIsScannedAgain() throws Exception
+      {
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpression(100));
+      final File file = fixture.writeSavedSequence("sequence", contents);
+      assertEquals(100, index.getSummary(file).getOwnDurationInMillis());
+
+      contents.add(createExpression(250));
+      fixture.writeSavedSequence("sequence", contents);
+      assertEquals(350, index.getSummary(file).getOwnDurationInMillis());
+      }
+
+   /** Waits for the index to be written with a line for the given saved sequence, and returns that line. */
+   @NotNull
+   private static String awaitIndexLine(@NotNull final File indexFile, @NotNull final String filename) throws Exception
+      {
+      final long deadline = System.currentTimeMillis() + SAVE_TIMEOUT_IN_MILLIS;
+      while (System.currentTimeMillis() < deadline)
+         {
+         if (indexFile.isFile())
+            {
+            for (final String line : FileUtils.readLines(indexFile, "UTF-8"))
+               {
+               if (line.startsWith(filename + "\t"))
+                  {
+                  return line;
+                  }
+               }
+            }
+         Thread.sleep(10);
+         }
+      fail("Timed out waiting for the index to be written");
+      return null;
+      }
+
+   private void writeSequenceOfOneExpression(@NotNull final String name, final int delayInMillis) throws Exception
+      {
+      final ContainerModel contents = new ContainerModel();
+      contents.add(createExpression(delayInMillis));
+      fixture.writeSavedSequence(name, contents);
+      }
+
+   @NotNull
+   private ExpressionModel createExpression(final int delayInMillis)
+      {
+      return new ExpressionModel(fixture.getDevice(), expressionFile, null, false, delayInMillis);
+      }
+
+   @NotNull
+   private SavedSequenceModel createSavedSequence(@NotNull final String name)
+      {
+      return new SavedSequenceModel(fixture.getDevice(), fixture.getSavedSequenceFile(name));
+      }
+
+   @NotNull
+   private CounterLoopModel createLoop(final int iterations, @NotNull final ProgramElementModel... elements)
+      {
+      final ContainerModel contents = new ContainerModel();
+      for (final ProgramElementModel element : elements)
+         {
+         contents.add(element);
+         }
+      return new CounterLoopModel(fixture.getDevice(), null, false, iterations, contents);
+      }
+
+   @NotNull
+   private LoopableConditionalModel createConditional(@NotNull final ContainerModel ifBranch, @NotNull final ContainerModel elseBranch)
+      {
+      return new LoopableConditionalModel(fixture.getDevice(), null, false, null, false, false, ifBranch, elseBranch);
+      }
+   }
@@ -0,0 +1,172 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import edu.cmu.ri.createlab.terk.services.servo.SimpleServoService;
+import edu.cmu.ri.createlab.terk.xml.XmlDevice;
+import edu.cmu.ri.createlab.terk.xml.XmlOperation;
+import edu.cmu.ri.createlab.terk.xml.XmlParameter;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedLink;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedVisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.LocalEntityResolver;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import org.apache.commons.io.FileUtils;
+import org.jdom.DocType;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>SequenceTestFixture</code> sets up a connected {@link SimulatedVisualProgrammerDevice} and a temporary Visual
+ * Programmer home directory, so that tests can write expressions and saved sequences and run them with the
+ * {@link SequenceExecutor}, without a GUI or real hardware.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+final class SequenceTestFixture
+   {
+   static final long RUN_TIMEOUT_IN_MILLIS = 10000;
+
+   private static final DocType SEQUENCE_DOC_TYPE = new DocType("sequence",
+                                                                "-//CREATE Lab//TeRK//Sequence//EN",
+                                                                "http://www.createlab.ri.cmu.edu/dtd/terk/sequence.dtd");
+
+   private final File homeDirectory;
+   private final SimulatedVisualProgrammerDevice device;
+
+   SequenceTestFixture() throws IOException
+      {
+      XmlHelper.setLocalEntityResolver(LocalEntityResolver.getInstance());
+
+      homeDirectory = File.createTempFile("SequenceTestFixture", "");
+      if (!homeDirectory.delete() || !homeDirectory.mkdirs())
+         {
+         throw new IOException("Failed to create the temporary home directory [" + homeDirectory + "]");
+         }
+
+      device = new SimulatedVisualProgrammerDevice(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD, new SimulatedLink(0));
+      device.connect();
+      PathManager.getInstance().initialize(homeDirectory, device);
+      }
+
+   @NotNull
+   SimulatedVisualProgrammerDevice getDevice()
+      {
+      return device;
+      }
+
+   /** Writes an expression with the given name which sets servo 0 to the given position, and returns its file. */
+   @NotNull
+   File writeExpression(@NotNull final String name, final int position) throws IOException
+      {
+      final XmlOperation operation = new XmlOperation(SimpleServoService.OPERATION_NAME_SET_POSITION,
+                                                      new XmlDevice(0, new XmlParameter(SimpleServoService.PARAMETER_NAME_POSITION, position)));
+      final XmlExpression expression = XmlExpression.create(new XmlService(SimpleServoService.TYPE_ID, operation));
+      final File file = new File(PathManager.getInstance().getExpressionsDirectory(), name + ".xml");
+      writeFile(file, expression.toXmlDocumentStringFormatted());
+      return file;
+      }
+
+   /** Writes the contents of the given {@link ContainerModel} as a saved sequence with the given name, and returns its file. */
+   @NotNull
+   File writeSavedSequence(@NotNull final String name, @NotNull final ContainerModel containerModel) throws IOException
+      {
+      final Element sequenceElement = new Element("sequence");
+      sequenceElement.setAttribute("version", "1.0");
+      sequenceElement.addContent(containerModel.toElement());
+      final Document document = new Document(sequenceElement, (DocType)SEQUENCE_DOC_TYPE.clone());
+
+      final File file = getSavedSequenceFile(name);
+      writeFile(file, XmlHelper.writeDocumentToStringFormatted(document));
+      return file;
+      }
+
+   /**
+    * Writes the given file by renaming a fully written temporary file into place, so that the directory pollers never
+    * see it half written, which they'd report as a modification (and which would then drop compiled plans).
+    */
+   private void writeFile(@NotNull final File file, @NotNull final String contents) throws IOException
+      {
+      final File temporaryFile = File.createTempFile(file.getName(), ".tmp", homeDirectory);
+      FileUtils.writeStringToFile(temporaryFile, contents, "UTF-8");
+      if (!temporaryFile.renameTo(file))
+         {
+         // renameTo() won't replace an existing file on some platforms
+         FileUtils.deleteQuietly(file);
+         if (!temporaryFile.renameTo(file))
+            {
+            FileUtils.deleteQuietly(temporaryFile);
+            throw new IOException("Failed to move [" + temporaryFile + "] to [" + file + "]");
+            }
+         }
+      }
+
+   /** Returns the file in which the saved sequence with the given name is (or would be) written. */
+   @NotNull
+   File getSavedSequenceFile(@NotNull final String name)
+      {
+      return new File(PathManager.getInstance().getSequencesDirectory(), name + ".xml");
+      }
+
+   /**
+    * Runs the given {@link ContainerModel} with the {@link SequenceExecutor}, blocking until it finishes.  Returns
+    * <code>true</code> if the run completed, <code>false</code> if it was stopped or failed.
+    */
+   boolean run(@NotNull final ContainerModel containerModel) throws InterruptedException
+      {
+      final Run run = start(containerModel);
+      if (run == null)
+         {
+         throw new IllegalStateException("The SequenceExecutor did not start the sequence");
+         }
+      return run.await();
+      }
+
+   /** Starts running the given {@link ContainerModel}, returning <code>null</code> if the run couldn't be started. */
+   Run start(@NotNull final ContainerModel containerModel)
+      {
+      final Run run = new Run();
+      return SequenceExecutor.getInstance().start(containerModel, run) ? run : null;
+      }
+
+   void tearDown()
+      {
+      SequenceExecutor.getInstance().stop();
+      CompiledSavedSequenceCache.getInstance().clear();
+      PathManager.getInstance().deinitialize();
+      device.disconnect();
+      FileUtils.deleteQuietly(homeDirectory);
+      }
+
+   /** A run started by {@link #start(ContainerModel)}. */
+   static final class Run implements SequenceExecutor.CompletionListener
+      {
+      private final CountDownLatch latch = new CountDownLatch(1);
+      private final AtomicBoolean didComplete = new AtomicBoolean(false);
+
+      @Override
+      public void handleExecutionComplete(final boolean didComplete)
+         {
+         this.didComplete.set(didComplete);
+         latch.countDown();
+         }
+
+      /** Waits for the run to finish, and returns whether it completed. */
+      boolean await() throws InterruptedException
+         {
+         if (!latch.await(RUN_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS))
+            {
+            throw new IllegalStateException("The run did not finish within " + RUN_TIMEOUT_IN_MILLIS + " ms");
+            }
+         return didComplete.get();
+         }
+      }
+   }
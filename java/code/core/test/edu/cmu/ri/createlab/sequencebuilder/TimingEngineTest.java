@@ -0,0 +1,212 @@
+package edu.cmu.ri.createlab.sequencebuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>TimingEngineTest</code> tests the {@link TimingEngine} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class TimingEngineTest extends TestCase
+   {
+   /** How late a deadline may be met, generous enough for a loaded build machine. */
+   private static final long TOLERANCE_IN_MILLIS = 75;
+
+   private final TimingEngine timingEngine = TimingEngine.getInstance();
+   private int originalProgressIntervalInMillis;
+
+   public TimingEngineTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      originalProgressIntervalInMillis = timingEngine.getProgressIntervalInMillis();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      timingEngine.setProgressIntervalInMillis(originalProgressIntervalInMillis);
+      }
+
+   public void testDeadlineAccuracy() throws Exception
+      {
+      for (final int durationInMillis : new int[]{0, 50, 200})
+         {
+         final long startTime = System.nanoTime();
+         assertTrue("Expected the full duration to elapse", timingEngine.await(durationInMillis, null));
+         final long elapsedMillis = getMillisSince(startTime);
+         assertTrue("Expected a " + durationInMillis + " ms step not to end early, but it took [" + elapsedMillis + "] ms", elapsedMillis >= durationInMillis);
+         assertTrue("Expected a " + durationInMillis + " ms step to end on time, but it took [" + elapsedMillis + "] ms", elapsedMillis < durationInMillis + TOLERANCE_IN_MILLIS);
+         }
+      }
+
+   public void testTimelineAbsorbsTimeBetweenSteps() throws Exception
+      {
+      final TimingEngine.Timeline timeline = new TimingEngine.Timeline();
+      final long startTime = System.nanoTime();
+      Thread.sleep(20);
+      for (int i = 0; i < 5; i++)
+         {
+         assertTrue(timingEngine.await(timeline, 50, null));
+
+         // simulate the work done between steps, such as executing the next expression
+         Thread.sleep(20);
+         }
+
+      // the work after each step is absorbed by the next step, so only the work before the first and after the last counts
+      final long elapsedMillis = getMillisSince(startTime);
+      assertTrue("Expected the steps to take at least their planned time, but they took [" + elapsedMillis + "] ms", elapsedMillis >= 20 + 5 * 50 + 20);
+      assertTrue("Expected the time between steps not to accumulate, but the steps took [" + elapsedMillis + "] ms", elapsedMillis < 20 + 5 * 50 + 20 + TOLERANCE_IN_MILLIS);
+      }
+
+   public void testTimelineStartsOverAfterFallingBehind() throws Exception
+      {
+      final TimingEngine.Timeline timeline = new TimingEngine.Timeline();
+      assertTrue(timingEngine.await(timeline, 20, null));
+
+      // a stall longer than the next step means that step's deadline has already passed...
+      Thread.sleep(150);
+      final RecordingListener listener = new RecordingListener();
+      long startTime = System.nanoTime();
+      assertTrue(timingEngine.await(timeline, 50, listener));
+      assertTrue("Expected a step whose deadline has passed to end immediately", getMillisSince(startTime) < TOLERANCE_IN_MILLIS);
+      assertEquals("Expected the late step to report its full duration", Integer.valueOf(50), listener.getLastElapsedTime());
+
+      // ...but the following step gets its full duration, rather than being cut short too
+      startTime = System.nanoTime();
+      assertTrue(timingEngine.await(timeline, 50, null));
+      final long elapsedMillis = getMillisSince(startTime);
+      // the timeline starts over from the end of the late step, just before this step begins
+      assertTrue("Expected the step after a stall to get its full duration, but it took [" + elapsedMillis + "] ms", elapsedMillis >= 40);
+      }
+
+   public void testProgressTickRate() throws Exception
+      {
+      timingEngine.setProgressIntervalInMillis(20);
+      final RecordingListener listener = new RecordingListener();
+      assertTrue(timingEngine.await(200, listener));
+
+      final List<Integer> elapsedTimes = listener.getElapsedTimes();
+      assertTrue("Expected about one tick every 20 ms, but got " + elapsedTimes, elapsedTimes.size() >= 5 && elapsedTimes.size() <= 13);
+      for (int i = 1; i < elapsedTimes.size(); i++)
+         {
+         assertTrue("Expected the elapsed times never to go backwards, but got " + elapsedTimes, elapsedTimes.get(i) >= elapsedTimes.get(i - 1));
+         }
+      assertEquals("Expected the last tick to be the full duration", Integer.valueOf(200), listener.getLastElapsedTime());
+
+      // ticks stop once the step ends
+      Thread.sleep(60);
+      assertEquals("Expected no ticks after the step ended", elapsedTimes.size(), listener.getElapsedTimes().size());
+      }
+
+   public void testProgressIntervalHasMinimum() throws Exception
+      {
+      timingEngine.setProgressIntervalInMillis(1);
+      assertEquals(TimingEngine.MIN_PROGRESS_INTERVAL_IN_MILLIS, timingEngine.getProgressIntervalInMillis());
+      }
+
+   public void testCancelAll() throws Exception
+      {
+      final int numSteps = 3;
+      final CountDownLatch doneLatch = new CountDownLatch(numSteps);
+      final AtomicBoolean didAnyComplete = new AtomicBoolean(false);
+      for (int i = 0; i < numSteps; i++)
+         {
+         new Thread(
+               new Runnable()
+               {
+               public void run()
+                  {
+                  if (timingEngine.await(10000, null))
+                     {
+                     didAnyComplete.set(true);
+                     }
+                  doneLatch.countDown();
+                  }
+               }).start();
+         }
+
+      // give the steps time to begin waiting
+      Thread.sleep(100);
+      final long startTime = System.nanoTime();
+      timingEngine.cancelAll();
+      assertTrue("Expected every waiting step to be cancelled", doneLatch.await(TOLERANCE_IN_MILLIS * 10, TimeUnit.MILLISECONDS));
+      assertTrue("Expected the cancelled steps to end promptly", getMillisSince(startTime) < TOLERANCE_IN_MILLIS);
+      assertFalse("Expected a cancelled step to report that it didn't complete", didAnyComplete.get());
+
+      // cancelling only affects the steps which were waiting at the time
+      assertTrue(timingEngine.await(10, null));
+      }
+
+   public void testInterruptEndsStep() throws Exception
+      {
+      final Thread currentThread = Thread.currentThread();
+      final Thread interrupter = new Thread(
+            new Runnable()
+            {
+            public void run()
+               {
+               try
+                  {
+                  Thread.sleep(50);
+                  }
+               catch (InterruptedException ignored)
+                  {
+                  return;
+                  }
+               currentThread.interrupt();
+               }
+            });
+      interrupter.start();
+
+      final long startTime = System.nanoTime();
+      final boolean didComplete = timingEngine.await(10000, null);
+
+      // clear the interrupted flag before asserting, so that it can't leak into other tests
+      assertTrue("Expected the thread to still be interrupted", Thread.interrupted());
+      assertFalse("Expected an interrupted step to report that it didn't complete", didComplete);
+      assertTrue(getMillisSince(startTime) < 50 + TOLERANCE_IN_MILLIS);
+      interrupter.join();
+      }
+
+   private static long getMillisSince(final long startTimeInNanos)
+      {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeInNanos);
+      }
+
+   private static final class RecordingListener implements TimingEngine.ProgressListener
+      {
+      private final List<Integer> elapsedTimes = Collections.synchronizedList(new ArrayList<Integer>());
+
+      public void handleElapsedTimeInMillis(final int millis)
+         {
+         elapsedTimes.add(millis);
+         }
+
+      @NotNull
+      private List<Integer> getElapsedTimes()
+         {
+         synchronized (elapsedTimes)
+            {
+            return new ArrayList<Integer>(elapsedTimes);
+            }
+         }
+
+      private Integer getLastElapsedTime()
+         {
+         final List<Integer> copy = getElapsedTimes();
+         return copy.isEmpty() ? null : copy.get(copy.size() - 1);
+         }
+      }
+   }
@@ -0,0 +1,407 @@
+package edu.cmu.ri.createlab.sequencebuilder.export;
+
+import java.io.File;
+import java.io.IOException;
+import edu.cmu.ri.createlab.visualprogrammer.PathManager;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedLink;
+import edu.cmu.ri.createlab.visualprogrammer.simulator.SimulatedVisualProgrammerDevice;
+import edu.cmu.ri.createlab.xml.LocalEntityResolver;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>ArduinoCodeWriterTest</code> compares the sketches generated by the {@link ArduinoCodeWriter} against golden
+ * output.  The golden sketches are the output of the original, XPath-based generator for the same files, re-indented
+ * by nesting depth with one statement per line.  The only other differences are fixes to comments: the original
+ * generator dropped the comments of expressions inside counter loops, and ended the start comment of a saved sequence
+ * having no comment with a dangling ": ".
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class ArduinoCodeWriterTest extends TestCase
+   {
+   private static final String HEADER = "#include <Hummingbird.h>\n" +
+                                        "Hummingbird hummingbird; \n" +
+                                        " void setup()\n" +
+                                        "{  \n" +
+                                        "\thummingbird.init();\n " +
+                                        "}\n\n void loop(){\n";
+
+   private File homeDirectory;
+   private SimulatedVisualProgrammerDevice device;
+
+   public ArduinoCodeWriterTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      XmlHelper.setLocalEntityResolver(LocalEntityResolver.getInstance());
+      homeDirectory = File.createTempFile("ArduinoCodeWriterTest", "");
+      assertTrue(homeDirectory.delete());
+      assertTrue(homeDirectory.mkdirs());
+      device = new SimulatedVisualProgrammerDevice(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD, new SimulatedLink(0));
+      device.connect();
+      PathManager.getInstance().initialize(homeDirectory, device);
+
+      writeExpression("Wave Arm",
+                      service("::TeRK::servo::SimpleServoService",
+                              "setPosition",
+                              device(0, parameter("position", 200)) +
+                              device(1, parameter("position", 50))) +
+                      service("::TeRK::led::SimpleLEDService",
+                              "setIntensity",
+                              device(2, parameter("intensity", 255))));
+      writeExpression("lights-off",
+                      service("::TeRK::led::SimpleLEDService",
+                              "setIntensity",
+                              device(0, parameter("intensity", 0))) +
+                      service("::TeRK::led::FullColorLEDService",
+                              "setColor",
+                              device(1, parameter("red", 10) + parameter("green", 20) + parameter("blue", 30))));
+      writeExpression("buzz",
+                      service("::TeRK::motor::SpeedControllableMotorService",
+                              "setSpeed",
+                              device(0, parameter("speed", 100))) +
+                      service("::TeRK::AudioService",
+                              "playTone",
+                              device(0, parameter("frequency", 440))));
+      writeExpression("spin",
+                      service("::TeRK::motor::VelocityControllableMotorService",
+                              "setVelocity",
+                              device(0, parameter("velocity", -150)) +
+                              device(1, parameter("velocity", 75))));
+
+      writeSequence("inner",
+                    expression("spin", 100, "") +
+                    counterLoop(2, "", expression("lights-off", 50, "")));
+      }
+
+   protected void tearDown() throws Exception
+      {
+      PathManager.getInstance().deinitialize();
+      device.disconnect();
+      FileUtils.deleteQuietly(homeDirectory);
+      }
+
+   public void testCounterLoops() throws Exception
+      {
+      final File file = writeSequence("loops",
+                                      expression("Wave Arm", 500, "start") +
+                                      counterLoop(3,
+                                                  "repeat",
+                                                  expression("lights-off", 0, "") +
+                                                  expression("Wave Arm", 250, "wave") +
+                                                  savedSequence("inner", "")) +
+                                      expression("buzz", 0, ""));
+
+      assertEquals(HEADER +
+                   "\t//start\n" +
+                   "\tWaveArm();\n" +
+                   "\tdelay(500);\n" +
+                   "\t//repeat\n" +
+                   "\tfor(int counter = 0; counter <3; counter++){\n" +
+                   "\t\tlightsoff();\n" +
+                   "\t\t//wave\n" +
+                   "\t\tWaveArm();\n" +
+                   "\t\tdelay(250);\n" +
+                   "\t\t//Start Seq: inner.xml\n" +
+                   "\t\tspin();\n" +
+                   "\t\tdelay(100);\n" +
+                   "\t\tfor(int counter = 0; counter <2; counter++){\n" +
+                   "\t\t\tlightsoff();\n" +
+                   "\t\t\tdelay(50);\n" +
+                   "\t\t}\n" +
+                   "\t\t//End Seq: inner.xml\n" +
+                   "\t}\n" +
+                   "\tbuzz();\n" +
+                   "\n}\n" +
+                   "void WaveArm(){\n" +
+                   "\thummingbird.setServo(1,200);\n" +
+                   "\thummingbird.setServo(2,50);\n" +
+                   "\thummingbird.setLED(3,255);\n" +
+                   "}\n" +
+                   "void lightsoff(){\n" +
+                   "\thummingbird.setLED(1,0);\n" +
+                   "\thummingbird.setTriColorLED(2,10,20,30);\n" +
+                   "}\n" +
+                   "void spin(){\n" +
+                   "\thummingbird.setMotor(1,150);\n" +
+                   "\thummingbird.setMotor(2,-75);\n" +
+                   "}\n" +
+                   "void buzz(){\n" +
+                   "\thummingbird.setVibration(1,100);\n" +
+                   "\t//Sound is not supported\n" +
+                   "}\n",
+                   generateSequence(file));
+      }
+
+   public void testNestedSavedSequences() throws Exception
+      {
+      writeSequence("outer",
+                    expression("Wave Arm", 0, "") +
+                    savedSequence("inner", "the inner one"));
+      final File file = writeSequence("nested",
+                                      savedSequence("outer", "") +
+                                      expression("spin", 0, "") +
+                                      savedSequence("inner", ""));
+
+      assertEquals(HEADER +
+                   "\t//Start Seq: outer.xml\n" +
+                   "\tWaveArm();\n" +
+                   "\t//Start Seq: inner.xml: the inner one\n" +
+                   "\tspin();\n" +
+                   "\tdelay(100);\n" +
+                   "\tfor(int counter = 0; counter <2; counter++){\n" +
+                   "\t\tlightsoff();\n" +
+                   "\t\tdelay(50);\n" +
+                   "\t}\n" +
+                   "\t//End Seq: inner.xml\n" +
+                   "\t//End Seq: outer.xml\n" +
+                   "\tspin();\n" +
+                   "\t//Start Seq: inner.xml\n" +
+                   "\tspin();\n" +
+                   "\tdelay(100);\n" +
+                   "\tfor(int counter = 0; counter <2; counter++){\n" +
+                   "\t\tlightsoff();\n" +
+                   "\t\tdelay(50);\n" +
+                   "\t}\n" +
+                   "\t//End Seq: inner.xml\n" +
+                   "\n}\n" +
+                   "void WaveArm(){\n" +
+                   "\thummingbird.setServo(1,200);\n" +
+                   "\thummingbird.setServo(2,50);\n" +
+                   "\thummingbird.setLED(3,255);\n" +
+                   "}\n" +
+                   "void spin(){\n" +
+                   "\thummingbird.setMotor(1,150);\n" +
+                   "\thummingbird.setMotor(2,-75);\n" +
+                   "}\n" +
+                   "void lightsoff(){\n" +
+                   "\thummingbird.setLED(1,0);\n" +
+                   "\thummingbird.setTriColorLED(2,10,20,30);\n" +
+                   "}\n",
+                   generateSequence(file));
+      }
+
+   public void testConditionals() throws Exception
+      {
+      final File file = writeSequence("conditionals",
+                                      conditional("Distance Sensor", 0, 40, false, false, "if near",
+                                                  expression("Wave Arm", 100, ""),
+                                                  savedSequence("inner", "")) +
+                                      conditional("Light Sensor", 1, 75, true, false, "",
+                                                  expression("lights-off", 0, ""),
+                                                  expression("buzz", 0, "")) +
+                                      conditional("Sound Sensor Duo", 2, 30, false, true, "",
+                                                  savedSequence("inner", ""),
+                                                  expression("spin", 200, "")) +
+                                      conditional("Temperature Sensor", 3, 60, true, true, "",
+                                                  expression("Wave Arm", 0, ""),
+                                                  expression("lights-off", 0, "")));
+
+      assertEquals(HEADER +
+                   "\t//if near\n" +
+                   "\tif(hummingbird.readSensorValue(1)>410){\n" +
+                   "\t\tWaveArm();\n" +
+                   "\t\tdelay(100);\n" +
+                   "\t} else {\n" +
+                   "\t\t//Start Seq: inner.xml\n" +
+                   "\t\tspin();\n" +
+                   "\t\tdelay(100);\n" +
+                   "\t\tfor(int counter = 0; counter <2; counter++){\n" +
+                   "\t\t\tlightsoff();\n" +
+                   "\t\t\tdelay(50);\n" +
+                   "\t\t}\n" +
+                   "\t\t//End Seq: inner.xml\n" +
+                   "\t}\n" +
+                   "\twhile(hummingbird.readSensorValue(2)<767){\n" +
+                   "\t\tlightsoff();\n" +
+                   "\t}\n" +
+                   "\tbuzz();\n" +
+                   "\twhile(hummingbird.readSensorValue(3)>146){\n" +
+                   "\t\tspin();\n" +
+                   "\t\tdelay(200);\n" +
+                   "\t}\n" +
+                   "\t//Start Seq: inner.xml\n" +
+                   "\tspin();\n" +
+                   "\tdelay(100);\n" +
+                   "\tfor(int counter = 0; counter <2; counter++){\n" +
+                   "\t\tlightsoff();\n" +
+                   "\t\tdelay(50);\n" +
+                   "\t}\n" +
+                   "\t//End Seq: inner.xml\n" +
+                   "\twhile(true){\n" +
+                   "\t\tif(hummingbird.readSensorValue(4)<487){\n" +
+                   "\t\t\tWaveArm();\n" +
+                   "\t\t} else {\n" +
+                   "\t\t\tlightsoff();\n" +
+                   "\t\t}\n" +
+                   "\t}\n" +
+                   "\n}\n" +
+                   "void WaveArm(){\n" +
+                   "\thummingbird.setServo(1,200);\n" +
+                   "\thummingbird.setServo(2,50);\n" +
+                   "\thummingbird.setLED(3,255);\n" +
+                   "}\n" +
+                   "void spin(){\n" +
+                   "\thummingbird.setMotor(1,150);\n" +
+                   "\thummingbird.setMotor(2,-75);\n" +
+                   "}\n" +
+                   "void lightsoff(){\n" +
+                   "\thummingbird.setLED(1,0);\n" +
+                   "\thummingbird.setTriColorLED(2,10,20,30);\n" +
+                   "}\n" +
+                   "void buzz(){\n" +
+                   "\thummingbird.setVibration(1,100);\n" +
+                   "\t//Sound is not supported\n" +
+                   "}\n",
+                   generateSequence(file));
+      }
+
+   public void testSensorThresholds() throws Exception
+      {
+      final File file = writeSequence("sensors",
+                                      conditional("Potentiometer", 0, 0, false, false, "", "", "") +
+                                      conditional("Distance Sensor Duo", 1, 100, false, false, "", "", "") +
+                                      conditional("Sound Sensor", 2, 50, false, false, "", "", "") +
+                                      conditional("Raw Value", 3, 10, false, false, "", "", ""));
+
+      assertEquals(HEADER +
+                   "\tif(hummingbird.readSensorValue(1)>1023){\n" +
+                   "\t} else {\n" +
+                   "\t}\n" +
+                   "\tif(hummingbird.readSensorValue(2)>128){\n" +
+                   "\t} else {\n" +
+                   "\t}\n" +
+                   "\tif(hummingbird.readSensorValue(3)<300){\n" +
+                   "\t} else {\n" +
+                   "\t}\n" +
+                   "\tif(hummingbird.readSensorValue(4)<102){\n" +
+                   "\t} else {\n" +
+                   "\t}\n" +
+                   "\n}\n",
+                   generateSequence(file));
+      }
+
+   public void testExpression() throws Exception
+      {
+      assertEquals(HEADER +
+                   "\thummingbird.setLED(1,0);\n" +
+                   "\thummingbird.setTriColorLED(2,10,20,30);\n" +
+                   "}\n",
+                   generateExpression(new File(PathManager.getInstance().getExpressionsDirectory(), "lights-off.xml")));
+      }
+
+   @NotNull
+   private String generateSequence(@NotNull final File file) throws IOException
+      {
+      final ArduinoFileManager manager = new ArduinoFileManager(file, PathManager.getInstance().getArduinoDirectory());
+      final ArduinoCodeWriter writer = new ArduinoCodeWriter(manager);
+      writer.generateSequence();
+      assertFalse(writer.isCancel());
+      return FileUtils.readFileToString(new File(manager.getArduinoFile(), manager.getArduinoFileName()));
+      }
+
+   @NotNull
+   private String generateExpression(@NotNull final File file) throws IOException
+      {
+      final ArduinoFileManager manager = new ArduinoFileManager(file, PathManager.getInstance().getArduinoDirectory());
+      new ArduinoCodeWriter(manager).generateExpression();
+      return FileUtils.readFileToString(new File(manager.getArduinoFile(), manager.getArduinoFileName()));
+      }
+
+   private static void writeExpression(@NotNull final String name, @NotNull final String services) throws IOException
+      {
+      FileUtils.writeStringToFile(new File(PathManager.getInstance().getExpressionsDirectory(), name + ".xml"),
+                                  "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                                  "<expression version=\"1.0\"><services>" + services + "</services></expression>",
+                                  "UTF-8");
+      }
+
+   @NotNull
+   private static File writeSequence(@NotNull final String name, @NotNull final String programElements) throws IOException
+      {
+      final File file = new File(PathManager.getInstance().getSequencesDirectory(), name + ".xml");
+      FileUtils.writeStringToFile(file,
+                                  "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                                  "<sequence version=\"1.0\">" + container(programElements) + "</sequence>",
+                                  "UTF-8");
+      return file;
+      }
+
+   @NotNull
+   private static String service(@NotNull final String typeId, @NotNull final String operationName, @NotNull final String devices)
+      {
+      return "<service type-id=\"" + typeId + "\"><operation name=\"" + operationName + "\">" + devices + "</operation></service>";
+      }
+
+   @NotNull
+   private static String device(final int id, @NotNull final String parameters)
+      {
+      return "<device id=\"" + id + "\">" + parameters + "</device>";
+      }
+
+   @NotNull
+   private static String parameter(@NotNull final String name, final int value)
+      {
+      return "<parameter name=\"" + name + "\">" + value + "</parameter>";
+      }
+
+   @NotNull
+   private static String container(@NotNull final String programElements)
+      {
+      return "<program-element-container>" + programElements + "</program-element-container>";
+      }
+
+   @NotNull
+   private static String comment(@NotNull final String comment)
+      {
+      return "<comment is-visible=\"" + (comment.length() > 0) + "\"><![CDATA[" + comment + "]]></comment>";
+      }
+
+   @NotNull
+   private static String expression(@NotNull final String name, final int delayInMillis, @NotNull final String comment)
+      {
+      return "<expression file=\"" + name + ".xml\" delay-in-millis=\"" + delayInMillis + "\">" + comment(comment) + "</expression>";
+      }
+
+   @NotNull
+   private static String savedSequence(@NotNull final String name, @NotNull final String comment)
+      {
+      return "<saved-sequence file=\"" + name + ".xml\">" + comment(comment) + "</saved-sequence>";
+      }
+
+   @NotNull
+   private static String counterLoop(final int iterations, @NotNull final String comment, @NotNull final String programElements)
+      {
+      return "<counter-loop iterations=\"" + iterations + "\">" + comment(comment) + container(programElements) + "</counter-loop>";
+      }
+
+   @NotNull
+   private static String conditional(@NotNull final String sensorName,
+                                     final int deviceId,
+                                     final int thresholdPercentage,
+                                     final boolean willReevaluateAfterIfBranch,
+                                     final boolean willReevaluateAfterElseBranch,
+                                     @NotNull final String comment,
+                                     @NotNull final String ifBranch,
+                                     @NotNull final String elseBranch)
+      {
+      return "<loopable-conditional" +
+             " will-reevaluate-conditional-after-if-branch-completes=\"" + willReevaluateAfterIfBranch + "\"" +
+             " will-reevaluate-conditional-after-else-branch-completes=\"" + willReevaluateAfterElseBranch + "\">" +
+             comment(comment) +
+             "<sensor-conditional sensor-name=\"" + sensorName + "\" threshold-percentage=\"" + thresholdPercentage + "\">" +
+             service("::TeRK::analog::AnalogInputsService", "getAnalogInputValue", "<device id=\"" + deviceId + "\"/>") +
+             "</sensor-conditional>" +
+             "<if-branch>" + container(ifBranch) + "</if-branch>" +
+             "<else-branch>" + container(elseBranch) + "</else-branch>" +
+             "</loopable-conditional>";
+      }
+   }
@@ -0,0 +1,114 @@
+package edu.cmu.ri.createlab.sequencebuilder.programelement.view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>ViewUpdatePumpTest</code> tests the {@link ViewUpdatePump} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class ViewUpdatePumpTest extends TestCase
+   {
+   private static final long TIMEOUT_IN_MILLIS = 5000;
+
+   private final ViewUpdatePump pump = ViewUpdatePump.getInstance();
+   private final List<String> appliedUpdates = Collections.synchronizedList(new ArrayList<String>());
+
+   public ViewUpdatePumpTest(final String test)
+      {
+      super(test);
+      }
+
+   public void testOnlyTheLatestUpdateForAKeyIsApplied() throws Exception
+      {
+      final Object key = new Object();
+      final CountDownLatch appliedLatch = new CountDownLatch(1);
+      runInGUIThread(
+            new Runnable()
+            {
+            public void run()
+               {
+               // posted within one frame, since the Swing thread can't run the pump's timer until we're done
+               pump.post(key, new RecordingUpdate("first"));
+               pump.post(key, new RecordingUpdate("second"));
+               pump.post(new Object(), new RecordingUpdate("other", appliedLatch));
+               }
+            });
+
+      assertTrue("Expected the updates to be applied", appliedLatch.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+      assertEquals(Arrays.asList("second", "other"), getAppliedUpdates());
+      }
+
+   public void testResetDiscardsPendingUpdates() throws Exception
+      {
+      final Object progressBarKey = new Object();
+      final Object highlightKey = new Object();
+      final CountDownLatch appliedLatch = new CountDownLatch(1);
+      runInGUIThread(
+            new Runnable()
+            {
+            public void run()
+               {
+               pump.post(progressBarKey, new RecordingUpdate("progress"));
+               pump.post(highlightKey, new RecordingUpdate("highlight"));
+               pump.postReset(new RecordingUpdate("reset"));
+               pump.post(progressBarKey, new RecordingUpdate("next run's progress", appliedLatch));
+               }
+            });
+
+      assertTrue("Expected the updates to be applied", appliedLatch.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+      assertEquals("Expected the reset to discard the updates before it, and to be applied before the ones after it",
+                   Arrays.asList("reset", "next run's progress"),
+                   getAppliedUpdates());
+      }
+
+   @NotNull
+   private List<String> getAppliedUpdates()
+      {
+      synchronized (appliedUpdates)
+         {
+         return new ArrayList<String>(appliedUpdates);
+         }
+      }
+
+   private static void runInGUIThread(@NotNull final Runnable runnable) throws Exception
+      {
+      SwingUtilities.invokeAndWait(runnable);
+      }
+
+   private final class RecordingUpdate implements Runnable
+      {
+      private final String name;
+      private final CountDownLatch appliedLatch;
+
+      private RecordingUpdate(@NotNull final String name)
+         {
+         this(name, null);
+         }
+
+      private RecordingUpdate(@NotNull final String name, final CountDownLatch appliedLatch)
+         {
+         this.name = name;
+         this.appliedLatch = appliedLatch;
+         }
+
+      public void run()
+         {
+         appliedUpdates.add(name);
+         if (appliedLatch != null)
+            {
+            appliedLatch.countDown();
+            }
+         }
+      }
+   }
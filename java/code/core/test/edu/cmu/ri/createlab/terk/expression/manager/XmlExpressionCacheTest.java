@@ -0,0 +1,147 @@
+package edu.cmu.ri.createlab.terk.expression.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import edu.cmu.ri.createlab.terk.expression.XmlExpression;
+import edu.cmu.ri.createlab.terk.services.servo.SimpleServoService;
+import edu.cmu.ri.createlab.terk.xml.XmlDevice;
+import edu.cmu.ri.createlab.terk.xml.XmlOperation;
+import edu.cmu.ri.createlab.terk.xml.XmlParameter;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import edu.cmu.ri.createlab.xml.LocalEntityResolver;
+import edu.cmu.ri.createlab.xml.XmlHelper;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>XmlExpressionCacheTest</code> tests the {@link XmlExpressionCache} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class XmlExpressionCacheTest extends TestCase
+   {
+   private final XmlExpressionCache cache = XmlExpressionCache.getInstance();
+   private File directory;
+
+   public XmlExpressionCacheTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      XmlHelper.setLocalEntityResolver(LocalEntityResolver.getInstance());
+      cache.clear();
+
+      directory = File.createTempFile("XmlExpressionCacheTest", "");
+      if (!directory.delete() || !directory.mkdirs())
+         {
+         throw new IOException("Failed to create the temporary directory [" + directory + "]");
+         }
+      }
+
+   protected void tearDown() throws Exception
+      {
+      cache.clear();
+      FileUtils.deleteQuietly(directory);
+      }
+
+   public void testRepeatedLookupsParseOnce() throws Exception
+      {
+      final File file = writeExpression("expression", 10);
+      final long hitCount = cache.getHitCount();
+      final long missCount = cache.getMissCount();
+
+      final XmlExpression expression = cache.get(file);
+      for (int i = 1; i < 50; i++)
+         {
+         assertSame("Expected the cached expression to be shared", expression, cache.get(file));
+         }
+      assertEquals("Expected the file to be parsed once", missCount + 1, cache.getMissCount());
+      assertEquals("Expected every other lookup to be a hit", hitCount + 49, cache.getHitCount());
+      assertEquals(1, cache.getSize());
+      }
+
+   public void testEquivalentPathsShareAnEntry() throws Exception
+      {
+      final File file = writeExpression("expression", 10);
+      final File equivalentFile = new File(new File(directory, ".." + File.separator + directory.getName()), file.getName());
+
+      final XmlExpression expression = cache.get(file);
+      assertTrue("Expected an equivalent path to be cached too", cache.isCached(equivalentFile));
+      assertSame(expression, cache.get(equivalentFile));
+      assertEquals(1, cache.getSize());
+      }
+
+   public void testChangedFileIsReparsedEvenWithoutAnInvalidation() throws Exception
+      {
+      final File file = writeExpression("expression", 10);
+      final XmlExpression expression = cache.get(file);
+
+      // a different position changes the file's size, so the change is detected even if the modification time isn't
+      writeExpression("expression", 100);
+      assertFalse("Expected the changed file not to be cached", cache.isCached(file));
+      final XmlExpression reparsedExpression = cache.get(file);
+      assertNotSame("Expected the changed file to be reparsed", expression, reparsedExpression);
+      assertEquals(100, getPosition(reparsedExpression));
+      }
+
+   public void testModifiedAndDeletedFileEventsInvalidateEntries() throws Exception
+      {
+      final File modifiedFile = writeExpression("modified", 10);
+      final File deletedFile = writeExpression("deleted", 10);
+      final File untouchedFile = writeExpression("untouched", 10);
+      cache.get(modifiedFile);
+      cache.get(deletedFile);
+      cache.get(untouchedFile);
+
+      cache.handleModifiedFileEvent(Collections.singleton(modifiedFile));
+      cache.handleDeletedFileEvent(Collections.singleton(deletedFile));
+      assertFalse("Expected the modified file to be invalidated", cache.isCached(modifiedFile));
+      assertFalse("Expected the deleted file to be invalidated", cache.isCached(deletedFile));
+      assertTrue("Expected the untouched file to still be cached", cache.isCached(untouchedFile));
+      assertEquals(1, cache.getSize());
+      }
+
+   public void testLeastRecentlyUsedEntryIsEvicted() throws Exception
+      {
+      final File firstFile = writeExpression("first", 10);
+      final File secondFile = writeExpression("second", 10);
+      cache.get(firstFile);
+      cache.get(secondFile);
+      for (int i = 2; i < XmlExpressionCache.DEFAULT_MAX_ENTRIES; i++)
+         {
+         cache.get(writeExpression("expression" + i, 10));
+         }
+      assertEquals(XmlExpressionCache.DEFAULT_MAX_ENTRIES, cache.getSize());
+
+      // using the first file makes the second one the least recently used
+      cache.get(firstFile);
+      cache.get(writeExpression("one-too-many", 10));
+      assertEquals("Expected the cache size to be bounded", XmlExpressionCache.DEFAULT_MAX_ENTRIES, cache.getSize());
+      assertTrue("Expected the recently used file to still be cached", cache.isCached(firstFile));
+      assertFalse("Expected the least recently used file to be evicted", cache.isCached(secondFile));
+      }
+
+   @NotNull
+   private File writeExpression(@NotNull final String name, final int position) throws IOException
+      {
+      final XmlOperation operation = new XmlOperation(SimpleServoService.OPERATION_NAME_SET_POSITION,
+                                                      new XmlDevice(0, new XmlParameter(SimpleServoService.PARAMETER_NAME_POSITION, position)));
+      final XmlExpression expression = XmlExpression.create(new XmlService(SimpleServoService.TYPE_ID, operation));
+      final File file = new File(directory, name + ".xml");
+      FileUtils.writeStringToFile(file, expression.toXmlDocumentStringFormatted(), "UTF-8");
+      return file;
+      }
+
+   private static int getPosition(@NotNull final XmlExpression expression)
+      {
+      final XmlService service = expression.getServices().iterator().next();
+      final XmlOperation operation = service.getOperations().iterator().next();
+      return operation.getDevices().iterator().next().getParameter(SimpleServoService.PARAMETER_NAME_POSITION).getValueAsInteger();
+      }
+   }
@@ -0,0 +1,266 @@
+package edu.cmu.ri.createlab.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>AbstractDirectoryPollingListModelTest</code> tests that the {@link AbstractDirectoryPollingListModel} keeps
+ * its items sorted and fires list data events for only the index ranges which changed.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class AbstractDirectoryPollingListModelTest extends TestCase
+   {
+   private File directory;
+   private TestListModel listModel;
+   private final List<String> events = new ArrayList<String>();
+
+   public AbstractDirectoryPollingListModelTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      directory = DirectoryWatcherTest.createTemporaryDirectory("AbstractDirectoryPollingListModelTest");
+      listModel = new TestListModel();
+      listModel.addListDataListener(
+            new ListDataListener()
+            {
+            public void intervalAdded(final ListDataEvent e)
+               {
+               events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+               }
+
+            public void intervalRemoved(final ListDataEvent e)
+               {
+               events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+               }
+
+            public void contentsChanged(final ListDataEvent e)
+               {
+               events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+               }
+            });
+      }
+
+   protected void tearDown() throws Exception
+      {
+      FileUtils.deleteQuietly(directory);
+      }
+
+   public void testNewFilesAreInsertedInSortedOrder() throws Exception
+      {
+      listModel.handleNewFileEvent(writeFiles("b", "d"));
+      assertEquals(Arrays.asList("b", "d"), getSortKeys());
+      assertEquals(Arrays.asList("added 0-1"), events);
+
+      events.clear();
+      listModel.handleNewFileEvent(writeFiles("e", "a", "c"));
+      assertEquals(Arrays.asList("a", "b", "c", "d", "e"), getSortKeys());
+      assertEquals("Expected one event per inserted item, since none of them are adjacent",
+                   Arrays.asList("added 0-0", "added 2-2", "added 4-4"),
+                   events);
+      }
+
+   public void testAdjacentInsertionsAreReportedAsOneInterval() throws Exception
+      {
+      listModel.handleNewFileEvent(writeFiles("a", "e"));
+      events.clear();
+
+      listModel.handleNewFileEvent(writeFiles("d", "b", "c"));
+      assertEquals(Arrays.asList("a", "b", "c", "d", "e"), getSortKeys());
+      assertEquals(Arrays.asList("added 1-3"), events);
+      }
+
+   public void testExistingFilesAreIgnored() throws Exception
+      {
+      final Set<File> files = writeFiles("a", "b");
+      listModel.handleNewFileEvent(files);
+      events.clear();
+
+      listModel.handleNewFileEvent(files);
+      assertEquals(Arrays.asList("a", "b"), getSortKeys());
+      assertTrue("Expected no events for files which are already in the list", events.isEmpty());
+      }
+
+   public void testDeletedFilesAreRemoved() throws Exception
+      {
+      listModel.handleNewFileEvent(writeFiles("a", "b", "c", "d", "e"));
+      events.clear();
+
+      listModel.handleDeletedFileEvent(getFiles("b", "c", "e"));
+      assertEquals(Arrays.asList("a", "d"), getSortKeys());
+      assertEquals("Expected removals in descending order, with adjacent ones merged",
+                   Arrays.asList("removed 4-4", "removed 1-2"),
+                   events);
+      }
+
+   public void testModifiedFileWhichKeepsItsPositionIsReplacedInPlace() throws Exception
+      {
+      listModel.handleNewFileEvent(writeFiles("a", "b", "c"));
+      final TestListItem oldListItem = listModel.getNarrowedElementAt(1);
+      events.clear();
+
+      writeFile("b", "b", "new contents");
+      listModel.handleModifiedFileEvent(getFiles("b"));
+      assertEquals(Arrays.asList("a", "b", "c"), getSortKeys());
+      assertEquals("Expected the item to be recreated from the file", "new contents", listModel.getNarrowedElementAt(1).getContents());
+      assertEquals("Expected the old item to be gone", -1, listModel.indexOf(oldListItem));
+      assertEquals(Arrays.asList("changed 1-1"), events);
+      }
+
+   public void testModifiedFileWhichChangesItsSortKeyIsMoved() throws Exception
+      {
+      listModel.handleNewFileEvent(writeFiles("a", "b", "c", "d"));
+      events.clear();
+
+      // give the file for "a" a sort key which puts it after "c"
+      writeFile("a", "cc", "moved");
+      listModel.handleModifiedFileEvent(getFiles("a"));
+      assertEquals(Arrays.asList("b", "c", "cc", "d"), getSortKeys());
+      assertEquals(2, listModel.indexOf(listModel.getNarrowedElementAt(2)));
+      assertEquals("Expected the range the item moved across to be reported", Arrays.asList("changed 0-2"), events);
+      }
+
+   public void testModifiedFileWhichIsNotInTheListIsIgnored() throws Exception
+      {
+      listModel.handleNewFileEvent(writeFiles("a"));
+      events.clear();
+
+      listModel.handleModifiedFileEvent(writeFiles("z"));
+      assertEquals(Arrays.asList("a"), getSortKeys());
+      assertTrue("Expected no events for a file which isn't in the list", events.isEmpty());
+      }
+
+   public void testManyFiles() throws Exception
+      {
+      final List<String> expectedSortKeys = new ArrayList<String>();
+      final Set<File> files = new HashSet<File>();
+      for (int i = 0; i < 500; i++)
+         {
+         final String sortKey = String.format("%04d", i);
+         expectedSortKeys.add(sortKey);
+         files.add(writeFile(sortKey, sortKey, ""));
+         }
+      listModel.handleNewFileEvent(files);
+      assertEquals(expectedSortKeys, getSortKeys());
+      assertEquals(Arrays.asList("added 0-499"), events);
+
+      for (int i = 0; i < listModel.getSize(); i++)
+         {
+         assertEquals(i, listModel.indexOf(listModel.getNarrowedElementAt(i)));
+         }
+      }
+
+   @NotNull
+   private List<String> getSortKeys()
+      {
+      final List<String> sortKeys = new ArrayList<String>();
+      for (int i = 0; i < listModel.getSize(); i++)
+         {
+         sortKeys.add(listModel.getNarrowedElementAt(i).getSortKey());
+         }
+      return sortKeys;
+      }
+
+   /** Writes a file for each of the given names, using the name as the sort key. */
+   @NotNull
+   private Set<File> writeFiles(@NotNull final String... names) throws IOException
+      {
+      final Set<File> files = new HashSet<File>();
+      for (final String name : names)
+         {
+         files.add(writeFile(name, name, ""));
+         }
+      return files;
+      }
+
+   @NotNull
+   private File writeFile(@NotNull final String name, @NotNull final String sortKey, @NotNull final String contents) throws IOException
+      {
+      final File file = getFile(name);
+      FileUtils.writeStringToFile(file, sortKey + "\n" + contents, "UTF-8");
+      return file;
+      }
+
+   @NotNull
+   private Set<File> getFiles(@NotNull final String... names)
+      {
+      final Set<File> files = new HashSet<File>();
+      for (final String name : names)
+         {
+         files.add(getFile(name));
+         }
+      return files;
+      }
+
+   @NotNull
+   private File getFile(@NotNull final String name)
+      {
+      return new File(directory, name + ".txt");
+      }
+
+   /** A list item whose sort key and contents are read from its file. */
+   private static final class TestListItem
+      {
+      private final String sortKey;
+      private final String contents;
+
+      private TestListItem(@NotNull final String sortKey, @NotNull final String contents)
+         {
+         this.sortKey = sortKey;
+         this.contents = contents;
+         }
+
+      private String getSortKey()
+         {
+         return sortKey;
+         }
+
+      private String getContents()
+         {
+         return contents;
+         }
+      }
+
+   private static final class TestListModel extends AbstractDirectoryPollingListModel<TestListItem>
+      {
+      private TestListModel()
+         {
+         super(new Comparator<TestListItem>()
+         {
+         public int compare(final TestListItem item1, final TestListItem item2)
+            {
+            return item1.getSortKey().compareTo(item2.getSortKey());
+            }
+         });
+         }
+
+      protected TestListItem createListItemInstance(@NotNull final File file)
+         {
+         try
+            {
+            final String[] lines = FileUtils.readFileToString(file, "UTF-8").split("\n", 2);
+            return new TestListItem(lines[0], (lines.length > 1) ? lines[1] : "");
+            }
+         catch (IOException ignored)
+            {
+            return null;
+            }
+         }
+      }
+   }
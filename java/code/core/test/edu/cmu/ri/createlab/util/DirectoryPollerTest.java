@@ -0,0 +1,118 @@
+package edu.cmu.ri.createlab.util;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>DirectoryPollerTest</code> tests the {@link DirectoryPoller} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class DirectoryPollerTest extends TestCase
+   {
+   private static final long TIMEOUT_IN_MILLIS = 10000;
+   private static final long POLLING_DELAY_IN_MILLIS = 100;
+
+   private File directory;
+   private DirectoryPoller poller;
+   private final Set<File> newFiles = Collections.synchronizedSet(new HashSet<File>());
+   private final Set<File> deletedFiles = Collections.synchronizedSet(new HashSet<File>());
+
+   public DirectoryPollerTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      directory = DirectoryWatcherTest.createTemporaryDirectory("DirectoryPollerTest");
+      poller = new DirectoryPoller(
+            new FileProvider()
+            {
+            public File getFile()
+               {
+               return directory;
+               }
+            },
+            null,
+            POLLING_DELAY_IN_MILLIS,
+            TimeUnit.MILLISECONDS);
+      poller.addEventListener(
+            new DirectoryPoller.EventListener()
+            {
+            public void handleNewFileEvent(@NotNull final Set<File> files)
+               {
+               newFiles.addAll(files);
+               }
+
+            public void handleModifiedFileEvent(@NotNull final Set<File> files)
+               {
+               }
+
+            public void handleDeletedFileEvent(@NotNull final Set<File> files)
+               {
+               deletedFiles.addAll(files);
+               }
+            });
+      poller.start();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      poller.stop();
+      FileUtils.deleteQuietly(directory);
+      }
+
+   public void testReportsNewAndDeletedFiles() throws Exception
+      {
+      final File file = new File(directory, "file.txt");
+      FileUtils.writeStringToFile(file, "contents", "UTF-8");
+      assertTrue("Expected the new file to be reported", awaitFile(newFiles, file));
+
+      assertTrue("Expected the file to be deleted", file.delete());
+      assertTrue("Expected the deleted file to be reported", awaitFile(deletedFiles, file));
+      }
+
+   public void testWatchesDirectoryAgainAfterItIsDeletedAndRecreated() throws Exception
+      {
+      assertTrue("Expected the directory to be watched", awaitWatching(true));
+
+      FileUtils.deleteDirectory(directory);
+      assertTrue("Expected the poller to stop watching the deleted directory", awaitWatching(false));
+
+      assertTrue("Expected the directory to be recreated", directory.mkdirs());
+      assertTrue("Expected the poller to watch the recreated directory", awaitWatching(true));
+
+      final File file = new File(directory, "after-recreation.txt");
+      FileUtils.writeStringToFile(file, "contents", "UTF-8");
+      assertTrue("Expected a file in the recreated directory to be reported", awaitFile(newFiles, file));
+      }
+
+   private boolean awaitWatching(final boolean isWatching) throws InterruptedException
+      {
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (poller.isWatchingDirectory() != isWatching && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      return poller.isWatchingDirectory() == isWatching;
+      }
+
+   private static boolean awaitFile(@NotNull final Set<File> files, @NotNull final File file) throws InterruptedException
+      {
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (!files.contains(file) && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      return files.contains(file);
+      }
+   }
@@ -0,0 +1,113 @@
+package edu.cmu.ri.createlab.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>DirectoryWatcherTest</code> tests the {@link DirectoryWatcher} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class DirectoryWatcherTest extends TestCase
+   {
+   private static final long TIMEOUT_IN_MILLIS = 10000;
+
+   private File directory;
+   private DirectoryWatcher watcher;
+   private final Set<File> changedFiles = Collections.synchronizedSet(new HashSet<File>());
+   private final AtomicInteger overflowCount = new AtomicInteger(0);
+
+   public DirectoryWatcherTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      directory = createTemporaryDirectory("DirectoryWatcherTest");
+      watcher = new DirectoryWatcher(directory,
+                                     new DirectoryWatcher.ChangeHandler()
+                                     {
+                                     public void handleChangedFiles(@NotNull final Set<File> files)
+                                        {
+                                        changedFiles.addAll(files);
+                                        }
+
+                                     public void handleOverflow()
+                                        {
+                                        overflowCount.incrementAndGet();
+                                        }
+                                     });
+      }
+
+   protected void tearDown() throws Exception
+      {
+      watcher.close();
+      FileUtils.deleteQuietly(directory);
+      }
+
+   public void testReportsChangedFiles() throws Exception
+      {
+      final File file = new File(directory, "created.txt");
+      FileUtils.writeStringToFile(file, "created", "UTF-8");
+
+      assertTrue("Expected the created file to be reported", awaitChangedFile(file));
+      assertTrue("Expected the watcher to still be alive", watcher.isAlive());
+      }
+
+   public void testDiesWhenDirectoryIsDeleted() throws Exception
+      {
+      FileUtils.deleteDirectory(directory);
+
+      // the watcher marks itself dead before asking for the rescan
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (overflowCount.get() == 0 && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      assertTrue("Expected the watcher to ask for a rescan when it died", overflowCount.get() > 0);
+      assertFalse("Expected the watcher to die once its directory was deleted", watcher.isAlive());
+      }
+
+   public void testIsNotAliveOnceClosed() throws Exception
+      {
+      watcher.close();
+
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (watcher.isAlive() && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      assertFalse("Expected a closed watcher not to be alive", watcher.isAlive());
+      }
+
+   private boolean awaitChangedFile(@NotNull final File file) throws InterruptedException
+      {
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (!changedFiles.contains(file) && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      return changedFiles.contains(file);
+      }
+
+   @NotNull
+   static File createTemporaryDirectory(@NotNull final String prefix) throws IOException
+      {
+      final File directory = File.createTempFile(prefix, "");
+      if (!directory.delete() || !directory.mkdirs())
+         {
+         throw new IOException("Failed to create the temporary directory [" + directory + "]");
+         }
+      return directory;
+      }
+   }
@@ -0,0 +1,100 @@
+package edu.cmu.ri.createlab.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.ImageIcon;
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * <code>IconRegistryTest</code> tests the {@link IconRegistry} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class IconRegistryTest extends TestCase
+   {
+   private static final String IMAGES_PATH = "/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/";
+   private static final String ICON_PATH_1 = IMAGES_PATH + "expression-icon-small.png";
+   private static final String ICON_PATH_2 = IMAGES_PATH + "counter-loop-icon-small.png";
+   private static final String MISSING_ICON_PATH = IMAGES_PATH + "no-such-icon.png";
+
+   private final IconRegistry registry = IconRegistry.getInstance();
+
+   public IconRegistryTest(final String test)
+      {
+      super(test);
+      }
+
+   public void testIconIsDecodedOnceAndShared() throws Exception
+      {
+      final ImageIcon icon = registry.getImageIcon(ICON_PATH_1);
+      assertNotNull("Expected the icon to load", icon);
+      assertTrue(icon.getIconWidth() > 0);
+
+      final long hitCount = registry.getHitCount();
+      final long missCount = registry.getMissCount();
+      assertSame("Expected every request for the same path to get the same icon", icon, registry.getImageIcon(ICON_PATH_1));
+      assertSame(icon, registry.getImageIcon(new String(ICON_PATH_1)));
+      assertEquals(hitCount + 2, registry.getHitCount());
+      assertEquals("Expected the icon not to be decoded again", missCount, registry.getMissCount());
+
+      assertNotSame("Expected a different path to get a different icon", icon, registry.getImageIcon(ICON_PATH_2));
+      }
+
+   public void testMissingIconIsOnlyLookedForOnce() throws Exception
+      {
+      assertNull(registry.getImageIcon(MISSING_ICON_PATH));
+
+      final long hitCount = registry.getHitCount();
+      final long missCount = registry.getMissCount();
+      assertNull(registry.getImageIcon(MISSING_ICON_PATH));
+      assertEquals("Expected the failure to be remembered", hitCount + 1, registry.getHitCount());
+      assertEquals(missCount, registry.getMissCount());
+      }
+
+   public void testStripsAreCompositedOnceAndShared() throws Exception
+      {
+      final ImageIcon icon1 = registry.getImageIcon(ICON_PATH_1);
+      final ImageIcon icon2 = registry.getImageIcon(ICON_PATH_2);
+      assertNotNull(icon1);
+      assertNotNull(icon2);
+
+      final ImageIcon strip = registry.getHorizontalStrip(Arrays.asList(icon1, icon2, icon1));
+      assertNotNull(strip);
+      assertEquals(icon1.getIconWidth() * 2 + icon2.getIconWidth(), strip.getIconWidth());
+      assertEquals(Math.max(icon1.getIconHeight(), icon2.getIconHeight()), strip.getIconHeight());
+
+      // the strip is keyed on the icons themselves, not on the list holding them
+      final long hitCount = registry.getHitCount();
+      final long missCount = registry.getMissCount();
+      final List<ImageIcon> sameIcons = new ArrayList<ImageIcon>(Arrays.asList(icon1, icon2, icon1));
+      assertSame("Expected the same icons to get the same strip", strip, registry.getHorizontalStrip(sameIcons));
+      assertEquals(hitCount + 1, registry.getHitCount());
+      assertEquals("Expected the strip not to be composited again", missCount, registry.getMissCount());
+
+      // changing the list afterwards mustn't affect the cached strip
+      sameIcons.clear();
+      assertSame(strip, registry.getHorizontalStrip(Arrays.asList(icon1, icon2, icon1)));
+
+      // order matters
+      assertNotSame(strip, registry.getHorizontalStrip(Arrays.asList(icon2, icon1, icon1)));
+
+      // an icon which failed to load can't be part of a strip
+      assertNull(registry.getHorizontalStrip(Arrays.asList(icon1, registry.getImageIcon(MISSING_ICON_PATH))));
+      assertNull(registry.getHorizontalStrip(Collections.<ImageIcon>emptyList()));
+      }
+
+   public void testHitRate() throws Exception
+      {
+      registry.getImageIcon(ICON_PATH_1);
+      registry.getImageIcon(ICON_PATH_1);
+
+      final long hitCount = registry.getHitCount();
+      final long missCount = registry.getMissCount();
+      assertTrue(hitCount > 0);
+      assertEquals((double)hitCount / (hitCount + missCount), registry.getHitRate(), 1e-9);
+      }
+   }
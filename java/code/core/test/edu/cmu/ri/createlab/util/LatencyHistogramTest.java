@@ -0,0 +1,66 @@
+package edu.cmu.ri.createlab.util;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * <code>LatencyHistogramTest</code> tests the {@link LatencyHistogram} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class LatencyHistogramTest extends TestCase
+   {
+   public LatencyHistogramTest(final String test)
+      {
+      super(test);
+      }
+
+   public void testBuckets()
+      {
+      assertEquals("Expected small values to get their own bucket", 3, LatencyHistogram.getBucketIndex(3));
+      assertEquals("Expected 4 to start the first shared bucket", 4, LatencyHistogram.getBucketIndex(4));
+
+      int previousIndex = LatencyHistogram.getBucketIndex(0);
+      for (long value = 1; value < 100000; value++)
+         {
+         final int index = LatencyHistogram.getBucketIndex(value);
+         assertTrue("Expected bucket indexes to never decrease", index >= previousIndex);
+         assertTrue("Expected value " + value + " to be within its bucket's bounds",
+                    LatencyHistogram.getBucketLowerBound(index) <= value && value <= LatencyHistogram.getBucketUpperBound(index));
+         assertTrue("Expected the bucket for " + value + " to be at most 25% wide",
+                    LatencyHistogram.getBucketUpperBound(index) - LatencyHistogram.getBucketLowerBound(index) <= value / 4);
+         previousIndex = index;
+         }
+
+      final int lastIndex = LatencyHistogram.getBucketIndex(Long.MAX_VALUE);
+      assertEquals("Expected the last bucket to hold Long.MAX_VALUE", Long.MAX_VALUE, LatencyHistogram.getBucketUpperBound(lastIndex));
+      }
+
+   public void testStatistics()
+      {
+      final LatencyHistogram histogram = new LatencyHistogram();
+      assertEquals("Expected an empty histogram to have a zero percentile", 0, histogram.getValueAtPercentile(50));
+      assertEquals("Expected an empty histogram to have a zero min", 0, histogram.getMin());
+
+      for (int value = 1; value <= 1000; value++)
+         {
+         histogram.record(value);
+         }
+      histogram.record(-5);
+
+      assertEquals(1001, histogram.getCount());
+      assertEquals("Expected negative values to be recorded as zero", 0, histogram.getMin());
+      assertEquals(1000, histogram.getMax());
+      assertEquals(500500 / 1001.0, histogram.getMean(), 1e-9);
+
+      final long median = histogram.getValueAtPercentile(50);
+      assertTrue("Expected the median to be at least the true median, but was " + median, median >= 500);
+      assertTrue("Expected the median to be within 25% of the true median, but was " + median, median <= 625);
+      assertEquals("Expected the 100th percentile to be capped at the max", 1000, histogram.getValueAtPercentile(100));
+
+      histogram.reset();
+      assertEquals(0, histogram.getCount());
+      assertEquals(0, histogram.getMax());
+      }
+   }
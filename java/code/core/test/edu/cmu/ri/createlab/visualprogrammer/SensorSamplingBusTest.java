@@ -0,0 +1,254 @@
+package edu.cmu.ri.createlab.visualprogrammer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import edu.cmu.ri.createlab.terk.services.Service;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>SensorSamplingBusTest</code> tests the {@link SensorSamplingBus} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SensorSamplingBusTest extends TestCase
+   {
+   private static final int PERIOD_IN_MILLIS = 10;
+   private static final long TIMEOUT_IN_MILLIS = 5000;
+
+   private static final SensorSamplingBus.SampleListener NO_OP_SAMPLE_LISTENER =
+         new SensorSamplingBus.SampleListener()
+         {
+         public void handleSample(@NotNull final Service service, @NotNull final SensorSamplingBus.SensorSample sample)
+            {
+            // do nothing
+            }
+         };
+
+   private final SensorSamplingBus bus = SensorSamplingBus.getInstance();
+   private FakeDevice device1;
+   private FakeDevice device2;
+
+   public SensorSamplingBusTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      device1 = new FakeDevice();
+      device2 = new FakeDevice();
+      }
+
+   protected void tearDown() throws Exception
+      {
+      device1.disconnect();
+      device2.disconnect();
+      }
+
+   public void testSubscriptionsAreReferenceCounted() throws Exception
+      {
+      final Service service = device1.getService();
+      assertEquals(0, bus.getSubscriptionCount(service));
+
+      final SensorSamplingBus.Subscription subscription1 = bus.subscribe(service, PERIOD_IN_MILLIS, NO_OP_SAMPLE_LISTENER);
+      final SensorSamplingBus.Subscription subscription2 = bus.subscribe(service, SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS, NO_OP_SAMPLE_LISTENER);
+      assertEquals(2, bus.getSubscriptionCount(service));
+      device1.awaitReads(2);
+
+      subscription1.cancel();
+      assertEquals(1, bus.getSubscriptionCount(service));
+      assertNotNull("Expected the service to still be sampled while it has a subscriber", bus.getLatestSample(service));
+
+      // cancelling twice must not drop somebody else's subscription
+      subscription1.cancel();
+      assertEquals(1, bus.getSubscriptionCount(service));
+
+      subscription2.cancel();
+      assertEquals(0, bus.getSubscriptionCount(service));
+      assertNull("Expected the source to be dropped along with its last subscriber", bus.getLatestSample(service));
+      assertReadsStop(device1);
+      }
+
+   public void testRemoveSourcesOnlyAffectsTheDisconnectedDevice() throws Exception
+      {
+      final Service service1 = device1.getService();
+      final Service service2 = device2.getService();
+      final SensorSamplingBus.Subscription subscription1 = bus.subscribe(service1, PERIOD_IN_MILLIS, NO_OP_SAMPLE_LISTENER);
+      bus.subscribe(service1, PERIOD_IN_MILLIS, NO_OP_SAMPLE_LISTENER);
+      bus.subscribe(service2, PERIOD_IN_MILLIS, NO_OP_SAMPLE_LISTENER);
+      device1.awaitReads(1);
+      device2.awaitReads(1);
+
+      bus.removeSources(device1.getServiceManager());
+      assertEquals("Expected every subscription to the disconnected device to be dropped", 0, bus.getSubscriptionCount(service1));
+      assertNull(bus.getLatestSample(service1));
+      assertReadsStop(device1);
+
+      // a subscriber which cancels after the disconnect must not disturb anything
+      subscription1.cancel();
+      assertEquals(0, bus.getSubscriptionCount(service1));
+
+      assertEquals("Expected the other device to still be sampled", 1, bus.getSubscriptionCount(service2));
+      final int readCount = device2.getReadCount();
+      device2.awaitReads(readCount + 2);
+      }
+
+   public void testHungDeviceDoesNotStallOtherDevices() throws Exception
+      {
+      final CountDownLatch hungReadLatch = device1.hang();
+      try
+         {
+         bus.subscribe(device1.getService(), PERIOD_IN_MILLIS, NO_OP_SAMPLE_LISTENER);
+         assertTrue("Expected the hung device to be read", hungReadLatch.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+
+         final CountDownLatch sampleLatch = new CountDownLatch(5);
+         bus.subscribe(device2.getService(),
+                       PERIOD_IN_MILLIS,
+                       new SensorSamplingBus.SampleListener()
+                       {
+                       public void handleSample(@NotNull final Service service, @NotNull final SensorSamplingBus.SensorSample sample)
+                          {
+                          sampleLatch.countDown();
+                          }
+                       });
+         assertTrue("Expected the other device to keep being sampled while the first one is hung",
+                    sampleLatch.await(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS));
+         }
+      finally
+         {
+         device1.unhang();
+         }
+      }
+
+   private static void assertReadsStop(@NotNull final FakeDevice device) throws InterruptedException
+      {
+      // allow a read which was already under way to finish
+      Thread.sleep(PERIOD_IN_MILLIS * 5);
+      final int readCount = device.getReadCount();
+      Thread.sleep(PERIOD_IN_MILLIS * 10);
+      assertEquals("Expected polling to stop", readCount, device.getReadCount());
+      }
+
+   /** A device with a single {@link AnalogInputsService} which counts its reads and can be made to hang. */
+   private static final class FakeDevice
+      {
+      private final AtomicInteger readCount = new AtomicInteger(0);
+      private final CountDownLatch hungReadLatch = new CountDownLatch(1);
+      private final CountDownLatch unhangLatch = new CountDownLatch(1);
+      private volatile boolean isHung = false;
+
+      private final AnalogInputsService service = (AnalogInputsService)Proxy.newProxyInstance(
+            AnalogInputsService.class.getClassLoader(),
+            new Class<?>[]{AnalogInputsService.class},
+            new InvocationHandler()
+            {
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+               {
+               final String methodName = method.getName();
+               if ("equals".equals(methodName))
+                  {
+                  return proxy == args[0];
+                  }
+               if ("hashCode".equals(methodName))
+                  {
+                  return System.identityHashCode(proxy);
+                  }
+               if ("toString".equals(methodName))
+                  {
+                  return "FakeDevice.AnalogInputsService@" + Integer.toHexString(System.identityHashCode(proxy));
+                  }
+               if ("getTypeId".equals(methodName))
+                  {
+                  return AnalogInputsService.TYPE_ID;
+                  }
+               if ("getAnalogInputValues".equals(methodName))
+                  {
+                  if (isHung)
+                     {
+                     hungReadLatch.countDown();
+                     unhangLatch.await();
+                     }
+                  return new int[]{readCount.incrementAndGet()};
+                  }
+               return null;
+               }
+            });
+
+      private final ServiceManager serviceManager =
+            new ServiceManager()
+            {
+            public boolean isServiceSupported(final String serviceTypeId)
+               {
+               return AnalogInputsService.TYPE_ID.equals(serviceTypeId);
+               }
+
+            public Service getServiceByTypeId(final String serviceTypeId)
+               {
+               return isServiceSupported(serviceTypeId) ? service : null;
+               }
+
+            public Set<String> getTypeIdsOfSupportedServices()
+               {
+               return Collections.singleton(AnalogInputsService.TYPE_ID);
+               }
+            };
+
+      @NotNull
+      private Service getService()
+         {
+         return service;
+         }
+
+      @NotNull
+      private ServiceManager getServiceManager()
+         {
+         return serviceManager;
+         }
+
+      private int getReadCount()
+         {
+         return readCount.get();
+         }
+
+      private void awaitReads(final int count) throws InterruptedException
+         {
+         final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+         while (readCount.get() < count && System.currentTimeMillis() < deadline)
+            {
+            Thread.sleep(PERIOD_IN_MILLIS);
+            }
+         assertTrue("Expected at least [" + count + "] reads, but got [" + readCount.get() + "]", readCount.get() >= count);
+         }
+
+      /** Makes every subsequent read block until {@link #unhang()} is called, and returns a latch which opens on the first such read. */
+      @NotNull
+      private CountDownLatch hang()
+         {
+         isHung = true;
+         return hungReadLatch;
+         }
+
+      private void unhang()
+         {
+         isHung = false;
+         unhangLatch.countDown();
+         }
+
+      private void disconnect()
+         {
+         unhang();
+         SensorSamplingBus.getInstance().removeSources(serviceManager);
+         }
+      }
+   }
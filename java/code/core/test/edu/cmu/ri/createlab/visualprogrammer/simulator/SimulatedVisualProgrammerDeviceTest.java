@@ -0,0 +1,175 @@
+package edu.cmu.ri.createlab.visualprogrammer.simulator;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.swing.JPanel;
+import edu.cmu.ri.createlab.terk.services.ServiceManager;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerGs;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerService;
+import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
+import edu.cmu.ri.createlab.terk.xml.XmlService;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ * <code>SimulatedVisualProgrammerDeviceTest</code> tests the {@link SimulatedVisualProgrammerDevice} class and its
+ * {@link SimulatedLink}.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class SimulatedVisualProgrammerDeviceTest extends TestCase
+   {
+   private static final long SEED = 0;
+   private static final double EPSILON = 0.001;
+   private static final Set<XmlService> NO_EXPRESSION_SERVICES = Collections.emptySet();
+
+   private SimulatedVisualProgrammerDevice device;
+
+   public SimulatedVisualProgrammerDeviceTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void tearDown() throws Exception
+      {
+      if (device != null)
+         {
+         device.disconnect();
+         }
+      }
+
+   public void testLatencyDelaysEveryRoundTrip() throws Exception
+      {
+      final SimulatedLink link = connect(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD);
+      link.setLatency(20);
+
+      final long startTime = System.currentTimeMillis();
+      for (int i = 0; i < 5; i++)
+         {
+         final double busyTime = link.getBusyTimeInMillis();
+         getAnalogInputsService().getAnalogInputValues();
+         assertEquals("Expected each round trip to cost the latency", 20, link.getBusyTimeInMillis() - busyTime, EPSILON);
+         }
+      assertTrue("Expected the round trips to take at least the total latency", System.currentTimeMillis() - startTime >= 100);
+      assertEquals(5, link.getRoundTripCount());
+      }
+
+   public void testJitterIsRandomButBounded() throws Exception
+      {
+      final SimulatedLink link = connect(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD);
+      link.setLatency(5);
+      link.setJitter(10);
+
+      final Set<Double> durations = new HashSet<Double>();
+      for (int i = 0; i < 10; i++)
+         {
+         final double busyTime = link.getBusyTimeInMillis();
+         getAnalogInputsService().getAnalogInputValues();
+         final double duration = link.getBusyTimeInMillis() - busyTime;
+         assertTrue("Expected the round trip to cost at least the latency, but it cost [" + duration + "]", duration >= 5 - EPSILON);
+         assertTrue("Expected the jitter to be at most 10 millis, but the round trip cost [" + duration + "]", duration <= 15 + EPSILON);
+         durations.add(duration);
+         }
+      assertTrue("Expected the jitter to vary the round trips", durations.size() > 1);
+      }
+
+   public void testBandwidthLimitsEveryRoundTrip() throws Exception
+      {
+      final SimulatedLink link = connect(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD);
+      final int bytesPerRoundTrip = SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD.getBytesPerRoundTrip();
+
+      // move each round trip's bytes in 10 millis
+      link.setBandwidth(bytesPerRoundTrip * 100);
+      for (int i = 0; i < 3; i++)
+         {
+         final double busyTime = link.getBusyTimeInMillis();
+         getAnalogInputsService().getAnalogInputValues();
+         assertEquals("Expected each round trip to cost its transfer time", 10, link.getBusyTimeInMillis() - busyTime, EPSILON);
+         }
+      assertEquals(3 * bytesPerRoundTrip, link.getBytesTransferredCount());
+
+      // unlimited bandwidth costs nothing
+      link.setBandwidth(0);
+      final double busyTime = link.getBusyTimeInMillis();
+      getAnalogInputsService().getAnalogInputValues();
+      assertEquals(0, link.getBusyTimeInMillis() - busyTime, EPSILON);
+      }
+
+   public void testWaveformsScriptTheSensors() throws Exception
+      {
+      connect(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD);
+      device.setSensorWaveform(AnalogInputsService.TYPE_ID, 0, Waveforms.constant(42));
+      device.setSensorWaveform(AnalogInputsService.TYPE_ID, 1, Waveforms.constant(1000));
+      device.setSensorWaveform(AnalogInputsService.TYPE_ID, 2, null);
+      device.setSensorWaveform(AnalogInputsService.TYPE_ID,
+                               3,
+                               new Waveform()
+                               {
+                               public double getValue(final double elapsedSeconds)
+                                  {
+                                  return elapsedSeconds * 1000;
+                                  }
+                               });
+
+      final int[] values = getAnalogInputsService().getAnalogInputValues();
+      assertEquals(42, values[0]);
+      assertEquals("Expected the value to be clamped to the sensor's range", 255, values[1]);
+      assertEquals("Expected a channel without a waveform to report zero", 0, values[2]);
+
+      Thread.sleep(50);
+      assertTrue("Expected the waveform to be evaluated at the current time", getAnalogInputsService().getAnalogInputValues()[3] >= values[3] + 40);
+      }
+
+   public void testAccelerometerIsScriptedInGs() throws Exception
+      {
+      connect(SimulatedVisualProgrammerDevice.Profile.FINCH);
+      device.setSensorWaveform(AccelerometerService.TYPE_ID, 0, Waveforms.constant(0.5));
+      device.setSensorWaveform(AccelerometerService.TYPE_ID, 1, Waveforms.constant(0));
+      device.setSensorWaveform(AccelerometerService.TYPE_ID, 2, Waveforms.constant(-1));
+
+      final AccelerometerService service = (AccelerometerService)device.getServiceManager().getServiceByTypeId(AccelerometerService.TYPE_ID);
+      final AccelerometerGs gs = service.convertToGs(service.getAccelerometerState(0));
+
+      // the accelerometer's resolution is a few hundredths of a g
+      assertEquals(0.5, gs.getX(), 0.1);
+      assertEquals(0, gs.getY(), 0.1);
+      assertEquals(-1, gs.getZ(), 0.1);
+      }
+
+   public void testExpressionBuilderAndSequenceBuilderDevices() throws Exception
+      {
+      connect(SimulatedVisualProgrammerDevice.Profile.HUMMINGBIRD);
+      assertNotNull(device.getExpressionBuilderDevice().getDeviceGUI());
+      assertEquals("Expected a row of icons for each of the Hummingbird's output services", 6, createBlockIcons().getComponentCount());
+
+      device.disconnect();
+      connect(SimulatedVisualProgrammerDevice.Profile.FINCH);
+      assertNotNull(device.getExpressionBuilderDevice().getDeviceGUI());
+      assertEquals("Expected a row of icons for each of the Finch's output services", 4, createBlockIcons().getComponentCount());
+      }
+
+   @NotNull
+   private SimulatedLink connect(@NotNull final SimulatedVisualProgrammerDevice.Profile profile)
+      {
+      final SimulatedLink link = new SimulatedLink(SEED);
+      device = new SimulatedVisualProgrammerDevice(profile, link);
+      device.connect();
+      return link;
+      }
+
+   @NotNull
+   private AnalogInputsService getAnalogInputsService()
+      {
+      return (AnalogInputsService)device.getServiceManager().getServiceByTypeId(AnalogInputsService.TYPE_ID);
+      }
+
+   @NotNull
+   private JPanel createBlockIcons()
+      {
+      final ServiceManager serviceManager = device.getServiceManager();
+      return device.getSequenceBuilderDevice().getExpressionServiceIconView().createBlockIcons(NO_EXPRESSION_SERVICES, serviceManager);
+      }
+   }
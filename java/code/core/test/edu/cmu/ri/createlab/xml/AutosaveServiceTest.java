@@ -0,0 +1,212 @@
+package edu.cmu.ri.createlab.xml;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import edu.cmu.ri.createlab.util.DurableFileWriter;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>
+ * <code>AutosaveServiceTest</code> tests the {@link AutosaveService} class.
+ * </p>
+ *
+ * @author Chris Bartley (bartley@cmu.edu)
+ */
+public final class AutosaveServiceTest extends TestCase
+   {
+   private static final long TIMEOUT_IN_MILLIS = 5000;
+   private static final long NEVER_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+   private File directory;
+   private AutosaveService autosaveService;
+
+   public AutosaveServiceTest(final String test)
+      {
+      super(test);
+      }
+
+   protected void setUp() throws Exception
+      {
+      directory = File.createTempFile("AutosaveServiceTest", "");
+      assertTrue(directory.delete());
+      assertTrue(directory.mkdirs());
+      }
+
+   protected void tearDown() throws Exception
+      {
+      if (autosaveService != null)
+         {
+         autosaveService.shutdown();
+         }
+      FileUtils.deleteDirectory(directory);
+      }
+
+   public void testQuietPeriodCoalescesChanges() throws Exception
+      {
+      final long quietPeriodInMillis = 300;
+      autosaveService = new AutosaveService(directory, quietPeriodInMillis, NEVER_IN_MILLIS, NEVER_IN_MILLIS);
+      final TestSource source = new TestSource("quiet");
+
+      // changes which keep coming faster than the quiet period shouldn't be saved yet...
+      long lastChangeTime = 0;
+      for (int i = 1; i <= 10; i++)
+         {
+         source.setVersion(i);
+         autosaveService.markChanged(source);
+         lastChangeTime = System.nanoTime();
+         Thread.sleep(30);
+         }
+      assertEquals("Expected no snapshot while the document keeps changing", 0, source.getSnapshotCount());
+
+      // ...but once they stop, the latest version is saved exactly once
+      awaitSnapshot(source, 10);
+      final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(source.getFirstSnapshotTimeInNanos() - lastChangeTime);
+      assertTrue("Expected the snapshot to wait for the quiet period, but it was taken after [" + elapsedMillis + "] ms", elapsedMillis >= quietPeriodInMillis - 10);
+      Thread.sleep(quietPeriodInMillis);
+      assertEquals("Expected the changes to be coalesced into a single snapshot", 1, source.getSnapshotCount());
+      }
+
+   public void testMaxDelayBoundsContinuousChanges() throws Exception
+      {
+      final long maxDelayInMillis = 400;
+      autosaveService = new AutosaveService(directory, 300, maxDelayInMillis, NEVER_IN_MILLIS);
+      final TestSource source = new TestSource("busy");
+
+      final long startTime = System.nanoTime();
+      final long endTime = startTime + TimeUnit.MILLISECONDS.toNanos(maxDelayInMillis * 3);
+      int version = 0;
+      while (System.nanoTime() < endTime)
+         {
+         source.setVersion(++version);
+         autosaveService.markChanged(source);
+         Thread.sleep(30);
+         }
+
+      assertTrue("Expected a document which never stops changing to be saved anyway", source.getSnapshotCount() >= 1);
+      final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(source.getFirstSnapshotTimeInNanos() - startTime);
+      assertTrue("Expected the first snapshot after the max delay, but it was taken after [" + elapsedMillis + "] ms", elapsedMillis >= maxDelayInMillis);
+      assertTrue("Expected the first snapshot soon after the max delay, but it was taken after [" + elapsedMillis + "] ms", elapsedMillis < maxDelayInMillis * 2);
+      }
+
+   public void testJournalIsCompactedAndRecovered() throws Exception
+      {
+      autosaveService = new AutosaveService(directory, 0, 0, NEVER_IN_MILLIS);
+      final TestSource kept = new TestSource("kept");
+      final TestSource cleared = new TestSource("cleared");
+
+      // enough saves that the journal must be compacted along the way
+      final int saveCount = 60;
+      for (int i = 1; i <= saveCount; i++)
+         {
+         kept.setVersion(i);
+         autosaveService.markChanged(kept);
+         awaitSnapshot(kept, i);
+         cleared.setVersion(i);
+         autosaveService.markChanged(cleared);
+         awaitSnapshot(cleared, i);
+         }
+
+      // the service runs its tasks in order, so once the clear is done so is every earlier journal write
+      autosaveService.clear(cleared);
+      final File clearedFile = new File(directory, cleared.getName() + ".xml");
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (clearedFile.exists() && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      assertFalse("Expected the cleared snapshot to be deleted", clearedFile.exists());
+      autosaveService.shutdown();
+
+      final File journalFile = new File(directory, "autosave.journal");
+      final List<String> journalLines = FileUtils.readLines(journalFile, "UTF-8");
+      assertTrue("Expected the journal to have been compacted, but it has [" + journalLines.size() + "] lines", journalLines.size() < saveCount);
+
+      // simulate a crash in the middle of an append
+      DurableFileWriter.append(journalFile, System.currentTimeMillis() + "\tSAV");
+
+      autosaveService = new AutosaveService(directory);
+      final AutosaveService.Recovery recovery = autosaveService.getRecovery(kept.getName());
+      assertNotNull("Expected the latest snapshot to be recoverable", recovery);
+      assertEquals(new File(directory, kept.getName() + ".xml"), recovery.getFile());
+      assertEquals(kept.getTitle(), recovery.getTitle());
+      assertTrue(FileUtils.readFileToString(recovery.getFile(), "UTF-8").contains(TestSource.toContents(saveCount)));
+      assertNull("Expected a cleared snapshot not to be recoverable", autosaveService.getRecovery(cleared.getName()));
+      assertNull(autosaveService.getRecovery("unknown"));
+      }
+
+   private void awaitSnapshot(@NotNull final TestSource source, final int version) throws Exception
+      {
+      final File file = new File(directory, source.getName() + ".xml");
+      final String contents = TestSource.toContents(version);
+      final long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+      while (!(file.isFile() && FileUtils.readFileToString(file, "UTF-8").contains(contents)) && System.currentTimeMillis() < deadline)
+         {
+         Thread.sleep(10);
+         }
+      assertTrue("Expected version [" + version + "] of [" + source.getName() + "] to be saved", file.isFile() && FileUtils.readFileToString(file, "UTF-8").contains(contents));
+      }
+
+   private static final class TestSource implements AutosaveService.Source
+      {
+      @NotNull
+      private static String toContents(final int version)
+         {
+         return "<version>" + version + "</version>";
+         }
+
+      private final String name;
+      private final AtomicInteger version = new AtomicInteger(0);
+      private final AtomicInteger snapshotCount = new AtomicInteger(0);
+      private final AtomicLong firstSnapshotTimeInNanos = new AtomicLong(0);
+
+      private TestSource(@NotNull final String name)
+         {
+         this.name = name;
+         }
+
+      private void setVersion(final int version)
+         {
+         this.version.set(version);
+         }
+
+      private int getSnapshotCount()
+         {
+         return snapshotCount.get();
+         }
+
+      private long getFirstSnapshotTimeInNanos()
+         {
+         return firstSnapshotTimeInNanos.get();
+         }
+
+      @NotNull
+      public String getName()
+         {
+         return name;
+         }
+
+      @Nullable
+      public String getTitle()
+         {
+         return "Title of " + name;
+         }
+
+      @Nullable
+      public Document createSnapshot()
+         {
+         firstSnapshotTimeInNanos.compareAndSet(0, System.nanoTime());
+         snapshotCount.incrementAndGet();
+         final Element versionElement = new Element("version");
+         versionElement.setText(String.valueOf(version.get()));
+         return new Document(new Element("document").addContent(versionElement));
+         }
+      }
+   }
@@ -16,8 +16,8 @@ import edu.cmu.ri.createlab.terk.services.led.FullColorLEDService;
 import edu.cmu.ri.createlab.terk.services.motor.OpenLoopVelocityControllableMotorService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.terk.xml.XmlService;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 
 /**
  * @author Chris Bartley (bartley@cmu.edu)
@@ -30,21 +30,21 @@ public class FinchExpressionServiceIconView extends BaseExpressionServiceIconVie
       //TODO: This big mess of map creating needs to be moved elsewhere - preferably more autonomously.
 
       final String audio = AudioService.TYPE_ID;
-      getEnabledIconMap().put(audio, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_aud.png")));
-      getOffIconMap().put(audio, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_aud.png")));
-      getDisabledIconMap().put(audio, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_aud.png")));
+      getEnabledIconMap().put(audio, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_aud.png")));
+      getOffIconMap().put(audio, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_aud.png")));
+      getDisabledIconMap().put(audio, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_aud.png")));
       getToolTipTextMap().put(audio, "Audio");
 
       final String buzzer = BuzzerService.TYPE_ID;
-      getEnabledIconMap().put(buzzer, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_aud.png")));
-      getOffIconMap().put(buzzer, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_aud.png")));
-      getDisabledIconMap().put(buzzer, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_aud.png")));
+      getEnabledIconMap().put(buzzer, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_aud.png")));
+      getOffIconMap().put(buzzer, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_aud.png")));
+      getDisabledIconMap().put(buzzer, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_aud.png")));
       getToolTipTextMap().put(buzzer, "Buzzer");
 
       final String fullColorLEDs = FullColorLEDService.TYPE_ID;
-      getEnabledIconMap().put(fullColorLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_TriLED.png")));
-      getOffIconMap().put(fullColorLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_TriLED.png")));
-      getDisabledIconMap().put(fullColorLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_TriLED.png")));
+      getEnabledIconMap().put(fullColorLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_TriLED.png")));
+      getOffIconMap().put(fullColorLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_TriLED.png")));
+      getDisabledIconMap().put(fullColorLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_TriLED.png")));
       getToolTipTextMap().put(fullColorLEDs, "Tri-Color LED");
       final HashSet<XmlParameter> fullColorLEDParamSet = new HashSet<XmlParameter>();
       fullColorLEDParamSet.add(new XmlParameter("red", 0));
@@ -53,9 +53,9 @@ public class FinchExpressionServiceIconView extends BaseExpressionServiceIconVie
       getOffValueMap().put(fullColorLEDs, fullColorLEDParamSet);
 
       final String motors = OpenLoopVelocityControllableMotorService.TYPE_ID;
-      getEnabledIconMap().put(motors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_motor.png")));
-      getOffIconMap().put(motors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_motor.png")));
-      getDisabledIconMap().put(motors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_motor.png")));
+      getEnabledIconMap().put(motors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_motor.png")));
+      getOffIconMap().put(motors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_motor.png")));
+      getDisabledIconMap().put(motors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_motor.png")));
       getToolTipTextMap().put(motors, "Motors");
       final HashSet<XmlParameter> motorParamSet = new HashSet<XmlParameter>();
       motorParamSet.add(new XmlParameter(OpenLoopVelocityControllableMotorService.PARAMETER_NAME_VELOCITY, 0));
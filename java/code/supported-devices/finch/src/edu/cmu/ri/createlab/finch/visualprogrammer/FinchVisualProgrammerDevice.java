@@ -1,14 +1,14 @@
 package edu.cmu.ri.createlab.finch.visualprogrammer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.PropertyResourceBundle;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.ImageIcon;
@@ -22,9 +22,11 @@ import edu.cmu.ri.createlab.sequencebuilder.SequenceBuilderDevice;
 import edu.cmu.ri.createlab.terk.robot.finch.FinchController;
 import edu.cmu.ri.createlab.terk.robot.finch.services.FinchServiceFactoryHelper;
 import edu.cmu.ri.createlab.terk.robot.finch.services.FinchServiceManager;
+import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.ServiceManager;
 import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerGs;
 import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerService;
+import edu.cmu.ri.createlab.terk.services.accelerometer.AccelerometerState;
 import edu.cmu.ri.createlab.terk.services.obstacle.SimpleObstacleDetectorService;
 import edu.cmu.ri.createlab.terk.services.photoresistor.PhotoresistorService;
 import edu.cmu.ri.createlab.terk.services.thermistor.ThermistorService;
@@ -36,6 +38,7 @@ import edu.cmu.ri.createlab.visualprogrammer.DoubleValueSensor;
 import edu.cmu.ri.createlab.visualprogrammer.IntegralValueSensor;
 import edu.cmu.ri.createlab.visualprogrammer.PathManager;
 import edu.cmu.ri.createlab.visualprogrammer.Sensor;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -49,6 +52,11 @@ public final class FinchVisualProgrammerDevice extends BaseVisualProgrammerDevic
 
    private static final PropertyResourceBundle RESOURCES = (PropertyResourceBundle)PropertyResourceBundle.getBundle(FinchVisualProgrammerDevice.class.getName());
 
+   private static final String[] SENSOR_SERVICE_TYPE_IDS = {ThermistorService.TYPE_ID,
+                                                            PhotoresistorService.TYPE_ID,
+                                                            SimpleObstacleDetectorService.TYPE_ID,
+                                                            AccelerometerService.TYPE_ID};
+
    private FinchController finch = null;
    private ServiceManager serviceManager = null;
    private final ExpressionBuilderDevice expressionBuilderDevice = new FinchExpressionBuilderDevice();
@@ -66,93 +74,49 @@ public final class FinchVisualProgrammerDevice extends BaseVisualProgrammerDevic
    private final Lock lock = new ReentrantLock();
 
    private final Set<SensorListener> sensorListeners = new HashSet<SensorListener>();
-   private ScheduledExecutorService sensorPollingService = null;
+   private final List<SensorSamplingBus.Subscription> sensorSubscriptions = new ArrayList<SensorSamplingBus.Subscription>();
    private final ExecutorService sensorListenerNotificationService = Executors.newCachedThreadPool(new DaemonThreadFactory(this.getClass().getSimpleName() + "_sensorListenerNotificationService"));
-   private Runnable sensorPollingRunnable =
-         new Runnable()
+   private final SensorSamplingBus.SampleListener sensorSampleListener =
+         new SensorSamplingBus.SampleListener()
          {
          @Override
-         public void run()
+         public void handleSample(@NotNull final Service service, @NotNull final SensorSamplingBus.SensorSample sample)
             {
-            try
+            if (!sensorListeners.isEmpty())
                {
-               if (!sensorListeners.isEmpty() && serviceManager != null)
-                  {
-                  final ThermistorService thermistorService = (ThermistorService)serviceManager.getServiceByTypeId(ThermistorService.TYPE_ID);
-                  if (thermistorService != null)
-                     {
-                     for (int portNumber = 0; portNumber < thermistorService.getDeviceCount(); portNumber++)
-                        {
-                        final Integer rawValue = thermistorService.getThermistorValue(portNumber);
-                        if (rawValue != null)
-                           {
-                           publishSensorValueToListeners(ThermistorService.TYPE_ID, portNumber, rawValue);
-                           }
-                        }
-                     }
-                  final PhotoresistorService photoresistorService = (PhotoresistorService)serviceManager.getServiceByTypeId(PhotoresistorService.TYPE_ID);
-                  if (photoresistorService != null)
+               sensorListenerNotificationService.submit(
+                     new Runnable()
                      {
-                     final int[] photoresistorValues = photoresistorService.getPhotoresistorValues();
-                     if (photoresistorValues != null && photoresistorValues.length > 0)
-                        {
-                        for (int portNumber = 0; portNumber < photoresistorValues.length; portNumber++)
-                           {
-                           publishSensorValueToListeners(PhotoresistorService.TYPE_ID, portNumber, photoresistorValues[portNumber]);
-                           }
-                        }
-                     }
-                  final SimpleObstacleDetectorService obstacleDetectorService = (SimpleObstacleDetectorService)serviceManager.getServiceByTypeId(SimpleObstacleDetectorService.TYPE_ID);
-                  if (obstacleDetectorService != null)
-                     {
-                     final boolean[] areDetected = obstacleDetectorService.areObstaclesDetected();
-                     if (areDetected != null && areDetected.length > 0)
-                        {
-                        for (int portNumber = 0; portNumber < areDetected.length; portNumber++)
-                           {
-                           publishSensorValueToListeners(SimpleObstacleDetectorService.TYPE_ID, portNumber, areDetected[portNumber]);
-                           }
-                        }
-                     }
-                  final AccelerometerService accelerometerService = (AccelerometerService)serviceManager.getServiceByTypeId(AccelerometerService.TYPE_ID);
-                  if (accelerometerService != null)
-                     {
-                     for (int portNumber = 0; portNumber < accelerometerService.getDeviceCount(); portNumber++)
+                     @Override
+                     public void run()
                         {
-                        final AccelerometerGs rawValue = accelerometerService.getAccelerometerGs(portNumber);
-                        if (rawValue != null)
+                        final String serviceTypeId = service.getTypeId();
+                        for (int portNumber = 0; portNumber < sample.getPortCount(); portNumber++)
                            {
-                           publishSensorValueToListeners(AccelerometerService.TYPE_ID, portNumber, rawValue);
+                           Object rawValue = sample.getValue(portNumber);
+
+                           // the bus samples the raw accelerometer state, but our sensors work in Gs
+                           if (rawValue instanceof AccelerometerState)
+                              {
+                              rawValue = ((AccelerometerService)service).convertToGs((AccelerometerState)rawValue);
+                              }
+
+                           if (rawValue != null)
+                              {
+                              if (LOG.isTraceEnabled())
+                                 {
+                                 LOG.trace("FinchVisualProgrammerDevice.run(): notifying [" + sensorListeners.size() + "] listeners of (service, port, rawValue) = (" + serviceTypeId + "," + portNumber + "," + rawValue + ")");
+                                 }
+                              for (final SensorListener listener : sensorListeners)
+                                 {
+                                 listener.processSensorRawValue(serviceTypeId, portNumber, rawValue);
+                                 }
+                              }
                            }
                         }
-                     }
-                  }
-               }
-            catch (Exception e)
-               {
-               LOG.error("Exception while trying to get the analog input values", e);
+                     });
                }
             }
-
-         private void publishSensorValueToListeners(final String serviceTypeId, final int portNumber, final Object rawValue)
-            {
-            sensorListenerNotificationService.submit(
-                  new Runnable()
-                  {
-                  @Override
-                  public void run()
-                     {
-                     if (LOG.isTraceEnabled())
-                        {
-                        LOG.trace("FinchVisualProgrammerDevice.run(): notifying [" + sensorListeners.size() + "] listeners of (service, port, rawValue) = (" + serviceTypeId + "," + portNumber + "," + rawValue + ")");
-                        }
-                     for (final SensorListener listener : sensorListeners)
-                        {
-                        listener.processSensorRawValue(serviceTypeId, portNumber, rawValue);
-                        }
-                     }
-                  });
-            }
          };
 
    private final CreateLabDevicePingFailureEventListener pingFailureEventListener =
@@ -382,9 +346,8 @@ public final class FinchVisualProgrammerDevice extends BaseVisualProgrammerDevic
                      });
                }
 
-            // start the sensor poller
-            sensorPollingService = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(this.getClass().getSimpleName() + "_sensorPollingService"));
-            sensorPollingService.scheduleAtFixedRate(sensorPollingRunnable, 0, 500, TimeUnit.MILLISECONDS);
+            // start sampling the sensors, if anyone is listening
+            updateSensorSubscriptions();
             }
          }
       catch (final Exception e)
@@ -573,7 +536,16 @@ public final class FinchVisualProgrammerDevice extends BaseVisualProgrammerDevic
       {
       if (listener != null)
          {
-         sensorListeners.add(listener);
+         lock.lock();  // block until condition holds
+         try
+            {
+            sensorListeners.add(listener);
+            updateSensorSubscriptions();
+            }
+         finally
+            {
+            lock.unlock();
+            }
          }
       }
 
@@ -582,7 +554,16 @@ public final class FinchVisualProgrammerDevice extends BaseVisualProgrammerDevic
       {
       if (listener != null)
          {
-         sensorListeners.remove(listener);
+         lock.lock();  // block until condition holds
+         try
+            {
+            sensorListeners.remove(listener);
+            updateSensorSubscriptions();
+            }
+         finally
+            {
+            lock.unlock();
+            }
          }
       }
 
@@ -615,6 +596,35 @@ public final class FinchVisualProgrammerDevice extends BaseVisualProgrammerDevic
          }
       }
 
+   /**
+    * Subscribes to the {@link SensorSamplingBus} if we're connected and have {@link SensorListener}s, and cancels the
+    * subscriptions otherwise, so that the sensors are only polled while someone is listening.
+    */
+   // MUST be called from within a lock block!
+   private void updateSensorSubscriptions()
+      {
+      final boolean shouldBeSubscribed = serviceManager != null && !sensorListeners.isEmpty();
+      if (shouldBeSubscribed && sensorSubscriptions.isEmpty())
+         {
+         for (final String serviceTypeId : SENSOR_SERVICE_TYPE_IDS)
+            {
+            final Service service = serviceManager.getServiceByTypeId(serviceTypeId);
+            if (service != null)
+               {
+               sensorSubscriptions.add(SensorSamplingBus.getInstance().subscribe(service, SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS, sensorSampleListener));
+               }
+            }
+         }
+      else if (!shouldBeSubscribed && !sensorSubscriptions.isEmpty())
+         {
+         for (final SensorSamplingBus.Subscription subscription : sensorSubscriptions)
+            {
+            subscription.cancel();
+            }
+         sensorSubscriptions.clear();
+         }
+      }
+
    // MUST be called from within a lock block!
    private void disconnectWorkhorse(final boolean willDisconnectFromDevice)
       {
@@ -623,18 +633,11 @@ public final class FinchVisualProgrammerDevice extends BaseVisualProgrammerDevic
          finch.disconnect();
          }
 
-      if (sensorPollingService != null)
+      if (serviceManager != null)
          {
-         try
-            {
-            sensorPollingService.shutdownNow();
-            }
-         catch (Exception e)
-            {
-            LOG.debug("FinchVisualProgrammerDevice.disconnectWorkhorse(): Exception while trying to shut down the sensor polling service.", e);
-            }
-         sensorPollingService = null;
+         SensorSamplingBus.getInstance().removeSources(serviceManager);
          }
+      sensorSubscriptions.clear();
 
       finch = null;
       serviceManager = null;
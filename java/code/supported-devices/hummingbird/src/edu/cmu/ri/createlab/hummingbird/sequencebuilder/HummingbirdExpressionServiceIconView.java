@@ -18,8 +18,8 @@ import edu.cmu.ri.createlab.terk.services.motor.VelocityControllableMotorService
 import edu.cmu.ri.createlab.terk.services.servo.SimpleServoService;
 import edu.cmu.ri.createlab.terk.xml.XmlParameter;
 import edu.cmu.ri.createlab.terk.xml.XmlService;
-import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
 import edu.cmu.ri.createlab.userinterface.util.SwingUtils;
+import edu.cmu.ri.createlab.util.IconRegistry;
 
 /**
  * @author Jenn Cross (jenncross99@gmail.com)
@@ -32,39 +32,39 @@ public class HummingbirdExpressionServiceIconView extends BaseExpressionServiceI
       //TODO: This big mess of map creating needs to be moved elsewhere - preferably more autonomously.
 
       final String audio = AudioService.TYPE_ID;
-      getEnabledIconMap().put(audio, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_aud.png")));
-      getOffIconMap().put(audio, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_aud.png")));
-      getDisabledIconMap().put(audio, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_aud.png")));
+      getEnabledIconMap().put(audio, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_aud.png")));
+      getOffIconMap().put(audio, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_aud.png")));
+      getDisabledIconMap().put(audio, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_aud.png")));
       getToolTipTextMap().put(audio, "Audio");
 
       final String motors = VelocityControllableMotorService.TYPE_ID;
-      getEnabledIconMap().put(motors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_motor.png")));
-      getOffIconMap().put(motors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_motor.png")));
-      getDisabledIconMap().put(motors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_motor.png")));
+      getEnabledIconMap().put(motors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_motor.png")));
+      getOffIconMap().put(motors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_motor.png")));
+      getDisabledIconMap().put(motors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_motor.png")));
       getToolTipTextMap().put(motors, "Motors");
       final HashSet<XmlParameter> motorParamSet = new HashSet<XmlParameter>();
       motorParamSet.add(new XmlParameter(VelocityControllableMotorService.PARAMETER_NAME_VELOCITY, 0));
       getOffValueMap().put(motors, motorParamSet);
 
       final String vibMotors = SpeedControllableMotorService.TYPE_ID;
-      getEnabledIconMap().put(vibMotors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_vib.png")));
-      getOffIconMap().put(vibMotors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_vib.png")));
-      getDisabledIconMap().put(vibMotors, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_vib.png")));
+      getEnabledIconMap().put(vibMotors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_vib.png")));
+      getOffIconMap().put(vibMotors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_vib.png")));
+      getDisabledIconMap().put(vibMotors, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_vib.png")));
       getToolTipTextMap().put(vibMotors, "Vibration Motors");
       final HashSet<XmlParameter> vibMotorParamSet = new HashSet<XmlParameter>();
       vibMotorParamSet.add(new XmlParameter(SpeedControllableMotorService.PARAMETER_NAME_SPEED, 0));
       getOffValueMap().put(vibMotors, vibMotorParamSet);
 
       final String servos = SimpleServoService.TYPE_ID;
-      getEnabledIconMap().put(servos, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_servo.png")));
-      getOffIconMap().put(servos, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_servo.png")));
-      getDisabledIconMap().put(servos, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_servo.png")));
+      getEnabledIconMap().put(servos, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_servo.png")));
+      getOffIconMap().put(servos, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_servo.png")));
+      getDisabledIconMap().put(servos, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_servo.png")));
       getToolTipTextMap().put(servos, "Servos");
 
       final String fullColorLEDs = FullColorLEDService.TYPE_ID;
-      getEnabledIconMap().put(fullColorLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_TriLED.png")));
-      getOffIconMap().put(fullColorLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_TriLED.png")));
-      getDisabledIconMap().put(fullColorLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_TriLED.png")));
+      getEnabledIconMap().put(fullColorLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_TriLED.png")));
+      getOffIconMap().put(fullColorLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_TriLED.png")));
+      getDisabledIconMap().put(fullColorLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_TriLED.png")));
       getToolTipTextMap().put(fullColorLEDs, "Tri-Color LEDs");
       final HashSet<XmlParameter> fullColorLEDParamSet = new HashSet<XmlParameter>();
       fullColorLEDParamSet.add(new XmlParameter("red", 0));
@@ -73,9 +73,9 @@ public class HummingbirdExpressionServiceIconView extends BaseExpressionServiceI
       getOffValueMap().put(fullColorLEDs, fullColorLEDParamSet);
 
       final String simpleLEDs = SimpleLEDService.TYPE_ID;
-      getEnabledIconMap().put(simpleLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_LED.png")));
-      getOffIconMap().put(simpleLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_LED.png")));
-      getDisabledIconMap().put(simpleLEDs, new JLabel(ImageUtils.createImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_LED.png")));
+      getEnabledIconMap().put(simpleLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YE_LED.png")));
+      getOffIconMap().put(simpleLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YD_LED.png")));
+      getDisabledIconMap().put(simpleLEDs, new JLabel(IconRegistry.getInstance().getImageIcon("/edu/cmu/ri/createlab/sequencebuilder/programelement/view/images/service_icons/YY_LED.png")));
       getToolTipTextMap().put(simpleLEDs, "LEDs");
       final HashSet<XmlParameter> simpleLEDParamSet = new HashSet<XmlParameter>();
       simpleLEDParamSet.add(new XmlParameter(SimpleLEDService.PARAMETER_NAME_INTENSITY, 0));
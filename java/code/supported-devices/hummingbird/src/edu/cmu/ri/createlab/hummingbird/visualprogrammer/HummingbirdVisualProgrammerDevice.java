@@ -8,8 +8,6 @@ import java.util.PropertyResourceBundle;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.ImageIcon;
@@ -26,6 +24,7 @@ import edu.cmu.ri.createlab.hummingbird.sequencebuilder.HummingbirdSequenceBuild
 import edu.cmu.ri.createlab.hummingbird.services.HummingbirdServiceFactoryHelper;
 import edu.cmu.ri.createlab.hummingbird.services.HummingbirdServiceManager;
 import edu.cmu.ri.createlab.sequencebuilder.SequenceBuilderDevice;
+import edu.cmu.ri.createlab.terk.services.Service;
 import edu.cmu.ri.createlab.terk.services.ServiceManager;
 import edu.cmu.ri.createlab.terk.services.analog.AnalogInputsService;
 import edu.cmu.ri.createlab.userinterface.util.ImageUtils;
@@ -34,6 +33,7 @@ import edu.cmu.ri.createlab.visualprogrammer.BaseVisualProgrammerDevice;
 import edu.cmu.ri.createlab.visualprogrammer.IntegralValueSensor;
 import edu.cmu.ri.createlab.visualprogrammer.PathManager;
 import edu.cmu.ri.createlab.visualprogrammer.Sensor;
+import edu.cmu.ri.createlab.visualprogrammer.SensorSamplingBus;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -95,53 +95,39 @@ public final class HummingbirdVisualProgrammerDevice extends BaseVisualProgramme
    private final Lock lock = new ReentrantLock();
 
    private final Set<SensorListener> sensorListeners = new HashSet<SensorListener>();
-   private ScheduledExecutorService sensorPollingService = null;
+   private SensorSamplingBus.Subscription sensorSubscription = null;
    private final ExecutorService sensorListenerNotificationService = Executors.newCachedThreadPool(new DaemonThreadFactory(this.getClass().getSimpleName() + "_sensorListenerNotificationService"));
-   private Runnable sensorPollingRunnable =
-         new Runnable()
+   private final SensorSamplingBus.SampleListener sensorSampleListener =
+         new SensorSamplingBus.SampleListener()
          {
          @Override
-         public void run()
+         public void handleSample(@NotNull final Service service, @NotNull final SensorSamplingBus.SensorSample sample)
             {
-            try
+            if (!sensorListeners.isEmpty())
                {
-               if (!sensorListeners.isEmpty() && serviceManager != null)
-                  {
-                  final AnalogInputsService analogInputsService = (AnalogInputsService)serviceManager.getServiceByTypeId(AnalogInputsService.TYPE_ID);
-                  if (analogInputsService != null)
+               sensorListenerNotificationService.submit(
+                     new Runnable()
                      {
-                     final int[] analogInputValues = analogInputsService.getAnalogInputValues();
-                     if (analogInputValues != null)
+                     @Override
+                     public void run()
                         {
-                        for (int i = 0; i < analogInputValues.length; i++)
+                        for (int portNumber = 0; portNumber < sample.getPortCount(); portNumber++)
                            {
-                           final int portNumber = i;
-                           final int rawValue = analogInputValues[portNumber];
-
-                           sensorListenerNotificationService.submit(
-                                 new Runnable()
+                           final Object rawValue = sample.getValue(portNumber);
+                           if (rawValue != null)
+                              {
+                              if (LOG.isTraceEnabled())
                                  {
-                                 @Override
-                                 public void run()
-                                    {
-                                    if (LOG.isTraceEnabled())
-                                       {
-                                       LOG.trace("HummingbirdVisualProgrammerDevice.run(): notifying [" + sensorListeners.size() + "] listeners of (service, port, rawValue) = (" + AnalogInputsService.TYPE_ID + "," + portNumber + "," + rawValue + ")");
-                                       }
-                                    for (final SensorListener listener : sensorListeners)
-                                       {
-                                       listener.processSensorRawValue(AnalogInputsService.TYPE_ID, portNumber, rawValue);
-                                       }
-                                    }
-                                 });
+                                 LOG.trace("HummingbirdVisualProgrammerDevice.run(): notifying [" + sensorListeners.size() + "] listeners of (service, port, rawValue) = (" + AnalogInputsService.TYPE_ID + "," + portNumber + "," + rawValue + ")");
+                                 }
+                              for (final SensorListener listener : sensorListeners)
+                                 {
+                                 listener.processSensorRawValue(AnalogInputsService.TYPE_ID, portNumber, rawValue);
+                                 }
+                              }
                            }
                         }
-                     }
-                  }
-               }
-            catch (Exception e)
-               {
-               LOG.error("Exception while trying to get the analog input values", e);
+                     });
                }
             }
          };
@@ -348,9 +334,8 @@ public final class HummingbirdVisualProgrammerDevice extends BaseVisualProgramme
                registerSensor(rawValueSensor);
                }
 
-            // start the sensor poller
-            sensorPollingService = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(this.getClass().getSimpleName() + "_sensorPollingService"));
-            sensorPollingService.scheduleAtFixedRate(sensorPollingRunnable, 0, 500, TimeUnit.MILLISECONDS);
+            // start sampling the sensors, if anyone is listening
+            updateSensorSubscription();
             }
          }
       catch (final Exception e)
@@ -450,7 +435,16 @@ public final class HummingbirdVisualProgrammerDevice extends BaseVisualProgramme
       {
       if (listener != null)
          {
-         sensorListeners.add(listener);
+         lock.lock();  // block until condition holds
+         try
+            {
+            sensorListeners.add(listener);
+            updateSensorSubscription();
+            }
+         finally
+            {
+            lock.unlock();
+            }
          }
       }
 
@@ -459,7 +453,16 @@ public final class HummingbirdVisualProgrammerDevice extends BaseVisualProgramme
       {
       if (listener != null)
          {
-         sensorListeners.remove(listener);
+         lock.lock();  // block until condition holds
+         try
+            {
+            sensorListeners.remove(listener);
+            updateSensorSubscription();
+            }
+         finally
+            {
+            lock.unlock();
+            }
          }
       }
 
@@ -507,6 +510,29 @@ public final class HummingbirdVisualProgrammerDevice extends BaseVisualProgramme
          }
       }
 
+   /**
+    * Subscribes to the {@link SensorSamplingBus} if we're connected and have {@link SensorListener}s, and cancels the
+    * subscription otherwise, so that the sensors are only polled while someone is listening.
+    */
+   // MUST be called from within a lock block!
+   private void updateSensorSubscription()
+      {
+      final boolean shouldBeSubscribed = serviceManager != null && !sensorListeners.isEmpty();
+      if (shouldBeSubscribed && sensorSubscription == null)
+         {
+         final Service analogInputsService = serviceManager.getServiceByTypeId(AnalogInputsService.TYPE_ID);
+         if (analogInputsService != null)
+            {
+            sensorSubscription = SensorSamplingBus.getInstance().subscribe(analogInputsService, SensorSamplingBus.DEFAULT_PERIOD_IN_MILLIS, sensorSampleListener);
+            }
+         }
+      else if (!shouldBeSubscribed && sensorSubscription != null)
+         {
+         sensorSubscription.cancel();
+         sensorSubscription = null;
+         }
+      }
+
    // MUST be called from within a lock block!
    private void disconnectWorkhorse(final boolean willDisconnectFromDevice)
       {
@@ -515,18 +541,11 @@ public final class HummingbirdVisualProgrammerDevice extends BaseVisualProgramme
          hummingbird.disconnect();
          }
 
-      if (sensorPollingService != null)
+      if (serviceManager != null)
          {
-         try
-            {
-            sensorPollingService.shutdownNow();
-            }
-         catch (Exception e)
-            {
-            LOG.debug("HummingbirdVisualProgrammerDevice.disconnectWorkhorse(): Exception while trying to shut down the sensor polling service.", e);
-            }
-         sensorPollingService = null;
+         SensorSamplingBus.getInstance().removeSources(serviceManager);
          }
+      sensorSubscription = null;
 
       hummingbird = null;
       serviceManager = null;